@@ -1,18 +1,33 @@
 package com.e2ee.client;
 
+import com.e2ee.crypto.CipherSuite;
 import com.e2ee.crypto.EncryptedPayload;
 import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.KeyPairPool;
 import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.FrameCodec;
 import com.e2ee.protocol.JsonUtil;
 import com.e2ee.protocol.MessageType;
 import com.e2ee.session.E2eeSession;
+import com.e2ee.session.SenderKey;
+import com.e2ee.session.X3dh;
 import com.e2ee.client.store.KeyVault;
+import com.e2ee.client.store.PrekeyVault;
 import com.e2ee.client.history.HistoryVault;
 import com.e2ee.client.history.HistoryEntry;
+import com.e2ee.client.room.RoomKeyring;
+import com.e2ee.client.file.FileTransferManager;
+import com.e2ee.client.stats.PeerLatencyStats;
+import com.e2ee.client.net.ClientTransport;
+import com.e2ee.client.receipt.ReceiptBook;
+import com.e2ee.client.chat.PendingSendQueue;
+import com.e2ee.client.config.ClientConfig;
+import com.e2ee.client.recv.ReceivePipeline;
+import com.google.gson.reflect.TypeToken;
 
-import java.net.Socket;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.lang.reflect.Type;
+import java.nio.file.Paths;
 
 import java.security.KeyPair;
 import java.security.PrivateKey;
@@ -20,6 +35,11 @@ import java.security.PublicKey;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.e2ee.protocol.JsonUtil.toJson;
 
@@ -34,10 +54,63 @@ public class ClientMain {
     private static String myId;
 
     // 현재 대화 상대 ID
-    private static String currentTarget = null;
+    private static volatile String currentTarget = null;
 
-    // 세션 저장: 상대ID → E2eeSession
-    private static final Map<String, E2eeSession> sessions = new HashMap<>();
+    // 현재 대화 중인 그룹방 (null이면 1:1 모드)
+    private static volatile String currentRoom = null;
+
+    // 사라지는 메시지 (/ttl 초, 0 = 끔) - 서버 기록에서 이 시간 뒤에 지워짐
+    private static volatile long ephemeralTtl = 0;
+
+    // 설정 (-De2ee.* > 환경변수 E2EE_* > ~/.e2ee-chat/client.properties > 기본값)
+    private static final ClientConfig config = ClientConfig.get();
+
+    // 세션 저장: 상대ID → E2eeSession (수신 스레드/입력 루프가 같이 씀)
+    private static final Map<String, E2eeSession> sessions = new ConcurrentHashMap<>();
+
+    // 일회용 prekey 개인키 + prekey 세션 보관소 (로그인 후 열림)
+    private static PrekeyVault prekeys;
+
+    // prekey 보충이 이미 돌고 있으면 또 만들지 않음
+    private static final AtomicBoolean prekeyRefilling = new AtomicBoolean();
+
+    // 서버가 알려준 상대 등록 공개키 (KEY_REQ / KEY_RES / PREKEY_BUNDLE / KEY_BATCH_RES)
+    // → prekey 헤더의 신원키를 이것(또는 지금 세션의 키)과 맞춰 봄
+    private static final Map<String, PublicKey> registeredKeys = new ConcurrentHashMap<>();
+
+    // 등록 키를 받아올 때까지 잡아둔 상대 프레임 (받은 순서대로)
+    // 수신 스레드가 넣고 꺼내며, 시간 초과 타이머도 꺼내므로 이 맵으로 잠금
+    private static final Map<String, HeldFrames> awaitingIdentity = new HashMap<>();
+
+    private static final class HeldFrames {
+        final List<ChatMessage> frames = new ArrayList<>();
+        int retries;
+    }
+
+    // 등록 키 응답이 안 오면 다시 묻고, 그래도 안 오면 잡아둔 프레임을 버림
+    private static final ScheduledExecutorService identityTimer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "identity-wait");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // /rekey 요청 중인 상대 (번들이 오면 헤더에 다시 만든 세션 표시)
+    private static final Set<String> rekeying = ConcurrentHashMap.newKeySet();
+
+    // 그룹방 멤버 / sender key 보관
+    private static final RoomKeyring rooms = new RoomKeyring();
+
+    // 상대별 송신 → 표시 지연 (/stats)
+    private static final PeerLatencyStats latency = new PeerLatencyStats();
+
+    // 받은 메시지 중복 제거 / 안 읽은 메시지 (DELIVERED / READ)
+    private static final ReceiptBook receipts = new ReceiptBook(config.getReceiptRecentLimit());
+
+    // 키 교환 끝나기 전에 입력한 1:1 메시지 (세션 생기면 암호화해서 한 번에 전송)
+    private static final PendingSendQueue pendingSends = new PendingSendQueue(sessions);
+
+    private static final Type STRING_MAP = new TypeToken<Map<String, String>>() {}.getType();
+    private static final Type STRING_LIST = new TypeToken<List<String>>() {}.getType();
 
     private static final DateTimeFormatter TS =
             DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
@@ -47,30 +120,20 @@ public class ClientMain {
 
         Scanner sc = new Scanner(System.in);
 
-        String host = "chat-server";
-        int port = 9000;
+        // 접속 대상: 인자 > 설정 (E2EE_HOST / E2EE_PORT 등) > 기본값 (docker-compose 서비스 이름)
+        String host = (args.length > 0) ? args[0] : config.getHost();
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : config.getPort();
 
-        Socket socket = null;
+        // 보낼 때 쓸 암호 스위트 (auto 면 AES-GCM / ChaCha20 중 이 CPU 에서 빠른 쪽)
+        CipherSuite.select(config.getCryptoSuite());
+        System.out.println(CipherSuite.report());
 
-        while (true) {
-            try {
-                System.out.println("[NET] 서버 연결 중...");
-                socket = new Socket(host, port);
-                break;
-            } catch (Exception e) {
-                Thread.sleep(1000); // 1초 후 재시도
-            }
-        }
+        // 키쌍 풀 채우기 시작 (로그인 입력하는 동안 신원키 / prekey / 임시키를 미리 만들어 둠)
+        KeyPairPool.configure(config.getKeyPoolSize(), config.getKeyPoolLowWatermark());
 
-        System.out.println("[NET] 서버 연결 완료!");
-
-        PrintWriter writer = new PrintWriter(
-                new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8),
-                true
-        );
-        BufferedReader reader = new BufferedReader(
-                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)
-        );
+        // 끊기면 알아서 재연결/재인증/미확인 메시지 재전송
+        ClientTransport transport = new ClientTransport(host, port, config);
+        PrintWriter writer = transport.writer();
 
 
         // ---------------------------------------------------
@@ -97,7 +160,10 @@ public class ClientMain {
         String authBody =
                 "{\"id\":\"" + myId + "\"," +
                         "\"password\":\"" + pw + "\"," +
-                        "\"publicKey\":\"" + EcdhUtil.encodePublicKey(myPublicKey) + "\"}";
+                        "\"publicKey\":\"" + EcdhUtil.encodePublicKey(myPublicKey) + "\"," +
+                        "\"device\":\"" + ChatMessage.DEVICE + "\"" +
+                        (config.isCompression() ? ",\"compression\":\"" + FrameCodec.NAME + "\"" : "") +
+                        "}";
 
         MessageType authType = (menu == 1)
                 ? MessageType.AUTH_SIGNUP
@@ -110,116 +176,299 @@ public class ClientMain {
                 authBody,
                 LocalDateTime.now().format(TS)
         );
-        writer.println(toJson(authMsg));
 
-        ChatMessage authRes =
-                JsonUtil.fromJson(reader.readLine(), ChatMessage.class);
+        // 재연결 때는 (회원가입이었어도) 로그인으로 재인증
+        ChatMessage reauthMsg = new ChatMessage(
+                MessageType.AUTH_LOGIN,
+                myId,
+                "server",
+                authBody,
+                LocalDateTime.now().format(TS)
+        );
+
+        ChatMessage authRes = transport.authenticate(authMsg, reauthMsg);
 
         if (!authRes.getBody().contains("_OK")) {
             System.out.println("[FAIL] 인증 실패 → 종료");
-            socket.close();
             return;
         }
 
+        System.out.println("[NET] 서버 연결 완료!");
         System.out.println("[INFO] 로그인/회원가입 성공!");
         System.out.println("[INFO] 서버에 공개키 등록 완료.");
 
+        // 파일 전송 (청크 스트리밍)
+        FileTransferManager files = new FileTransferManager(myId, sessions, writer, config);
+
+        // ===== prekey 보관소 (저장해 둔 prekey 세션 복원, 처음이면 prekey 1묶음 업로드) =====
+        prekeys = PrekeyVault.open(myId, pw);
+        sessions.putAll(prekeys.loadSessions(myKeyPair));
+        if (prekeys.neverPublished()) publishPrekeys(writer);
+
+        // ===== 기존 대화 상대 세션 일괄 준비 (KEY_BATCH_REQ 1회) =====
+        List<String> knownPeers = new ArrayList<>(HistoryVault.listPeers(myId));
+        knownPeers.removeAll(sessions.keySet());
+        if (!knownPeers.isEmpty()) {
+            writer.println(toJson(ChatMessage.keyBatchRequest(
+                    myId, knownPeers, LocalDateTime.now().format(TS))));
+            System.out.println("[KEY] 기존 상대 " + knownPeers.size() + "명 공개키 일괄 요청");
+        }
+
 
 
         // ============================================================
-        //  서버 → 클라이언트 수신 스레드
+        //  수신 파이프라인 (복호화 워커 → 출력 → 저장)
+        // ============================================================
+        ReceivePipeline pipeline = new ReceivePipeline(myId, sessions, rooms, receipts,
+                new ReceivePipeline.Listener() {
+                    @Override
+                    public void displayed(ChatMessage msg) {
+                        latency.recordDisplayed(msg.getSender(), msg);
+                        if (msg.getType() != MessageType.CHAT) return;
+
+                        // 지금 보고 있는 대화면 바로 읽음, 아니면 전달됨 + /key 할 때 읽음
+                        String senderId = msg.getSender();
+                        if (senderId.equals(currentTarget) && currentRoom == null) {
+                            sendReceipt(writer, msg, MessageType.READ);
+                        } else {
+                            sendReceipt(writer, msg, MessageType.DELIVERED);
+                            if (msg.getId() != null) receipts.markUnread(senderId, msg.getId());
+                        }
+                    }
+
+                    @Override
+                    public void duplicate(ChatMessage msg) {
+                        sendReceipt(writer, msg, MessageType.DELIVERED);
+                    }
+                }, config);
+
+
+
+        // ============================================================
+        //  서버 → 클라이언트 수신 스레드 (JSON 디코드 + 키/세션/방 프레임 처리)
         // ============================================================
         Thread recv = new Thread(() -> {
             try {
                 String line;
 
-                while ((line = reader.readLine()) != null) {
+                while ((line = transport.readLine()) != null) {
+                    // 프레임 1개 처리 실패가 수신 스레드를 끝내지 않게 프레임 단위로 잡음
+                    try {
+                        ChatMessage msg = JsonUtil.fromJson(line, ChatMessage.class);
 
-                    ChatMessage msg = JsonUtil.fromJson(line, ChatMessage.class);
+                        // ------------------- SYSTEM -------------------
+                        if (msg.getType() == MessageType.SYSTEM) {
+                            System.out.println("[SYSTEM] " + msg.getBody());
 
-                    // ------------------- SYSTEM -------------------
-                    if (msg.getType() == MessageType.SYSTEM) {
-                        System.out.println("[SYSTEM] " + msg.getBody());
-                        continue;
-                    }
+                            // 서버에 남은 prekey 가 적음 → 1묶음 보충
+                            if (msg.getBody() != null && msg.getBody().startsWith("PREKEY_LOW:")) {
+                                publishPrekeys(writer);
+                            }
 
-                    // =======================================================
-                    //  KEY_RES (상대 공개키 도착)
-                    // =======================================================
-                    if (msg.getType() == MessageType.KEY_RES) {
+                            // 없는 상대 → 키 교환이 끝날 일이 없으니 대기 메시지 버림
+                            if (msg.getBody() != null && msg.getBody().startsWith("NO_SUCH_USER:")) {
+                                String peerId = msg.getBody().substring("NO_SUCH_USER:".length());
+                                int dropped = pendingSends.take(peerId).size();
+                                if (dropped > 0) {
+                                    System.out.println("[WARN] " + peerId + " 에게 보내려던 메시지 " + dropped + "건 폐기");
+                                }
+                            }
+                            continue;
+                        }
 
-                        String peerId = msg.getSender();  // 태그 없음
+                        // =======================================================
+                        //  KEY_REQ (상대가 나에게 키 교환 요청, body = 상대 공개키)
+                        //  → 내 /key 없이도 바로 세션 생성 (상대 공개키는 서버 등록값과 같음)
+                        // =======================================================
+                        if (msg.getType() == MessageType.KEY_REQ) {
 
-                        PublicKey otherPub = EcdhUtil.decodePublicKey(msg.getBody());
+                            String peerId = msg.getSender();
+                            if (sessions.containsKey(peerId)) continue;
+
+                            PublicKey otherPub = EcdhUtil.decodePublicKey(msg.getBody());
+                            registeredKeys.put(peerId, otherPub);
+                            if (registerSession(writer, peerId, E2eeSession.create(myKeyPair, otherPub), false)) {
+                                System.out.println("[INFO] " + peerId + " 의 요청으로 E2EE 세션 생성 완료!");
+                                onSessionReady(writer, peerId);
+                            }
+                            continue;
+                        }
 
-                        // 세션 생성
-                        E2eeSession session = E2eeSession.create(myKeyPair, otherPub);
-                        sessions.put(peerId, session);
+                        // =======================================================
+                        //  KEY_RES (상대 공개키 도착)
+                        // =======================================================
+                        if (msg.getType() == MessageType.KEY_RES) {
 
-                        System.out.println("[INFO] " + peerId + " 와(과) E2EE 세션 생성 완료!");
+                            String peerId = msg.getSender();  // 태그 없음
 
-                        // ===== 히스토리 로드 =====
-                        System.out.println("[HISTORY] 이전 기록 불러오는 중...");
-                        var logs = HistoryVault.load(myId, peerId);
+                            PublicKey otherPub = EcdhUtil.decodePublicKey(msg.getBody());
+                            registeredKeys.put(peerId, otherPub);
+                            rekeying.remove(peerId);    // 상대가 prekey 를 안 올림 → 신원키 세션은 다시 만들 것이 없음
 
-                        if (!logs.isEmpty()) {
-                            System.out.println("------ 이전 대화 기록 ------");
-                            for (var h : logs) {
-                                System.out.println("[" + h.timestamp + "] "
-                                        + h.sender + " → " + h.receiver + " : " + h.message);
+                            // 세션 생성 (그사이 prekey 세션이 생겼으면 그대로 둠)
+                            if (registerSession(writer, peerId, E2eeSession.create(myKeyPair, otherPub), false)) {
+                                System.out.println("[INFO] " + peerId + " 와(과) E2EE 세션 생성 완료!");
+                                onSessionReady(writer, peerId);
                             }
-                            System.out.println("----------------------------");
-                        } else {
-                            System.out.println("[HISTORY] 저장된 대화 없음.");
+
+                            showHistory(peerId);
+                            continue;
                         }
-                        continue;
-                    }
 
-                    // =======================================================
-                    //  CHAT 수신
-                    // =======================================================
-                    if (msg.getType() == MessageType.CHAT) {
+                        // =======================================================
+                        //  PREKEY_BUNDLE (상대 신원키 + 일회용 prekey, 상대가 오프라인이어도 옴)
+                        //  → 바로 세션 생성, 상대는 첫 메시지의 헤더로 같은 세션을 만듦
+                        // =======================================================
+                        if (msg.getType() == MessageType.PREKEY_BUNDLE) {
 
-                        String senderId = msg.getSender();
-                        E2eeSession session = sessions.get(senderId);
+                            String peerId = msg.getSender();
+                            Map<String, String> bundle = JsonUtil.fromJson(msg.getBody(), STRING_MAP);
+
+                            String prekey = bundle.get("prekey");
+                            PublicKey identity = EcdhUtil.decodePublicKey(bundle.get("identityKey"));
+                            E2eeSession current = sessions.get(peerId);
+                            boolean rekey = rekeying.remove(peerId) && current != null;
+
+                            // 지금 세션과 다른 신원키 → 서버가 키를 바꿔치기했을 수 있으므로 쓰지 않음
+                            if (current != null && !current.getTheirPublicKey().equals(identity)) {
+                                System.out.println("[SECURITY] " + peerId + " 번들의 신원키가 지금 세션과 다름 → 무시");
+                                continue;
+                            }
+                            if (rekey && prekey == null) {
+                                System.out.println("[WARN] " + peerId + " 의 prekey 가 없어 다시 만들 수 없음 (지금 세션 유지)");
+                                continue;
+                            }
+                            registeredKeys.put(peerId, identity);
 
-                        // 세션 없으면 RAW 처리
-                        if (session == null) {
+                            E2eeSession session = X3dh.initiate(
+                                    myKeyPair,
+                                    identity,
+                                    (prekey != null) ? Integer.parseInt(bundle.get("prekeyId")) : X3dh.NO_PREKEY,
+                                    (prekey != null) ? EcdhUtil.decodePublicKey(prekey) : null,
+                                    rekey);
 
-                            System.out.println("[CHAT:RAW] " + senderId + " : " + msg.getBody());
+                            registerSession(writer, peerId, session, true);
+                            prekeys.saveSession(peerId, session);
 
-                            // 저장
-                            HistoryVault.append(
-                                    myId,
-                                    senderId,
-                                    new HistoryEntry(senderId, myId, msg.getBody(), msg.getTimestamp())
-                            );
+                            System.out.println("[INFO] " + peerId + " 와(과) E2EE 세션 생성 완료! (prekey "
+                                    + ((prekey != null) ? "#" + bundle.get("prekeyId") : "없음") + ")");
+                            onSessionReady(writer, peerId);
 
+                            showHistory(peerId);
                             continue;
                         }
 
-                        // 세션 있음 = 복호화
-                        EncryptedPayload payload =
-                                EncryptedPayload.fromWireString(msg.getBody());
+                        // =======================================================
+                        //  KEY_BATCH_RES (여러 상대 공개키 한 번에 도착)
+                        // =======================================================
+                        if (msg.getType() == MessageType.KEY_BATCH_RES) {
+
+                            Map<String, String> peerKeys = JsonUtil.fromJson(msg.getBody(), STRING_MAP);
+
+                            // 등록 키 확인을 기다리던 상대는 신원키 세션 대신 잡아둔 prekey 헤더로
+                            Map<String, String> fresh = new LinkedHashMap<>(peerKeys);
+                            List<String> verified = new ArrayList<>();
+                            for (Map.Entry<String, String> e : peerKeys.entrySet()) {
+                                try {
+                                    registeredKeys.put(e.getKey(), EcdhUtil.decodePublicKey(e.getValue()));
+                                } catch (Exception ex) {
+                                    continue;
+                                }
+                                if (isAwaiting(e.getKey())) {
+                                    fresh.remove(e.getKey());
+                                    verified.add(e.getKey());
+                                }
+                            }
+                            for (String peerId : verified) releaseAwaiting(writer, pipeline, peerId);
 
-                        try {
-                            String plain = session.decrypt(payload);
-                            System.out.println("[CHAT] " + senderId + " : " + plain);
+                            // 응답에 없는 상대 = 서버에 등록 키가 없음 → 기다려도 안 옴
+                            // (다른 요청의 응답이었어도 버린 프레임은 수신 확인이 안 갔으므로 서버가 다시 보냄)
+                            for (String peerId : awaitingPeers()) {
+                                if (!peerKeys.containsKey(peerId)) dropAwaiting(peerId, null, "등록 키 없음");
+                            }
 
-                            // 저장 (복호문)
-                            HistoryVault.append(
-                                    myId,
-                                    senderId,
-                                    new HistoryEntry(senderId, myId, plain, msg.getTimestamp())
-                            );
+                            // ECDH + HKDF를 fork-join 풀에서 병렬로
+                            E2eeSession.Batch batch = E2eeSession.createAll(myKeyPair, fresh);
+                            for (Map.Entry<String, Exception> e : batch.failed().entrySet()) {
+                                System.out.println("[SESSION] 세션 생성 실패: " + e.getKey() + " (" + e.getValue().getMessage() + ")");
+                            }
+
+                            // prekey 세션이 이미 있는 상대는 건너뜀
+                            List<String> added = new ArrayList<>();
+                            for (Map.Entry<String, E2eeSession> e : batch.created().entrySet()) {
+                                if (registerSession(writer, e.getKey(), e.getValue(), false)) added.add(e.getKey());
+                            }
+                            for (String peerId : added) onSessionReady(writer, peerId);
 
-                        } catch (Exception e) {
-                            System.out.println("[DECRYPT-ERR] 복호화 실패");
+                            System.out.println("[INFO] E2EE 세션 일괄 생성 완료: " + added);
+                            continue;
                         }
 
-                        continue;
-                    }
+                        // =======================================================
+                        //  ROOM_MEMBERS (방 멤버 변경 → sender key 배포/교체)
+                        // =======================================================
+                        if (msg.getType() == MessageType.ROOM_MEMBERS) {
+
+                            String room = msg.getSender();
+                            List<String> members = JsonUtil.fromJson(msg.getBody(), STRING_LIST);
+
+                            List<String> targets = rooms.updateMembers(room, members, myId);
+                            distributeSenderKey(writer, room, targets);
 
+                            if (rooms.isJoined(room)) {
+                                System.out.println("[ROOM] #" + room + " 멤버: " + members);
+                            } else {
+                                System.out.println("[ROOM] #" + room + " 퇴장 완료");
+                            }
+                            continue;
+                        }
+
+                        // =======================================================
+                        //  HISTORY_RES (/fetch 응답, 서버에 남은 암호문 → 지금 키로 풀어서 출력만)
+                        // =======================================================
+                        if (msg.getType() == MessageType.HISTORY_RES) {
+                            showServerHistory(msg.getSender(), JsonUtil.fromJson(msg.getBody(), STRING_LIST));
+                            continue;
+                        }
+
+                        // =======================================================
+                        //  SENDER_KEY (멤버의 sender key 도착, 1:1 세션으로 암호화됨)
+                        // =======================================================
+                        if (msg.getType() == MessageType.SENDER_KEY) {
+                            if (acceptHandshake(writer, msg)) handleSenderKey(writer, msg);
+                            continue;
+                        }
+
+                        // =======================================================
+                        //  DELIVERED / READ (내가 보낸 1:1 메시지 수신 확인)
+                        // =======================================================
+                        if (msg.getType() == MessageType.DELIVERED || msg.getType() == MessageType.READ) {
+                            String label = (msg.getType() == MessageType.READ) ? "읽음" : "전달됨";
+                            System.out.println("[" + label + "] " + msg.getSender() + " (" + msg.getBody() + ")");
+                            continue;
+                        }
+
+                        // =======================================================
+                        //  FILE_* (파일 전송)
+                        // =======================================================
+                        if (msg.getType() == MessageType.FILE_OFFER
+                                || msg.getType() == MessageType.FILE_ACCEPT
+                                || msg.getType() == MessageType.FILE_CHUNK
+                                || msg.getType() == MessageType.FILE_ACK) {
+                            files.handle(msg);
+                            continue;
+                        }
+
+                        // =======================================================
+                        //  CHAT / ROOM_CHAT → 수신 파이프라인 (복호화 / 출력 / 저장)
+                        // =======================================================
+                        if (msg.getType() == MessageType.CHAT || msg.getType() == MessageType.ROOM_CHAT) {
+                            if (msg.getType() == MessageType.CHAT && !acceptHandshake(writer, msg)) continue;
+                            pipeline.submit(msg);
+                        }
+                    } catch (Exception e) {
+                        System.out.println("[RECV] 프레임 처리 실패 → 건너뜀: " + e);
+                    }
                 }
 
             } catch (Exception e) {
@@ -243,12 +492,51 @@ public class ClientMain {
             if (input.equals("/quit"))
                 break;
 
+            // -------------------- /stats 지연 통계 --------------------
+            if (input.equals("/stats")) {
+                System.out.println(latency.report());
+                System.out.println(pipeline.report());
+                System.out.println(transport.compressionReport());
+                System.out.println(KeyPairPool.report());
+                System.out.println(CipherSuite.report());
+                continue;
+            }
+
+            // -------------------- /ttl 사라지는 메시지 --------------------
+            if (input.startsWith("/ttl ")) {
+                try {
+                    ephemeralTtl = Math.max(0, Long.parseLong(input.substring(5).trim()));
+                } catch (NumberFormatException e) {
+                    System.out.println("[WARN] /ttl 초 (0 = 끄기)");
+                    continue;
+                }
+                System.out.println(ephemeralTtl > 0
+                        ? "[INFO] 이제부터 보내는 메시지는 서버에서 " + ephemeralTtl + "초 뒤 만료"
+                        : "[INFO] 사라지는 메시지 끔");
+                continue;
+            }
+
             // -------------------- /key 요청 --------------------
             if (input.startsWith("/key ")) {
 
                 currentTarget = input.substring(5).trim();
+                currentRoom = null;
+
+                // 이 상대한테 받아놓고 안 읽은 메시지 → READ
+                String tsRead = LocalDateTime.now().format(TS);
+                for (String id : receipts.takeUnread(currentTarget)) {
+                    writer.println(toJson(ChatMessage.receipt(
+                            MessageType.READ, myId, currentTarget, id, tsRead)));
+                }
 
-                ChatMessage req = ChatMessage.keyRequest(
+                // 세션이 이미 있으면 (저장된 prekey 세션 / 상대가 먼저 보낸 경우) 기록만
+                if (sessions.containsKey(currentTarget)) {
+                    showHistory(currentTarget);
+                    continue;
+                }
+
+                // prekey 번들 요청 (상대가 prekey 를 안 올렸으면 서버가 예전 KEY_REQ 흐름으로 처리)
+                ChatMessage req = ChatMessage.prekeyRequest(
                         myId,
                         currentTarget,
                         myPublicKey,
@@ -261,57 +549,529 @@ public class ClientMain {
                 continue;
             }
 
-            // -------------------- 메시지 전송 --------------------
-            if (currentTarget == null) {
-                System.out.println("[WARN] 먼저 /key 상대아이디 실행");
+            // -------------------- /rekey 세션 다시 만들기 --------------------
+            // 상대가 확인된 세션을 바꾸는 건 이 요청으로 만든 헤더(일회용 prekey 사용)뿐
+            if (input.startsWith("/rekey ")) {
+
+                currentTarget = input.substring(7).trim();
+                currentRoom = null;
+                rekeying.add(currentTarget);
+
+                writer.println(toJson(ChatMessage.prekeyRequest(
+                        myId, currentTarget, myPublicKey, LocalDateTime.now().format(TS))));
+
+                System.out.println("[KEY] 세션 다시 만들기 요청 → " + currentTarget);
                 continue;
             }
 
-            String peerId = currentTarget;
-            E2eeSession session = sessions.get(peerId);
+            // -------------------- /fetch 서버 기록 --------------------
+            if (input.equals("/fetch") || input.startsWith("/fetch ")) {
+                String target = (currentRoom != null) ? "#" + currentRoom : currentTarget;
+                if (target == null) {
+                    System.out.println("[WARN] 먼저 /key 상대ID 또는 /join 방이름");
+                    continue;
+                }
 
-            String tsNow = LocalDateTime.now().format(TS);
+                int limit = 0;
+                try {
+                    if (input.length() > 6) limit = Integer.parseInt(input.substring(7).trim());
+                } catch (NumberFormatException e) {
+                    System.out.println("[WARN] /fetch [개수]");
+                    continue;
+                }
 
-            ChatMessage msg;
+                writer.println(toJson(ChatMessage.historyRequest(
+                        myId, target, limit, LocalDateTime.now().format(TS))));
+                continue;
+            }
 
-            if (session == null) {
-                // 평문 전송
-                msg = new ChatMessage(
-                        MessageType.CHAT,
+            // -------------------- /keys 일괄 요청 --------------------
+            if (input.startsWith("/keys ")) {
+
+                List<String> peerIds = new ArrayList<>();
+                for (String id : input.substring(6).trim().split("[,\\s]+")) {
+                    if (!id.isEmpty()) peerIds.add(id);
+                }
+
+                writer.println(toJson(ChatMessage.keyBatchRequest(
+                        myId, peerIds, LocalDateTime.now().format(TS))));
+
+                System.out.println("[KEY] 공개키 일괄 요청 보냄 → " + peerIds);
+                continue;
+            }
+
+            // -------------------- 그룹방 생성/입장/퇴장 --------------------
+            if (input.startsWith("/create ") || input.startsWith("/join ") || input.startsWith("/leave ")) {
+
+                String[] parts = input.split("\\s+", 2);
+                String room = parts[1].trim();
+
+                MessageType type = switch (parts[0]) {
+                    case "/create" -> MessageType.ROOM_CREATE;
+                    case "/join" -> MessageType.ROOM_JOIN;
+                    default -> MessageType.ROOM_LEAVE;
+                };
+
+                writer.println(toJson(new ChatMessage(
+                        type, myId, room, "", LocalDateTime.now().format(TS))));
+
+                if (type == MessageType.ROOM_LEAVE) {
+                    if (room.equals(currentRoom)) currentRoom = null;
+                } else {
+                    currentRoom = room;
+                }
+
+                System.out.println("[ROOM] " + type + " 요청 보냄 → #" + room);
+                continue;
+            }
+
+            // -------------------- 그룹 메시지 전송 --------------------
+            if (currentRoom != null) {
+
+                SenderKey mine = rooms.myKey(currentRoom);
+                if (mine == null) {
+                    System.out.println("[WARN] #" + currentRoom + " 입장 처리 중... 잠시 후 다시 입력");
+                    continue;
+                }
+
+                String tsNow = LocalDateTime.now().format(TS);
+
+                // sender key로 한 번만 암호화 → 서버가 멤버 전원에게 그대로 중계
+                ChatMessage roomMsg = new ChatMessage(
+                        MessageType.ROOM_CHAT,
                         myId,
-                        peerId,
-                        input,
+                        currentRoom,
+                        mine.encrypt(input),
                         tsNow
-                );
-                System.out.println("[WARN] 세션 없음 → 평문 전송");
+                ).withTtl(ephemeralTtl).traced();
 
                 HistoryVault.append(
                         myId,
-                        peerId,
-                        new HistoryEntry(myId, peerId, input, tsNow)
+                        "#" + currentRoom,
+                        new HistoryEntry(myId, "#" + currentRoom, input, tsNow)
                 );
 
+                writer.println(toJson(roomMsg));
+                continue;
+            }
+
+            // -------------------- /send 파일 전송 --------------------
+            if (input.startsWith("/send ")) {
+
+                if (currentTarget == null) {
+                    System.out.println("[WARN] 먼저 /key 상대아이디 실행");
+                    continue;
+                }
+
+                files.offer(currentTarget, Paths.get(input.substring(6).trim()));
+                continue;
+            }
+
+            // -------------------- 메시지 전송 --------------------
+            if (currentTarget == null) {
+                System.out.println("[WARN] 먼저 /key 상대아이디 실행");
+                continue;
+            }
+
+            String peerId = currentTarget;
+            String tsNow = LocalDateTime.now().format(TS);
+
+            // 세션 없으면 보관만 하고 바로 다음 입력 (키 교환 끝나면 자동 전송, 평문 전송 없음)
+            E2eeSession session = pendingSends.sessionOrHold(peerId, input, tsNow);
+
+            if (session == null) {
+                System.out.println("[INFO] 키 교환 중 → 대기 (" + pendingSends.size(peerId) + "건)");
+                continue;
+            }
+
+            sendEncrypted(writer, peerId, session, input, tsNow);
+            System.out.println("[INFO] 암호화 전송");
+        }
+
+        pipeline.flush(2, java.util.concurrent.TimeUnit.SECONDS);
+        transport.close();
+    }
+
+
+
+    // ============================================================
+    //  그룹방 sender key 배포 / 수신
+    // ============================================================
+
+    // 내 sender key를 멤버들에게 1:1 세션으로 암호화해서 보낸다.
+    // 세션이 없는 멤버는 공개키를 일괄 요청하고, 세션이 생기면 그때 보낸다.
+    private static void distributeSenderKey(PrintWriter writer,
+                                            String room,
+                                            Collection<String> targets) throws Exception {
+
+        SenderKey mine = rooms.myKey(room);
+        if (mine == null || targets.isEmpty()) return;
+
+        String tsNow = LocalDateTime.now().format(TS);
+        List<String> missing = new ArrayList<>();
+
+        for (String memberId : targets) {
+            E2eeSession session = sessions.get(memberId);
+
+            if (session == null) {
+                rooms.deferDistribution(memberId, room);
+                missing.add(memberId);
+                continue;
+            }
+
+            ChatMessage keyMsg = new ChatMessage(
+                    MessageType.SENDER_KEY,
+                    myId,
+                    memberId,
+                    session.encrypt(mine.toWireString(room)).toWireString(),
+                    tsNow
+            ).withPrekey(session.pendingHandshake());
+            writer.println(toJson(keyMsg));
+        }
+
+        if (!missing.isEmpty()) {
+            writer.println(toJson(ChatMessage.keyBatchRequest(myId, missing, tsNow)));
+        }
+    }
+
+    // SENDER_KEY 복호화 후 보관
+    private static void acceptSenderKey(ChatMessage msg, E2eeSession session) throws Exception {
+        String wire = session.decrypt(EncryptedPayload.fromWireString(msg.getBody()));
+        String room = SenderKey.roomOf(wire);
+
+        rooms.putPeerKey(room, msg.getSender(), SenderKey.fromWireString(wire));
+        System.out.println("[ROOM] " + msg.getSender() + " 의 sender key 수신 (#" + room + ")");
+    }
+
+    // 받은 1:1 메시지에 대한 수신 확인 (id 없는 구버전 메시지는 생략)
+    private static void sendReceipt(PrintWriter writer, ChatMessage msg, MessageType type) {
+        if (msg.getId() == null) return;
+
+        writer.println(toJson(ChatMessage.receipt(
+                type, myId, msg.getSender(), msg.getId(), LocalDateTime.now().format(TS))));
+    }
+
+    // 1:1 메시지 암호화 전송 + 내 기록 저장
+    private static void sendEncrypted(PrintWriter writer,
+                                      String peerId,
+                                      E2eeSession session,
+                                      String plaintext,
+                                      String timestamp) throws Exception {
+
+        ChatMessage msg = ChatMessage.encryptedChat(
+                myId,
+                peerId,
+                plaintext,
+                session,
+                timestamp
+        ).withTtl(ephemeralTtl).withPrekey(session.pendingHandshake()).traced();
+
+        HistoryVault.append(
+                myId,
+                peerId,
+                new HistoryEntry(myId, peerId, plaintext, timestamp)
+        );
+
+        writer.println(toJson(msg));
+    }
+
+    // ============================================================
+    //  prekey (X3DH)
+    // ============================================================
+
+    // prekey 1묶음 생성 → 서버 업로드 (키 생성이 수십 ms 라 백그라운드, 동시에 1번만)
+    private static void publishPrekeys(PrintWriter writer) {
+        if (!prekeyRefilling.compareAndSet(false, true)) return;
+
+        Thread t = new Thread(() -> {
+            try {
+                Map<String, String> batch = prekeys.generate(config.getPrekeyBatchSize());
+                writer.println(toJson(new ChatMessage(
+                        MessageType.PREKEY_UPLOAD, myId, "server",
+                        toJson(batch), LocalDateTime.now().format(TS))));
+                System.out.println("[KEY] 일회용 prekey " + batch.size() + "개 업로드");
+            } catch (Exception e) {
+                System.out.println("[KEY] prekey 생성 실패: " + e.getMessage());
+            } finally {
+                prekeyRefilling.set(false);
+            }
+        }, "prekey-refill");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // 받은 1:1 메시지 / sender key 처리 전: prekey 헤더가 있으면 그 세션으로 바꾸고,
+    // 헤더 없이 왔는데 prekey 세션으로 풀리면 양쪽이 그 세션을 쓰는 것 → 확인됨 (시작한 쪽은 이제 헤더를 안 붙임)
+    // 헤더의 신원키는 지금 세션 / 서버 등록 키와 같아야 함. 둘 다 없으면 등록 키를 받아올 때까지 잡아둠
+    // @return false = 잡아뒀거나 버림 (이 프레임은 더 처리하지 않음)
+    private static boolean acceptHandshake(PrintWriter writer, ChatMessage msg) throws Exception {
+        String peerId = msg.getSender();
+        String header = msg.getPrekey();
+        E2eeSession current = sessions.get(peerId);
+
+        // 이 상대 등록 키를 기다리는 중 → 뒤에 온 프레임도 순서대로 같이 잡아둠
+        synchronized (awaitingIdentity) {
+            HeldFrames held = awaitingIdentity.get(peerId);
+            if (held != null) {
+                held.frames.add(msg);
+                return false;
+            }
+        }
+
+        if (header == null) {
+            // 세션 없이 온 메시지 (상대는 신원키 세션, 나는 키 교환 전) → 등록 키로 세션을 만든 뒤 처리
+            if (current == null) return ensureIdentitySession(writer, msg);
+
+            // 예전 세션으로 보낸 메시지(오프라인 동안 쌓인 것)로 착각하지 않게, 풀리는지 확인 후에만
+            if (current != null && current.getHandshake() != null && !current.isConfirmed() && decrypts(current, msg)) {
+                current.confirm();
+                prekeys.saveSession(peerId, current);
+            }
+            return true;
+        }
+
+        // 이미 이 헤더로 만든 세션 (같은 상대가 확인 전에 여러 번 보냄 / 서버 재전송)
+        if (current != null && header.equals(current.getHandshake())) return true;
+
+        // 둘이 동시에 시작했으면 ID 가 작은 쪽 세션으로 맞춤 (큰 쪽이 상대 헤더를 받아들임)
+        if (current != null && current.pendingHandshake() != null && myId.compareTo(peerId) < 0) return true;
+
+        boolean rekey;
+        try {
+            rekey = X3dh.isRekey(header);
+        } catch (IllegalArgumentException e) {
+            System.out.println("[WARN] " + peerId + " 의 prekey 헤더 형식 오류 → 버림");
+            return false;
+        }
+
+        // 확인된 세션은 상대가 /rekey 로 다시 시작했을 때만 바꿈 (늦게 온 / 재전송된 예전 헤더로 되돌아가지 않게)
+        if (current != null && current.isConfirmed() && !rekey) {
+            System.out.println("[WARN] " + peerId + " 의 새 prekey 세션 무시 (확인된 세션 있음, 바꾸려면 상대가 /rekey)");
+            return true;
+        }
+
+        PublicKey known = (current != null) ? current.getTheirPublicKey() : registeredKeys.get(peerId);
+        if (known == null) {
+            awaitIdentity(writer, msg);
+            return false;
+        }
+
+        E2eeSession session;
+        try {
+            session = X3dh.respond(myKeyPair, known, header, prekeys::take);
+        } catch (SecurityException e) {
+            System.out.println("[SECURITY] " + peerId + " 메시지 버림: " + e.getMessage());
+            return false;
+        } catch (Exception e) {
+            System.out.println("[WARN] " + peerId + " 의 prekey 세션 생성 실패: " + e.getMessage());
+            return true;
+        }
+
+        registerSession(writer, peerId, session, true);
+        prekeys.saveSession(peerId, session);
+
+        System.out.println("[INFO] " + peerId + " 의 첫 메시지로 E2EE 세션 생성 완료!" + (rekey ? " (다시 만듦)" : ""));
+        if (current == null) onSessionReady(writer, peerId);
+        return true;
+    }
+
+    // 헤더 없는 첫 프레임: 등록 키가 있으면 신원키 세션을 만들고 처리, 없으면 받아올 때까지 잡아둠
+    private static boolean ensureIdentitySession(PrintWriter writer, ChatMessage msg) throws Exception {
+        String peerId = msg.getSender();
+
+        PublicKey known = registeredKeys.get(peerId);
+        if (known == null) {
+            awaitIdentity(writer, msg);
+            return false;
+        }
+
+        if (registerSession(writer, peerId, E2eeSession.create(myKeyPair, known), false)) {
+            System.out.println("[INFO] " + peerId + " 의 메시지로 E2EE 세션 생성 완료!");
+            onSessionReady(writer, peerId);
+        }
+        return true;
+    }
+
+    // 이 상대 등록 키를 서버에 물어보고, 올 때까지 프레임을 잡아둠 (KEY_BATCH_RES → releaseAwaiting)
+    private static void awaitIdentity(PrintWriter writer, ChatMessage msg) {
+        String peerId = msg.getSender();
+
+        HeldFrames held = new HeldFrames();
+        held.frames.add(msg);
+        synchronized (awaitingIdentity) {
+            awaitingIdentity.put(peerId, held);
+        }
+        requestIdentity(writer, peerId, held);
+        System.out.println("[KEY] " + peerId + " 의 등록 키 확인 중...");
+    }
+
+    private static void requestIdentity(PrintWriter writer, String peerId, HeldFrames held) {
+        writer.println(toJson(ChatMessage.keyBatchRequest(
+                myId, List.of(peerId), LocalDateTime.now().format(TS))));
+        identityTimer.schedule(() -> identityTimeout(writer, peerId, held),
+                config.getIdentityWaitMs(), TimeUnit.MILLISECONDS);
+    }
+
+    // 응답이 안 옴 (끊겨서 요청이 사라짐 등) → 몇 번 다시 묻고, 그래도 없으면 버림
+    private static void identityTimeout(PrintWriter writer, String peerId, HeldFrames held) {
+        synchronized (awaitingIdentity) {
+            if (awaitingIdentity.get(peerId) != held) return;    // 이미 풀림
+            if (held.retries < config.getIdentityRetries()) {
+                held.retries++;
             } else {
-                // 암호화 전송
-                msg = ChatMessage.encryptedChat(
-                        myId,
-                        peerId,
-                        input,
-                        session,
-                        tsNow
-                );
-                System.out.println("[INFO] 암호화 전송");
+                dropAwaiting(peerId, held, "응답 없음");
+                return;
+            }
+        }
+        requestIdentity(writer, peerId, held);
+    }
 
-                HistoryVault.append(
-                        myId,
-                        peerId,
-                        new HistoryEntry(myId, peerId, input, tsNow)
-                );
+    private static boolean isAwaiting(String peerId) {
+        synchronized (awaitingIdentity) {
+            return awaitingIdentity.containsKey(peerId);
+        }
+    }
+
+    private static List<String> awaitingPeers() {
+        synchronized (awaitingIdentity) {
+            return new ArrayList<>(awaitingIdentity.keySet());
+        }
+    }
+
+    // 잡아둔 프레임을 처리하지 않고 버림 (수신 확인을 안 보냈으므로 서버가 나중에 다시 보냄)
+    // expected 가 null 이 아니면 그 대기일 때만
+    private static void dropAwaiting(String peerId, HeldFrames expected, String reason) {
+        HeldFrames held;
+        synchronized (awaitingIdentity) {
+            held = awaitingIdentity.get(peerId);
+            if (held == null || (expected != null && held != expected)) return;
+            awaitingIdentity.remove(peerId);
+        }
+        System.out.println("[KEY-ERR] " + peerId + " 의 등록 키를 받지 못함 (" + reason + ") → 잡아둔 메시지 "
+                + held.frames.size() + "건 처리 못 함");
+    }
+
+    // 등록 키가 도착한 상대: 잡아둔 프레임을 받은 순서대로 다시 처리
+    private static void releaseAwaiting(PrintWriter writer, ReceivePipeline pipeline, String peerId) throws Exception {
+        HeldFrames held;
+        synchronized (awaitingIdentity) {
+            held = awaitingIdentity.remove(peerId);
+        }
+        if (held == null) return;
+
+        for (ChatMessage m : held.frames) {
+            if (!acceptHandshake(writer, m)) continue;
+            if (m.getType() == MessageType.SENDER_KEY) {
+                handleSenderKey(writer, m);
+            } else {
+                pipeline.submit(m);
             }
+        }
+    }
+
+    // SENDER_KEY (멤버의 sender key, 1:1 세션으로 암호화됨)
+    private static void handleSenderKey(PrintWriter writer, ChatMessage msg) {
+        String senderId = msg.getSender();
+        E2eeSession session = sessions.get(senderId);
+
+        // 아직 1:1 세션이 없으면 공개키부터 받고 나중에 처리
+        if (session == null) {
+            rooms.deferInbound(senderId, msg);
+            writer.println(toJson(ChatMessage.keyBatchRequest(
+                    myId, List.of(senderId), LocalDateTime.now().format(TS))));
+            return;
+        }
+
+        try {
+            acceptSenderKey(msg, session);
+        } catch (Exception e) {
+            System.out.println("[DECRYPT-ERR] sender key 복호화 실패: " + senderId);
+        }
+    }
+
+    private static boolean decrypts(E2eeSession session, ChatMessage msg) {
+        try {
+            session.decrypt(EncryptedPayload.fromWireString(msg.getBody()));
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // 이 상대와의 로컬 대화 기록 출력
+    private static void showHistory(String peerId) {
+        System.out.println("[HISTORY] 이전 기록 불러오는 중...");
+        var logs = HistoryVault.load(myId, peerId);
+
+        if (!logs.isEmpty()) {
+            System.out.println("------ 이전 대화 기록 ------");
+            for (var h : logs) {
+                System.out.println("[" + h.timestamp + "] "
+                        + h.sender + " → " + h.receiver + " : " + h.message);
+            }
+            System.out.println("----------------------------");
+        } else {
+            System.out.println("[HISTORY] 저장된 대화 없음.");
+        }
+    }
+
+    // 서버에 남은 기록 출력 (target = 상대ID 또는 "#방이름", 로컬 기록에는 저장하지 않음)
+    // 지금 세션 / sender key 로 안 풀리는 것(예전 키)은 자리만 표시
+    private static void showServerHistory(String target, List<String> frames) {
+        if (frames == null || frames.isEmpty()) {
+            System.out.println("[HISTORY] 서버에 남은 기록 없음: " + target);
+            return;
+        }
+
+        System.out.println("------ 서버 기록 (" + target + ", " + frames.size() + "건) ------");
+        for (String frame : frames) {
+            ChatMessage m = JsonUtil.fromJson(frame, ChatMessage.class);
+            String text;
+            try {
+                if (m.getType() == MessageType.ROOM_CHAT) {
+                    String room = m.getReceiver();
+                    SenderKey key = m.getSender().equals(myId) ? rooms.myKey(room) : rooms.peerKey(room, m.getSender());
+                    text = (key != null && key.getVersion() == SenderKey.versionOf(m.getBody()))
+                            ? key.decrypt(m.getBody()) : "(sender key 없음)";
+                } else {
+                    E2eeSession session = sessions.get(target);
+                    text = (session != null)
+                            ? session.decrypt(EncryptedPayload.fromWireString(m.getBody())) : "(세션 없음)";
+                }
+            } catch (Exception e) {
+                text = "(복호화 실패: 예전 키)";
+            }
+            System.out.println("[" + m.getTimestamp() + "] " + m.getSender() + " → " + m.getReceiver() + " : " + text);
+        }
+        System.out.println("----------------------------");
+    }
 
-            writer.println(toJson(msg));
+    // 1:1 세션 등록 + 키 교환 중 입력해둔 메시지 전송 (한 락 안에서 → 새 입력이 앞지르지 않음)
+    private static boolean registerSession(PrintWriter writer, String peerId,
+                                           E2eeSession session, boolean replace) throws Exception {
+        return pendingSends.register(peerId, session, replace, (s, held) -> {
+            for (PendingSendQueue.Pending p : held) {
+                sendEncrypted(writer, peerId, s, p.plaintext, p.timestamp);
+            }
+            System.out.println("[INFO] " + peerId + " 세션 준비 → 대기 메시지 " + held.size() + "건 암호화 전송");
+        });
+    }
+
+    // 1:1 세션이 새로 생겼을 때, 그 상대 때문에 미뤄둔 작업 처리
+    // (sender key 배포 / sender key 수신)
+    private static void onSessionReady(PrintWriter writer, String peerId) throws Exception {
+
+        for (String room : rooms.takeDeferredDistribution(peerId)) {
+            distributeSenderKey(writer, room, List.of(peerId));
         }
 
-        socket.close();
+        E2eeSession session = sessions.get(peerId);
+        for (ChatMessage pending : rooms.takeDeferredInbound(peerId)) {
+            try {
+                acceptSenderKey(pending, session);
+            } catch (Exception e) {
+                System.out.println("[DECRYPT-ERR] sender key 복호화 실패: " + peerId);
+            }
+        }
     }
 }
@@ -0,0 +1,88 @@
+package com.e2ee.client.chat;
+
+import com.e2ee.session.E2eeSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ===========================
+ *  PendingSendQueue (클라이언트 로컬)
+ *  - 키 교환(KEY_REQ → KEY_RES)이 끝나기 전에 입력한 1:1 메시지 보관
+ *  - 세션이 생기면 한 번에 꺼내서 암호화 후 전송 (평문으로 보내지 않음)
+ *
+ *  입력 스레드의 "세션 확인 → 보관" 과 수신 스레드의 "세션 등록 → 꺼내서 전송" 을
+ *  같은 락으로 묶는다 (세션은 register() 로만 등록).
+ *    - 엇갈리면 메시지가 영영 남을 수 있음
+ *    - 등록과 전송 사이에 새 입력이 먼저 나가면 대기 메시지가 더 큰 seq 를 받아 순서가 뒤집힘
+ * ===========================
+ */
+public class PendingSendQueue {
+
+    public static final class Pending {
+        public final String plaintext;
+        public final String timestamp;
+
+        Pending(String plaintext, String timestamp) {
+            this.plaintext = plaintext;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // 대기 메시지 전송 (register() 락 안에서 호출)
+    @FunctionalInterface
+    public interface Sender {
+        void send(E2eeSession session, List<Pending> held) throws Exception;
+    }
+
+    private final Map<String, E2eeSession> sessions;
+
+    // 상대ID → 세션 대기 중인 메시지 (입력 순서)
+    private final Map<String, List<Pending>> pending = new HashMap<>();
+
+    public PendingSendQueue(Map<String, E2eeSession> sessions) {
+        this.sessions = sessions;
+    }
+
+    /**
+     * 세션이 있으면 돌려주고, 없으면 메시지를 보관하고 null.
+     */
+    public synchronized E2eeSession sessionOrHold(String peerId, String plaintext, String timestamp) {
+        E2eeSession session = sessions.get(peerId);
+        if (session != null) return session;
+
+        pending.computeIfAbsent(peerId, p -> new ArrayList<>()).add(new Pending(plaintext, timestamp));
+        return null;
+    }
+
+    /**
+     * 세션 등록 + 이 상대의 대기 메시지를 같은 락 안에서 전송.
+     * 락이 풀린 뒤에야 입력 스레드가 세션을 보므로 새 메시지가 대기 메시지를 앞지르지 않는다.
+     *
+     * @param replace false 면 이미 세션이 있을 때 아무것도 안 함
+     * @return 등록했으면 true
+     */
+    public synchronized boolean register(String peerId, E2eeSession session,
+                                         boolean replace, Sender sender) throws Exception {
+        if (!replace && sessions.containsKey(peerId)) return false;
+
+        sessions.put(peerId, session);
+
+        List<Pending> held = pending.remove(peerId);
+        if (held != null) sender.send(session, held);
+        return true;
+    }
+
+    public synchronized List<Pending> take(String peerId) {
+        List<Pending> list = pending.remove(peerId);
+        return (list == null) ? Collections.emptyList() : list;
+    }
+
+    public synchronized int size(String peerId) {
+        List<Pending> list = pending.get(peerId);
+        return (list == null) ? 0 : list.size();
+    }
+}
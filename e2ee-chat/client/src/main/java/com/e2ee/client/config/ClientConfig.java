@@ -0,0 +1,300 @@
+package com.e2ee.client.config;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * ===========================
+ *  ClientConfig (클라이언트 설정)
+ *
+ *  우선순위: -De2ee.<키>  >  환경변수 E2EE_<키>  >  설정 파일  >  기본값
+ *    - 환경변수 이름은 키를 대문자로, '.' '-' 를 '_' 로 (net.backoff-max-ms → E2EE_NET_BACKOFF_MAX_MS)
+ *    - 설정 파일: -De2ee.config / E2EE_CONFIG, 없으면 ~/.e2ee-chat/client.properties (있을 때만)
+ *
+ *  host=chat-server  port=9000  home.dir=~/.e2ee-chat
+ *  net.connect-timeout-ms=3000  net.backoff-min-ms=250  net.backoff-max-ms=5000
+ *  net.outbox-limit=10000       net.compression=true
+ *  recv.decrypt-threads=(CPU 수, 최대 4)  recv.stripe-queue=256  recv.render-queue=1024
+ *  recv.persist-queue=4096      recv.persist-batch=256
+ *  receipt.recent-limit=4096
+ *  file.chunk-size=32768        file.window=8  file.ack-timeout-ms=30000
+ *  keystore.pbkdf2-iterations=65536   (새로 만드는 개인키 파일에만 적용)
+ *  crypto.suite=AES/GCM/NoPadding   (또는 ChaCha20-Poly1305 / auto = 시작 때 벤치마크로 빠른 쪽)
+ *    - AES-GCM 이 아닌 스위트는 예전 클라이언트가 풀지 못함 → 대화 상대가 모두 이 버전 이상일 때만
+ *  prekey.batch-size=50   (한 번에 만들어 서버에 올리는 일회용 prekey 수)
+ *  keypool.size=64  keypool.low-watermark=16   (미리 만들어 두는 X25519 키쌍, 기준 아래면 백그라운드 보충)
+ *  identity.wait-ms=5000  identity.retries=2   (세션 없이 온 메시지: 상대 등록 키 응답 대기 / 다시 묻는 횟수)
+ * ===========================
+ */
+public class ClientConfig {
+
+    private static volatile ClientConfig current;
+
+    private final Properties file;
+
+    private final String host;
+    private final int port;
+    private final Path homeDir;
+
+    private final int connectTimeoutMs;
+    private final long backoffMinMs;
+    private final long backoffMaxMs;
+    private final int outboxLimit;
+    private final boolean compression;
+
+    private final int decryptThreads;
+    private final int stripeQueue;
+    private final int renderQueue;
+    private final int persistQueue;
+    private final int persistBatch;
+
+    private final int receiptRecentLimit;
+
+    private final int fileChunkSize;
+    private final int fileWindow;
+    private final long fileAckTimeoutMs;
+
+    private final int pbkdf2Iterations;
+
+    private final String cryptoSuite;
+
+    private final int prekeyBatchSize;
+
+    private final int keyPoolSize;
+    private final int keyPoolLowWatermark;
+
+    private final long identityWaitMs;
+    private final int identityRetries;
+
+    /**
+     * 프로세스 전체에서 쓰는 설정 (처음 부를 때 1번 읽음).
+     */
+    public static ClientConfig get() {
+        ClientConfig c = current;
+        if (c == null) {
+            synchronized (ClientConfig.class) {
+                if (current == null) current = new ClientConfig(readFile());
+                c = current;
+            }
+        }
+        return c;
+    }
+
+    private ClientConfig(Properties file) {
+        this.file = file;
+
+        host = string("host", "chat-server");
+        port = integer("port", 9000);
+        homeDir = Paths.get(string("home.dir",
+                Paths.get(System.getProperty("user.home"), ".e2ee-chat").toString()));
+
+        connectTimeoutMs = integer("net.connect-timeout-ms", 3_000);
+        backoffMinMs = longValue("net.backoff-min-ms", 250);
+        backoffMaxMs = longValue("net.backoff-max-ms", 5_000);
+        outboxLimit = integer("net.outbox-limit", 10_000);
+        compression = bool("net.compression", true);
+
+        decryptThreads = integer("recv.decrypt-threads",
+                Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+        stripeQueue = integer("recv.stripe-queue", 256);
+        renderQueue = integer("recv.render-queue", 1024);
+        persistQueue = integer("recv.persist-queue", 4096);
+        persistBatch = integer("recv.persist-batch", 256);
+
+        receiptRecentLimit = integer("receipt.recent-limit", 4096);
+
+        fileChunkSize = integer("file.chunk-size", 32 * 1024);
+        fileWindow = integer("file.window", 8);
+        fileAckTimeoutMs = longValue("file.ack-timeout-ms", 30_000);
+
+        pbkdf2Iterations = integer("keystore.pbkdf2-iterations", 65536);
+
+        cryptoSuite = string("crypto.suite", "AES/GCM/NoPadding");
+
+        prekeyBatchSize = integer("prekey.batch-size", 50);
+
+        keyPoolSize = integer("keypool.size", 64);
+        keyPoolLowWatermark = integer("keypool.low-watermark", 16);
+
+        identityWaitMs = longValue("identity.wait-ms", 5_000);
+        identityRetries = integer("identity.retries", 2);
+
+        if (backoffMaxMs < backoffMinMs) throw new IllegalArgumentException("net.backoff-max-ms >= net.backoff-min-ms");
+        if (fileWindow < 2) throw new IllegalArgumentException("file.window 는 2 이상");
+        if (prekeyBatchSize < 1) throw new IllegalArgumentException("prekey.batch-size 는 1 이상");
+        if (keyPoolLowWatermark < 1 || keyPoolLowWatermark > keyPoolSize) {
+            throw new IllegalArgumentException("1 <= keypool.low-watermark <= keypool.size");
+        }
+    }
+
+    // ============================================================
+    //  값 읽기
+    // ============================================================
+
+    private static Properties readFile() {
+        Properties p = new Properties();
+
+        String explicit = System.getProperty("e2ee.config", System.getenv("E2EE_CONFIG"));
+        Path path = (explicit != null)
+                ? Paths.get(explicit)
+                : Paths.get(System.getProperty("user.home"), ".e2ee-chat", "client.properties");
+
+        if (!Files.exists(path)) {
+            if (explicit != null) System.out.println("[CONFIG] 설정 파일 없음: " + path);
+            return p;
+        }
+
+        try (Reader r = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            p.load(r);
+            System.out.println("[CONFIG] 설정 파일 로드: " + path);
+        } catch (IOException e) {
+            System.out.println("[CONFIG] 설정 파일 읽기 실패: " + path + " (" + e.getMessage() + ")");
+        }
+        return p;
+    }
+
+    private String lookup(String key) {
+        String v = System.getProperty("e2ee." + key);
+        if (v == null) v = System.getenv(envName(key));
+        if (v == null) v = file.getProperty(key);
+        return (v == null || v.isBlank()) ? null : v.trim();
+    }
+
+    static String envName(String key) {
+        return "E2EE_" + key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_');
+    }
+
+    private String string(String key, String def) {
+        String v = lookup(key);
+        return (v == null) ? def : v;
+    }
+
+    private int integer(String key, int def) {
+        String v = lookup(key);
+        try {
+            return (v == null) ? def : Integer.parseInt(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("설정 값 오류: " + key + "=" + v);
+        }
+    }
+
+    private long longValue(String key, long def) {
+        String v = lookup(key);
+        try {
+            return (v == null) ? def : Long.parseLong(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("설정 값 오류: " + key + "=" + v);
+        }
+    }
+
+    private boolean bool(String key, boolean def) {
+        String v = lookup(key);
+        return (v == null) ? def : Boolean.parseBoolean(v);
+    }
+
+    // ============================================================
+    //  getter
+    // ============================================================
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public Path getHomeDir() {
+        return homeDir;
+    }
+
+    public int getConnectTimeoutMs() {
+        return connectTimeoutMs;
+    }
+
+    public long getBackoffMinMs() {
+        return backoffMinMs;
+    }
+
+    public long getBackoffMaxMs() {
+        return backoffMaxMs;
+    }
+
+    public int getOutboxLimit() {
+        return outboxLimit;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public int getDecryptThreads() {
+        return decryptThreads;
+    }
+
+    public int getStripeQueue() {
+        return stripeQueue;
+    }
+
+    public int getRenderQueue() {
+        return renderQueue;
+    }
+
+    public int getPersistQueue() {
+        return persistQueue;
+    }
+
+    public int getPersistBatch() {
+        return persistBatch;
+    }
+
+    public int getReceiptRecentLimit() {
+        return receiptRecentLimit;
+    }
+
+    public int getFileChunkSize() {
+        return fileChunkSize;
+    }
+
+    public int getFileWindow() {
+        return fileWindow;
+    }
+
+    public long getFileAckTimeoutMs() {
+        return fileAckTimeoutMs;
+    }
+
+    public int getPbkdf2Iterations() {
+        return pbkdf2Iterations;
+    }
+
+    public String getCryptoSuite() {
+        return cryptoSuite;
+    }
+
+    public int getPrekeyBatchSize() {
+        return prekeyBatchSize;
+    }
+
+    public int getKeyPoolSize() {
+        return keyPoolSize;
+    }
+
+    public int getKeyPoolLowWatermark() {
+        return keyPoolLowWatermark;
+    }
+
+    public long getIdentityWaitMs() {
+        return identityWaitMs;
+    }
+
+    public int getIdentityRetries() {
+        return identityRetries;
+    }
+}
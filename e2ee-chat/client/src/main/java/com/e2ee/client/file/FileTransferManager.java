@@ -0,0 +1,415 @@
+package com.e2ee.client.file;
+
+import com.e2ee.client.config.ClientConfig;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.JsonUtil;
+import com.e2ee.protocol.MessageType;
+import com.e2ee.session.E2eeSession;
+
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ===========================
+ *  FileTransferManager (클라이언트)
+ *  - 파일을 고정 크기 청크로 나눠서 1:1 E2eeSession으로 청크마다 암호화해 전송
+ *  - 보내는 쪽: FileChannel에서 버퍼 1개를 재사용하며 청크 단위로 읽음
+ *  - 받는 쪽: <downloads>/<fileId>.part 에 청크 위치대로 바로 씀
+ *  - 흐름 제어: ACK 없이 WINDOW 개까지만 보냄
+ *  - 이어받기: .part 파일이 남아있으면 그 다음 청크부터 FILE_ACCEPT
+ *  → 파일 크기와 상관없이 메모리는 (청크 크기 × 상수) 만큼만 사용
+ * ===========================
+ */
+public class FileTransferManager {
+
+    // 평문 기준 청크 크기 (기본 32KB → Base64 + JSON 포장 후 한 줄 ≈ 44KB)
+    private final int chunkSize;
+
+    // ACK 없이 보낼 수 있는 최대 청크 수 (받는 쪽은 보낸 쪽 WINDOW / 2 마다 ACK)
+    private final int window;
+
+    // ACK가 이 시간 동안 안 오면 전송 중단 (나중에 다시 /send 하면 이어받기)
+    private final long ackTimeoutMs;
+
+    // <home.dir>/downloads
+    private final Path downloadDir;
+
+    private static final DateTimeFormatter TS =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private final String myId;
+    private final Map<String, E2eeSession> sessions;
+    private final PrintWriter writer;
+
+    // fileId → 보내는 중인 파일
+    private final Map<String, Outgoing> outgoing = new ConcurrentHashMap<>();
+
+    // fileId → 받는 중인 파일
+    private final Map<String, Incoming> incoming = new ConcurrentHashMap<>();
+
+    public FileTransferManager(String myId, Map<String, E2eeSession> sessions, PrintWriter writer,
+                               ClientConfig config) {
+        this.myId = myId;
+        this.sessions = sessions;
+        this.writer = writer;
+        this.chunkSize = config.getFileChunkSize();
+        this.window = config.getFileWindow();
+        this.ackTimeoutMs = config.getFileAckTimeoutMs();
+        this.downloadDir = config.getHomeDir().resolve("downloads");
+    }
+
+    // -------- FILE_OFFER 안에 (암호화되어) 들어가는 파일 정보 --------
+    private static class FileMeta {
+        String fileId;
+        String name;
+        long size;
+        int chunkSize;
+        int window;           // 보낸 쪽 WINDOW (0 = 예전 버전 → 8)
+        String noncePrefix;   // Base64, 8바이트
+        String algorithm;     // 청크 암호 스위트 (null = 예전 버전 → AES-GCM)
+
+        int ackEvery() {
+            return Math.max(1, ((window > 0) ? window : 8) / 2);
+        }
+
+        int totalChunks() {
+            return (int) ((size + chunkSize - 1) / chunkSize);
+        }
+    }
+
+    private static class Outgoing {
+        final FileMeta meta;
+        final Path path;
+        final String peerId;
+
+        // 받는 쪽이 다음에 받을 청크 번호 (ACK로 갱신)
+        int acked;
+
+        Outgoing(FileMeta meta, Path path, String peerId) {
+            this.meta = meta;
+            this.path = path;
+            this.peerId = peerId;
+        }
+    }
+
+    private static class Incoming {
+        final FileMeta meta;
+        final String peerId;
+        final Path partFile;
+        final FileChannel channel;
+
+        // 다음에 받을 청크 번호
+        int next;
+
+        Incoming(FileMeta meta, String peerId, Path partFile, FileChannel channel) {
+            this.meta = meta;
+            this.peerId = peerId;
+            this.partFile = partFile;
+            this.channel = channel;
+        }
+    }
+
+    // ============================================================
+    //  보내는 쪽
+    // ============================================================
+
+    /**
+     * /send 경로 → 상대에게 FILE_OFFER 전송.
+     * 같은 파일(경로+크기+수정시각)은 같은 fileId가 나오므로 다시 보내면 이어받기가 된다.
+     */
+    public void offer(String peerId, Path path) throws Exception {
+
+        E2eeSession session = sessions.get(peerId);
+        if (session == null) {
+            System.out.println("[FILE] " + peerId + " 와(과) 세션 없음 → 먼저 /key " + peerId);
+            return;
+        }
+
+        if (!Files.isRegularFile(path)) {
+            System.out.println("[FILE] 파일 없음: " + path);
+            return;
+        }
+
+        byte[] noncePrefix = new byte[8];
+        new SecureRandom().nextBytes(noncePrefix);
+
+        FileMeta meta = new FileMeta();
+        meta.size = Files.size(path);
+        meta.fileId = fileIdOf(path, meta.size);
+        meta.name = path.getFileName().toString();
+        meta.chunkSize = chunkSize;
+        meta.window = window;
+        meta.noncePrefix = Base64.getEncoder().encodeToString(noncePrefix);
+        meta.algorithm = session.getSuite().getAlgorithm();
+
+        outgoing.put(meta.fileId, new Outgoing(meta, path, peerId));
+
+        // 파일 이름/크기도 서버가 못 보게 세션으로 암호화
+        EncryptedPayload payload = session.encrypt(JsonUtil.toJson(meta));
+        send(MessageType.FILE_OFFER, peerId, payload.toWireString());
+
+        System.out.println("[FILE] 전송 제안 → " + peerId + " : " + meta.name
+                + " (" + meta.size + " bytes, " + meta.totalChunks() + " 청크)");
+    }
+
+    // FILE_ACCEPT (fileId:시작 청크) → 별도 스레드에서 스트리밍 시작
+    private void onAccept(ChatMessage msg) {
+
+        String[] parts = msg.getBody().split(":", 2);
+        Outgoing out = outgoing.get(parts[0]);
+        if (out == null || !out.peerId.equals(msg.getSender())) return;
+
+        int start = Integer.parseInt(parts[1]);
+
+        Thread t = new Thread(() -> stream(out, start), "file-send-" + out.meta.fileId);
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void stream(Outgoing out, int start) {
+
+        FileMeta meta = out.meta;
+        byte[] noncePrefix = Base64.getDecoder().decode(meta.noncePrefix);
+        byte[] aad = meta.fileId.getBytes(StandardCharsets.UTF_8);
+        int total = meta.totalChunks();
+
+        synchronized (out) {
+            out.acked = start;
+        }
+
+        if (start > 0) {
+            System.out.println("[FILE] 이어보내기: " + start + "/" + total + " 청크부터");
+        }
+
+        try (FileChannel channel = FileChannel.open(out.path, StandardOpenOption.READ)) {
+
+            // 청크 버퍼 1개 재사용
+            ByteBuffer buf = ByteBuffer.allocate(meta.chunkSize);
+
+            for (int index = start; index < total; index++) {
+
+                // 윈도우가 꽉 차면 ACK 대기
+                if (!awaitWindow(out, index)) {
+                    System.out.println("[FILE] ACK 시간 초과 → 전송 중단 (다시 /send 하면 이어받기): " + meta.name);
+                    outgoing.remove(meta.fileId);
+                    return;
+                }
+
+                E2eeSession session = sessions.get(out.peerId);
+                if (session == null) {
+                    System.out.println("[FILE] 세션 사라짐 → 전송 중단: " + meta.name);
+                    return;
+                }
+
+                buf.clear();
+                long position = (long) index * meta.chunkSize;
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, position + buf.position()) < 0) break;
+                }
+
+                byte[] encrypted = session.encryptChunk(buf.array(), 0, buf.position(), noncePrefix, index, aad);
+
+                send(MessageType.FILE_CHUNK, out.peerId,
+                        meta.fileId + ":" + index + ":" + Base64.getEncoder().encodeToString(encrypted));
+            }
+
+        } catch (Exception e) {
+            System.out.println("[FILE] 전송 실패: " + meta.name + " (" + e.getMessage() + ")");
+            outgoing.remove(meta.fileId);
+        }
+    }
+
+    // index 번 청크를 보내도 되는지 (unacked < WINDOW) 기다림
+    private boolean awaitWindow(Outgoing out, int index) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + ackTimeoutMs;
+
+        synchronized (out) {
+            while (index - out.acked >= window) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) return false;
+                out.wait(wait);
+            }
+        }
+        return true;
+    }
+
+    // FILE_ACK (fileId:다음 청크)
+    private void onAck(ChatMessage msg) {
+
+        String[] parts = msg.getBody().split(":", 2);
+        Outgoing out = outgoing.get(parts[0]);
+        if (out == null || !out.peerId.equals(msg.getSender())) return;
+
+        int next = Integer.parseInt(parts[1]);
+
+        synchronized (out) {
+            if (next > out.acked) out.acked = next;
+            out.notifyAll();
+        }
+
+        if (next >= out.meta.totalChunks()) {
+            outgoing.remove(out.meta.fileId);
+            System.out.println("[FILE] 전송 완료 → " + out.peerId + " : " + out.meta.name);
+        }
+    }
+
+    // ============================================================
+    //  받는 쪽
+    // ============================================================
+
+    // FILE_OFFER → 자동 수락, .part 파일이 있으면 이어받기
+    private void onOffer(ChatMessage msg) throws Exception {
+
+        String peerId = msg.getSender();
+        E2eeSession session = sessions.get(peerId);
+        if (session == null) {
+            System.out.println("[FILE] " + peerId + " 의 파일 제안 무시 (세션 없음 → /key " + peerId + ")");
+            return;
+        }
+
+        String json = session.decrypt(EncryptedPayload.fromWireString(msg.getBody()));
+        FileMeta meta = JsonUtil.fromJson(json, FileMeta.class);
+
+        // 같은 파일을 이미 받는 중이면 이전 채널 정리
+        Incoming old = incoming.remove(meta.fileId);
+        if (old != null) old.channel.close();
+
+        Files.createDirectories(downloadDir);
+        Path partFile = downloadDir.resolve(meta.fileId + ".part");
+
+        FileChannel channel = FileChannel.open(partFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+        // 완전히 받은 청크까지만 인정하고 그 뒤는 잘라냄
+        int start = (int) Math.min(channel.size() / meta.chunkSize, meta.totalChunks());
+        channel.truncate((long) start * meta.chunkSize);
+
+        Incoming in = new Incoming(meta, peerId, partFile, channel);
+        in.next = start;
+        incoming.put(meta.fileId, in);
+
+        send(MessageType.FILE_ACCEPT, peerId, meta.fileId + ":" + start);
+
+        System.out.println("[FILE] " + peerId + " → 파일 수신 시작: " + meta.name
+                + " (" + meta.size + " bytes" + (start > 0 ? ", " + start + " 청크부터 이어받기" : "") + ")");
+
+        if (start >= meta.totalChunks()) complete(in);
+    }
+
+    // FILE_CHUNK (fileId:index:암호문) → 복호화 후 해당 위치에 바로 기록
+    private void onChunk(ChatMessage msg) throws Exception {
+
+        String[] parts = msg.getBody().split(":", 3);
+        Incoming in = incoming.get(parts[0]);
+        if (in == null || !in.peerId.equals(msg.getSender())) return;
+
+        int index = Integer.parseInt(parts[1]);
+
+        // 순서가 어긋난 청크(재전송 중복 등)는 버리고 현재 위치를 다시 알려줌
+        if (index != in.next) {
+            send(MessageType.FILE_ACK, in.peerId, in.meta.fileId + ":" + in.next);
+            return;
+        }
+
+        E2eeSession session = sessions.get(in.peerId);
+        byte[] noncePrefix = Base64.getDecoder().decode(in.meta.noncePrefix);
+        byte[] aad = in.meta.fileId.getBytes(StandardCharsets.UTF_8);
+
+        byte[] plain = session.decryptChunk(in.meta.algorithm, Base64.getDecoder().decode(parts[2]), noncePrefix, index, aad);
+
+        ByteBuffer buf = ByteBuffer.wrap(plain);
+        long position = (long) index * in.meta.chunkSize;
+        while (buf.hasRemaining()) {
+            position += in.channel.write(buf, position);
+        }
+
+        in.next++;
+
+        int total = in.meta.totalChunks();
+        if (in.next % in.meta.ackEvery() == 0 || in.next == total) {
+            send(MessageType.FILE_ACK, in.peerId, in.meta.fileId + ":" + in.next);
+        }
+
+        if (in.next == total) complete(in);
+    }
+
+    // .part → 최종 파일 이름으로 이동
+    private void complete(Incoming in) throws Exception {
+
+        incoming.remove(in.meta.fileId);
+        in.channel.force(true);
+
+        long written = in.channel.size();
+        in.channel.close();
+
+        if (written != in.meta.size) {
+            System.out.println("[FILE] 크기 불일치 → 폐기: " + in.meta.name);
+            Files.deleteIfExists(in.partFile);
+            return;
+        }
+
+        // 경로 조작 방지: 파일 이름 부분만 사용
+        String safeName = Paths.get(in.meta.name).getFileName().toString();
+        Path target = downloadDir.resolve(safeName);
+        if (Files.exists(target)) {
+            target = downloadDir.resolve(in.meta.fileId + "_" + safeName);
+        }
+
+        Files.move(in.partFile, target, StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("[FILE] 수신 완료: " + target);
+    }
+
+    // ============================================================
+    //  공통
+    // ============================================================
+
+    // 수신 스레드에서 FILE_* 메시지 전달
+    public void handle(ChatMessage msg) {
+        try {
+            switch (msg.getType()) {
+                case FILE_OFFER -> onOffer(msg);
+                case FILE_ACCEPT -> onAccept(msg);
+                case FILE_CHUNK -> onChunk(msg);
+                case FILE_ACK -> onAck(msg);
+                default -> { }
+            }
+        } catch (Exception e) {
+            System.out.println("[FILE] 처리 실패: " + msg.getType() + " (" + e.getMessage() + ")");
+        }
+    }
+
+    private void send(MessageType type, String peerId, String body) {
+        ChatMessage msg = new ChatMessage(
+                type,
+                myId,
+                peerId,
+                body,
+                LocalDateTime.now().format(TS)
+        );
+        writer.println(JsonUtil.toJson(msg));
+    }
+
+    // 경로 + 크기 + 수정시각 → 16자리 fileId (같은 파일이면 같은 값 → 이어받기)
+    private static String fileIdOf(Path path, long size) throws Exception {
+        MessageDigest sha = MessageDigest.getInstance("SHA-256");
+        String key = path.toAbsolutePath() + "|" + size + "|" + Files.getLastModifiedTime(path).toMillis();
+        byte[] digest = sha.digest(key.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest, 0, 8);
+    }
+}
@@ -1,13 +1,15 @@
 package com.e2ee.client.history;
 
+import com.e2ee.client.config.ClientConfig;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.lang.reflect.Type;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,15 +19,17 @@ import java.util.List;
  *  - 각 상대방과의 채팅 기록을 파일로 저장 & 로드
  *  - 파일명 규칙:
  *        <myId>__<peerId>.json
+ *  - 파일 = JSON 배열 1개. 추가할 땐 끝의 ']' 자리부터 새 항목 + ']' 만 덧씀
+ *    (기존 기록을 다시 읽거나 다시 쓰지 않음)
  * ===========================
  */
 public class HistoryVault {
 
     private static final Gson gson = new Gson();
 
-    // ~/.e2ee-chat/history/
+    // <home.dir>/history/  (기본 ~/.e2ee-chat/history/)
     private static final File BASE_DIR =
-            new File(System.getProperty("user.home"), ".e2ee-chat/history");
+            ClientConfig.get().getHomeDir().resolve("history").toFile();
 
     static {
         if (!BASE_DIR.exists()) {
@@ -68,24 +72,103 @@ public class HistoryVault {
         }
     }
 
+    /**
+     * -------------------------
+     * 1-1) 기록이 남아있는 상대 ID 목록
+     *      (로그인 직후 세션 일괄 준비용)
+     * -------------------------
+     */
+    public static synchronized List<String> listPeers(String myId) {
+        List<String> peers = new ArrayList<>();
+        String prefix = myId + "__";
+
+        File[] files = BASE_DIR.listFiles();
+        if (files == null) return peers;
+
+        for (File f : files) {
+            String name = f.getName();
+            if (name.startsWith(prefix) && name.endsWith(".json")) {
+                String peerId = name.substring(prefix.length(), name.length() - ".json".length());
+
+                // "#방이름" 은 그룹방 기록이라 1:1 상대가 아님
+                if (!peerId.startsWith("#")) peers.add(peerId);
+            }
+        }
+        return peers;
+    }
+
     /**
      * -------------------------
      * 2) 히스토리에 한 줄 추가
      * -------------------------
      */
     public static synchronized void append(String myId, String peerId, HistoryEntry entry) {
-        try {
-            List<HistoryEntry> list = load(myId, peerId);
-            list.add(entry);
+        appendAll(myId, peerId, List.of(entry));
+    }
 
-            File f = fileOf(myId, peerId);
+    /**
+     * -------------------------
+     * 2-1) 여러 줄 한 번에 추가 (파일 쓰기 1번)
+     *      수신 파이프라인 저장 단계에서 모아서 호출
+     *      끝이 ']' 가 아닌 파일(쓰다 끊김 등)은 .broken 으로 옮겨두고 새로 시작
+     * -------------------------
+     */
+    public static synchronized void appendAll(String myId, String peerId, List<HistoryEntry> entries) {
+        if (entries.isEmpty()) return;
 
-            FileWriter writer = new FileWriter(f);
-            gson.toJson(list, writer);
-            writer.close();
+        StringBuilder items = new StringBuilder();
+        for (HistoryEntry e : entries) {
+            if (items.length() > 0) items.append(',');
+            items.append(gson.toJson(e));
+        }
 
+        File f = fileOf(myId, peerId);
+        try {
+            if (!appendToArray(f, items)) {
+                File broken = new File(BASE_DIR, f.getName() + ".broken-" + System.currentTimeMillis());
+                System.out.println("[HistoryVault] 기록 파일 끝이 깨짐 → " + broken.getName() + " 로 옮기고 새로 시작");
+                if (!f.renameTo(broken)) f.delete();
+                appendToArray(f, items);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    // ']' 를 덮어쓰고 ",항목...]" 을 씀. 파일 끝이 ']' 가 아니면 손대지 않고 false
+    private static boolean appendToArray(File f, CharSequence items) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+
+            long close = lastNonSpace(raf, raf.length());
+            if (close < 0) {
+                // 새 파일 (또는 빈 파일)
+                raf.setLength(0);
+                raf.write(("[" + items + "]").getBytes(StandardCharsets.UTF_8));
+                return true;
+            }
+            if (byteAt(raf, close) != ']') return false;
+
+            long before = lastNonSpace(raf, close);
+            if (before < 0) return false;
+            boolean empty = byteAt(raf, before) == '[';
+
+            raf.seek(close);
+            raf.write(((empty ? "" : ",") + items + "]").getBytes(StandardCharsets.UTF_8));
+            raf.setLength(raf.getFilePointer());
+            return true;
+        }
+    }
+
+    // end 앞쪽에서 공백이 아닌 마지막 바이트 위치 (없으면 -1)
+    private static long lastNonSpace(RandomAccessFile raf, long end) throws IOException {
+        for (long pos = end - 1; pos >= 0; pos--) {
+            if (!Character.isWhitespace(byteAt(raf, pos))) return pos;
+        }
+        return -1;
+    }
+
+    private static int byteAt(RandomAccessFile raf, long pos) throws IOException {
+        raf.seek(pos);
+        return raf.read();
+    }
 }
@@ -0,0 +1,491 @@
+package com.e2ee.client.net;
+
+import com.e2ee.client.config.ClientConfig;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.FrameCodec;
+import com.e2ee.protocol.JsonUtil;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+
+/**
+ * ===========================
+ *  ClientTransport (클라이언트 ↔ 서버 연결)
+ *  - 입력 루프/수신 스레드는 writer()/readLine()만 쓴다. 연결이 끊겨도 막히지 않음
+ *  - 송신은 큐 → 전용 송신 스레드가 소켓에 씀 (연결 없으면 큐에 쌓아둠)
+ *  - 끊기면 지수 백오프로 재연결 → 저장해둔 로그인 프레임으로 재인증
+ *  - id 달린 프레임(CHAT/ROOM_CHAT)은 서버 ACK 올 때까지 outbox에 보관,
+ *    재연결 후 먼저 다시 보낸다.
+ *  - 로그인 때 압축을 요청했으면 서버가 큰 제어 프레임을 "Z..." 로 보낸다 → 여기서 풀어서 넘김
+ * ===========================
+ */
+public class ClientTransport {
+
+    private final String host;
+    private final int port;
+
+    private final long backoffMinMs;
+    private final long backoffMaxMs;
+    private final int connectTimeoutMs;
+
+    // ACK 못 받은 프레임 보관 한도 (넘으면 오래된 것부터 버림)
+    private final int outboxLimit;
+
+    // 보낼 줄 (JSON 한 줄씩)
+    private final LinkedBlockingDeque<String> outbound = new LinkedBlockingDeque<>();
+
+    // 메시지 id → 이미 소켓에 쓴 JSON 줄 (ACK 오면 제거)
+    private final Map<String, String> outbox = new LinkedHashMap<>();
+
+    // 입력 루프/파일 전송 등이 쓰는 PrintWriter (println 1번 = 큐에 1줄)
+    private final PrintWriter writer = new PrintWriter(new QueueWriter(), true);
+
+    // 재연결 시 보낼 로그인 프레임
+    private volatile String reauthLine;
+
+    // 현재 연결 (재연결 중이면 null)
+    private Connection current;
+    private long generation;
+    private volatile boolean closed;
+
+    // 압축 프레임 해제 (수신 스레드 전용)
+    private final FrameCodec codec = new FrameCodec();
+    private final LongAdder compressedFrames = new LongAdder();
+    private final LongAdder compressedChars = new LongAdder();
+    private final LongAdder inflatedChars = new LongAdder();
+
+    private static final class Connection {
+        final long generation;
+        final Socket socket;
+        final BufferedReader in;
+        final BufferedWriter out;
+
+        Connection(long generation, Socket socket) throws IOException {
+            this.generation = generation;
+            this.socket = socket;
+            this.in = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            this.out = new BufferedWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    public ClientTransport(String host, int port, ClientConfig config) {
+        this.host = host;
+        this.port = port;
+        this.backoffMinMs = config.getBackoffMinMs();
+        this.backoffMaxMs = config.getBackoffMaxMs();
+        this.connectTimeoutMs = config.getConnectTimeoutMs();
+        this.outboxLimit = config.getOutboxLimit();
+    }
+
+    // ============================================================
+    //  최초 연결 + 인증
+    // ============================================================
+
+    /**
+     * 서버에 붙을 때까지 백오프하며 재시도 후, 인증 프레임을 보내고 응답을 돌려준다.
+     * 응답이 "_OK"면 reauth 프레임을 기억해뒀다가 재연결 때 쓴다.
+     */
+    public ChatMessage authenticate(ChatMessage auth, ChatMessage reauth) throws InterruptedException {
+
+        long delay = backoffMinMs;
+
+        while (true) {
+            try {
+                System.out.println("[NET] 서버 연결 중... (" + host + ":" + port + ")");
+                Connection c = open();
+
+                String res = handshake(c, JsonUtil.toJson(auth));
+                ChatMessage authRes = JsonUtil.fromJson(res, ChatMessage.class);
+
+                if (authRes.getBody() != null && authRes.getBody().contains("_OK")) {
+                    reauthLine = JsonUtil.toJson(reauth);
+                    publish(c);
+                    startSender();
+                } else {
+                    c.close();
+                }
+                return authRes;
+
+            } catch (IOException e) {
+                delay = sleepBackoff(delay);
+            }
+        }
+    }
+
+    public PrintWriter writer() {
+        return writer;
+    }
+
+    // ============================================================
+    //  수신 (수신 스레드 1개 전용)
+    // ============================================================
+
+    /**
+     * 서버에서 온 다음 줄. 연결이 끊기면 재연결/재인증까지 여기서 기다렸다가 이어서 읽는다.
+     * ACK는 여기서 처리하고 넘기지 않는다.
+     *
+     * @return 다음 JSON 줄, close() 이후엔 null
+     */
+    public String readLine() {
+        while (!closed) {
+
+            Connection c = awaitConnection();
+            if (c == null) return null;
+
+            try {
+                String line = c.in.readLine();
+                if (line == null) throw new EOFException();
+
+                if (FrameCodec.isCompressed(line)) {
+                    line = inflate(line);
+                    if (line == null) continue;
+                }
+
+                Header h = Header.parse(line);
+                if (h != null && "ACK".equals(h.type())) {
+                    onAck(h.body());
+                    continue;
+                }
+                return line;
+
+            } catch (IOException e) {
+                if (closed) return null;
+                lost(c);
+                reconnect();
+            }
+        }
+        return null;
+    }
+
+    public void close() {
+        closed = true;
+        synchronized (this) {
+            if (current != null) current.close();
+            current = null;
+            notifyAll();
+        }
+    }
+
+    public String compressionReport() {
+        long in = compressedChars.sum();
+        long out = inflatedChars.sum();
+        return String.format("[STATS] 압축 수신: %d 프레임 | %d → %d 글자 (%.0f%%)",
+                compressedFrames.sum(), out, in, (out == 0) ? 100.0 : 100.0 * in / out);
+    }
+
+    public int unacknowledged() {
+        synchronized (outbox) {
+            return outbox.size();
+        }
+    }
+
+    private String inflate(String line) {
+        try {
+            String json = codec.decode(line);
+            compressedFrames.increment();
+            compressedChars.add(line.length());
+            inflatedChars.add(json.length());
+            return json;
+        } catch (DataFormatException e) {
+            System.out.println("[NET] 압축 프레임 해제 실패 → 무시: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // ============================================================
+    //  재연결
+    // ============================================================
+
+    private void reconnect() {
+        System.out.println("[NET] 서버 연결 끊김 → 재연결 중 (입력은 계속 가능, 대기 "
+                + outbound.size() + "건 / 미확인 " + unacknowledged() + "건)");
+
+        long delay = backoffMinMs;
+
+        while (!closed) {
+            try {
+                delay = sleepBackoff(delay);
+
+                Connection c = open();
+                String res = handshake(c, reauthLine);
+                ChatMessage authRes = JsonUtil.fromJson(res, ChatMessage.class);
+
+                if (authRes.getBody() == null || !authRes.getBody().contains("_OK")) {
+                    c.close();
+                    System.out.println("[NET] 재인증 실패: " + authRes.getBody() + " → 재연결 중단");
+                    close();
+                    return;
+                }
+
+                publish(c);
+                System.out.println("[NET] 재연결 완료 (미확인 " + unacknowledged() + "건 재전송)");
+                return;
+
+            } catch (IOException e) {
+                // 다음 백오프
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                return;
+            }
+        }
+    }
+
+    private Connection open() throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), connectTimeoutMs);
+            socket.setTcpNoDelay(true);
+
+            synchronized (this) {
+                return new Connection(++generation, socket);
+            }
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // 인증 프레임 1줄 보내고 응답 1줄 받기 (송신 스레드보다 먼저, 연결 공개 전)
+    private static String handshake(Connection c, String authLine) throws IOException {
+        c.out.write(authLine);
+        c.out.write('\n');
+        c.out.flush();
+
+        String res = c.in.readLine();
+        if (res == null) {
+            c.close();
+            throw new EOFException();
+        }
+        return res;
+    }
+
+    private synchronized void publish(Connection c) {
+        current = c;
+        notifyAll();
+    }
+
+    // 이 연결이 아직 current면 내리고 닫는다 (송신/수신 어느 쪽이 먼저 알아채도 1번만)
+    private synchronized void lost(Connection c) {
+        if (current == c) current = null;
+        c.close();
+    }
+
+    private synchronized Connection awaitConnection() {
+        while (!closed && current == null) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return current;
+    }
+
+    // 지수 백오프 + 지터: [delay/2, delay) 만큼 자고 다음 delay 반환
+    private long sleepBackoff(long delay) throws InterruptedException {
+        long half = delay / 2;
+        Thread.sleep(half + ThreadLocalRandom.current().nextLong(half + 1));
+        return Math.min(delay * 2, backoffMaxMs);
+    }
+
+    // ============================================================
+    //  송신 스레드
+    // ============================================================
+
+    private void startSender() {
+        Thread t = new Thread(this::sendLoop, "transport-send");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    private void sendLoop() {
+        long sentOn = 0;   // outbox 재전송을 마친 연결 세대
+
+        // 마지막 flush 이후 버퍼에만 쓴 id 없는 줄 (끊기면 큐 앞으로 되돌림)
+        List<String> unflushed = new ArrayList<>();
+
+        while (!closed) {
+            Connection c = awaitConnection();
+            if (c == null) return;
+
+            try {
+                // 새 연결이면 ACK 못 받은 프레임부터 다시 보냄
+                if (c.generation != sentOn) {
+                    for (String pending : outboxSnapshot()) {
+                        c.out.write(pending);
+                        c.out.write('\n');
+                    }
+                    c.out.flush();
+                    sentOn = c.generation;
+                }
+
+                String line = outbound.poll(500, TimeUnit.MILLISECONDS);
+                if (line == null) continue;
+
+                // 쓰기 전에 outbox에 넣어둬야 쓰다가 끊겨도 재전송됨
+                if (!remember(line)) unflushed.add(line);
+                c.out.write(line);
+                c.out.write('\n');
+
+                // 큐가 빌 때만 flush → 몰릴 때는 묶어서 보냄
+                if (outbound.isEmpty()) {
+                    c.out.flush();
+                    unflushed.clear();
+                }
+
+            } catch (IOException e) {
+                // outbox에 들어간 건 재전송되니, id 없는 줄만 원래 순서대로 큐 앞에 되돌림
+                // (버퍼가 차서 일부가 이미 나갔을 수 있음 → 중복될 수는 있어도 잃지는 않음)
+                for (int i = unflushed.size() - 1; i >= 0; i--) outbound.addFirst(unflushed.get(i));
+                unflushed.clear();
+                lost(c);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    // id 달린 줄이면 outbox 에 보관하고 true
+    private boolean remember(String line) {
+        String id = idOf(line);
+        if (id == null) return false;
+
+        synchronized (outbox) {
+            outbox.put(id, line);
+
+            if (outbox.size() > outboxLimit) {
+                Iterator<String> it = outbox.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+        return true;
+    }
+
+    private void onAck(String id) {
+        if (id == null) return;
+        synchronized (outbox) {
+            outbox.remove(id);
+        }
+    }
+
+    private List<String> outboxSnapshot() {
+        synchronized (outbox) {
+            return new ArrayList<>(outbox.values());
+        }
+    }
+
+    // JSON 줄의 최상위 "id" (없거나 JSON 이 아니면 null)
+    static String idOf(String line) {
+        Header h = Header.parse(line);
+        return (h == null) ? null : h.id();
+    }
+
+    /**
+     * 줄의 최상위 type / id 만 읽은 결과. body 는 ACK 일 때만 읽는다 (ACK body = 확인한 메시지 id).
+     * 나머지 값(암호문 body, 중첩 객체 안의 "id" 등)은 JsonReader.skipValue() 로 건너뜀.
+     */
+    record Header(String type, String id, String body) {
+
+        // JSON 객체가 아니면 null
+        static Header parse(String line) {
+            String type = null;
+            String id = null;
+            String body = null;
+
+            try (JsonReader r = new JsonReader(new StringReader(line))) {
+                r.beginObject();
+                while (r.hasNext()) {
+                    String name = r.nextName();
+
+                    if (r.peek() != JsonToken.STRING) {
+                        r.skipValue();
+                        continue;
+                    }
+
+                    switch (name) {
+                        case "type" -> type = r.nextString();
+                        case "id" -> id = r.nextString();
+                        // Gson 은 필드 순서대로 쓰므로 type 이 body 보다 먼저 온다
+                        case "body" -> {
+                            if ("ACK".equals(type)) body = r.nextString();
+                            else r.skipValue();
+                        }
+                        default -> r.skipValue();
+                    }
+                }
+                return new Header(type, id, body);
+
+            } catch (IOException | IllegalStateException e) {
+                return null;
+            }
+        }
+    }
+
+    // ============================================================
+    //  PrintWriter → 송신 큐 (줄 단위)
+    // ============================================================
+
+    /**
+     * PrintWriter.println()은 lock 안에서 본문 + 줄바꿈을 쓰므로
+     * 여러 스레드가 같이 써도 줄이 섞이지 않는다.
+     */
+    private final class QueueWriter extends Writer {
+
+        private final StringBuilder buf = new StringBuilder();
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                char ch = cbuf[i];
+                if (ch == '\n') {
+                    outbound.add(buf.toString());
+                    buf.setLength(0);
+                } else if (ch != '\r') {
+                    buf.append(ch);
+                }
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
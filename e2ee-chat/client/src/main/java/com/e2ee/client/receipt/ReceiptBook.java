@@ -0,0 +1,64 @@
+package com.e2ee.client.receipt;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ===========================
+ *  ReceiptBook (클라이언트 로컬)
+ *  - 최근에 출력한 메시지 id → 서버 재전송으로 같은 메시지가 또 와도 한 번만 출력
+ *  - 상대별 아직 안 읽은 메시지 id → 그 상대와 대화를 열면(/key) READ 전송
+ * ===========================
+ */
+public class ReceiptBook {
+
+    private final int recentLimit;
+
+    // 최근 받은 id (오래된 것부터 버림)
+    private final Map<String, Boolean> recent = new LinkedHashMap<>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > recentLimit;
+        }
+    };
+
+    // 상대ID → 안 읽은 메시지 id
+    private final Map<String, List<String>> unread = new ConcurrentHashMap<>();
+
+    public ReceiptBook(int recentLimit) {
+        this.recentLimit = recentLimit;
+    }
+
+    /**
+     * @return 이미 출력한 id면 true (id 없는 메시지는 항상 false)
+     */
+    public boolean seen(String id) {
+        if (id == null) return false;
+        synchronized (recent) {
+            return recent.containsKey(id);
+        }
+    }
+
+    /**
+     * 복호화에 성공한 메시지만 (실패한 것은 재전송으로 다시 받아야 하므로 기록하지 않음)
+     */
+    public void markSeen(String id) {
+        if (id == null) return;
+        synchronized (recent) {
+            recent.put(id, Boolean.TRUE);
+        }
+    }
+
+    public void markUnread(String peerId, String id) {
+        unread.computeIfAbsent(peerId, p -> Collections.synchronizedList(new ArrayList<>())).add(id);
+    }
+
+    public List<String> takeUnread(String peerId) {
+        List<String> ids = unread.remove(peerId);
+        return (ids == null) ? Collections.emptyList() : ids;
+    }
+}
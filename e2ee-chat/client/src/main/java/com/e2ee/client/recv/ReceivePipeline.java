@@ -0,0 +1,291 @@
+package com.e2ee.client.recv;
+
+import com.e2ee.client.config.ClientConfig;
+import com.e2ee.client.history.HistoryEntry;
+import com.e2ee.client.history.HistoryVault;
+import com.e2ee.client.receipt.ReceiptBook;
+import com.e2ee.client.room.RoomKeyring;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.MessageType;
+import com.e2ee.session.E2eeSession;
+import com.e2ee.session.SenderKey;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ===========================
+ *  ReceivePipeline (CHAT / ROOM_CHAT 수신 처리)
+ *
+ *  [수신 스레드: JSON 디코드] → 복호화 워커 N개 → 출력 스레드 → 저장 스레드
+ *
+ *  - 단계 사이는 크기 제한 큐 → 뒤가 밀리면 앞이 put()에서 기다림 (메모리 폭주 없음)
+ *  - 복호화 워커는 보낸 사람 ID 해시로 고정 → 같은 상대 메시지 순서 유지
+ *  - 출력은 스레드 1개 → 줄이 섞이지 않음
+ *  - 저장은 모아서 상대별 HistoryVault.appendAll 1번 → 몰릴 때 디스크 쓰기 횟수 감소
+ *  - 키/세션/방 관련 프레임은 수신 스레드에서 바로 처리하므로
+ *    여기로 넘어오는 시점엔 필요한 세션/sender key가 이미 들어가 있다.
+ * ===========================
+ */
+public class ReceivePipeline {
+
+    /**
+     * 출력 직후 / 중복 수신 시 ClientMain 쪽 처리 (지연 기록, 수신 확인 전송)
+     */
+    public interface Listener {
+        void displayed(ChatMessage msg);
+
+        void duplicate(ChatMessage msg);
+    }
+
+    // 복호화 결과 1건 (출력할 줄 + 저장할 기록)
+    private static final class Item {
+        final ChatMessage msg;
+        final String line;
+        final String historyKey;      // 상대ID 또는 "#방이름", 저장 안 하면 null
+        final HistoryEntry entry;
+        final boolean notify;         // 출력 후 Listener.displayed 호출 여부
+
+        Item(ChatMessage msg, String line, String historyKey, HistoryEntry entry, boolean notify) {
+            this.msg = msg;
+            this.line = line;
+            this.historyKey = historyKey;
+            this.entry = entry;
+            this.notify = notify;
+        }
+    }
+
+    private final String myId;
+    private final Map<String, E2eeSession> sessions;
+    private final RoomKeyring rooms;
+    private final ReceiptBook receipts;
+    private final Listener listener;
+
+    private final int persistBatch;
+
+    private final List<BlockingQueue<ChatMessage>> stripes = new ArrayList<>();
+    private final BlockingQueue<Item> renderQueue;
+    private final BlockingQueue<Item> persistQueue;
+
+    // submit() 후 아직 끝까지(출력/저장) 안 간 메시지 수
+    private final AtomicInteger inProgress = new AtomicInteger();
+
+    // ---------- 처리량 ----------
+    private final long startNanos = System.nanoTime();
+    private final LongAdder decoded = new LongAdder();
+    private final LongAdder decrypted = new LongAdder();
+    private final LongAdder decryptErrors = new LongAdder();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder persistBatches = new LongAdder();
+
+    public ReceivePipeline(String myId,
+                           Map<String, E2eeSession> sessions,
+                           RoomKeyring rooms,
+                           ReceiptBook receipts,
+                           Listener listener,
+                           ClientConfig config) {
+        this.myId = myId;
+        this.sessions = sessions;
+        this.rooms = rooms;
+        this.receipts = receipts;
+        this.listener = listener;
+
+        this.persistBatch = config.getPersistBatch();
+        this.renderQueue = new ArrayBlockingQueue<>(config.getRenderQueue());
+        this.persistQueue = new ArrayBlockingQueue<>(config.getPersistQueue());
+
+        for (int i = 0; i < config.getDecryptThreads(); i++) {
+            BlockingQueue<ChatMessage> q = new ArrayBlockingQueue<>(config.getStripeQueue());
+            stripes.add(q);
+            start("recv-decrypt-" + i, () -> decryptLoop(q));
+        }
+        start("recv-render", this::renderLoop);
+        start("recv-persist", this::persistLoop);
+    }
+
+    /**
+     * 수신 스레드에서 CHAT / ROOM_CHAT 넘기기. 해당 워커 큐가 꽉 차면 기다린다.
+     */
+    public void submit(ChatMessage msg) throws InterruptedException {
+        decoded.increment();
+        inProgress.incrementAndGet();
+
+        int stripe = Math.floorMod(String.valueOf(msg.getSender()).hashCode(), stripes.size());
+        stripes.get(stripe).put(msg);
+    }
+
+    /**
+     * 종료 전 호출: 남은 메시지가 출력/저장될 때까지 최대 timeout 대기.
+     */
+    public void flush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (inProgress.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    public String report() {
+        double sec = Math.max(1e-3, (System.nanoTime() - startNanos) / 1e9);
+        long batches = persistBatches.sum();
+
+        return String.format(
+                "[STATS] 수신 파이프라인: 디코드 %d | 복호화 %d (실패 %d) | 출력 %d | 저장 %d (%d회 배치, 평균 %.1f건)"
+                        + "%n        처리량 %.1f msg/s | 대기 복호화 %d / 출력 %d / 저장 %d",
+                decoded.sum(), decrypted.sum(), decryptErrors.sum(), rendered.sum(),
+                persisted.sum(), batches, (batches == 0) ? 0.0 : (double) persisted.sum() / batches,
+                rendered.sum() / sec, stripeBacklog(), renderQueue.size(), persistQueue.size());
+    }
+
+    // ============================================================
+    //  단계별 루프
+    // ============================================================
+
+    private void decryptLoop(BlockingQueue<ChatMessage> in) {
+        try {
+            while (true) {
+                ChatMessage msg = in.take();
+
+                Item item = (msg.getType() == MessageType.ROOM_CHAT) ? decryptRoom(msg) : decryptDirect(msg);
+
+                if (item == null) {
+                    inProgress.decrementAndGet();
+                } else {
+                    renderQueue.put(item);
+                }
+            }
+        } catch (InterruptedException e) {
+            // 종료
+        }
+    }
+
+    private void renderLoop() {
+        try {
+            while (true) {
+                Item item = renderQueue.take();
+
+                System.out.println(item.line);
+                rendered.increment();
+
+                if (item.notify) listener.displayed(item.msg);
+
+                if (item.entry == null) {
+                    inProgress.decrementAndGet();
+                } else {
+                    persistQueue.put(item);
+                }
+            }
+        } catch (InterruptedException e) {
+            // 종료
+        }
+    }
+
+    private void persistLoop() {
+        List<Item> batch = new ArrayList<>(persistBatch);
+        try {
+            while (true) {
+                batch.add(persistQueue.take());
+                persistQueue.drainTo(batch, persistBatch - 1);
+
+                // 상대별로 묶어서 파일 1번씩
+                Map<String, List<HistoryEntry>> byKey = new LinkedHashMap<>();
+                for (Item item : batch) {
+                    byKey.computeIfAbsent(item.historyKey, k -> new ArrayList<>()).add(item.entry);
+                }
+                for (Map.Entry<String, List<HistoryEntry>> e : byKey.entrySet()) {
+                    HistoryVault.appendAll(myId, e.getKey(), e.getValue());
+                }
+
+                persisted.add(batch.size());
+                persistBatches.increment();
+                inProgress.addAndGet(-batch.size());
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // 종료
+        }
+    }
+
+    // ============================================================
+    //  복호화
+    // ============================================================
+
+    private Item decryptDirect(ChatMessage msg) {
+        String senderId = msg.getSender();
+
+        // 서버가 재전송한 같은 메시지 → 출력/저장 없이 수신 확인만 다시
+        // (같은 상대는 같은 워커라, 앞 것이 여기까지 오기 전에 뒤 것이 검사되는 일은 없음)
+        if (receipts.seen(msg.getId())) {
+            listener.duplicate(msg);
+            return null;
+        }
+
+        // 수신 스레드가 세션을 만든 뒤에 넘기므로 보통은 없음 (만들다 실패한 경우)
+        // 암호문은 출력/저장하지 않음. 실패한 것은 본 것으로 치지 않고 수신 확인도 안 보냄
+        // → 서버 재전송 때 다시 복호화
+        E2eeSession session = sessions.get(senderId);
+        if (session == null) {
+            decryptErrors.increment();
+            return new Item(msg, "[CHAT:NOKEY] " + senderId + " 의 메시지 (세션 없음, 복호화 불가)",
+                    null, null, false);
+        }
+
+        try {
+            String plain = session.decrypt(EncryptedPayload.fromWireString(msg.getBody()));
+            decrypted.increment();
+            receipts.markSeen(msg.getId());
+
+            return new Item(msg, "[CHAT] " + senderId + " : " + plain,
+                    senderId, new HistoryEntry(senderId, myId, plain, msg.getTimestamp()), true);
+
+        } catch (Exception e) {
+            decryptErrors.increment();
+            return new Item(msg, "[DECRYPT-ERR] 복호화 실패", null, null, false);
+        }
+    }
+
+    private Item decryptRoom(ChatMessage msg) {
+        String room = msg.getReceiver();
+        String senderId = msg.getSender();
+        SenderKey key = rooms.peerKey(room, senderId);
+
+        try {
+            if (key == null || key.getVersion() != SenderKey.versionOf(msg.getBody())) {
+                return new Item(msg, "[ROOM:NOKEY] #" + room + " " + senderId + " 의 sender key 없음",
+                        null, null, false);
+            }
+
+            String plain = key.decrypt(msg.getBody());
+            decrypted.increment();
+
+            return new Item(msg, "[ROOM #" + room + "] " + senderId + " : " + plain,
+                    "#" + room, new HistoryEntry(senderId, "#" + room, plain, msg.getTimestamp()), true);
+
+        } catch (Exception e) {
+            decryptErrors.increment();
+            return new Item(msg, "[DECRYPT-ERR] 그룹 메시지 복호화 실패", null, null, false);
+        }
+    }
+
+    // ---------- 기타 ----------
+
+    private int stripeBacklog() {
+        int n = 0;
+        for (BlockingQueue<ChatMessage> q : stripes) n += q.size();
+        return n;
+    }
+
+    private static void start(String name, Runnable r) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        t.start();
+    }
+}
@@ -0,0 +1,125 @@
+package com.e2ee.client.room;
+
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.session.SenderKey;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ===========================
+ *  RoomKeyring (클라이언트 로컬)
+ *  - 내가 들어가 있는 방의 멤버 목록
+ *  - 방마다 내 sender key / 다른 멤버들의 sender key
+ *  - 아직 1:1 세션이 없어서 미뤄둔 sender key 배포/수신
+ * ===========================
+ */
+public class RoomKeyring {
+
+    // 방 이름 → 멤버 목록
+    private final Map<String, List<String>> members = new ConcurrentHashMap<>();
+
+    // 방 이름 → 내 sender key
+    private final Map<String, SenderKey> myKeys = new ConcurrentHashMap<>();
+
+    // 방 이름 → (멤버ID → 그 멤버의 sender key)
+    private final Map<String, Map<String, SenderKey>> peerKeys = new ConcurrentHashMap<>();
+
+    // 멤버ID → 세션이 생기면 내 sender key를 보내줘야 하는 방들
+    private final Map<String, Set<String>> pendingDistribution = new ConcurrentHashMap<>();
+
+    // 멤버ID → 세션이 없어서 아직 못 푼 SENDER_KEY 메시지들
+    private final Map<String, List<ChatMessage>> pendingInbound = new ConcurrentHashMap<>();
+
+    /**
+     * ROOM_MEMBERS 수신 시 멤버 목록 갱신.
+     *
+     * @return 내 sender key를 (다시) 보내야 하는 멤버 목록
+     *         - 처음 들어간 방 / 누가 나가서 키를 교체한 경우: 나를 뺀 전원
+     *         - 새 멤버만 들어온 경우: 새 멤버들
+     */
+    public synchronized List<String> updateMembers(String room, List<String> newMembers, String myId)
+            throws Exception {
+
+        // 내가 나간 방이면 상태 전부 정리
+        if (!newMembers.contains(myId)) {
+            forget(room);
+            return Collections.emptyList();
+        }
+
+        List<String> old = members.put(room, new ArrayList<>(newMembers));
+        SenderKey mine = myKeys.get(room);
+
+        boolean someoneLeft = old != null && !newMembers.containsAll(old);
+
+        List<String> targets = new ArrayList<>();
+
+        if (mine == null || someoneLeft) {
+            // 새 키 발급 (나간 사람은 이후 메시지를 못 읽게)
+            int version = (mine == null) ? 1 : mine.getVersion() + 1;
+            myKeys.put(room, SenderKey.generate(version));
+
+            if (someoneLeft) {
+                Map<String, SenderKey> keys = peerKeys.get(room);
+                if (keys != null) keys.keySet().retainAll(newMembers);
+            }
+
+            for (String m : newMembers) {
+                if (!m.equals(myId)) targets.add(m);
+            }
+        } else {
+            for (String m : newMembers) {
+                if (!m.equals(myId) && !old.contains(m)) targets.add(m);
+            }
+        }
+        return targets;
+    }
+
+    public void forget(String room) {
+        members.remove(room);
+        myKeys.remove(room);
+        peerKeys.remove(room);
+        for (Set<String> rooms : pendingDistribution.values()) rooms.remove(room);
+    }
+
+    public boolean isJoined(String room) {
+        return members.containsKey(room);
+    }
+
+    public SenderKey myKey(String room) {
+        return myKeys.get(room);
+    }
+
+    public SenderKey peerKey(String room, String memberId) {
+        Map<String, SenderKey> keys = peerKeys.get(room);
+        return (keys == null) ? null : keys.get(memberId);
+    }
+
+    public void putPeerKey(String room, String memberId, SenderKey key) {
+        peerKeys.computeIfAbsent(room, r -> new ConcurrentHashMap<>()).put(memberId, key);
+    }
+
+    // ---------- 세션 대기 ----------
+
+    public void deferDistribution(String memberId, String room) {
+        pendingDistribution.computeIfAbsent(memberId, m -> ConcurrentHashMap.newKeySet()).add(room);
+    }
+
+    public Set<String> takeDeferredDistribution(String memberId) {
+        Set<String> rooms = pendingDistribution.remove(memberId);
+        return (rooms == null) ? Collections.emptySet() : rooms;
+    }
+
+    public void deferInbound(String memberId, ChatMessage msg) {
+        pendingInbound.computeIfAbsent(memberId, m -> Collections.synchronizedList(new ArrayList<>())).add(msg);
+    }
+
+    public List<ChatMessage> takeDeferredInbound(String memberId) {
+        List<ChatMessage> list = pendingInbound.remove(memberId);
+        return (list == null) ? Collections.emptyList() : list;
+    }
+}
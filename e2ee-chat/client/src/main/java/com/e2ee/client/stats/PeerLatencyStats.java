@@ -0,0 +1,50 @@
+package com.e2ee.client.stats;
+
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.NanoClock;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ===========================
+ *  PeerLatencyStats (클라이언트 로컬)
+ *  - 상대별 송신 → 화면 출력 지연 (sendNanos 있는 메시지만)
+ *  - /stats 명령으로 출력
+ *  - 상대 시계와 내 시계 차이만큼 오차가 있음 (음수는 버림)
+ * ===========================
+ */
+public class PeerLatencyStats {
+
+    // 상대 ID (그룹방은 "#방이름") → 지연 히스토그램
+    private final Map<String, LatencyHistogram> byPeer = new ConcurrentHashMap<>();
+
+    // 화면에 출력한 직후 호출
+    public void recordDisplayed(String peer, ChatMessage msg) {
+        Long sent = msg.getSendNanos();
+        if (sent == null) return;
+
+        long micros = (NanoClock.now() - sent) / 1000;
+        if (micros < 0) return;
+
+        byPeer.computeIfAbsent(peer, p -> new LatencyHistogram()).record(micros);
+    }
+
+    public String report() {
+        if (byPeer.isEmpty()) return "[STATS] 측정된 메시지 없음 (상대가 지연 정보를 안 보냈거나 받은 메시지 없음)";
+
+        StringBuilder sb = new StringBuilder("[STATS] 송신 → 표시 지연");
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(byPeer).entrySet()) {
+            LatencyHistogram h = e.getValue();
+            sb.append(String.format("%n  %-16s n=%d p50=%s p99=%s max=%s",
+                    e.getKey(), h.count(),
+                    ms(h.percentile(50)), ms(h.percentile(99)), ms(h.max())));
+        }
+        return sb.toString();
+    }
+
+    private static String ms(long micros) {
+        return String.format("%.2fms", micros / 1000.0);
+    }
+}
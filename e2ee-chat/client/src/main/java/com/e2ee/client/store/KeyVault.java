@@ -1,12 +1,12 @@
 package com.e2ee.client.store;
 
+import com.e2ee.client.config.ClientConfig;
 import com.e2ee.crypto.PasswordKey;
 import com.e2ee.crypto.AesGcmUtil;
 import com.e2ee.crypto.EcdhUtil;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import java.security.KeyFactory;
 import java.security.KeyPair;
@@ -26,19 +26,28 @@ import java.util.Base64;
  */
 public class KeyVault {
 
-    // 홈디렉터리: ~/.e2ee-chat/keystore
-    private static final Path BASE_DIR =
-            Paths.get(System.getProperty("user.home"), ".e2ee-chat", "keystore");
+    // <home.dir>/keystore  (기본 ~/.e2ee-chat/keystore)
+    private static final Path BASE_DIR = ClientConfig.get().getHomeDir().resolve("keystore");
 
     // 파일명 규칙:
     //   <userId>_public.key
     //   <userId>_private.key
+    //   <userId>_private.kdf   (개인키 암호화에 쓴 PBKDF2 반복 횟수, 없으면 예전 기본값)
     private static Path pubFile(String userId) {
         return BASE_DIR.resolve(userId + "_public.key");
     }
     private static Path privFile(String userId) {
         return BASE_DIR.resolve(userId + "_private.key");
     }
+    private static Path kdfFile(String userId) {
+        return BASE_DIR.resolve(userId + "_private.kdf");
+    }
+
+    private static int iterationsOf(String userId) throws Exception {
+        Path f = kdfFile(userId);
+        if (!Files.exists(f)) return PasswordKey.DEFAULT_ITERATIONS;
+        return Integer.parseInt(Files.readString(f).trim());
+    }
 
     // ----------------------------------------------------
     // 0) 디렉토리 생성
@@ -68,9 +77,11 @@ public class KeyVault {
 
         // ====== 개인키 저장 (AES-GCM + PBKDF2 암호화) ======
         byte[] privBytes = priv.getEncoded(); // PKCS8
-        byte[] encryptedPriv = AesGcmUtil.encryptBytes(privBytes, password);
+        int iterations = ClientConfig.get().getPbkdf2Iterations();
+        byte[] encryptedPriv = AesGcmUtil.encryptBytes(privBytes, password, iterations);
 
         Files.write(privFile(userId), encryptedPriv);
+        Files.writeString(kdfFile(userId), Integer.toString(iterations));
 
         System.out.println("[KeyVault] 개인키/공개키 저장 완료 (" + BASE_DIR + ")");
     }
@@ -89,7 +100,7 @@ public class KeyVault {
 
         // (2) 개인키 로드 (AES-GCM 복호화)
         byte[] encPrivBytes = Files.readAllBytes(privFile(userId));
-        byte[] privBytes = AesGcmUtil.decryptBytes(encPrivBytes, password);
+        byte[] privBytes = AesGcmUtil.decryptBytes(encPrivBytes, password, iterationsOf(userId));
 
         PrivateKey priv = kf.generatePrivate(new PKCS8EncodedKeySpec(privBytes));
 
@@ -0,0 +1,198 @@
+package com.e2ee.client.store;
+
+import com.e2ee.client.config.ClientConfig;
+import com.e2ee.crypto.CipherSuite;
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.crypto.PasswordKey;
+import com.e2ee.protocol.JsonUtil;
+import com.e2ee.session.E2eeSession;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * =====================================
+ *   PrekeyVault
+ *   - 일회용 prekey 개인키 + prekey 로 만든 세션 키 로컬 보관소
+ *   - 파일: <home.dir>/keystore/<userId>_prekeys.vault
+ *     (JSON 을 비밀번호 PBKDF2 키 + AES-GCM 으로 암호화, 첫 줄 = 반복 횟수)
+ *   - PBKDF2 는 열 때 1번만 (prekey 를 쓸 때마다 다시 돌리지 않음)
+ *   - prekey 개인키는 세션을 만들면 바로 지움 (일회용)
+ *   - prekey 세션은 임시키로 만들어서 다시 못 만드므로 키를 저장 → 재시작해도 이어서 씀
+ * =====================================
+ */
+public class PrekeyVault {
+
+    // 로컬에 남겨둘 최대 prekey 수 (서버가 내줬는데 메시지가 안 온 것들이 쌓이지 않게)
+    private static final int MAX_LOCAL_PREKEYS = 500;
+
+    private static final Path BASE_DIR = ClientConfig.get().getHomeDir().resolve("keystore");
+
+    // 파일에 들어가는 내용 (Gson)
+    private static class Data {
+        int nextId = 1;
+        Map<String, String> prekeys = new LinkedHashMap<>();          // id → 공개키:개인키 (Base64)
+        Map<String, SessionRecord> sessions = new LinkedHashMap<>();  // 상대ID → prekey 세션
+    }
+
+    private static class SessionRecord {
+        String peerKey;
+        String key;
+        String handshake;
+        boolean initiator;
+        boolean confirmed;
+    }
+
+    private final Path file;
+    private final SecretKey vaultKey;
+    private final int iterations;
+    private final Data data;
+
+    private PrekeyVault(Path file, SecretKey vaultKey, int iterations, Data data) {
+        this.file = file;
+        this.vaultKey = vaultKey;
+        this.iterations = iterations;
+        this.data = data;
+    }
+
+    // ----------------------------------------------------
+    // 1) 열기 (없으면 빈 보관소)
+    // ----------------------------------------------------
+    public static PrekeyVault open(String userId, String password) throws Exception {
+        Path file = BASE_DIR.resolve(userId + "_prekeys.vault");
+
+        if (!Files.exists(file)) {
+            int iterations = ClientConfig.get().getPbkdf2Iterations();
+            return new PrekeyVault(file, PasswordKey.deriveKey(password, iterations), iterations, new Data());
+        }
+
+        String[] lines = Files.readString(file, StandardCharsets.UTF_8).split("\n", 2);
+        int iterations = Integer.parseInt(lines[0].trim());
+        SecretKey key = PasswordKey.deriveKey(password, iterations);
+
+        String json = CipherSuite.AES_GCM.decrypt(EncryptedPayload.fromWireString(lines[1].trim()), key);
+        Data data = JsonUtil.fromJson(json, Data.class);
+
+        System.out.println("[PrekeyVault] 로드: prekey " + data.prekeys.size() + "개, 세션 " + data.sessions.size() + "개");
+        return new PrekeyVault(file, key, iterations, data);
+    }
+
+    // ----------------------------------------------------
+    // 2) prekey 생성 → 올릴 공개키 (id → X.509 Base64)
+    // ----------------------------------------------------
+    public Map<String, String> generate(int count) throws Exception {
+
+        // 키 생성은 락 밖에서 (수신 스레드가 take() 로 기다리지 않게)
+        KeyPair[] pairs = new KeyPair[count];
+        for (int i = 0; i < count; i++) pairs[i] = EcdhUtil.generateKeyPair();
+
+        Map<String, String> published = new LinkedHashMap<>();
+        synchronized (this) {
+            for (KeyPair kp : pairs) {
+                String id = Integer.toString(data.nextId++);
+                String pub = EcdhUtil.encodePublicKey(kp.getPublic());
+                data.prekeys.put(id, pub + ":" + Base64.getEncoder().encodeToString(kp.getPrivate().getEncoded()));
+                published.put(id, pub);
+            }
+
+            // 오래된 것부터 버림
+            var it = data.prekeys.keySet().iterator();
+            while (data.prekeys.size() > MAX_LOCAL_PREKEYS && it.hasNext()) {
+                it.next();
+                it.remove();
+            }
+            save();
+        }
+        return published;
+    }
+
+    // ----------------------------------------------------
+    // 3) prekey 꺼내기 (꺼내면 지움, 없으면 null)
+    // ----------------------------------------------------
+    public synchronized KeyPair take(int id) {
+        String stored = data.prekeys.remove(Integer.toString(id));
+        if (stored == null) return null;
+
+        try {
+            String[] parts = stored.split(":", 2);
+            KeyFactory kf = KeyFactory.getInstance("X25519");
+            PublicKey pub = EcdhUtil.decodePublicKey(parts[0]);
+            PrivateKey priv = kf.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(parts[1])));
+
+            save();
+            return new KeyPair(pub, priv);
+
+        } catch (Exception e) {
+            System.out.println("[PrekeyVault] prekey #" + id + " 복원 실패: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // 한 번도 올린 적 없음 (처음 실행 → 시작하자마자 1묶음 올림)
+    public synchronized boolean neverPublished() {
+        return data.nextId == 1;
+    }
+
+    // ----------------------------------------------------
+    // 4) prekey 세션 저장 / 불러오기
+    // ----------------------------------------------------
+    public synchronized void saveSession(String peerId, E2eeSession session) {
+        if (session.getHandshake() == null) return;
+
+        SessionRecord r = new SessionRecord();
+        r.peerKey = EcdhUtil.encodePublicKey(session.getTheirPublicKey());
+        r.key = Base64.getEncoder().encodeToString(session.exportKey());
+        r.handshake = session.getHandshake();
+        r.initiator = session.isInitiator();
+        r.confirmed = session.isConfirmed();
+        data.sessions.put(peerId, r);
+        save();
+    }
+
+    // prekey 세션 대신 신원키 세션으로 바뀐 상대는 지움
+    public synchronized void forgetSession(String peerId) {
+        if (data.sessions.remove(peerId) != null) save();
+    }
+
+    public synchronized Map<String, E2eeSession> loadSessions(KeyPair myKeyPair) {
+        Map<String, E2eeSession> sessions = new LinkedHashMap<>();
+        for (Map.Entry<String, SessionRecord> e : data.sessions.entrySet()) {
+            SessionRecord r = e.getValue();
+            try {
+                sessions.put(e.getKey(), E2eeSession.restore(myKeyPair,
+                        EcdhUtil.decodePublicKey(r.peerKey), Base64.getDecoder().decode(r.key),
+                        r.handshake, r.initiator, r.confirmed));
+            } catch (Exception ex) {
+                System.out.println("[PrekeyVault] 세션 복원 실패: " + e.getKey());
+            }
+        }
+        return sessions;
+    }
+
+    // 메모리 → 파일 (tmp 에 쓰고 바꿔치기, synchronized 안에서만 호출)
+    private void save() {
+        try {
+            Files.createDirectories(BASE_DIR);
+
+            String wire = CipherSuite.AES_GCM.encrypt(JsonUtil.toJson(data), vaultKey).toWireString();
+            Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+            Files.writeString(tmp, iterations + "\n" + wire, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (Exception e) {
+            System.out.println("[PrekeyVault] 저장 실패: " + e.getMessage());
+        }
+    }
+}
@@ -5,9 +5,6 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import java.security.SecureRandom;
-import java.util.Base64;
-
-import java.nio.charset.StandardCharsets;
 
 public class AesGcmUtil {
 
@@ -32,47 +29,12 @@ public class AesGcmUtil {
 
     // 2) 평문을 AES-GCM으로 암호화
     public static EncryptedPayload encrypt(String plaintext, SecretKey key) throws Exception {
-        // 1. Nonce(IV) 12바이트 랜덤으로 만들기
-        byte[] nonce = new byte[NONCE_LENGTH];
-        new SecureRandom().nextBytes(nonce);
-
-        // 2. Cipher(AES/GCM/NoPadding) 준비하기
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-
-        // GCM 모드에 Nonce와 태그 길이 설정
-        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
-
-        // 암호화 모드로 초기화 (ENCRYPT_MODE)
-        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
-
-        byte[] plainBytes = plaintext.getBytes(StandardCharsets.UTF_8);
-        byte[] encrypted = cipher.doFinal(plainBytes);
-
-        return new EncryptedPayload(
-                ALGORITHM,
-                Base64.getEncoder().encodeToString(nonce),
-                Base64.getEncoder().encodeToString(encrypted)
-        );
+        return CipherSuite.AES_GCM.encrypt(plaintext, key);
     }
 
-    // 3) 복호화
+    // 3) 복호화 - payload 의 algorithm 을 보고 스위트를 고름 (ChaCha20-Poly1305 로 온 것도 풀림)
     public static String decrypt(EncryptedPayload payload, SecretKey key) throws Exception {
-
-        // 1. payload 안에 들어있는 Base64 문자열을 다시 byte[]로 바꾸기
-        byte[] nonce = Base64.getDecoder().decode(payload.getNonceBase64());
-        byte[] cipherBytes = Base64.getDecoder().decode(payload.getCipherBase64());
-
-        // 2. Cipher(AES/GCM/NoPadding) 준비
-        Cipher cipher = Cipher.getInstance(ALGORITHM);
-
-        // GCMParameterSpec에 똑같은 태그 길이 + nonce 사용
-        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
-
-        // 복호화 모드로 초기화 (DECRYPT_MODE)
-        cipher.init(Cipher.DECRYPT_MODE, key, spec);
-
-        byte[] decrypted = cipher.doFinal(cipherBytes);
-        return new String(decrypted);
+        return CipherSuite.forAlgorithm(payload.getAlgorithm()).decrypt(payload, key);
     }
     // 간단 테스트용 main 메서드
     public static void main(String[] args) throws Exception {
@@ -95,9 +57,13 @@ public class AesGcmUtil {
 
     // ====== 4) byte[] 를 AES-GCM으로 암호화 (KeyVault용) ======
     public static byte[] encryptBytes(byte[] rawBytes, String password) throws Exception {
+        return encryptBytes(rawBytes, password, PasswordKey.DEFAULT_ITERATIONS);
+    }
+
+    public static byte[] encryptBytes(byte[] rawBytes, String password, int iterations) throws Exception {
 
         // password → AES key로 파생 (간단 버전 PBKDF2)
-        SecretKey key = PasswordKey.deriveKey(password);
+        SecretKey key = PasswordKey.deriveKey(password, iterations);
 
         byte[] nonce = new byte[NONCE_LENGTH];
         new SecureRandom().nextBytes(nonce);
@@ -118,8 +84,12 @@ public class AesGcmUtil {
 
     // ====== 5) byte[] AES-GCM 복호화 ======
     public static byte[] decryptBytes(byte[] encrypted, String password) throws Exception {
+        return decryptBytes(encrypted, password, PasswordKey.DEFAULT_ITERATIONS);
+    }
 
-        SecretKey key = PasswordKey.deriveKey(password);
+    public static byte[] decryptBytes(byte[] encrypted, String password, int iterations) throws Exception {
+
+        SecretKey key = PasswordKey.deriveKey(password, iterations);
 
         byte[] nonce = new byte[NONCE_LENGTH];
         byte[] cipherBytes = new byte[encrypted.length - NONCE_LENGTH];
@@ -134,5 +104,17 @@ public class AesGcmUtil {
         return cipher.doFinal(cipherBytes);
     }
 
+    // ====== 6) 파일 청크 암호화 (nonce = 파일별 8바이트 prefix + 4바이트 청크 번호) ======
+    public static byte[] encryptChunk(byte[] data, int off, int len,
+                                      SecretKey key, byte[] noncePrefix, int index,
+                                      byte[] aad) throws Exception {
+        return CipherSuite.AES_GCM.encryptChunk(data, off, len, key, noncePrefix, index, aad);
+    }
 
+    // ====== 7) 파일 청크 복호화 ======
+    public static byte[] decryptChunk(byte[] cipherBytes,
+                                      SecretKey key, byte[] noncePrefix, int index,
+                                      byte[] aad) throws Exception {
+        return CipherSuite.AES_GCM.decryptChunk(cipherBytes, key, noncePrefix, index, aad);
+    }
 }
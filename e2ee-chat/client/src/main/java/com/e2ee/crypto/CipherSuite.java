@@ -0,0 +1,279 @@
+package com.e2ee.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * 세션 메시지 / 그룹 메시지 / 파일 청크에 쓰는 AEAD 암호 스위트.
+ *
+ * - algorithm 이름 = JDK Cipher 이름 = EncryptedPayload.algorithm
+ *   → 받는 쪽은 payload 의 algorithm 을 보고 스위트를 고른다 (보내는 쪽끼리 맞출 필요 없음)
+ * - 기본 2개: AES-256-GCM, ChaCha20-Poly1305 (둘 다 키 32바이트 / nonce 12바이트 / 태그 16바이트)
+ *   → HKDF 로 뽑은 세션 키를 그대로 쓴다
+ * - 보낼 때 쓸 스위트는 기본 AES-GCM. select("auto") 면 짧은 벤치마크로 더 빠른 쪽 (AES 가속이 없는 CPU 면 보통 ChaCha20)
+ *   → AES-GCM 이 아닌 스위트는 예전 클라이언트가 풀지 못하므로, 상대가 모두 이 버전 이상일 때만 고를 것
+ * - 새 스위트는 register() 로 추가
+ * - 여기서는 콘솔에 찍지 않는다. 고른 결과는 report() 로 (ClientMain 이 출력)
+ */
+public final class CipherSuite {
+
+    public static final int NONCE_LENGTH = 12;
+    private static final int TAG_BITS = 128;
+
+    public static final CipherSuite AES_GCM =
+            new CipherSuite("AES/GCM/NoPadding", nonce -> new GCMParameterSpec(TAG_BITS, nonce));
+
+    public static final CipherSuite CHACHA20_POLY1305 =
+            new CipherSuite("ChaCha20-Poly1305", IvParameterSpec::new);
+
+    // 벤치마크: 보통 채팅 메시지 크기로, 스위트마다 예열 후 잠깐 돌려서 처리 횟수 비교
+    private static final int BENCH_BYTES = 1024;
+    private static final long BENCH_WARMUP_NANOS = 50_000_000L;
+    private static final long BENCH_MEASURE_NANOS = 50_000_000L;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // algorithm → 스위트 (등록 순서 = 벤치마크 순서)
+    private static final Map<String, CipherSuite> REGISTRY = new ConcurrentHashMap<>();
+    private static final List<CipherSuite> ORDER = new ArrayList<>();
+
+    // select() 전에는 예전 클라이언트도 풀 수 있는 AES-GCM
+    private static volatile CipherSuite preferred = AES_GCM;
+    private static volatile String selection = "AES/GCM/NoPadding (기본값)";
+
+    static {
+        register(AES_GCM);
+        register(CHACHA20_POLY1305);
+    }
+
+    private final String algorithm;
+    private final Function<byte[], AlgorithmParameterSpec> params;
+
+    public CipherSuite(String algorithm, Function<byte[], AlgorithmParameterSpec> params) {
+        this.algorithm = algorithm;
+        this.params = params;
+    }
+
+    // ============================================================
+    //  레지스트리
+    // ============================================================
+
+    /**
+     * @return 이 JDK 에 해당 Cipher 가 없어서 등록하지 않았으면 false (available() 에 안 나옴)
+     */
+    public static synchronized boolean register(CipherSuite suite) {
+        try {
+            Cipher.getInstance(suite.algorithm);
+        } catch (Exception e) {
+            return false;
+        }
+
+        if (REGISTRY.putIfAbsent(suite.algorithm, suite) == null) {
+            ORDER.add(suite);
+        }
+        return true;
+    }
+
+    /**
+     * payload 의 algorithm → 스위트. algorithm 이 없으면 예전 형식이라 AES-GCM.
+     */
+    public static CipherSuite forAlgorithm(String algorithm) {
+        if (algorithm == null || algorithm.isEmpty()) return AES_GCM;
+
+        CipherSuite suite = REGISTRY.get(algorithm);
+        if (suite == null) {
+            throw new IllegalArgumentException("지원하지 않는 암호 알고리즘: " + algorithm);
+        }
+        return suite;
+    }
+
+    public static synchronized List<CipherSuite> available() {
+        return List.copyOf(ORDER);
+    }
+
+    /**
+     * 새로 만드는 세션 / sender key 가 쓸 스위트. select() 를 안 했으면 AES-GCM (벤치마크를 돌리지 않음).
+     */
+    public static CipherSuite preferred() {
+        return preferred;
+    }
+
+    /**
+     * 시작할 때 1번 (세션을 만들기 전에).
+     *
+     * @param name "auto" (벤치마크) 또는 알고리즘 이름 (예: ChaCha20-Poly1305)
+     */
+    public static synchronized CipherSuite select(String name) {
+        CipherSuite chosen;
+        if (name == null || name.equalsIgnoreCase("auto")) {
+            chosen = benchmark();
+        } else {
+            chosen = forAlgorithm(name);
+            selection = chosen.algorithm + " (설정)";
+        }
+
+        preferred = chosen;
+        return chosen;
+    }
+
+    /**
+     * 고른 스위트와 이유 (벤치마크면 스위트별 처리 횟수)
+     */
+    public static String report() {
+        return "[CRYPTO] 암호 스위트: " + selection;
+    }
+
+    // 등록된 스위트마다 1KB 암호화를 잠깐 돌려보고 가장 많이 처리한 것 (시작 때 1번, 0.1초 남짓)
+    private static CipherSuite benchmark() {
+        List<CipherSuite> suites = available();
+        if (suites.size() == 1) {
+            selection = suites.get(0).algorithm + " (이 JDK 에서 쓸 수 있는 유일한 스위트)";
+            return suites.get(0);
+        }
+
+        byte[] data = new byte[BENCH_BYTES];
+        byte[] rawKey = new byte[32];
+        RANDOM.nextBytes(rawKey);
+        SecretKey key = new SecretKeySpec(rawKey, "AES");
+
+        CipherSuite best = AES_GCM;
+        long bestOps = -1;
+        StringBuilder report = new StringBuilder();
+
+        // 전부 먼저 예열 (JIT 전에 잰 쪽이 불리하지 않게), 그다음 하나씩 측정
+        List<CipherSuite> usable = new ArrayList<>();
+        for (CipherSuite suite : suites) {
+            try {
+                run(suite, key, data, BENCH_WARMUP_NANOS);
+                usable.add(suite);
+            } catch (Exception e) {
+                // 이 스위트는 건너뜀 (report 에 안 나옴)
+            }
+        }
+
+        for (CipherSuite suite : usable) {
+            long ops;
+            try {
+                ops = run(suite, key, data, BENCH_MEASURE_NANOS);
+            } catch (Exception e) {
+                continue;
+            }
+
+            if (report.length() > 0) report.append(", ");
+            report.append(suite.algorithm).append(' ').append(ops);
+
+            if (ops > bestOps) {
+                bestOps = ops;
+                best = suite;
+            }
+        }
+
+        selection = best.algorithm + " (auto: " + report + " 회/" + (BENCH_MEASURE_NANOS / 1_000_000) + "ms)";
+        return best;
+    }
+
+    private static long run(CipherSuite suite, SecretKey key, byte[] data, long nanos) throws Exception {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        long ops = 0;
+        long end = System.nanoTime() + nanos;
+
+        while (System.nanoTime() < end) {
+            // 같은 키에 같은 nonce 로 다시 init 하면 JDK 가 막으므로 매번 다르게
+            nonce[0] = (byte) ops;
+            nonce[1] = (byte) (ops >>> 8);
+            nonce[2] = (byte) (ops >>> 16);
+            nonce[3] = (byte) (ops >>> 24);
+            suite.init(Cipher.ENCRYPT_MODE, key, nonce).doFinal(data);
+            ops++;
+        }
+        return ops;
+    }
+
+    // ============================================================
+    //  암호화 / 복호화
+    // ============================================================
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public Cipher init(int mode, SecretKey key, byte[] nonce) throws Exception {
+        Cipher cipher = Cipher.getInstance(algorithm);
+        cipher.init(mode, key, params.apply(nonce));
+        return cipher;
+    }
+
+    // 문자열 → EncryptedPayload (nonce 는 매번 랜덤 12바이트)
+    public EncryptedPayload encrypt(String plaintext, SecretKey key) throws Exception {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        RANDOM.nextBytes(nonce);
+
+        byte[] encrypted = init(Cipher.ENCRYPT_MODE, key, nonce)
+                .doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+
+        return new EncryptedPayload(
+                algorithm,
+                Base64.getEncoder().encodeToString(nonce),
+                Base64.getEncoder().encodeToString(encrypted)
+        );
+    }
+
+    public String decrypt(EncryptedPayload payload, SecretKey key) throws Exception {
+        byte[] nonce = Base64.getDecoder().decode(payload.getNonceBase64());
+        byte[] cipherBytes = Base64.getDecoder().decode(payload.getCipherBase64());
+
+        byte[] decrypted = init(Cipher.DECRYPT_MODE, key, nonce).doFinal(cipherBytes);
+        return new String(decrypted, StandardCharsets.UTF_8);
+    }
+
+    // 파일 청크 암호화 (nonce = 파일별 8바이트 prefix + 4바이트 청크 번호, aad = 파일ID)
+    public byte[] encryptChunk(byte[] data, int off, int len,
+                               SecretKey key, byte[] noncePrefix, int index,
+                               byte[] aad) throws Exception {
+
+        Cipher cipher = init(Cipher.ENCRYPT_MODE, key, chunkNonce(noncePrefix, index));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(data, off, len);
+    }
+
+    public byte[] decryptChunk(byte[] cipherBytes,
+                               SecretKey key, byte[] noncePrefix, int index,
+                               byte[] aad) throws Exception {
+
+        Cipher cipher = init(Cipher.DECRYPT_MODE, key, chunkNonce(noncePrefix, index));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(cipherBytes);
+    }
+
+    // 청크 nonce 만들기: prefix(8) + index(4, big-endian)
+    private static byte[] chunkNonce(byte[] noncePrefix, int index) {
+        if (noncePrefix.length != NONCE_LENGTH - 4) {
+            throw new IllegalArgumentException("nonce prefix는 8바이트여야 합니다.");
+        }
+
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(noncePrefix, 0, nonce, 0, noncePrefix.length);
+        nonce[8] = (byte) (index >>> 24);
+        nonce[9] = (byte) (index >>> 16);
+        nonce[10] = (byte) (index >>> 8);
+        nonce[11] = (byte) index;
+        return nonce;
+    }
+
+    @Override
+    public String toString() {
+        return algorithm;
+    }
+}
@@ -15,8 +15,13 @@ import java.util.Base64;
 
 public class EcdhUtil {
 
-    // 1) X25519 키쌍 생성
+    // 1) X25519 키쌍 (미리 만들어 둔 풀에서 꺼냄, 비어 있으면 바로 생성)
     public static KeyPair generateKeyPair() throws Exception {
+        return KeyPairPool.take();
+    }
+
+    // 풀을 거치지 않고 새로 생성 (KeyPairPool 이 씀)
+    static KeyPair newKeyPair() throws Exception {
 
         // 1. X25519 키쌍을 생성할 수 있는 KeyPairGenerator 공장 불러오기
         KeyPairGenerator generator = KeyPairGenerator.getInstance("X25519");
@@ -64,6 +69,23 @@ public class EcdhUtil {
         return new SecretKeySpec(okm, "AES");
     }
 
+    // 3-1) 여러 DH 결과를 이어 붙여 세션 키 1개로 (prekey 세션용, info 가 달라서 위 키와 섞이지 않음)
+    public static SecretKey deriveAesKeyFromSharedSecrets(String info, byte[]... sharedSecrets) throws Exception {
+        int length = 0;
+        for (byte[] s : sharedSecrets) length += s.length;
+
+        byte[] ikm = new byte[length];
+        int offset = 0;
+        for (byte[] s : sharedSecrets) {
+            System.arraycopy(s, 0, ikm, offset, s.length);
+            offset += s.length;
+        }
+
+        byte[] prk = hkdfExtract(null, ikm);
+        byte[] okm = hkdfExpand(prk, info.getBytes(StandardCharsets.UTF_8), 32);
+        return new SecretKeySpec(okm, "AES");
+    }
+
     // HKDF-Extract 단계: salt와 sharedSecret으로 PRK 만들기
     private static byte[] hkdfExtract(byte[] salt, byte[] ikm) throws Exception {
         //1. salt가 없으면 32바이트 0으로 대체
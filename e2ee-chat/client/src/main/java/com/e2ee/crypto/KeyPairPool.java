@@ -0,0 +1,134 @@
+package com.e2ee.crypto;
+
+import java.security.KeyPair;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 미리 만들어 둔 X25519 키쌍 풀.
+ *
+ * - EcdhUtil.generateKeyPair() 가 여기서 꺼내 간다 (신원키 / prekey 묶음 / X3DH 임시키)
+ *   → 세션을 만들 때 키 생성을 기다리지 않음
+ * - 백그라운드 스레드 1개가 capacity 까지 채우고, lowWatermark 아래로 내려가면 다시 깨어나 채움
+ * - 비어 있으면 그 자리에서 바로 생성 (miss, 기다리지 않음)
+ * - 풀은 메모리에만 있고 한 번 꺼낸 키쌍은 다시 주지 않음
+ */
+public final class KeyPairPool {
+
+    public static final int DEFAULT_CAPACITY = 64;
+    public static final int DEFAULT_LOW_WATERMARK = 16;
+
+    private static KeyPairPool shared;
+
+    private final int capacity;
+    private final int lowWatermark;
+    private final BlockingQueue<KeyPair> pool;
+    private final Thread refiller;
+
+    // 통계 (/stats)
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder generated = new LongAdder();
+    private final LongAdder generateNanos = new LongAdder();
+
+    private KeyPairPool(int capacity, int lowWatermark) {
+        this.capacity = capacity;
+        this.lowWatermark = lowWatermark;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+
+        refiller = new Thread(this::refillLoop, "keypair-pool");
+        refiller.setDaemon(true);
+        refiller.start();
+    }
+
+    // ============================================================
+    //  풀 설정 / 꺼내기
+    // ============================================================
+
+    /**
+     * 풀 크기 설정 (시작할 때 1번). 이미 돌고 있던 풀은 멈추고 새로 만든다.
+     */
+    public static synchronized void configure(int capacity, int lowWatermark) {
+        if (lowWatermark < 1 || lowWatermark > capacity) {
+            throw new IllegalArgumentException("키쌍 풀: 1 <= lowWatermark <= capacity");
+        }
+        if (shared != null) shared.refiller.interrupt();
+        shared = new KeyPairPool(capacity, lowWatermark);
+    }
+
+    // configure() 를 안 불렀으면 처음 쓸 때 기본 크기로
+    private static synchronized KeyPairPool shared() {
+        if (shared == null) shared = new KeyPairPool(DEFAULT_CAPACITY, DEFAULT_LOW_WATERMARK);
+        return shared;
+    }
+
+    /**
+     * 미리 만든 키쌍 1개. 비어 있으면 바로 생성.
+     */
+    public static KeyPair take() throws Exception {
+        return shared().takeOne();
+    }
+
+    public static String report() {
+        return shared().describe();
+    }
+
+    private KeyPair takeOne() throws Exception {
+        KeyPair kp = pool.poll();
+
+        if (kp != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            kp = EcdhUtil.newKeyPair();
+        }
+
+        if (pool.size() < lowWatermark) {
+            synchronized (this) {
+                notifyAll();
+            }
+        }
+        return kp;
+    }
+
+    // ============================================================
+    //  백그라운드 보충
+    // ============================================================
+
+    private void refillLoop() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+
+                // capacity 까지 채움
+                while (pool.size() < capacity && !Thread.currentThread().isInterrupted()) {
+                    long t0 = System.nanoTime();
+                    KeyPair kp = EcdhUtil.newKeyPair();
+                    generateNanos.add(System.nanoTime() - t0);
+                    generated.increment();
+
+                    if (!pool.offer(kp)) break;
+                }
+
+                // lowWatermark 아래로 내려갈 때까지 대기
+                synchronized (this) {
+                    while (pool.size() >= lowWatermark) wait();
+                }
+            }
+        } catch (InterruptedException e) {
+            // configure() 로 교체됨
+        } catch (Exception e) {
+            System.out.println("[CRYPTO] 키쌍 풀 보충 중단: " + e.getMessage());
+        }
+    }
+
+    private String describe() {
+        long h = hits.sum();
+        long m = misses.sum();
+        long g = generated.sum();
+
+        return String.format("[STATS] 키쌍 풀: 적중 %d / 미스 %d (적중률 %.0f%%) | 남은 %d/%d | 미리 생성 %d (평균 %.2f ms)",
+                h, m, (h + m == 0) ? 100.0 : 100.0 * h / (h + m),
+                pool.size(), capacity, g, (g == 0) ? 0.0 : generateNanos.sum() / 1e6 / g);
+    }
+}
@@ -8,13 +8,20 @@ import java.nio.charset.StandardCharsets;
 
 public class PasswordKey {
 
+    // 반복 횟수를 따로 저장하지 않은 예전 키 파일의 값
+    public static final int DEFAULT_ITERATIONS = 65536;
+
     public static SecretKey deriveKey(String password) throws Exception {
+        return deriveKey(password, DEFAULT_ITERATIONS);
+    }
+
+    public static SecretKey deriveKey(String password, int iterations) throws Exception {
         byte[] salt = "fixed-salt-for-demo".getBytes(StandardCharsets.UTF_8);
 
         PBEKeySpec spec = new PBEKeySpec(
                 password.toCharArray(),
                 salt,
-                65536,
+                iterations,
                 256 // 256-bit AES key
         );
 
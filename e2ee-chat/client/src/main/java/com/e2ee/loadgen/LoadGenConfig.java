@@ -0,0 +1,65 @@
+package com.e2ee.loadgen;
+
+/**
+ * 부하 생성기 설정. "--키 값" 형식 인자로 덮어쓴다.
+ *
+ *   --host localhost --port 9000
+ *   --users 1000           가상 사용자 수
+ *   --ramp-seconds 10      전원 접속까지 걸리는 시간
+ *   --duration 60          메시지 전송 시간(초)
+ *   --rate 1.0             사용자 1명당 초당 메시지 수 (포아송 도착)
+ *   --all-ratio 0.05       "ALL" 전체방 비율 (나머지는 1:1 암호화)
+ *   --peers 3              사용자마다 1:1로 보내는 상대 수
+ *   --min-size 32 --max-size 512   평문 크기(바이트)
+ *   --report-seconds 5     중간 보고 주기
+ */
+public class LoadGenConfig {
+
+    String host = "localhost";
+    int port = 9000;
+    int users = 100;
+    int rampSeconds = 5;
+    int durationSeconds = 30;
+    double rate = 1.0;
+    double allRatio = 0.05;
+    int peers = 3;
+    int minSize = 32;
+    int maxSize = 512;
+    int reportSeconds = 5;
+
+    public static LoadGenConfig parse(String[] args) {
+        LoadGenConfig c = new LoadGenConfig();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String key = args[i];
+            String value = args[i + 1];
+
+            switch (key) {
+                case "--host" -> c.host = value;
+                case "--port" -> c.port = Integer.parseInt(value);
+                case "--users" -> c.users = Integer.parseInt(value);
+                case "--ramp-seconds" -> c.rampSeconds = Integer.parseInt(value);
+                case "--duration" -> c.durationSeconds = Integer.parseInt(value);
+                case "--rate" -> c.rate = Double.parseDouble(value);
+                case "--all-ratio" -> c.allRatio = Double.parseDouble(value);
+                case "--peers" -> c.peers = Integer.parseInt(value);
+                case "--min-size" -> c.minSize = Integer.parseInt(value);
+                case "--max-size" -> c.maxSize = Integer.parseInt(value);
+                case "--report-seconds" -> c.reportSeconds = Integer.parseInt(value);
+                default -> throw new IllegalArgumentException("알 수 없는 옵션: " + key);
+            }
+        }
+
+        if (c.users < 2) throw new IllegalArgumentException("--users 는 2 이상");
+        if (c.maxSize < c.minSize) throw new IllegalArgumentException("--max-size >= --min-size");
+        c.peers = Math.min(c.peers, c.users - 1);
+        return c;
+    }
+
+    @Override
+    public String toString() {
+        return "users=" + users + ", rate=" + rate + "/s/user, all-ratio=" + allRatio
+                + ", peers=" + peers + ", size=" + minSize + ".." + maxSize
+                + ", duration=" + durationSeconds + "s → " + host + ":" + port;
+    }
+}
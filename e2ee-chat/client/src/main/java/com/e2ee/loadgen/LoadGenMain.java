@@ -0,0 +1,59 @@
+package com.e2ee.loadgen;
+
+import com.e2ee.crypto.KeyPairPool;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ===========================
+ *  헤드리스 부하 생성기
+ *  - 가상 스레드 위에서 사용자 수천 명을 흉내냄
+ *  - ClientMain과 같은 프로토콜/암호 코드 (ChatMessage, E2eeSession, EcdhUtil) 사용
+ *  - 로컬 서버에 붙여서 처리량과 지연 백분위를 보고
+ *
+ *  실행: ./gradlew loadgen --args="--users 1000 --rate 2 --duration 60"
+ * ===========================
+ */
+public class LoadGenMain {
+
+    public static void main(String[] args) throws Exception {
+
+        LoadGenConfig cfg = LoadGenConfig.parse(args);
+        LoadStats stats = new LoadStats();
+
+        // 실행마다 다른 ID (서버 users.json 에 남으므로 충돌 방지)
+        String runId = Integer.toString(ThreadLocalRandom.current().nextInt(1 << 20), 36);
+
+        System.out.println("[LOADGEN] 시작 (run=" + runId + ") " + cfg);
+
+        long startNanos = System.nanoTime();
+        long deadlineNanos = startNanos
+                + TimeUnit.SECONDS.toNanos(cfg.rampSeconds + cfg.durationSeconds);
+
+        CountDownLatch allLoggedIn = new CountDownLatch(cfg.users);
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        reporter.scheduleAtFixedRate(() -> System.out.println(stats.interval()),
+                cfg.reportSeconds, cfg.reportSeconds, TimeUnit.SECONDS);
+
+        long rampGapNanos = TimeUnit.SECONDS.toNanos(cfg.rampSeconds) / cfg.users;
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < cfg.users; i++) {
+                users.submit(new SimUser(i, runId, cfg, stats, allLoggedIn, deadlineNanos));
+                if (rampGapNanos > 0) TimeUnit.NANOSECONDS.sleep(rampGapNanos);
+            }
+        } // close() = 전원 종료까지 대기
+
+        reporter.shutdownNow();
+
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        System.out.println(stats.finalReport(elapsed));
+        System.out.println(KeyPairPool.report());
+    }
+}
@@ -0,0 +1,93 @@
+package com.e2ee.loadgen;
+
+import com.e2ee.client.stats.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 부하 테스트 집계. 모든 가상 사용자가 같이 쓴다.
+ */
+public class LoadStats {
+
+    final LongAdder loggedIn = new LongAdder();
+    final LongAdder authFailed = new LongAdder();
+    final LongAdder sentDirect = new LongAdder();
+    final LongAdder sentAll = new LongAdder();
+    final LongAdder receivedDirect = new LongAdder();
+    final LongAdder receivedAll = new LongAdder();
+    final LongAdder decryptErrors = new LongAdder();
+    final LongAdder systemMessages = new LongAdder();
+    final LongAdder errors = new LongAdder();
+
+    // 1:1 암호화 메시지 송신 → 상대 복호화까지
+    final LatencyHistogram directLatency = new LatencyHistogram();
+
+    // ALL 메시지 송신 → 각 수신자 도착까지
+    final LatencyHistogram broadcastLatency = new LatencyHistogram();
+
+    // KEY_BATCH_REQ 송신 → 세션 전부 준비까지
+    final LatencyHistogram keyExchangeLatency = new LatencyHistogram();
+
+    // 중간 보고용 직전 값
+    private long lastSent;
+    private long lastReceived;
+    private long lastNanos = System.nanoTime();
+
+    // 주기 보고 (직전 보고 이후 처리량 + 누적 지연 분포)
+    synchronized String interval() {
+        long now = System.nanoTime();
+        long sent = sentDirect.sum() + sentAll.sum();
+        long received = receivedDirect.sum() + receivedAll.sum();
+        double seconds = (now - lastNanos) / 1e9;
+
+        String line = String.format(
+                "[LOADGEN] 접속 %d | 송신 %.0f/s | 수신 %.0f/s | 1:1 %s | ALL %s | SYSTEM %d | 오류 %d",
+                loggedIn.sum(),
+                (sent - lastSent) / seconds,
+                (received - lastReceived) / seconds,
+                summary(directLatency),
+                summary(broadcastLatency),
+                systemMessages.sum(),
+                errors.sum() + decryptErrors.sum());
+
+        lastSent = sent;
+        lastReceived = received;
+        lastNanos = now;
+        return line;
+    }
+
+    String finalReport(double elapsedSeconds) {
+        long sent = sentDirect.sum() + sentAll.sum();
+        long received = receivedDirect.sum() + receivedAll.sum();
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("========== LOADGEN 결과 ==========\n");
+        sb.append(String.format("로그인 성공 %d / 실패 %d%n", loggedIn.sum(), authFailed.sum()));
+        sb.append(String.format("송신 %d (1:1 %d, ALL %d) → %.1f msg/s%n",
+                sent, sentDirect.sum(), sentAll.sum(), sent / elapsedSeconds));
+        sb.append(String.format("수신 %d (1:1 %d, ALL %d) → %.1f msg/s%n",
+                received, receivedDirect.sum(), receivedAll.sum(), received / elapsedSeconds));
+        sb.append(String.format("SYSTEM %d, 복호화 실패 %d, 기타 오류 %d%n",
+                systemMessages.sum(), decryptErrors.sum(), errors.sum()));
+        sb.append(detail("1:1 지연", directLatency));
+        sb.append(detail("ALL 지연", broadcastLatency));
+        sb.append(detail("키교환", keyExchangeLatency));
+        return sb.toString();
+    }
+
+    private static String summary(LatencyHistogram h) {
+        if (h.count() == 0) return "-";
+        return String.format("p50=%s p99=%s", ms(h.percentile(50)), ms(h.percentile(99)));
+    }
+
+    private static String detail(String name, LatencyHistogram h) {
+        return String.format("%-8s n=%d p50=%s p90=%s p99=%s p99.9=%s max=%s%n",
+                name, h.count(),
+                ms(h.percentile(50)), ms(h.percentile(90)), ms(h.percentile(99)),
+                ms(h.percentile(99.9)), ms(h.max()));
+    }
+
+    private static String ms(long micros) {
+        return String.format("%.2fms", micros / 1000.0);
+    }
+}
@@ -0,0 +1,258 @@
+package com.e2ee.loadgen;
+
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.crypto.EncryptedPayload;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.JsonUtil;
+import com.e2ee.protocol.MessageType;
+import com.e2ee.session.E2eeSession;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Type;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 가상 사용자 1명.
+ *
+ * 회원가입 → 로그인 → (전원 가입 대기) → KEY_BATCH_REQ 로 상대 공개키 일괄 수신
+ * → E2eeSession 생성 → 종료 시각까지 1:1 암호화 / ALL 메시지 전송.
+ *
+ * 평문 안에 "LG|송신 nanoTime|패딩" 을 넣어서, 같은 JVM의 수신자가 도착 시 지연시간을 잰다.
+ */
+class SimUser implements Runnable {
+
+    private static final Type STRING_MAP = new TypeToken<Map<String, String>>() {}.getType();
+
+    private static final DateTimeFormatter TS =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss");
+
+    private static final String PAD =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".repeat(64);
+
+    private final int index;
+    private final String runId;
+    private final LoadGenConfig cfg;
+    private final LoadStats stats;
+
+    // 전원 로그인(또는 실패)까지 대기 → 그 뒤에 키 요청해야 상대 공개키가 다 있음
+    private final CountDownLatch allLoggedIn;
+
+    // 송신 종료 시각 (System.nanoTime 기준)
+    private final long deadlineNanos;
+
+    private final Map<String, E2eeSession> sessions = new ConcurrentHashMap<>();
+    private final CountDownLatch sessionsReady = new CountDownLatch(1);
+
+    private volatile long keyRequestNanos;
+
+    SimUser(int index, String runId, LoadGenConfig cfg, LoadStats stats,
+            CountDownLatch allLoggedIn, long deadlineNanos) {
+        this.index = index;
+        this.runId = runId;
+        this.cfg = cfg;
+        this.stats = stats;
+        this.allLoggedIn = allLoggedIn;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    static String idOf(String runId, int index) {
+        return "lg" + runId + "_" + index;
+    }
+
+    @Override
+    public void run() {
+        String myId = idOf(runId, index);
+        boolean counted = false;
+
+        try (Socket socket = new Socket(cfg.host, cfg.port)) {
+
+            PrintWriter writer = new PrintWriter(
+                    new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            KeyPair keyPair = EcdhUtil.generateKeyPair();
+            String authBody = "{\"id\":\"" + myId + "\",\"password\":\"pw\",\"publicKey\":\""
+                    + EcdhUtil.encodePublicKey(keyPair.getPublic()) + "\"}";
+
+            // ---- 회원가입 → 로그인 ----
+            if (!auth(writer, reader, MessageType.AUTH_SIGNUP, myId, authBody)
+                    || !auth(writer, reader, MessageType.AUTH_LOGIN, myId, authBody)) {
+                stats.authFailed.increment();
+                allLoggedIn.countDown();
+                counted = true;
+                return;
+            }
+
+            stats.loggedIn.increment();
+            allLoggedIn.countDown();
+            counted = true;
+
+            Thread recv = Thread.ofVirtual().name("recv-" + myId)
+                    .start(() -> receiveLoop(reader, keyPair));
+
+            allLoggedIn.await();
+
+            // ---- 키 교환: 보낼 상대 + 나한테 보낼 상대 공개키를 한 프레임으로 ----
+            keyRequestNanos = System.nanoTime();
+            writer.println(JsonUtil.toJson(ChatMessage.keyBatchRequest(myId, peerIds(), now())));
+
+            if (!sessionsReady.await(30, TimeUnit.SECONDS)) {
+                stats.errors.increment();
+                return;
+            }
+
+            sendLoop(writer, myId);
+
+            // 마지막 메시지들이 도착할 시간
+            Thread.sleep(2000);
+            socket.shutdownInput();
+            recv.join();
+
+        } catch (Exception e) {
+            stats.errors.increment();
+        } finally {
+            if (!counted) {
+                stats.authFailed.increment();
+                allLoggedIn.countDown();
+            }
+        }
+    }
+
+    private boolean auth(PrintWriter writer, BufferedReader reader,
+                         MessageType type, String myId, String body) throws Exception {
+
+        writer.println(JsonUtil.toJson(new ChatMessage(type, myId, "server", body, now())));
+
+        String line = reader.readLine();
+        if (line == null) return false;
+
+        ChatMessage res = JsonUtil.fromJson(line, ChatMessage.class);
+        return res.getBody() != null && res.getBody().contains("_OK");
+    }
+
+    // 앞쪽 peers명(내가 보낼 상대) + 뒤쪽 peers명(나한테 보내는 상대)
+    private List<String> peerIds() {
+        List<String> ids = new ArrayList<>();
+        for (int k = 1; k <= cfg.peers; k++) {
+            ids.add(idOf(runId, (index + k) % cfg.users));
+            ids.add(idOf(runId, Math.floorMod(index - k, cfg.users)));
+        }
+        return ids;
+    }
+
+    private void sendLoop(PrintWriter writer, String myId) throws Exception {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+
+        while (true) {
+            // 포아송 도착: 지수분포 간격
+            double gapSeconds = -Math.log(1.0 - rnd.nextDouble()) / cfg.rate;
+            long sleepNanos = (long) (gapSeconds * 1e9);
+
+            if (System.nanoTime() + sleepNanos >= deadlineNanos) return;
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+
+            int size = rnd.nextInt(cfg.minSize, cfg.maxSize + 1);
+            String plain = "LG|" + System.nanoTime() + "|" + PAD.substring(0, Math.min(size, PAD.length()));
+
+            ChatMessage msg;
+
+            if (rnd.nextDouble() < cfg.allRatio) {
+                // 전체방은 기존 프로토콜대로 평문
+                msg = new ChatMessage(MessageType.CHAT, myId, "ALL", plain, now());
+                stats.sentAll.increment();
+            } else {
+                String peerId = idOf(runId, (index + rnd.nextInt(1, cfg.peers + 1)) % cfg.users);
+                E2eeSession session = sessions.get(peerId);
+                if (session == null) continue;
+
+                msg = ChatMessage.encryptedChat(myId, peerId, plain, session, now());
+                stats.sentDirect.increment();
+            }
+
+            writer.println(JsonUtil.toJson(msg));
+        }
+    }
+
+    private void receiveLoop(BufferedReader reader, KeyPair keyPair) {
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+
+                ChatMessage msg = JsonUtil.fromJson(line, ChatMessage.class);
+
+                switch (msg.getType()) {
+                    case KEY_BATCH_RES -> {
+                        Map<String, String> keys = JsonUtil.fromJson(msg.getBody(), STRING_MAP);
+                        sessions.putAll(E2eeSession.createAll(keyPair, keys).created());
+                        stats.keyExchangeLatency.record((System.nanoTime() - keyRequestNanos) / 1000);
+                        sessionsReady.countDown();
+                    }
+                    case CHAT -> onChat(msg);
+                    case SYSTEM -> stats.systemMessages.increment();
+                    default -> { }
+                }
+            }
+        } catch (Exception e) {
+            // 소켓 종료
+        }
+    }
+
+    private void onChat(ChatMessage msg) {
+        long arrived = System.nanoTime();
+
+        if ("ALL".equalsIgnoreCase(msg.getReceiver())) {
+            Long sentAt = sentNanosOf(msg.getBody());
+            if (sentAt == null) return;
+
+            stats.receivedAll.increment();
+            stats.broadcastLatency.record((arrived - sentAt) / 1000);
+            return;
+        }
+
+        E2eeSession session = sessions.get(msg.getSender());
+        if (session == null) {
+            stats.decryptErrors.increment();
+            return;
+        }
+
+        try {
+            String plain = session.decrypt(EncryptedPayload.fromWireString(msg.getBody()));
+            Long sentAt = sentNanosOf(plain);
+            if (sentAt == null) return;
+
+            stats.receivedDirect.increment();
+            stats.directLatency.record((System.nanoTime() - sentAt) / 1000);
+        } catch (Exception e) {
+            stats.decryptErrors.increment();
+        }
+    }
+
+    // "LG|nanos|..." 에서 송신 시각 꺼내기 (부하 생성기 메시지가 아니면 null)
+    private static Long sentNanosOf(String plain) {
+        if (plain == null || !plain.startsWith("LG|")) return null;
+
+        int end = plain.indexOf('|', 3);
+        if (end < 0) return null;
+        return Long.parseLong(plain.substring(3, end));
+    }
+
+    private static String now() {
+        return LocalDateTime.now().format(TS);
+    }
+}
@@ -15,6 +15,10 @@ import java.security.PublicKey;
  * - receiver : 받는 사람 ID 또는 닉네임 (또는 "ALL")
  * - body     : 내용 (암호문 또는 키 정보 등), 문자열 하나로 통일
  * - timestamp: 문자열 형태의 시간 정보 (예: 2025-11-19T20:30:15)
+ * - id / sendNanos : (선택) 메시지 상관 ID / 송신 시각(NanoClock) → 지연 측정용
+ * - seq      : (선택) 보낸 사람별 단조 증가 번호 → 서버가 재전송 중복을 거름
+ * - ttl      : (선택) 사라지는 메시지, 서버 기록에서 이 초 뒤에 만료
+ * - prekey   : (선택) prekey 세션 헤더 (신원키:임시키:prekeyId) → 받는 쪽이 KEY_REQ 없이 세션 생성
  */
 public class ChatMessage {
     private MessageType type;
@@ -22,6 +26,18 @@ public class ChatMessage {
     private String receiver;
     private String body;
     private String timestamp;
+    private String id;
+    private Long sendNanos;
+    private Long seq;
+    private Long ttl;
+    private String prekey;
+
+    // seq 시작값을 현재 시각 기반으로 → 클라이언트를 다시 켜도 이전 seq보다 커짐
+    private static final java.util.concurrent.atomic.AtomicLong SEQ =
+            new java.util.concurrent.atomic.AtomicLong(System.currentTimeMillis() * 1000);
+
+    // seq 를 매기는 단위 (프로세스마다 임의 ID, 인증 body 의 device) → 서버가 기기별로 중복을 거름
+    public static final String DEVICE = java.util.UUID.randomUUID().toString().substring(0, 8);
 
     // 기본 생성자 (Gson 같은 라이브러리가 사용)
     public ChatMessage() {
@@ -76,6 +92,49 @@ public class ChatMessage {
         );
     }
 
+    // prekey 번들 요청 (PREKEY_REQ) - 상대가 prekey 를 안 올렸으면 서버가 KEY_REQ 처럼 처리하므로 body 는 같음
+    public static ChatMessage prekeyRequest(String sender,
+                                            String receiver,
+                                            PublicKey myPublicKey,
+                                            String timestamp) {
+        return new ChatMessage(
+                MessageType.PREKEY_REQ,
+                sender,
+                receiver,
+                EcdhUtil.encodePublicKey(myPublicKey),
+                timestamp
+        );
+    }
+
+    // 서버에 저장된 최근 기록 요청 (HISTORY_REQ, target = 상대ID 또는 "#방이름", limit 0 = 서버 최대)
+    public static ChatMessage historyRequest(String sender,
+                                             String target,
+                                             int limit,
+                                             String timestamp) {
+        return new ChatMessage(
+                MessageType.HISTORY_REQ,
+                sender,
+                target,
+                (limit > 0) ? Integer.toString(limit) : null,
+                timestamp
+        );
+    }
+
+    // 여러 상대 공개키 일괄 요청 메시지 만들기 (KEY_BATCH_REQ)
+    public static ChatMessage keyBatchRequest(String sender,
+                                              java.util.List<String> peerIds,
+                                              String timestamp) {
+
+        // body에 상대 ID 목록을 JSON 배열로 넣음
+        return new ChatMessage(
+                MessageType.KEY_BATCH_REQ,
+                sender,
+                "server",
+                JsonUtil.toJson(peerIds),
+                timestamp
+        );
+    }
+
     // body에 들어있는 Base64 공개키를 PublicKey 객체로 복원
     public java.security.PublicKey extractPeerPublicKey() throws Exception {
         return com.e2ee.crypto.EcdhUtil.decodePublicKey(this.body);
@@ -101,6 +160,67 @@ public class ChatMessage {
         return timestamp;
     }
 
+    public String getId() {
+        return id;
+    }
+
+    public Long getSendNanos() {
+        return sendNanos;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public Long getTtl() {
+        return ttl;
+    }
+
+    public String getPrekey() {
+        return prekey;
+    }
+
+    // prekey 세션 헤더 붙이기 (null 이면 안 붙임)
+    public ChatMessage withPrekey(String handshake) {
+        this.prekey = handshake;
+        return this;
+    }
+
+    // 사라지는 메시지로 표시 (0 이하면 표시 안 함)
+    public ChatMessage withTtl(long seconds) {
+        this.ttl = (seconds > 0) ? seconds : null;
+        return this;
+    }
+
+    /**
+     * 추적 정보 붙이기 (상관 ID + seq + 송신 시각). 보내기 직전에 호출.
+     * - 받는 쪽은 화면에 출력한 시각 - sendNanos 로 지연을 잰다.
+     * - id 로 ACK / DELIVERED / READ 를 맞춘다.
+     */
+    public ChatMessage traced() {
+        if (this.id == null) {
+            this.id = java.util.UUID.randomUUID().toString().substring(0, 13);
+            this.seq = SEQ.incrementAndGet();
+        }
+        this.sendNanos = NanoClock.now();
+        return this;
+    }
+
+    // 수신 확인 메시지 만들기 (DELIVERED / READ), body = 원래 메시지 id
+    public static ChatMessage receipt(MessageType type,
+                                      String sender,
+                                      String originalSender,
+                                      String messageId,
+                                      String timestamp) {
+        return new ChatMessage(
+                type,
+                sender,
+                originalSender,
+                messageId,
+                timestamp
+        );
+    }
+
     /**
      * 평문 문자열을 받아서, 주어진 E2eeSession으로 암호화한 CHAT 메시지를 생성한다.
      */
@@ -0,0 +1,114 @@
+package com.e2ee.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 연결별 프레임 압축 (로그인 프레임 body 의 "compression":"deflate-v1" 로 요청).
+ *
+ * - 압축된 줄 = "Z" + Base64(deflate(JSON))  → JSON 줄은 항상 '{' 로 시작하므로 구분됨
+ * - 프레임마다 독립 압축 (reset) → 순서/스레드와 무관하게 한 줄씩 풀 수 있음
+ * - 짧은 프레임도 줄어들도록 필드 이름 / MessageType / 공개키 앞부분으로 사전(preset dictionary)을 채워둔다.
+ *   사전이 바뀌면 NAME 버전도 올려야 한다. (서버 FrameCodec과 같은 내용 유지)
+ * - 어떤 프레임을 압축할지는 호출하는 쪽이 정한다. (암호문이 든 프레임은 압축하지 않음)
+ */
+public final class FrameCodec {
+
+    public static final String NAME = "deflate-v1";
+    public static final char PREFIX = 'Z';
+
+    // 압축 해제 결과 상한 (압축 폭탄 방지)
+    private static final int MAX_DECODED_BYTES = 4 * 1024 * 1024;
+
+    // zlib은 사전 뒤쪽일수록 가까운 거리로 참조하므로 자주 나오는 것을 뒤에 둔다
+    private static final byte[] DICTIONARY = (
+            "FILE_OFFERFILE_ACCEPTFILE_CHUNKFILE_ACKSENDER_KEYROOM_CREATEROOM_JOINROOM_LEAVE"
+                    + "AUTH_SIGNUPAUTH_LOGINKEY_REQKEY_RESDELIVEREDREAD"
+                    + "SIGNUP_OKLOGIN_OKUNDELIVERED:RATE_LIMITED:NO_SUCH_USER"
+                    + "\",\"seq\":\",\"sendNanos\":\",\"id\":\""
+                    + "{\"type\":\"AUTH_RESULT\",\"sender\":\"server\",\"receiver\":\""
+                    + "{\"type\":\"SYSTEM\",\"sender\":\"server\",\"receiver\":\""
+                    + "{\"type\":\"ROOM_MEMBERS\",\"sender\":\""
+                    + "\\u003d\\\"]\\\",\\\"MCowBQYDK2VuAyEA"
+                    + "{\"type\":\"KEY_BATCH_RES\",\"sender\":\"server\",\"receiver\":\""
+                    + "\",\"body\":\"{\\\"\\u003d\\\",\\\"\\\":\\\"MCowBQYDK2VuAyEA"
+                    + "\",\"timestamp\":\"20"
+    ).getBytes(StandardCharsets.UTF_8);
+
+    private final Deflater deflater;
+    private final Inflater inflater = new Inflater();
+
+    public FrameCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public FrameCodec(int level) {
+        this.deflater = new Deflater(level);
+    }
+
+    public static boolean isCompressed(String line) {
+        return !line.isEmpty() && line.charAt(0) == PREFIX;
+    }
+
+    /**
+     * JSON 한 줄 → "Z..." 한 줄. 여러 스레드가 같은 연결로 보내므로 synchronized.
+     */
+    public synchronized String encode(String json) {
+        byte[] input = json.getBytes(StandardCharsets.UTF_8);
+
+        deflater.reset();
+        deflater.setDictionary(DICTIONARY);
+        deflater.setInput(input);
+        deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length / 2 + 16);
+        byte[] buf = new byte[4096];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(buf);
+            out.write(buf, 0, n);
+        }
+
+        return PREFIX + Base64.getEncoder().encodeToString(out.toByteArray());
+    }
+
+    /**
+     * "Z..." 한 줄 → JSON 한 줄.
+     */
+    public synchronized String decode(String line) throws DataFormatException {
+        byte[] input;
+        try {
+            input = Base64.getDecoder().decode(line.substring(1));
+        } catch (IllegalArgumentException e) {
+            throw new DataFormatException("압축 프레임 Base64 오류");
+        }
+
+        inflater.reset();
+        inflater.setInput(input);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(input.length * 3);
+        byte[] buf = new byte[4096];
+        while (!inflater.finished()) {
+            int n = inflater.inflate(buf);
+            if (n == 0) {
+                if (inflater.needsDictionary()) {
+                    inflater.setDictionary(DICTIONARY);
+                    continue;
+                }
+                if (inflater.needsInput()) throw new DataFormatException("압축 프레임이 잘림");
+            }
+            out.write(buf, 0, n);
+            if (out.size() > MAX_DECODED_BYTES) throw new DataFormatException("압축 해제 크기 초과");
+        }
+
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    public synchronized void close() {
+        deflater.end();
+        inflater.end();
+    }
+}
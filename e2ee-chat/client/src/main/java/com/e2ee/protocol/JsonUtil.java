@@ -2,6 +2,8 @@ package com.e2ee.protocol;
 
 import com.google.gson.Gson;
 
+import java.lang.reflect.Type;
+
 public class JsonUtil {
 
     // Gson 하나 만들어두고 계속 재사용
@@ -16,4 +18,9 @@ public class JsonUtil {
     public static <T> T fromJson(String json, Class<T> type) {
         return gson.fromJson(json, type);
     }
+
+    // JSON 문자열 -> 제네릭 타입 객체 (List<String>, Map<String,String> 등)
+    public static <T> T fromJson(String json, Type type) {
+        return gson.fromJson(json, type);
+    }
 }
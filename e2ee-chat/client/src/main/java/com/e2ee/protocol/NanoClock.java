@@ -0,0 +1,28 @@
+package com.e2ee.protocol;
+
+/**
+ * 메시지 지연 측정용 시계 (epoch 기준 나노초).
+ *
+ * - 시작 시 한 번 잡은 epoch 시각 + System.nanoTime() 경과분
+ *   → 프로세스 안에서는 단조 증가 (벽시계가 뒤로 가도 안 흔들림)
+ * - 다른 프로세스와 비교할 수 있도록 epoch 기준으로 맞춘다.
+ *   (클라/서버 시계 차이만큼 오차가 생길 수 있음)
+ */
+public final class NanoClock {
+
+    private static final long BASE_EPOCH_NANOS;
+    private static final long BASE_NANO_TIME;
+
+    static {
+        java.time.Instant now = java.time.Instant.now();
+        BASE_NANO_TIME = System.nanoTime();
+        BASE_EPOCH_NANOS = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private NanoClock() {
+    }
+
+    public static long now() {
+        return BASE_EPOCH_NANOS + (System.nanoTime() - BASE_NANO_TIME);
+    }
+}
@@ -2,25 +2,86 @@ package com.e2ee.session;
 
 import com.e2ee.crypto.EncryptedPayload;
 import com.e2ee.crypto.EcdhUtil;
-import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.CipherSuite;
 
 import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
 import java.security.KeyPair;
 import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class E2eeSession {
 
+    // 여러 세션을 한 번에 만들 때 쓰는 작은 fork-join 풀 (ECDH + HKDF 병렬 처리)
+    private static final ForkJoinPool DERIVE_POOL =
+            new ForkJoinPool(Math.min(4, Runtime.getRuntime().availableProcessors()));
+
     private final KeyPair myKeyPair;   // 내 X25519 키쌍
     private final PublicKey theirPublicKey; // 상대 공개키
-    private final SecretKey aesKey;     // 이 세션에서 쓸 AES 키
+    private final SecretKey aesKey;     // 이 세션에서 쓸 AES 키 (256비트, ChaCha20 키로도 그대로 씀)
+    private final CipherSuite suite;    // 보낼 때 쓸 암호 스위트 (받을 때는 payload 의 algorithm 을 따름)
+
+    // prekey(X3DH) 로 만든 세션이면 그 헤더 (신원키만으로 만든 세션은 null)
+    private final String handshake;
+    private final boolean initiator;
+
+    // prekey 세션을 양쪽이 다 쓰고 있음이 확인됨
+    // 내가 시작한 세션: 상대가 이 세션으로 답하기 전까지는 메시지마다 헤더를 붙임
+    private volatile boolean confirmed;
 
-    // 생성자: 세션 안에 쓸 값 3개를 저장
+    // 생성자: 세션 안에 쓸 값 3개를 저장 (스위트는 시작 때 고른 것)
     public E2eeSession(KeyPair myKeyPair,
                        PublicKey theirPublicKey,
                        SecretKey aesKey) {
+        this(myKeyPair, theirPublicKey, aesKey, CipherSuite.preferred());
+    }
+
+    // prekey 세션 (X3dh 에서 생성)
+    E2eeSession(KeyPair myKeyPair,
+                PublicKey theirPublicKey,
+                SecretKey aesKey,
+                String handshake,
+                boolean initiator) {
+        this(myKeyPair, theirPublicKey, aesKey, CipherSuite.preferred(), handshake, initiator);
+    }
+
+    public E2eeSession(KeyPair myKeyPair,
+                       PublicKey theirPublicKey,
+                       SecretKey aesKey,
+                       CipherSuite suite) {
+        this(myKeyPair, theirPublicKey, aesKey, suite, null, false);
+    }
+
+    private E2eeSession(KeyPair myKeyPair,
+                        PublicKey theirPublicKey,
+                        SecretKey aesKey,
+                        CipherSuite suite,
+                        String handshake,
+                        boolean initiator) {
         this.myKeyPair = myKeyPair;
         this.theirPublicKey = theirPublicKey;
         this.aesKey = aesKey;
+        this.suite = suite;
+        this.handshake = handshake;
+        this.initiator = initiator;
+    }
+
+    /**
+     * 로컬에 저장해 둔 prekey 세션 되살리기 (PrekeyVault). 일회용 prekey 는 이미 지워졌으므로 키를 그대로 보관한다.
+     */
+    public static E2eeSession restore(KeyPair myKeyPair, PublicKey theirPublicKey, byte[] rawKey,
+                                      String handshake, boolean initiator, boolean confirmed) {
+        E2eeSession s = new E2eeSession(myKeyPair, theirPublicKey,
+                new SecretKeySpec(rawKey, "AES"), handshake, initiator);
+        s.confirmed = confirmed;
+        return s;
     }
 
     public static E2eeSession create(KeyPair myKeyPair, PublicKey theirPublicKey) throws Exception{
@@ -37,14 +98,100 @@ public class E2eeSession {
         return new E2eeSession(myKeyPair, theirPublicKey, aesKey);
     }
 
-    // 이 세션의 AES 키로 문자열 암호화
+    /**
+     * createAll 결과: 만든 세션 + 못 만든 상대와 그 이유 (출력은 부르는 쪽에서)
+     */
+    public record Batch(Map<String, E2eeSession> created, Map<String, Exception> failed) {
+    }
+
+    /**
+     * 상대ID → Base64 공개키 목록으로 세션들을 병렬 생성한다. (KEY_BATCH_RES 용)
+     * 키 형식이 잘못된 상대는 created 대신 failed 로 간다.
+     */
+    public static Batch createAll(KeyPair myKeyPair, Map<String, String> peerKeys) throws InterruptedException {
+
+        List<String> peerIds = new ArrayList<>(peerKeys.keySet());
+        List<Callable<E2eeSession>> tasks = new ArrayList<>();
+
+        for (String peerId : peerIds) {
+            String keyBase64 = peerKeys.get(peerId);
+            tasks.add(() -> create(myKeyPair, EcdhUtil.decodePublicKey(keyBase64)));
+        }
+
+        List<Future<E2eeSession>> results = DERIVE_POOL.invokeAll(tasks);
+
+        Map<String, E2eeSession> sessions = new LinkedHashMap<>();
+        Map<String, Exception> failed = new LinkedHashMap<>();
+        for (int i = 0; i < peerIds.size(); i++) {
+            try {
+                sessions.put(peerIds.get(i), results.get(i).get());
+            } catch (ExecutionException e) {
+                failed.put(peerIds.get(i), (e.getCause() instanceof Exception c) ? c : e);
+            }
+        }
+        return new Batch(sessions, failed);
+    }
+
+    public CipherSuite getSuite() {
+        return suite;
+    }
+
+    public PublicKey getTheirPublicKey() {
+        return theirPublicKey;
+    }
+
+    // 저장용 원본 키 (prekey 세션만 PrekeyVault 에 저장)
+    public byte[] exportKey() {
+        return aesKey.getEncoded();
+    }
+
+    public String getHandshake() {
+        return handshake;
+    }
+
+    public boolean isInitiator() {
+        return initiator;
+    }
+
+    public boolean isConfirmed() {
+        return confirmed;
+    }
+
+    /**
+     * 보낼 메시지에 붙일 prekey 헤더. 내가 시작했고 아직 상대 답이 없을 때만, 아니면 null.
+     */
+    public String pendingHandshake() {
+        return (initiator && !confirmed) ? handshake : null;
+    }
+
+    // 상대가 이 세션으로 답함 → 이제 헤더 없이
+    // (받는 쪽: 상대가 헤더 없이 보낸 메시지가 풀림 → 상대도 이 세션으로 확정)
+    public boolean confirm() {
+        if (handshake == null || confirmed) return false;
+        confirmed = true;
+        return true;
+    }
+
+    // 이 세션의 키 + 스위트로 문자열 암호화
     public EncryptedPayload encrypt(String plaintext) throws Exception {
-        return AesGcmUtil.encrypt(plaintext, aesKey);
+        return suite.encrypt(plaintext, aesKey);
     }
 
-    // 이 세션의 AES 키로 암호문 복호화
+    // 암호문 복호화 - payload 의 algorithm 으로 스위트를 고름 (상대가 다른 스위트를 골랐어도 풀림)
     public String decrypt(EncryptedPayload payload) throws Exception {
-        return AesGcmUtil.decrypt(payload, aesKey);
+        return CipherSuite.forAlgorithm(payload.getAlgorithm()).decrypt(payload, aesKey);
+    }
+
+    // 파일 청크 암호화 (청크 번호가 nonce에 들어감)
+    public byte[] encryptChunk(byte[] data, int off, int len,
+                               byte[] noncePrefix, int index, byte[] aad) throws Exception {
+        return suite.encryptChunk(data, off, len, aesKey, noncePrefix, index, aad);
+    }
+
+    // 파일 청크 복호화 (algorithm = 보낸 쪽이 FILE_OFFER 에 적은 스위트, null 이면 AES-GCM)
+    public byte[] decryptChunk(String algorithm, byte[] cipherBytes,
+                               byte[] noncePrefix, int index, byte[] aad) throws Exception {
+        return CipherSuite.forAlgorithm(algorithm).decryptChunk(cipherBytes, aesKey, noncePrefix, index, aad);
     }
 
 
@@ -0,0 +1,90 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.AesGcmUtil;
+import com.e2ee.crypto.CipherSuite;
+import com.e2ee.crypto.EncryptedPayload;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.Base64;
+
+/**
+ * 그룹방용 sender key.
+ *
+ * - 보내는 사람마다 방 하나당 AES 키 1개를 만든다.
+ * - 이 키는 멤버들과의 1:1 E2eeSession으로 암호화해서 나눠준다. (SENDER_KEY)
+ * - 그룹 메시지는 이 키로 "한 번만" 암호화하고, 서버가 같은 암호문을 멤버 전원에게 중계한다.
+ * - 멤버가 나가면 새 version으로 교체해서 다시 배포한다.
+ */
+public class SenderKey {
+
+    private final int version;
+    private final SecretKey key;
+
+    public SenderKey(int version, SecretKey key) {
+        this.version = version;
+        this.key = key;
+    }
+
+    // 새 sender key 생성
+    public static SenderKey generate(int version) throws Exception {
+        return new SenderKey(version, AesGcmUtil.generateKey());
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    // 그룹 메시지 암호화 → "version|algorithm:nonce:cipher" (스위트는 시작 때 고른 것)
+    public String encrypt(String plaintext) throws Exception {
+        EncryptedPayload payload = CipherSuite.preferred().encrypt(plaintext, key);
+        return version + "|" + payload.toWireString();
+    }
+
+    // 그룹 메시지 body 복호화 (algorithm 을 보고 스위트를 고름)
+    public String decrypt(String body) throws Exception {
+        EncryptedPayload payload = EncryptedPayload.fromWireString(payloadOf(body));
+        return CipherSuite.forAlgorithm(payload.getAlgorithm()).decrypt(payload, key);
+    }
+
+    // body 앞의 version 꺼내기
+    public static int versionOf(String body) {
+        int bar = body.indexOf('|');
+        if (bar < 0) throw new IllegalArgumentException("sender key version 없음");
+        return Integer.parseInt(body.substring(0, bar));
+    }
+
+    private static String payloadOf(String body) {
+        return body.substring(body.indexOf('|') + 1);
+    }
+
+    /**
+     * 1:1 세션으로 감싸서 보낼 문자열 형식.
+     * 형식: room|version|Base64(key)
+     */
+    public String toWireString(String room) {
+        return room + "|" + version + "|" + Base64.getEncoder().encodeToString(key.getEncoded());
+    }
+
+    // toWireString()의 room 부분 (방 이름에 '|'가 있어도 뒤에서부터 자른다)
+    public static String roomOf(String wire) {
+        int keyBar = wire.lastIndexOf('|');
+        int versionBar = wire.lastIndexOf('|', keyBar - 1);
+        if (versionBar < 0) {
+            throw new IllegalArgumentException("잘못된 sender key 형식입니다.");
+        }
+        return wire.substring(0, versionBar);
+    }
+
+    public static SenderKey fromWireString(String wire) {
+        int keyBar = wire.lastIndexOf('|');
+        int versionBar = wire.lastIndexOf('|', keyBar - 1);
+        if (versionBar < 0) {
+            throw new IllegalArgumentException("잘못된 sender key 형식입니다.");
+        }
+
+        int version = Integer.parseInt(wire.substring(versionBar + 1, keyBar));
+        byte[] raw = Base64.getDecoder().decode(wire.substring(keyBar + 1));
+        return new SenderKey(version, new SecretKeySpec(raw, "AES"));
+    }
+}
@@ -0,0 +1,135 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EcdhUtil;
+
+import javax.crypto.SecretKey;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.function.IntFunction;
+
+/**
+ * prekey 번들로 세션 만들기 (X3DH 간소화판).
+ *
+ * X25519 키로는 서명을 못 하므로 서명 prekey 없이 신원키가 그 자리를 대신한다.
+ *   DH1 = DH(보낸 쪽 신원키, 받는 쪽 신원키)    ← 기존 1:1 세션과 같은 값
+ *   DH2 = DH(보낸 쪽 임시키, 받는 쪽 신원키)
+ *   DH3 = DH(보낸 쪽 임시키, 받는 쪽 일회용 prekey)   (번들에 prekey 가 없으면 생략)
+ *   세션 키 = HKDF(DH1 || DH2 || DH3, "E2EE-Chat-X3DH")
+ *
+ * 보내는 쪽은 상대가 답할 때까지 메시지마다 헤더(신원키:임시키:prekeyId[:R])를 붙이고,
+ * 받는 쪽은 헤더 + 보관해 둔 prekey 개인키로 같은 키를 만든다
+ * → 상대가 오프라인이어도 KEY_REQ 왕복 없이 첫 메시지부터 암호화.
+ *
+ * 헤더의 신원키는 받는 쪽이 이미 아는 상대 키(세션 / 서버 등록값)와 같을 때만 받아들인다.
+ * R = 사용자가 /rekey 로 일부러 다시 시작한 세션 (받는 쪽은 확인된 세션을 이때만 바꿈)
+ */
+public final class X3dh {
+
+    private static final String INFO = "E2EE-Chat-X3DH";
+
+    // prekey 없이 만든 세션의 prekeyId
+    public static final int NO_PREKEY = 0;
+
+    // 헤더 끝 표시: 일부러 다시 만든 세션
+    private static final String REKEY = "R";
+
+    private X3dh() {
+    }
+
+    /**
+     * 보내는 쪽: 번들(상대 신원키 + prekey)로 세션 생성. 헤더는 세션에 들어 있음.
+     *
+     * @param theirPrekey 번들에 prekey 가 없으면 null (prekeyId 는 NO_PREKEY)
+     */
+    public static E2eeSession initiate(KeyPair myIdentity,
+                                       PublicKey theirIdentity,
+                                       int prekeyId,
+                                       PublicKey theirPrekey) throws Exception {
+        return initiate(myIdentity, theirIdentity, prekeyId, theirPrekey, false);
+    }
+
+    /**
+     * @param rekey 확인된 세션을 바꾸려고 다시 시작 (/rekey) → 헤더에 표시
+     */
+    public static E2eeSession initiate(KeyPair myIdentity,
+                                       PublicKey theirIdentity,
+                                       int prekeyId,
+                                       PublicKey theirPrekey,
+                                       boolean rekey) throws Exception {
+
+        // prekey 없는 헤더는 그대로 다시 보내도 또 받아들여지므로, 확인된 세션을 바꾸는 데는 못 씀
+        if (rekey && theirPrekey == null) {
+            throw new IllegalStateException("상대 prekey 가 없어 다시 만들 수 없습니다.");
+        }
+
+        KeyPair ephemeral = EcdhUtil.generateKeyPair();
+
+        byte[] dh1 = EcdhUtil.deriveSharedSecret(myIdentity.getPrivate(), theirIdentity);
+        byte[] dh2 = EcdhUtil.deriveSharedSecret(ephemeral.getPrivate(), theirIdentity);
+
+        SecretKey key = (theirPrekey == null)
+                ? EcdhUtil.deriveAesKeyFromSharedSecrets(INFO, dh1, dh2)
+                : EcdhUtil.deriveAesKeyFromSharedSecrets(INFO, dh1, dh2,
+                        EcdhUtil.deriveSharedSecret(ephemeral.getPrivate(), theirPrekey));
+
+        String header = EcdhUtil.encodePublicKey(myIdentity.getPublic())
+                + ":" + EcdhUtil.encodePublicKey(ephemeral.getPublic())
+                + ":" + ((theirPrekey == null) ? NO_PREKEY : prekeyId)
+                + (rekey ? ":" + REKEY : "");
+
+        return new E2eeSession(myIdentity, theirIdentity, key, header, true);
+    }
+
+    /**
+     * 받는 쪽: 헤더 + 내 prekey 개인키로 같은 세션 생성.
+     *
+     * @param theirIdentity 이미 아는 상대 신원키 (지금 세션 / 서버 등록값). 헤더의 신원키가 다르면 거부
+     * @param takePrekey    prekeyId → 보관해 둔 키쌍 (꺼내면서 지움, 없으면 null)
+     */
+    public static E2eeSession respond(KeyPair myIdentity,
+                                      PublicKey theirIdentity,
+                                      String header,
+                                      IntFunction<KeyPair> takePrekey) throws Exception {
+
+        String[] parts = split(header);
+
+        // prekey 를 꺼내기 전에 (남의 신원키를 단 헤더가 내 prekey 를 써버리지 않게)
+        if (!parts[0].equals(EcdhUtil.encodePublicKey(theirIdentity))) {
+            throw new SecurityException("헤더의 신원키가 상대 등록 키와 다릅니다.");
+        }
+        PublicKey theirEphemeral = EcdhUtil.decodePublicKey(parts[1]);
+        int prekeyId = Integer.parseInt(parts[2]);
+
+        byte[] dh1 = EcdhUtil.deriveSharedSecret(myIdentity.getPrivate(), theirIdentity);
+        byte[] dh2 = EcdhUtil.deriveSharedSecret(myIdentity.getPrivate(), theirEphemeral);
+
+        SecretKey key;
+        if (prekeyId == NO_PREKEY) {
+            key = EcdhUtil.deriveAesKeyFromSharedSecrets(INFO, dh1, dh2);
+        } else {
+            KeyPair prekey = takePrekey.apply(prekeyId);
+            if (prekey == null) {
+                throw new IllegalStateException("prekey #" + prekeyId + " 없음 (이미 썼거나 다른 기기에서 만든 것)");
+            }
+            key = EcdhUtil.deriveAesKeyFromSharedSecrets(INFO, dh1, dh2,
+                    EcdhUtil.deriveSharedSecret(prekey.getPrivate(), theirEphemeral));
+        }
+
+        return new E2eeSession(myIdentity, theirIdentity, key, header, false);
+    }
+
+    // /rekey 로 만든 세션의 헤더인지 (일회용 prekey 를 쓴 것만 → 같은 헤더를 다시 보내도 prekey 가 없어 실패)
+    public static boolean isRekey(String header) {
+        String[] parts = split(header);
+        return parts.length == 4 && !Integer.toString(NO_PREKEY).equals(parts[2]);
+    }
+
+    // 헤더 = 신원키:임시키:prekeyId[:R] (Base64 에는 ':' 가 없음)
+    private static String[] split(String header) {
+        String[] parts = header.split(":");
+        if (parts.length < 3 || parts.length > 4 || (parts.length == 4 && !REKEY.equals(parts[3]))) {
+            throw new IllegalArgumentException("잘못된 prekey 헤더입니다.");
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,72 @@
+package com.e2ee.client.history;
+
+import com.e2ee.client.config.ClientConfig;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryVaultTest {
+
+    // 테스트마다 다른 사용자 → 파일이 겹치지 않음
+    private final String me = "t" + UUID.randomUUID().toString().substring(0, 8);
+
+    private Path fileOf(String peerId) {
+        return ClientConfig.get().getHomeDir().resolve("history").resolve(me + "__" + peerId + ".json");
+    }
+
+    private static HistoryEntry entry(String message) {
+        return new HistoryEntry("bob", "alice", message, "2026-01-01 00:00:00");
+    }
+
+    @Test
+    void appendsKeepOrderAcrossCalls() {
+        HistoryVault.append(me, "bob", entry("1"));
+        HistoryVault.appendAll(me, "bob", List.of(entry("2"), entry("3")));
+        HistoryVault.append(me, "bob", entry("4"));
+
+        List<HistoryEntry> loaded = HistoryVault.load(me, "bob");
+        assertEquals(List.of("1", "2", "3", "4"), loaded.stream().map(HistoryEntry::getMessage).toList());
+    }
+
+    @Test
+    void appendDoesNotRewriteExistingBytes() throws Exception {
+        HistoryVault.append(me, "bob", entry("first"));
+        String before = Files.readString(fileOf("bob"), StandardCharsets.UTF_8);
+
+        HistoryVault.append(me, "bob", entry("second"));
+        String after = Files.readString(fileOf("bob"), StandardCharsets.UTF_8);
+
+        // ']' 앞까지는 그대로
+        assertTrue(after.startsWith(before.substring(0, before.length() - 1)));
+    }
+
+    @Test
+    void emptyArrayAndTrailingWhitespaceAreHandled() throws Exception {
+        Files.createDirectories(fileOf("carol").getParent());
+        Files.writeString(fileOf("carol"), "[ ]\n", StandardCharsets.UTF_8);
+
+        HistoryVault.append(me, "carol", entry("hi"));
+
+        assertEquals(List.of("hi"), HistoryVault.load(me, "carol").stream().map(HistoryEntry::getMessage).toList());
+    }
+
+    @Test
+    void brokenFileIsMovedAsideInsteadOfOverwritten() throws Exception {
+        Files.createDirectories(fileOf("dave").getParent());
+        Files.writeString(fileOf("dave"), "[{\"message\":\"old\"},{\"mess", StandardCharsets.UTF_8);
+
+        HistoryVault.append(me, "dave", entry("new"));
+
+        assertEquals(List.of("new"), HistoryVault.load(me, "dave").stream().map(HistoryEntry::getMessage).toList());
+        try (var files = Files.list(fileOf("dave").getParent())) {
+            assertTrue(files.anyMatch(p -> p.getFileName().toString().startsWith(me + "__dave.json.broken-")));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.e2ee.client.net;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ClientTransportTest {
+
+    @Test
+    void ackIsRecognisedWhateverTheFieldOrderAfterType() {
+        ClientTransport.Header h = ClientTransport.Header.parse(
+                "{\"type\":\"ACK\",\"sender\":\"server\",\"receiver\":\"bob\",\"body\":\"m-1\",\"timestamp\":\"1\"}");
+
+        assertEquals("ACK", h.type());
+        assertEquals("m-1", h.body());
+    }
+
+    @Test
+    void bodyIsNotReadForOtherTypes() {
+        ClientTransport.Header h = ClientTransport.Header.parse(
+                "{\"type\":\"CHAT\",\"body\":\"ciphertext\",\"id\":\"m-2\"}");
+
+        assertEquals("CHAT", h.type());
+        assertEquals("m-2", h.id());
+        assertNull(h.body());
+    }
+
+    @Test
+    void idInsideNestedValuesIsIgnored() {
+        // 중첩 객체 / 문자열 안의 "id" 는 최상위 id 가 아님
+        assertEquals("top", ClientTransport.idOf(
+                "{\"type\":\"CHAT\",\"id\":\"top\",\"meta\":{\"id\":\"inner\"},\"body\":\"x \\\"id\\\":\\\"fake\\\"\"}"));
+        assertNull(ClientTransport.idOf(
+                "{\"type\":\"KEY_REQ\",\"meta\":{\"id\":\"inner\"},\"body\":\"\\\"id\\\":\\\"fake\\\"\"}"));
+    }
+
+    @Test
+    void nonStringIdAndNullIdAreIgnored() {
+        assertNull(ClientTransport.idOf("{\"type\":\"CHAT\",\"id\":null}"));
+        assertNull(ClientTransport.idOf("{\"type\":\"CHAT\",\"id\":7}"));
+    }
+
+    @Test
+    void malformedLineGivesNull() {
+        assertNull(ClientTransport.Header.parse("not json"));
+        assertNull(ClientTransport.Header.parse("[1,2]"));
+        assertNull(ClientTransport.Header.parse(""));
+        assertNull(ClientTransport.idOf("{\"type\":"));
+    }
+}
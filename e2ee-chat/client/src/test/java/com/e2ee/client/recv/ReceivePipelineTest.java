@@ -0,0 +1,96 @@
+package com.e2ee.client.recv;
+
+import com.e2ee.client.config.ClientConfig;
+import com.e2ee.client.receipt.ReceiptBook;
+import com.e2ee.client.room.RoomKeyring;
+import com.e2ee.crypto.EcdhUtil;
+import com.e2ee.protocol.ChatMessage;
+import com.e2ee.protocol.JsonUtil;
+import com.e2ee.session.E2eeSession;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReceivePipelineTest {
+
+    private final KeyPair me = EcdhUtil.generateKeyPair();
+    private final KeyPair bob = EcdhUtil.generateKeyPair();
+
+    private final String myId = "t" + UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, E2eeSession> sessions = new ConcurrentHashMap<>();
+    private final List<String> displayed = new CopyOnWriteArrayList<>();
+    private final List<String> duplicates = new CopyOnWriteArrayList<>();
+
+    private final ReceivePipeline pipeline = new ReceivePipeline(myId, sessions, new RoomKeyring(),
+            new ReceiptBook(100), new ReceivePipeline.Listener() {
+        @Override
+        public void displayed(ChatMessage msg) {
+            displayed.add(msg.getId());
+        }
+
+        @Override
+        public void duplicate(ChatMessage msg) {
+            duplicates.add(msg.getId());
+        }
+    }, ClientConfig.get());
+
+    ReceivePipelineTest() throws Exception {
+    }
+
+    private ChatMessage chat(String id, String body) {
+        JsonObject o = new JsonObject();
+        o.addProperty("type", "CHAT");
+        o.addProperty("id", id);
+        o.addProperty("sender", "bob");
+        o.addProperty("receiver", myId);
+        o.addProperty("body", body);
+        return JsonUtil.fromJson(o.toString(), ChatMessage.class);
+    }
+
+    private void deliver(ChatMessage msg) throws InterruptedException {
+        pipeline.submit(msg);
+        pipeline.flush(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void failedFrameIsNotMarkedSeen() throws Exception {
+        E2eeSession bobSide = E2eeSession.create(bob, me.getPublic());
+        String body = bobSide.encrypt("hi").toWireString();
+
+        // 세션이 아직 없음 → 출력/수신 확인 없음, 본 것으로도 안 침
+        deliver(chat("m1", body));
+        assertEquals(List.of(), displayed);
+        assertEquals(List.of(), duplicates);
+
+        // 세션이 생긴 뒤 서버가 재전송 → 이번엔 복호화
+        sessions.put("bob", E2eeSession.create(me, bob.getPublic()));
+        deliver(chat("m1", body));
+        assertEquals(List.of("m1"), displayed);
+
+        // 그다음 재전송만 중복
+        deliver(chat("m1", body));
+        assertEquals(List.of("m1"), displayed);
+        assertEquals(List.of("m1"), duplicates);
+    }
+
+    @Test
+    void undecryptableFrameIsRetriedOnRedelivery() throws Exception {
+        sessions.put("bob", E2eeSession.create(me, bob.getPublic()));
+
+        deliver(chat("m2", "not-a-payload"));
+        assertEquals(List.of(), displayed);
+
+        deliver(chat("m2", E2eeSession.create(bob, me.getPublic()).encrypt("hi").toWireString()));
+        assertEquals(List.of("m2"), displayed);
+        assertEquals(List.of(), duplicates);
+    }
+}
@@ -0,0 +1,56 @@
+package com.e2ee.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CipherSuiteTest {
+
+    private static SecretKey newKey() {
+        byte[] raw = new byte[32];
+        new SecureRandom().nextBytes(raw);
+        return new SecretKeySpec(raw, "AES");
+    }
+
+    @Test
+    void everyAvailableSuiteRoundTripsThroughWireString() throws Exception {
+        SecretKey key = newKey();
+
+        for (CipherSuite suite : CipherSuite.available()) {
+            String wire = suite.encrypt("안녕 hello", key).toWireString();
+
+            // 받는 쪽은 wire 의 algorithm 만 보고 스위트를 고른다
+            EncryptedPayload payload = EncryptedPayload.fromWireString(wire);
+            assertEquals(suite.getAlgorithm(), payload.getAlgorithm());
+            assertEquals("안녕 hello", CipherSuite.forAlgorithm(payload.getAlgorithm()).decrypt(payload, key));
+        }
+    }
+
+    @Test
+    void missingAlgorithmMeansAesAndUnknownIsRejected() {
+        assertSame(CipherSuite.AES_GCM, CipherSuite.forAlgorithm(null));
+        assertSame(CipherSuite.AES_GCM, CipherSuite.forAlgorithm(""));
+        assertThrows(IllegalArgumentException.class, () -> CipherSuite.forAlgorithm("ROT13"));
+    }
+
+    @Test
+    void preferredIsAesUntilSelectedAndSelectDoesNotBenchmarkByName() {
+        try {
+            assertSame(CipherSuite.AES_GCM, CipherSuite.preferred());
+
+            CipherSuite chosen = CipherSuite.select(CipherSuite.CHACHA20_POLY1305.getAlgorithm());
+            assertSame(CipherSuite.CHACHA20_POLY1305, chosen);
+            assertSame(chosen, CipherSuite.preferred());
+            assertTrue(CipherSuite.report().contains("(설정)"));
+        } finally {
+            CipherSuite.select(CipherSuite.AES_GCM.getAlgorithm());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EcdhUtil;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class E2eeSessionTest {
+
+    @Test
+    void createAllReturnsFailedPeersInsteadOfSwallowing() throws Exception {
+        KeyPair me = EcdhUtil.generateKeyPair();
+        KeyPair bob = EcdhUtil.generateKeyPair();
+
+        Map<String, String> keys = new LinkedHashMap<>();
+        keys.put("bob", EcdhUtil.encodePublicKey(bob.getPublic()));
+        keys.put("mallory", "not-a-key");
+
+        E2eeSession.Batch batch = E2eeSession.createAll(me, keys);
+
+        assertEquals(Set.of("bob"), batch.created().keySet());
+        assertEquals(Set.of("mallory"), batch.failed().keySet());
+        assertEquals("hi", E2eeSession.create(bob, me.getPublic()).decrypt(batch.created().get("bob").encrypt("hi")));
+    }
+}
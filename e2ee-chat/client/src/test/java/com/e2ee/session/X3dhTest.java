@@ -0,0 +1,100 @@
+package com.e2ee.session;
+
+import com.e2ee.crypto.EcdhUtil;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class X3dhTest {
+
+    private final KeyPair alice = EcdhUtil.generateKeyPair();
+    private final KeyPair bob = EcdhUtil.generateKeyPair();
+    private final KeyPair bobPrekey = EcdhUtil.generateKeyPair();
+
+    // bob 쪽 보관함: 꺼내면 지움
+    private final Map<Integer, KeyPair> bobPrekeys = new HashMap<>(Map.of(7, bobPrekey));
+
+    X3dhTest() throws Exception {
+    }
+
+    private static void assertAgree(E2eeSession a, E2eeSession b) throws Exception {
+        assertEquals("hello", b.decrypt(a.encrypt("hello")));
+        assertEquals("reply", a.decrypt(b.encrypt("reply")));
+    }
+
+    @Test
+    void initiatorAndResponderDeriveSameKeyWithPrekey() throws Exception {
+        E2eeSession a = X3dh.initiate(alice, bob.getPublic(), 7, bobPrekey.getPublic());
+        E2eeSession b = X3dh.respond(bob, alice.getPublic(), a.getHandshake(), bobPrekeys::remove);
+
+        assertAgree(a, b);
+        assertTrue(bobPrekeys.isEmpty());
+        assertEquals(a.getHandshake(), a.pendingHandshake());
+        assertNull(b.pendingHandshake());
+    }
+
+    @Test
+    void initiatorAndResponderDeriveSameKeyWithoutPrekey() throws Exception {
+        E2eeSession a = X3dh.initiate(alice, bob.getPublic(), 7, null);
+        E2eeSession b = X3dh.respond(bob, alice.getPublic(), a.getHandshake(), id -> {
+            throw new AssertionError("prekey 없는 헤더인데 꺼냄");
+        });
+
+        assertAgree(a, b);
+        assertTrue(a.getHandshake().endsWith(":" + X3dh.NO_PREKEY));
+    }
+
+    @Test
+    void headerWithUnknownIdentityIsRejectedBeforeTakingPrekey() throws Exception {
+        KeyPair mallory = EcdhUtil.generateKeyPair();
+        E2eeSession m = X3dh.initiate(mallory, bob.getPublic(), 7, bobPrekey.getPublic());
+
+        // bob 은 이 대화 상대를 alice 로 알고 있음
+        assertThrows(SecurityException.class,
+                () -> X3dh.respond(bob, alice.getPublic(), m.getHandshake(), bobPrekeys::remove));
+        assertEquals(1, bobPrekeys.size());
+    }
+
+    @Test
+    void replayedHeaderFailsOnceThePrekeyIsUsed() throws Exception {
+        E2eeSession a = X3dh.initiate(alice, bob.getPublic(), 7, bobPrekey.getPublic());
+        X3dh.respond(bob, alice.getPublic(), a.getHandshake(), bobPrekeys::remove);
+
+        assertThrows(IllegalStateException.class,
+                () -> X3dh.respond(bob, alice.getPublic(), a.getHandshake(), bobPrekeys::remove));
+    }
+
+    @Test
+    void rekeyIsMarkedOnlyWhenAPrekeyIsUsed() throws Exception {
+        E2eeSession plain = X3dh.initiate(alice, bob.getPublic(), 7, bobPrekey.getPublic());
+        E2eeSession rekey = X3dh.initiate(alice, bob.getPublic(), 7, bobPrekey.getPublic(), true);
+
+        assertFalse(X3dh.isRekey(plain.getHandshake()));
+        assertTrue(X3dh.isRekey(rekey.getHandshake()));
+        assertAgree(rekey, X3dh.respond(bob, alice.getPublic(), rekey.getHandshake(), bobPrekeys::remove));
+
+        assertThrows(IllegalStateException.class,
+                () -> X3dh.initiate(alice, bob.getPublic(), 0, null, true));
+        assertThrows(IllegalArgumentException.class, () -> X3dh.isRekey("a:b"));
+        assertThrows(IllegalArgumentException.class, () -> X3dh.isRekey("a:b:1:X"));
+    }
+
+    @Test
+    void responderConfirmsOnlyPrekeySessions() throws Exception {
+        E2eeSession a = X3dh.initiate(alice, bob.getPublic(), 7, bobPrekey.getPublic());
+        E2eeSession b = X3dh.respond(bob, alice.getPublic(), a.getHandshake(), bobPrekeys::remove);
+
+        assertTrue(b.confirm());
+        assertFalse(b.confirm());
+        assertTrue(b.isConfirmed());
+        assertFalse(E2eeSession.create(alice, bob.getPublic()).confirm());
+    }
+}
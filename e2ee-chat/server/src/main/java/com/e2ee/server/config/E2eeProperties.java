@@ -0,0 +1,587 @@
+package com.e2ee.server.config;
+
+import com.e2ee.server.limit.OverLimitAction;
+import com.e2ee.server.protocol.MessageType;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * 서버 설정 (application.properties 의 e2ee.* → 타입 있는 객체로 바인딩).
+ *
+ * - 배포마다 다른 값은 재빌드 없이 properties / 환경변수(E2EE_SERVER_PORT 등) / --e2ee.xxx 인자로 덮어쓴다.
+ * - 기본값은 여기 필드 초기값 (properties 에 없어도 동작)
+ * - 각 컴포넌트는 생성자에서 필요한 묶음만 꺼내 쓴다.
+ */
+@ConfigurationProperties(prefix = "e2ee")
+public class E2eeProperties {
+
+    private final Server server = new Server();
+    private final Storage storage = new Storage();
+    private final Delivery delivery = new Delivery();
+    private final Compression compression = new Compression();
+    private final RateLimit rateLimit = new RateLimit();
+    private final Logging logging = new Logging();
+    private final Retention retention = new Retention();
+    private final Prekey prekey = new Prekey();
+
+    public Server getServer() {
+        return server;
+    }
+
+    public Storage getStorage() {
+        return storage;
+    }
+
+    public Delivery getDelivery() {
+        return delivery;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    public RateLimit getRateLimit() {
+        return rateLimit;
+    }
+
+    public Logging getLogging() {
+        return logging;
+    }
+
+    public Retention getRetention() {
+        return retention;
+    }
+
+    public Prekey getPrekey() {
+        return prekey;
+    }
+
+    // ============================================================
+    //  TCP 서버 (연결 스레드 / 소켓 버퍼)
+    // ============================================================
+    public static class Server {
+
+        private int port = 9000;
+
+        // accept 대기열 길이
+        private int backlog = 50;
+
+        // 연결 처리 스레드: false = 연결당 플랫폼 스레드, true = 연결당 가상 스레드
+        private boolean virtualThreads = false;
+
+        // 소켓 SO_RCVBUF / SO_SNDBUF (0 = OS 기본값)
+        private int socketReceiveBuffer = 0;
+        private int socketSendBuffer = 0;
+
+        // 줄 단위 읽기/쓰기 버퍼 (읽기는 바이트, 쓰기는 문자 수)
+        private int readBufferChars = 8192;
+        private int writeBufferChars = 8192;
+
+        // 수신 프레임(줄 1개) 최대 바이트 (타입별로 따로 안 정한 경우)
+        private int maxFrameBytes = 64 * 1024;
+
+        // 타입별 최대 바이트 (e2ee.server.frame-limits.FILE_CHUNK=262144)
+        private final Map<MessageType, Integer> frameLimits = new EnumMap<>(Map.of(
+                MessageType.FILE_CHUNK, 256 * 1024
+        ));
+
+        // KEY_BATCH_REQ 1번에 조회할 수 있는 최대 ID 수 (넘으면 KEY_BATCH_FAIL:TOO_MANY)
+        private int maxKeyBatch = 256;
+
+        public int getPort() {
+            return port;
+        }
+
+        public void setPort(int port) {
+            this.port = port;
+        }
+
+        public int getBacklog() {
+            return backlog;
+        }
+
+        public void setBacklog(int backlog) {
+            this.backlog = backlog;
+        }
+
+        public boolean isVirtualThreads() {
+            return virtualThreads;
+        }
+
+        public void setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+        }
+
+        public int getSocketReceiveBuffer() {
+            return socketReceiveBuffer;
+        }
+
+        public void setSocketReceiveBuffer(int socketReceiveBuffer) {
+            this.socketReceiveBuffer = socketReceiveBuffer;
+        }
+
+        public int getSocketSendBuffer() {
+            return socketSendBuffer;
+        }
+
+        public void setSocketSendBuffer(int socketSendBuffer) {
+            this.socketSendBuffer = socketSendBuffer;
+        }
+
+        public int getReadBufferChars() {
+            return readBufferChars;
+        }
+
+        public void setReadBufferChars(int readBufferChars) {
+            this.readBufferChars = readBufferChars;
+        }
+
+        public int getWriteBufferChars() {
+            return writeBufferChars;
+        }
+
+        public void setWriteBufferChars(int writeBufferChars) {
+            this.writeBufferChars = writeBufferChars;
+        }
+
+        public int getMaxFrameBytes() {
+            return maxFrameBytes;
+        }
+
+        public void setMaxFrameBytes(int maxFrameBytes) {
+            this.maxFrameBytes = maxFrameBytes;
+        }
+
+        public int getMaxKeyBatch() {
+            return maxKeyBatch;
+        }
+
+        public void setMaxKeyBatch(int maxKeyBatch) {
+            this.maxKeyBatch = maxKeyBatch;
+        }
+
+        public Map<MessageType, Integer> getFrameLimits() {
+            return frameLimits;
+        }
+
+        // 이 타입 프레임의 최대 바이트
+        public int frameLimit(MessageType type) {
+            return frameLimits.getOrDefault(type, maxFrameBytes);
+        }
+
+        // 타입을 읽기 전(줄을 모으는 중)에 쓰는 상한 = 타입별 상한 중 가장 큰 값
+        public int largestFrameLimit() {
+            int max = maxFrameBytes;
+            for (int v : frameLimits.values()) max = Math.max(max, v);
+            return max;
+        }
+    }
+
+    // ============================================================
+    //  파일 저장소
+    // ============================================================
+    public static class Storage {
+
+        // 저장 파일 위치 (작업 디렉터리 기준 상대경로 가능)
+        private String dataDir = "data";
+        private String usersFile = "users.json";
+        private String roomsFile = "rooms.json";
+        private String prekeysFile = "prekeys.json";
+        private String historyFile = "history.json";     // 예전 형식 (있으면 시작 때 shard 로 옮김)
+        private String historyDir = "history";
+
+        // 채팅 기록 shard 수 (대화 해시로 나눔, 바꾸면 다음 시작 때 다시 나눔)
+        private int historyShards = 8;
+
+        // 디스크 세그먼트 1개 최대 크기 (넘으면 새 세그먼트로)
+        private long historySegmentBytes = 16L * 1024 * 1024;
+
+        // 메모리(hot)에 남길 대화별 최근 메시지 바이트 / 대화 수 (전체 shard 합)
+        // → hot 힙 상한 ≈ 두 값의 곱 (기본 32KB x 4096 = 128MB)
+        private long historyHotBytesPerConversation = 32 * 1024;
+        private int historyHotConversations = 4096;
+
+        // HISTORY_REQ 1번에 돌려줄 최대 메시지 수
+        private int historyFetchMax = 100;
+
+        // 채팅 기록 저장 방식: FILE = 파일, MEMORY = 메모리만 (부하 테스트용, 대화별 최근 것만 / 재시작하면 사라짐)
+        private HistoryBackend historyBackend = HistoryBackend.FILE;
+
+        // 채팅 기록 파일 쓰기 주기: 0 = 메시지마다 바로, N = N ms 마다 모아서 1번
+        private long historyFlushIntervalMs = 0;
+
+        public String getDataDir() {
+            return dataDir;
+        }
+
+        public void setDataDir(String dataDir) {
+            this.dataDir = dataDir;
+        }
+
+        public String getUsersFile() {
+            return usersFile;
+        }
+
+        public void setUsersFile(String usersFile) {
+            this.usersFile = usersFile;
+        }
+
+        public String getRoomsFile() {
+            return roomsFile;
+        }
+
+        public void setRoomsFile(String roomsFile) {
+            this.roomsFile = roomsFile;
+        }
+
+        public String getPrekeysFile() {
+            return prekeysFile;
+        }
+
+        public void setPrekeysFile(String prekeysFile) {
+            this.prekeysFile = prekeysFile;
+        }
+
+        public String getHistoryFile() {
+            return historyFile;
+        }
+
+        public void setHistoryFile(String historyFile) {
+            this.historyFile = historyFile;
+        }
+
+        public String getHistoryDir() {
+            return historyDir;
+        }
+
+        public void setHistoryDir(String historyDir) {
+            this.historyDir = historyDir;
+        }
+
+        public int getHistoryShards() {
+            return historyShards;
+        }
+
+        public void setHistoryShards(int historyShards) {
+            this.historyShards = historyShards;
+        }
+
+        public long getHistorySegmentBytes() {
+            return historySegmentBytes;
+        }
+
+        public void setHistorySegmentBytes(long historySegmentBytes) {
+            this.historySegmentBytes = historySegmentBytes;
+        }
+
+        public long getHistoryHotBytesPerConversation() {
+            return historyHotBytesPerConversation;
+        }
+
+        public void setHistoryHotBytesPerConversation(long historyHotBytesPerConversation) {
+            this.historyHotBytesPerConversation = historyHotBytesPerConversation;
+        }
+
+        public int getHistoryHotConversations() {
+            return historyHotConversations;
+        }
+
+        public void setHistoryHotConversations(int historyHotConversations) {
+            this.historyHotConversations = historyHotConversations;
+        }
+
+        public int getHistoryFetchMax() {
+            return historyFetchMax;
+        }
+
+        public void setHistoryFetchMax(int historyFetchMax) {
+            this.historyFetchMax = historyFetchMax;
+        }
+
+        public HistoryBackend getHistoryBackend() {
+            return historyBackend;
+        }
+
+        public void setHistoryBackend(HistoryBackend historyBackend) {
+            this.historyBackend = historyBackend;
+        }
+
+        public long getHistoryFlushIntervalMs() {
+            return historyFlushIntervalMs;
+        }
+
+        public void setHistoryFlushIntervalMs(long historyFlushIntervalMs) {
+            this.historyFlushIntervalMs = historyFlushIntervalMs;
+        }
+    }
+
+    public enum HistoryBackend {
+        FILE,
+        MEMORY
+    }
+
+    // ============================================================
+    //  수신 확인 / 재전송
+    // ============================================================
+    public static class Delivery {
+
+        private long ackTimeoutMs = 5000;
+        private int maxAttempts = 3;
+
+        // 재전송 타이머 휠: tick 간격 / 칸 수
+        private long wheelTickMs = 100;
+        private int wheelSize = 512;
+
+        public long getAckTimeoutMs() {
+            return ackTimeoutMs;
+        }
+
+        public void setAckTimeoutMs(long ackTimeoutMs) {
+            this.ackTimeoutMs = ackTimeoutMs;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public void setMaxAttempts(int maxAttempts) {
+            this.maxAttempts = maxAttempts;
+        }
+
+        public long getWheelTickMs() {
+            return wheelTickMs;
+        }
+
+        public void setWheelTickMs(long wheelTickMs) {
+            this.wheelTickMs = wheelTickMs;
+        }
+
+        public int getWheelSize() {
+            return wheelSize;
+        }
+
+        public void setWheelSize(int wheelSize) {
+            this.wheelSize = wheelSize;
+        }
+    }
+
+    // ============================================================
+    //  프레임 압축
+    // ============================================================
+    public static class Compression {
+
+        private boolean enabled = true;
+        private int minBytes = 512;
+        private int level = 6;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMinBytes() {
+            return minBytes;
+        }
+
+        public void setMinBytes(int minBytes) {
+            this.minBytes = minBytes;
+        }
+
+        public int getLevel() {
+            return level;
+        }
+
+        public void setLevel(int level) {
+            this.level = level;
+        }
+    }
+
+    // ============================================================
+    //  속도 제한
+    // ============================================================
+    public static class RateLimit {
+
+        private boolean enabled = true;
+        private OverLimitAction action = OverLimitAction.WARN;
+        private long maxDelayMs = 500;
+
+        private final Bucket chat = new Bucket(20, 40);
+        private final Bucket key = new Bucket(5, 20);
+        private final Bucket auth = new Bucket(0.5, 5);
+        // 같은 IP 의 인증 시도 (재접속해도 이어짐, NAT 뒤 여러 명이 같이 쓰므로 넉넉하게)
+        private final Bucket authAddress = new Bucket(2, 20);
+        private int maxAddresses = 65536;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public OverLimitAction getAction() {
+            return action;
+        }
+
+        public void setAction(OverLimitAction action) {
+            this.action = action;
+        }
+
+        public long getMaxDelayMs() {
+            return maxDelayMs;
+        }
+
+        public void setMaxDelayMs(long maxDelayMs) {
+            this.maxDelayMs = maxDelayMs;
+        }
+
+        public Bucket getChat() {
+            return chat;
+        }
+
+        public Bucket getKey() {
+            return key;
+        }
+
+        public Bucket getAuth() {
+            return auth;
+        }
+
+        public Bucket getAuthAddress() {
+            return authAddress;
+        }
+
+        public int getMaxAddresses() {
+            return maxAddresses;
+        }
+
+        public void setMaxAddresses(int maxAddresses) {
+            this.maxAddresses = maxAddresses;
+        }
+    }
+
+    public static class Bucket {
+
+        private double perSecond;
+        private int burst;
+
+        public Bucket(double perSecond, int burst) {
+            this.perSecond = perSecond;
+            this.burst = burst;
+        }
+
+        public double getPerSecond() {
+            return perSecond;
+        }
+
+        public void setPerSecond(double perSecond) {
+            this.perSecond = perSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+
+    // ============================================================
+    //  채팅 기록 보존 (만료 / 정리)
+    // ============================================================
+    public static class Retention {
+
+        // 이보다 오래된 기록은 지움 (0 = 무기한)
+        private long maxAgeMs = 0;
+
+        // 대화별 최근 N개만 남김 (0 = 제한 없음, 켜면 정리 때마다 인덱스를 전부 읽음)
+        private int maxPerConversation = 0;
+
+        // 백그라운드 정리 주기 (0 = 정리 안 함, 만료된 것은 읽을 때만 걸러짐)
+        private long compactIntervalMs = 60_000;
+
+        public long getMaxAgeMs() {
+            return maxAgeMs;
+        }
+
+        public void setMaxAgeMs(long maxAgeMs) {
+            this.maxAgeMs = maxAgeMs;
+        }
+
+        public int getMaxPerConversation() {
+            return maxPerConversation;
+        }
+
+        public void setMaxPerConversation(int maxPerConversation) {
+            this.maxPerConversation = maxPerConversation;
+        }
+
+        public long getCompactIntervalMs() {
+            return compactIntervalMs;
+        }
+
+        public void setCompactIntervalMs(long compactIntervalMs) {
+            this.compactIntervalMs = compactIntervalMs;
+        }
+    }
+
+    // ============================================================
+    //  일회용 prekey (상대가 오프라인이어도 바로 세션 생성)
+    // ============================================================
+    public static class Prekey {
+
+        // 사용자당 보관할 최대 개수 (넘게 올린 것은 버림)
+        private int maxPerUser = 100;
+
+        // 남은 개수가 이보다 적으면 SYSTEM PREKEY_LOW:<남은 수> 로 더 올리라고 알림
+        private int lowWatermark = 20;
+
+        public int getMaxPerUser() {
+            return maxPerUser;
+        }
+
+        public void setMaxPerUser(int maxPerUser) {
+            this.maxPerUser = maxPerUser;
+        }
+
+        public int getLowWatermark() {
+            return lowWatermark;
+        }
+
+        public void setLowWatermark(int lowWatermark) {
+            this.lowWatermark = lowWatermark;
+        }
+    }
+
+    // ============================================================
+    //  로그
+    // ============================================================
+    public static class Logging {
+
+        private int frameSampleRate = 100;
+        private int bodyPreviewChars = 0;
+
+        public int getFrameSampleRate() {
+            return frameSampleRate;
+        }
+
+        public void setFrameSampleRate(int frameSampleRate) {
+            this.frameSampleRate = frameSampleRate;
+        }
+
+        public int getBodyPreviewChars() {
+            return bodyPreviewChars;
+        }
+
+        public void setBodyPreviewChars(int bodyPreviewChars) {
+            this.bodyPreviewChars = bodyPreviewChars;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.e2ee.server.delivery;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 보낸 사람 + 기기별 seq 로 재전송된 중복 메시지 걸러내기.
+ *
+ * 클라이언트는 seq 를 단조 증가로 붙이고, 재연결 후 outbox 를 오래된 것부터 다시 보낸다.
+ * 그래서 (사용자, 기기) 마다 "처리한 가장 큰 seq" 하나만 들고 있으면 된다.
+ * - 기기 = 클라이언트 프로세스가 정한 임의 ID (인증 body 의 device, 재연결해도 같음)
+ *   → seq 시작값이 다른 두 번째 기기의 메시지를 첫 기기 기준으로 버리지 않음
+ * - device 를 안 보내는 예전 클라이언트는 "" 기기 하나로 취급
+ * - 사용자마다 최근 MAX_DEVICES 개 기기만 기억 (오래 안 쓴 기기부터 잊음)
+ * (메모리에만 있으므로 서버 재시작 직후의 재전송은 걸러지지 않음)
+ *
+ * 사용자는 uid(1부터 빽빽)로 받아서 배열 칸 1개 → 그 사용자의 기기 표. 락은 사용자별.
+ */
+public class DuplicateFilter {
+
+    static final int MAX_DEVICES = 8;
+
+    private volatile AtomicReferenceArray<Devices> byUid = new AtomicReferenceArray<>(64);
+
+    /**
+     * @return 처음 보는 seq 면 true (seq 없는 구버전 메시지 / uid 없는 경우도 true)
+     */
+    public boolean accept(int uid, String device, Long seq) {
+        if (uid <= 0 || seq == null) return true;
+
+        return devicesOf(uid).advance((device == null) ? "" : device, seq);
+    }
+
+    private Devices devicesOf(int uid) {
+        AtomicReferenceArray<Devices> arr = byUid;
+        if (uid < arr.length()) {
+            Devices d = arr.get(uid);
+            if (d != null) return d;
+        }
+        return create(uid);
+    }
+
+    private synchronized Devices create(int uid) {
+        AtomicReferenceArray<Devices> arr = byUid;
+
+        if (uid >= arr.length()) {
+            AtomicReferenceArray<Devices> grown = new AtomicReferenceArray<>(Math.max(arr.length() * 2, uid + 1));
+            for (int i = 0; i < arr.length(); i++) grown.set(i, arr.get(i));
+            byUid = grown;
+            arr = grown;
+        }
+
+        Devices d = arr.get(uid);
+        if (d == null) {
+            d = new Devices();
+            arr.set(uid, d);
+        }
+        return d;
+    }
+
+    // 사용자 1명의 기기 → 가장 큰 seq (최근에 쓴 순서)
+    private static final class Devices {
+        private final Map<String, Long> highWater = new LinkedHashMap<>(4, 0.75f, true);
+
+        synchronized boolean advance(String device, long seq) {
+            Long prev = highWater.get(device);
+            if (prev != null && seq <= prev) return false;
+
+            highWater.put(device, seq);
+            if (highWater.size() > MAX_DEVICES) {
+                Iterator<String> eldest = highWater.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+            return true;
+        }
+    }
+}
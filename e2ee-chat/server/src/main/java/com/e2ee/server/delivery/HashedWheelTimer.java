@@ -0,0 +1,142 @@
+package com.e2ee.server.delivery;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 해시 타이밍 휠.
+ *
+ * 메시지마다 ScheduledFuture를 만들면 미확인 메시지 수만큼 힙 노드/취소 비용이 생기므로,
+ * 고정 칸(wheelSize) 배열에 만료 tick 기준으로 걸어두고 스레드 1개가 tick마다 한 칸씩 돈다.
+ * - 등록/취소 O(1), tick 처리는 그 칸에 걸린 개수만큼
+ * - 정확도는 tick 단위 (재전송 타이머라 100ms 정도면 충분)
+ * - 다른 스레드의 등록은 pending 큐로 받고, 칸 배열은 tick 스레드만 만진다.
+ */
+public class HashedWheelTimer {
+
+    /**
+     * 등록된 작업 1개. cancel() 하면 tick 스레드가 만났을 때 그냥 버린다.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineTick;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long tickNanos;
+    private final int mask;
+    private final List<Queue<Timeout>> wheel;
+
+    // 다른 스레드가 등록한 것 → 다음 tick에 칸으로 옮김
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+
+    private final long startNanos;
+    private volatile long tick;
+
+    private final Thread worker;
+
+    public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0 || wheelSize < 1) {
+            throw new IllegalArgumentException("tickDuration > 0, wheelSize >= 1 이어야 합니다.");
+        }
+
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;   // 2의 거듭제곱으로 올림
+        if (size < 1) size = 1;
+
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = size - 1;
+        this.wheel = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) wheel.add(new ArrayDeque<>());
+
+        this.startNanos = System.nanoTime();
+
+        this.worker = new Thread(this::run, name);
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * delay 뒤에 task 실행 (tick 스레드에서 실행되므로 task는 짧게).
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long elapsed = System.nanoTime() - startNanos + unit.toNanos(delay);
+
+        // 최소 다음 tick
+        long deadlineTick = Math.max((elapsed + tickNanos - 1) / tickNanos, tick + 1);
+
+        Timeout t = new Timeout(task, deadlineTick);
+        pending.add(t);
+        return t;
+    }
+
+    public void stop() {
+        worker.interrupt();
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long current = tick;
+                long sleep = startNanos + (current + 1) * tickNanos - System.nanoTime();
+                if (sleep > 0) TimeUnit.NANOSECONDS.sleep(sleep);
+
+                current++;
+                transferPending(current);
+                expire(wheel.get((int) (current & mask)));
+                tick = current;
+            }
+        } catch (InterruptedException e) {
+            // stop()
+        }
+    }
+
+    private void transferPending(long current) {
+        Timeout t;
+        while ((t = pending.poll()) != null) {
+            if (t.cancelled) continue;
+
+            long target = Math.max(t.deadlineTick, current);
+            t.remainingRounds = (target - current) / wheel.size();
+            wheel.get((int) (target & mask)).add(t);
+        }
+    }
+
+    private void expire(Queue<Timeout> bucket) {
+        Iterator<Timeout> it = bucket.iterator();
+        while (it.hasNext()) {
+            Timeout t = it.next();
+
+            if (t.cancelled) {
+                it.remove();
+            } else if (t.remainingRounds > 0) {
+                t.remainingRounds--;
+            } else {
+                it.remove();
+                try {
+                    t.task.run();
+                } catch (RuntimeException e) {
+                    // 작업 하나가 실패해도 휠은 계속 돈다
+                }
+            }
+        }
+    }
+}
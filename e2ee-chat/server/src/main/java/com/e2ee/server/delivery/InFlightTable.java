@@ -0,0 +1,243 @@
+package com.e2ee.server.delivery;
+
+import com.e2ee.server.config.E2eeProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 받는 사람에게 중계했지만 아직 DELIVERED/READ 를 못 받은 1:1 메시지 표.
+ *
+ * - 메시지 id → 항목 1개, 타이머는 HashedWheelTimer 칸에 걸어둔다. (메시지별 스레드/Future 없음)
+ * - ack-timeout 안에 수신 확인이 없으면 받는 사람의 "현재" 연결로 다시 보낸다. (재접속했을 수 있음)
+ * - max-attempts 번 보내도 확인이 없으면 포기하고 Listener.expired() 호출
+ * - 재전송은 가상 스레드에서 → 느린 소켓 하나가 휠을 멈추지 않게
+ * - 수신 확인은 그 메시지를 받은 사람만 할 수 있고, 원래 보낸 사람에게만 전달된다
+ * - id 는 클라이언트가 정하므로, 다른 보낸 사람이 쓰고 있는 id 로는 추적하지 않는다
+ *   (앞 사람 항목을 덮어써서 그 수신 확인을 가로채지 못하게)
+ *   (DELIVERED 뒤에 오는 READ 도 전달하도록 확인된 항목을 최근 RECENT_LIMIT 개 기억)
+ */
+@Component
+public class InFlightTable {
+
+    /**
+     * 재전송 / 포기 처리. ChatTcpServer가 등록한다.
+     */
+    public interface Listener {
+        // 받는 사람의 현재 연결로 다시 보내기 (오프라인이면 아무것도 안 함)
+        void redeliver(Entry entry);
+
+        // 최대 재시도 초과
+        void expired(Entry entry);
+    }
+
+    public static final class Entry {
+        private final String id;
+        private final String sender;
+        private final String receiver;
+        private final String json;
+        private volatile int attempts = 1;
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        private Entry(String id, String sender, String receiver, String json) {
+            this.id = id;
+            this.sender = sender;
+            this.receiver = receiver;
+            this.json = json;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getSender() {
+            return sender;
+        }
+
+        public String getReceiver() {
+            return receiver;
+        }
+
+        public String getJson() {
+            return json;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+
+    private final long ackTimeoutMs;
+    private final int maxAttempts;
+
+    private final HashedWheelTimer timer;
+
+    private final Map<String, Entry> inFlight = new ConcurrentHashMap<>();
+
+    // 이미 확인된 항목 (id → 항목, 오래된 것부터 버림)
+    static final int RECENT_LIMIT = 65_536;
+    private final Map<String, Entry> recent = new LinkedHashMap<>();
+
+    private volatile Listener listener;
+
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder confirmed = new LongAdder();
+
+    public InFlightTable(E2eeProperties props) {
+        E2eeProperties.Delivery p = props.getDelivery();
+        this.ackTimeoutMs = p.getAckTimeoutMs();
+        this.maxAttempts = p.getMaxAttempts();
+        this.timer = new HashedWheelTimer("inflight-wheel", p.getWheelTickMs(), TimeUnit.MILLISECONDS,
+                p.getWheelSize());
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 받는 사람에게 처음 쓴 직후 호출.
+     *
+     * @return false = 다른 보낸 사람이 이 id 를 쓰고 있어서 추적하지 않음
+     */
+    public boolean track(String id, String sender, String receiver, String json) {
+        if (usedByOther(recentOf(id), sender)) return false;
+
+        Entry e = new Entry(id, sender, receiver, json);
+
+        // 같은 보낸 사람이 같은 id로 다시 보내면(재전송) 기존 타이머는 취소하고 새로 건다
+        Entry[] replaced = {null};
+        Entry current = inFlight.compute(id, (k, old) -> {
+            if (usedByOther(old, sender)) return old;
+            replaced[0] = old;
+            return e;
+        });
+        if (current != e) return false;
+
+        if (replaced[0] != null && replaced[0].timeout != null) replaced[0].timeout.cancel();
+        arm(e);
+        return true;
+    }
+
+    /**
+     * 이 id 가 다른 보낸 사람의 (확인 중이거나 최근 확인된) 메시지에 쓰이고 있는지.
+     * 저장 / 중계 전에 걸러낼 때 (track 도 같은 검사를 다시 함)
+     */
+    public boolean isUsedByOther(String id, String sender) {
+        if (id == null) return false;
+        return usedByOther(inFlight.get(id), sender) || usedByOther(recentOf(id), sender);
+    }
+
+    /**
+     * DELIVERED / READ 수신 시 호출. 재전송을 멈추고 확인을 전달할 상대를 돌려준다.
+     *
+     * @param receiver 확인을 보낸 사용자 (인증된 연결의 ID)
+     * @return 원래 보낸 사람. 모르는 id 이거나 receiver 가 그 메시지를 받은 사람이 아니면 null
+     */
+    public String confirm(String id, String receiver) {
+        if (id == null || receiver == null) return null;
+
+        Entry e = inFlight.get(id);
+        if (e != null) {
+            if (!e.receiver.equals(receiver)) return null;
+
+            if (inFlight.remove(id, e)) {
+                if (e.timeout != null) e.timeout.cancel();
+                confirmed.increment();
+                remember(e);
+            }
+            return e.sender;
+        }
+
+        synchronized (recent) {
+            Entry r = recent.get(id);
+            return (r != null && r.receiver.equals(receiver)) ? r.sender : null;
+        }
+    }
+
+    /**
+     * 쓰기 실패로 추적할 필요가 없어진 항목 (확인도 재전송도 없이 지움).
+     */
+    public void forget(String id) {
+        Entry e = inFlight.remove(id);
+        if (e != null && e.timeout != null) e.timeout.cancel();
+    }
+
+    public int size() {
+        return inFlight.size();
+    }
+
+    public long retriedCount() {
+        return retried.sum();
+    }
+
+    public long expiredCount() {
+        return expired.sum();
+    }
+
+    public long confirmedCount() {
+        return confirmed.sum();
+    }
+
+    @PreDestroy
+    public void stop() {
+        timer.stop();
+    }
+
+    // ---------- 내부 ----------
+
+    private static boolean usedByOther(Entry e, String sender) {
+        return e != null && !e.sender.equals(sender);
+    }
+
+    private Entry recentOf(String id) {
+        synchronized (recent) {
+            return recent.get(id);
+        }
+    }
+
+    private void remember(Entry e) {
+        synchronized (recent) {
+            recent.put(e.id, e);
+            if (recent.size() > RECENT_LIMIT) {
+                Iterator<String> eldest = recent.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void arm(Entry e) {
+        e.timeout = timer.schedule(() -> Thread.startVirtualThread(() -> onTimeout(e)),
+                ackTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void onTimeout(Entry e) {
+        // 그 사이 확인됐거나 같은 id로 새 항목이 들어왔으면 무시
+        if (inFlight.get(e.id) != e) return;
+
+        Listener l = listener;
+
+        if (e.attempts >= maxAttempts || l == null) {
+            if (inFlight.remove(e.id, e)) {
+                expired.increment();
+                if (l != null) l.expired(e);
+            }
+            return;
+        }
+
+        e.attempts++;
+        retried.increment();
+
+        // 오프라인이어도 다음 타이머까지는 기다려 본다 (곧 재접속할 수 있음)
+        l.redeliver(e);
+        arm(e);
+    }
+}
@@ -0,0 +1,35 @@
+package com.e2ee.server.limit;
+
+import com.e2ee.server.protocol.MessageType;
+
+/**
+ * 속도 제한 예산 구분.
+ * 메시지 타입마다 어느 예산을 쓰는지 정한다. (null = 제한 없음)
+ */
+public enum LimitCategory {
+    CHAT,   // CHAT, ROOM_CHAT
+    KEY,    // KEY_REQ, KEY_BATCH_REQ, PREKEY_*, HISTORY_REQ (조회성 요청)
+    AUTH;   // AUTH_SIGNUP, AUTH_LOGIN
+
+    public static LimitCategory of(MessageType type) {
+        if (type == null) return null;
+
+        switch (type) {
+            case CHAT:
+            case ROOM_CHAT:
+                return CHAT;
+            case KEY_REQ:
+            case KEY_BATCH_REQ:
+            case PREKEY_REQ:
+            case PREKEY_UPLOAD:
+            case HISTORY_REQ:
+                return KEY;
+            case AUTH_SIGNUP:
+            case AUTH_LOGIN:
+                return AUTH;
+            default:
+                // FILE_* 는 청크 윈도우로 흐름 제어, 나머지는 저빈도
+                return null;
+        }
+    }
+}
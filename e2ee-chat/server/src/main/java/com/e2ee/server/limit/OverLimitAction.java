@@ -0,0 +1,10 @@
+package com.e2ee.server.limit;
+
+/**
+ * 한도를 넘은 프레임을 어떻게 처리할지.
+ */
+public enum OverLimitAction {
+    DELAY,  // 토큰이 생길 때까지 해당 연결 스레드를 잠깐 재움 (max-delay 넘으면 버림)
+    DROP,   // 조용히 버림
+    WARN    // 버리고 보낸 사람에게 SYSTEM "RATE_LIMITED:<분류>" 알림
+}
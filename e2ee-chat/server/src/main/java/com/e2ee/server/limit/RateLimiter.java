@@ -0,0 +1,224 @@
+package com.e2ee.server.limit;
+
+import com.e2ee.server.config.E2eeProperties;
+import com.e2ee.server.protocol.MessageType;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 중계 경로 속도 제한기.
+ *
+ * - 연결마다 / 사용자마다 토큰 버킷을 따로 둔다. (CHAT, KEY, AUTH 예산 분리)
+ * - 사용자 버킷은 인증된 연결의 uid(1부터 빽빽)로 배열 칸에 둔다. (아무 sender나 적어서 표를 불리는 것 방지)
+ * - 인증(AUTH)은 연결 버킷 + IP 버킷, 로그인은 거기에 계정 버킷도 (checkLogin)
+ *   → 다시 접속해서 새 연결 버킷을 받아도 비밀번호 시도 예산은 이어진다
+ * - 두 버킷 모두 토큰이 있을 때만 통과. 뒤 버킷에서 막히면 연결 버킷 토큰은 돌려줌
+ * - 한도 초과 시 DELAY / DROP / WARN 중 설정된 방식으로 처리
+ * - 분류별 통과/지연/차단 횟수를 LongAdder로 센다.
+ */
+@Component
+public class RateLimiter {
+
+    public enum Verdict {
+        ALLOW,  // 처리 계속
+        DROP,   // 조용히 버림
+        WARN    // 버리고 SYSTEM 경고
+    }
+
+    private final boolean enabled;
+    private final OverLimitAction action;
+    private final long maxDelayMs;
+    private final E2eeProperties.Bucket chatLimit;
+    private final E2eeProperties.Bucket keyLimit;
+    private final E2eeProperties.Bucket authLimit;
+    private final E2eeProperties.Bucket authAddressLimit;
+    private final int maxAddresses;
+
+    // uid → 분류별 버킷 (칸이 모자라면 create 에서 2배로)
+    private volatile AtomicReferenceArray<Buckets> userBuckets = new AtomicReferenceArray<>(64);
+
+    // IP → 인증 버킷 (상한을 넘으면 다 찬 버킷부터 지움, 훑기는 1초에 1번까지)
+    private final Map<InetAddress, TokenBucket> addressBuckets = new ConcurrentHashMap<>();
+    private volatile long nextSweepNanos = System.nanoTime();
+
+    // 분류별 카운터
+    private final Map<LimitCategory, LongAdder> allowed = counters();
+    private final Map<LimitCategory, LongAdder> delayed = counters();
+    private final Map<LimitCategory, LongAdder> limited = counters();
+
+    public RateLimiter(E2eeProperties props) {
+        E2eeProperties.RateLimit p = props.getRateLimit();
+        this.enabled = p.isEnabled();
+        this.action = p.getAction();
+        this.maxDelayMs = p.getMaxDelayMs();
+        this.chatLimit = p.getChat();
+        this.keyLimit = p.getKey();
+        this.authLimit = p.getAuth();
+        this.authAddressLimit = p.getAuthAddress();
+        this.maxAddresses = Math.max(1, p.getMaxAddresses());
+    }
+
+    /**
+     * 연결 하나의 버킷 묶음. handleClient에서 접속 시 1개 만든다.
+     */
+    public class Buckets {
+        private final TokenBucket chat = new TokenBucket(chatLimit.getPerSecond(), chatLimit.getBurst());
+        private final TokenBucket key = new TokenBucket(keyLimit.getPerSecond(), keyLimit.getBurst());
+        private final TokenBucket auth = new TokenBucket(authLimit.getPerSecond(), authLimit.getBurst());
+
+        private TokenBucket of(LimitCategory c) {
+            switch (c) {
+                case CHAT: return chat;
+                case KEY: return key;
+                default: return auth;
+            }
+        }
+    }
+
+    public Buckets newConnection() {
+        return new Buckets();
+    }
+
+    /**
+     * 프레임 1개 검사.
+     *
+     * @param conn 이 연결의 버킷
+     * @param type 프레임 타입
+     * @param uid  인증된 사용자 uid (0 이하 = 인증 전, 사용자 버킷 없음)
+     * @param remote 접속한 IP (AUTH 만 씀, null 이면 연결 버킷만)
+     */
+    public Verdict check(Buckets conn, MessageType type, int uid, InetAddress remote) {
+
+        LimitCategory category = LimitCategory.of(type);
+        if (!enabled || category == null) return Verdict.ALLOW;
+
+        TokenBucket first = conn.of(category);
+        TokenBucket second;
+        if (category == LimitCategory.AUTH) {
+            second = (remote != null) ? addressBucketOf(remote) : null;
+        } else {
+            second = (uid > 0) ? userBucketsOf(uid).of(category) : null;
+        }
+
+        long wait = acquire(first, second);
+        if (wait == 0) {
+            allowed.get(category).increment();
+            return Verdict.ALLOW;
+        }
+
+        // DELAY: 이 연결 스레드만 잠깐 재워서 보낸 사람 쪽에 역압을 건다
+        if (action == OverLimitAction.DELAY && wait <= TimeUnit.MILLISECONDS.toNanos(maxDelayMs)) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (acquire(first, second) == 0) {
+                delayed.get(category).increment();
+                return Verdict.ALLOW;
+            }
+        }
+
+        limited.get(category).increment();
+        return (action == OverLimitAction.WARN) ? Verdict.WARN : Verdict.DROP;
+    }
+
+    /**
+     * 로그인 1번: 그 계정의 인증 예산 (연결 / IP 와 상관없이 계정마다).
+     * 프레임 검사(check)를 통과한 뒤, 이름으로 uid 를 찾은 다음에 부른다. 기다리지 않음
+     */
+    public Verdict checkLogin(int uid) {
+        if (!enabled || uid <= 0) return Verdict.ALLOW;
+
+        if (acquire(userBucketsOf(uid).of(LimitCategory.AUTH), null) == 0) return Verdict.ALLOW;
+
+        limited.get(LimitCategory.AUTH).increment();
+        return (action == OverLimitAction.WARN) ? Verdict.WARN : Verdict.DROP;
+    }
+
+    // 연결 버킷 → 두 번째(사용자 / IP) 버킷 순서로 토큰 사용, 0 이면 둘 다 통과
+    // 두 번째에서 막히면 연결 버킷 토큰은 되돌림 (DELAY 재시도 때 2번 쓰지 않게)
+    private static long acquire(TokenBucket first, TokenBucket second) {
+        long now = System.nanoTime();
+
+        long wait = first.tryAcquire(now);
+        if (wait > 0 || second == null) return wait;
+
+        wait = second.tryAcquire(now);
+        if (wait > 0) first.refund();
+        return wait;
+    }
+
+    private TokenBucket addressBucketOf(InetAddress address) {
+        TokenBucket b = addressBuckets.get(address);
+        if (b != null) return b;
+
+        if (addressBuckets.size() >= maxAddresses) sweepAddresses();
+        return addressBuckets.computeIfAbsent(address,
+                a -> new TokenBucket(authAddressLimit.getPerSecond(), authAddressLimit.getBurst()));
+    }
+
+    // 다 찬 버킷은 지워도 새로 만든 것과 같음 (시도 기록이 남은 IP 는 그대로)
+    private void sweepAddresses() {
+        long now = System.nanoTime();
+        if (now - nextSweepNanos < 0) return;
+        nextSweepNanos = now + TimeUnit.SECONDS.toNanos(1);
+
+        addressBuckets.values().removeIf(b -> b.isFull(now));
+    }
+
+    private Buckets userBucketsOf(int uid) {
+        AtomicReferenceArray<Buckets> arr = userBuckets;
+        if (uid < arr.length()) {
+            Buckets b = arr.get(uid);
+            if (b != null) return b;
+        }
+        return create(uid);
+    }
+
+    private synchronized Buckets create(int uid) {
+        AtomicReferenceArray<Buckets> arr = userBuckets;
+
+        if (uid >= arr.length()) {
+            AtomicReferenceArray<Buckets> grown = new AtomicReferenceArray<>(Math.max(arr.length() * 2, uid + 1));
+            for (int i = 0; i < arr.length(); i++) grown.set(i, arr.get(i));
+            userBuckets = grown;
+            arr = grown;
+        }
+
+        Buckets b = arr.get(uid);
+        if (b == null) {
+            b = new Buckets();
+            arr.set(uid, b);
+        }
+        return b;
+    }
+
+    // ---------- 카운터 조회 ----------
+
+    public long allowedCount(LimitCategory category) {
+        return allowed.get(category).sum();
+    }
+
+    public long delayedCount(LimitCategory category) {
+        return delayed.get(category).sum();
+    }
+
+    public long limitedCount(LimitCategory category) {
+        return limited.get(category).sum();
+    }
+
+    private static Map<LimitCategory, LongAdder> counters() {
+        Map<LimitCategory, LongAdder> map = new EnumMap<>(LimitCategory.class);
+        for (LimitCategory c : LimitCategory.values()) map.put(c, new LongAdder());
+        return map;
+    }
+}
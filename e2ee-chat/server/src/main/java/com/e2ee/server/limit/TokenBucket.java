@@ -0,0 +1,65 @@
+package com.e2ee.server.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * lock-free 토큰 버킷.
+ *
+ * 토큰 개수 + 마지막 충전 시각 두 값을 따로 들고 있으면 락이 필요하므로,
+ * GCRA 방식으로 "다음 토큰이 생기는 이론상 시각(TAT)" 하나만 AtomicLong에 둔다.
+ * - 초당 ratePerSecond 개 충전, 최대 burst 개까지 몰아 쓸 수 있음
+ * - tryAcquire()는 CAS 한 번(경합 시 재시도)으로 끝나서 매 프레임 호출해도 싸다.
+ */
+public class TokenBucket {
+
+    // 토큰 1개가 충전되는 간격 (ns)
+    private final long intervalNanos;
+
+    // 한꺼번에 허용하는 여유 (burst - 1) * interval
+    private final long toleranceNanos;
+
+    // 이론상 다음 도착 시각
+    private final AtomicLong tat = new AtomicLong(Long.MIN_VALUE);
+
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("rate > 0, burst >= 1 이어야 합니다.");
+        }
+        this.intervalNanos = (long) (1_000_000_000L / ratePerSecond);
+        this.toleranceNanos = intervalNanos * (burst - 1);
+    }
+
+    /**
+     * 토큰 1개 사용 시도.
+     *
+     * @return 0 이면 통과, 0보다 크면 토큰이 없어서 그만큼(ns) 기다려야 함 (토큰은 소모하지 않음)
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long current = tat.get();
+            long base = (current == Long.MIN_VALUE || current < nowNanos) ? nowNanos : current;
+
+            long wait = base - nowNanos - toleranceNanos;
+            if (wait > 0) return wait;
+
+            if (tat.compareAndSet(current, base + intervalNanos)) return 0;
+        }
+    }
+
+    /**
+     * 방금 tryAcquire() 로 쓴 토큰 1개를 되돌림.
+     * (다른 버킷에서 막혀서 프레임을 결국 처리하지 않을 때)
+     * 되돌린 TAT 가 현재보다 과거가 되어도 다음 tryAcquire() 가 now 로 맞추므로 burst 를 넘지 않는다.
+     */
+    public void refund() {
+        tat.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * burst 만큼 다 차 있는지 (한동안 안 쓴 버킷 → 지워도 다음에 새로 만든 것과 같음)
+     */
+    public boolean isFull(long nowNanos) {
+        long current = tat.get();
+        return current == Long.MIN_VALUE || current <= nowNanos;
+    }
+}
@@ -0,0 +1,79 @@
+package com.e2ee.server.logging;
+
+import com.e2ee.server.config.E2eeProperties;
+import com.e2ee.server.protocol.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 프레임 단위 로그.
+ *
+ * - 로거 이름 "com.e2ee.server.frames" 가 DEBUG일 때만 기록 (기본 INFO → 레벨 체크 1번으로 끝)
+ * - DEBUG여도 frame-sample-rate 개 중 1개만 기록
+ * - body는 길이만 남기고 가린다. (body-preview-chars 로 앞부분 노출 가능)
+ */
+@Component
+public class FrameLog {
+
+    private static final Logger log = LoggerFactory.getLogger("com.e2ee.server.frames");
+
+    private final int sampleRate;
+    private final int previewChars;
+
+    private final AtomicLong seen = new AtomicLong();
+
+    public FrameLog(E2eeProperties props) {
+        this.sampleRate = props.getLogging().getFrameSampleRate();
+        this.previewChars = props.getLogging().getBodyPreviewChars();
+    }
+
+    // 수신 프레임
+    public void inbound(ChatMessage msg, int length) {
+        if (!log.isDebugEnabled() || !sample()) return;
+
+        log.atDebug()
+                .addKeyValue("dir", "in")
+                .addKeyValue("id", msg.getId())
+                .addKeyValue("type", msg.getType())
+                .addKeyValue("sender", msg.getSender())
+                .addKeyValue("receiver", msg.getReceiver())
+                .addKeyValue("len", length)
+                .addKeyValue("body", redact(msg.getBody()))
+                .log("frame");
+    }
+
+    // 중계 결정 (CHAT / ROOM_CHAT 등)
+    public void relayed(ChatMessage msg, int recipients) {
+        if (!log.isDebugEnabled() || !sample()) return;
+
+        log.atDebug()
+                .addKeyValue("dir", "relay")
+                .addKeyValue("id", msg.getId())
+                .addKeyValue("type", msg.getType())
+                .addKeyValue("sender", msg.getSender())
+                .addKeyValue("receiver", msg.getReceiver())
+                .addKeyValue("recipients", recipients)
+                .addKeyValue("len", (msg.getRaw() == null) ? null : msg.getRaw().length())
+                .log("relay");
+    }
+
+    /**
+     * body 가리기.
+     * 기본은 "<len=NN>" 만, previewChars > 0 이면 앞부분 + 길이.
+     */
+    public String redact(String body) {
+        if (body == null) return null;
+
+        if (previewChars <= 0) return "<len=" + body.length() + ">";
+        if (body.length() <= previewChars) return body;
+
+        return body.substring(0, previewChars) + "…<len=" + body.length() + ">";
+    }
+
+    private boolean sample() {
+        return sampleRate <= 1 || seen.getAndIncrement() % sampleRate == 0;
+    }
+}
@@ -0,0 +1,298 @@
+package com.e2ee.server.metrics;
+
+import com.e2ee.server.delivery.InFlightTable;
+import com.e2ee.server.limit.LimitCategory;
+import com.e2ee.server.limit.RateLimiter;
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
+import com.e2ee.server.protocol.NanoClock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * TCP 중계 서버 지표 (Micrometer → /actuator/prometheus).
+ *
+ * - e2ee.connections.active   : 현재 접속 수
+ * - e2ee.frames.in / out      : MessageType별 프레임 수
+ * - e2ee.handler.latency      : 타입별 핸들러 처리 시간
+ * - e2ee.history.write        : 히스토리 저장 시간
+ * - e2ee.broadcast.fanout     : ALL / 그룹방 fan-out 시간
+ * - e2ee.outbound.writers     : 지금 소켓에 쓰는 중이거나 그 연결의 쓰기 락을 기다리는 스레드 수
+ *                               (송신 큐가 따로 없으므로 큐 길이가 아니라 쓰기 경합 정도)
+ * - e2ee.ratelimit.*          : RateLimiter 카운터
+ * - e2ee.trace.uplink         : 클라 송신(sendNanos) → 서버 수신
+ * - e2ee.trace.persist        : 서버 수신 → 히스토리 저장 완료
+ * - e2ee.trace.forward        : 서버 수신 → 상대에게 쓰기 완료
+ *   (trace.* 는 id/sendNanos 를 실어 보낸 메시지만)
+ * - e2ee.delivery.inflight    : 수신 확인 대기 중인 1:1 메시지 수
+ * - e2ee.delivery.*           : 확인/재전송/포기 횟수
+ * - e2ee.compression.*        : 압축 전/후 길이, 압축 비율(후/전), 압축에 쓴 CPU 시간
+ * - e2ee.prekeys.*            : 올라온 prekey 수, 내준 번들 수 (일회용 prekey 포함 / 다 떨어져 신원키만)
+ *
+ * 매 프레임마다 태그 조회를 하지 않도록 타입별 미터는 미리 만들어 둔다.
+ */
+@Component
+public final class RelayMetrics {
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final AtomicInteger activeWriters = new AtomicInteger();
+
+    private final Map<MessageType, Counter> framesIn = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Counter> framesOut = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Timer> handlerLatency = new EnumMap<>(MessageType.class);
+
+    private final Map<MessageType, Timer> traceUplink = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Timer> tracePersist = new EnumMap<>(MessageType.class);
+    private final Map<MessageType, Timer> traceForward = new EnumMap<>(MessageType.class);
+
+    // 크기 상한을 넘어 버린 수신 프레임
+    private final Counter oversizedFrames;
+
+    private final Timer historyWrite;
+
+    // 기록 보존 정리 (compactor)
+    private final Counter compactionReclaimed;
+    private final Counter compactionDropped;
+    private final Timer compactionTime;
+    private final Timer broadcastFanout;
+
+    // 일회용 prekey
+    private final Counter prekeysUploaded;
+    private final Counter bundlesWithPrekey;
+    private final Counter bundlesIdentityOnly;
+
+    // 압축 (협상된 연결의 제어/일괄 프레임만)
+    private final LongAdder compressionIn = new LongAdder();
+    private final LongAdder compressionOut = new LongAdder();
+    private final Counter compressedFrames;
+    private final Counter incompressibleFrames;
+    private final Timer compressionTime;
+
+    public RelayMetrics(MeterRegistry registry, RateLimiter rateLimiter, InFlightTable inFlight) {
+
+        Gauge.builder("e2ee.connections.active", activeConnections, AtomicInteger::get)
+                .description("현재 TCP 접속 수")
+                .register(registry);
+
+        Gauge.builder("e2ee.outbound.writers", activeWriters, AtomicInteger::get)
+                .description("PrintWriter 에 쓰는 중이거나 쓰기 락을 기다리는 스레드 수")
+                .register(registry);
+
+        for (MessageType type : MessageType.values()) {
+            framesIn.put(type, Counter.builder("e2ee.frames.in")
+                    .tag("type", type.name())
+                    .register(registry));
+
+            framesOut.put(type, Counter.builder("e2ee.frames.out")
+                    .tag("type", type.name())
+                    .register(registry));
+
+            handlerLatency.put(type, Timer.builder("e2ee.handler.latency")
+                    .tag("type", type.name())
+                    .register(registry));
+
+            traceUplink.put(type, Timer.builder("e2ee.trace.uplink")
+                    .tag("type", type.name())
+                    .register(registry));
+
+            tracePersist.put(type, Timer.builder("e2ee.trace.persist")
+                    .tag("type", type.name())
+                    .register(registry));
+
+            traceForward.put(type, Timer.builder("e2ee.trace.forward")
+                    .tag("type", type.name())
+                    .register(registry));
+        }
+
+        Gauge.builder("e2ee.delivery.inflight", inFlight, InFlightTable::size)
+                .description("DELIVERED/READ 대기 중인 1:1 메시지 수")
+                .register(registry);
+        FunctionCounter.builder("e2ee.delivery.confirmed", inFlight, InFlightTable::confirmedCount)
+                .register(registry);
+        FunctionCounter.builder("e2ee.delivery.retried", inFlight, InFlightTable::retriedCount)
+                .register(registry);
+        FunctionCounter.builder("e2ee.delivery.expired", inFlight, InFlightTable::expiredCount)
+                .register(registry);
+
+        oversizedFrames = Counter.builder("e2ee.frames.oversized")
+                .description("크기 상한을 넘어 처리하지 않고 버린 수신 프레임 수")
+                .register(registry);
+
+        historyWrite = Timer.builder("e2ee.history.write").register(registry);
+
+        compactionReclaimed = Counter.builder("e2ee.history.compaction.reclaimed")
+                .description("기록 정리로 회수한 디스크 바이트")
+                .baseUnit("bytes")
+                .register(registry);
+        compactionDropped = Counter.builder("e2ee.history.compaction.dropped")
+                .description("만료 / 개수 초과로 지운 메시지 수")
+                .register(registry);
+        compactionTime = Timer.builder("e2ee.history.compaction.time")
+                .description("기록 정리 1번에 걸린 시간")
+                .register(registry);
+        broadcastFanout = Timer.builder("e2ee.broadcast.fanout").register(registry);
+
+        prekeysUploaded = Counter.builder("e2ee.prekeys.uploaded")
+                .description("클라이언트가 올린 일회용 prekey 수")
+                .register(registry);
+        bundlesWithPrekey = Counter.builder("e2ee.prekeys.bundles")
+                .tag("prekey", "one-time")
+                .register(registry);
+        bundlesIdentityOnly = Counter.builder("e2ee.prekeys.bundles")
+                .tag("prekey", "none")
+                .register(registry);
+
+        FunctionCounter.builder("e2ee.compression.input", compressionIn, LongAdder::sum)
+                .description("압축 전 프레임 길이 합")
+                .register(registry);
+        FunctionCounter.builder("e2ee.compression.output", compressionOut, LongAdder::sum)
+                .description("압축 후 프레임 길이 합")
+                .register(registry);
+        Gauge.builder("e2ee.compression.ratio", this, RelayMetrics::compressionRatio)
+                .description("압축 후 / 압축 전 (낮을수록 잘 줄어듦)")
+                .register(registry);
+        compressedFrames = Counter.builder("e2ee.compression.frames")
+                .tag("result", "compressed")
+                .register(registry);
+        incompressibleFrames = Counter.builder("e2ee.compression.frames")
+                .tag("result", "incompressible")
+                .register(registry);
+        compressionTime = Timer.builder("e2ee.compression.time")
+                .description("프레임 1개 압축에 쓴 시간")
+                .register(registry);
+
+        for (LimitCategory c : LimitCategory.values()) {
+            FunctionCounter.builder("e2ee.ratelimit.allowed", rateLimiter, r -> r.allowedCount(c))
+                    .tag("category", c.name())
+                    .register(registry);
+            FunctionCounter.builder("e2ee.ratelimit.delayed", rateLimiter, r -> r.delayedCount(c))
+                    .tag("category", c.name())
+                    .register(registry);
+            FunctionCounter.builder("e2ee.ratelimit.limited", rateLimiter, r -> r.limitedCount(c))
+                    .tag("category", c.name())
+                    .register(registry);
+        }
+    }
+
+    // ---------- 접속 ----------
+
+    public void connectionOpened() {
+        activeConnections.incrementAndGet();
+    }
+
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    // ---------- 프레임 ----------
+
+    public void frameIn(MessageType type) {
+        if (type != null) framesIn.get(type).increment();
+    }
+
+    public void frameOut(MessageType type) {
+        if (type != null) framesOut.get(type).increment();
+    }
+
+    public void frameOversized() {
+        oversizedFrames.increment();
+    }
+
+    public void writeStarted() {
+        activeWriters.incrementAndGet();
+    }
+
+    public void writeFinished() {
+        activeWriters.decrementAndGet();
+    }
+
+    // ---------- 처리 시간 ----------
+
+    public void recordHandler(MessageType type, long nanos) {
+        if (type != null) handlerLatency.get(type).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordHistoryWrite(long nanos) {
+        historyWrite.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordCompaction(long reclaimedBytes, long droppedMessages, long nanos) {
+        compactionReclaimed.increment(reclaimedBytes);
+        compactionDropped.increment(droppedMessages);
+        compactionTime.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // ---------- prekey ----------
+
+    public void prekeysUploaded(int count) {
+        prekeysUploaded.increment(count);
+    }
+
+    public void bundleServed(boolean withPrekey) {
+        (withPrekey ? bundlesWithPrekey : bundlesIdentityOnly).increment();
+    }
+
+    public void recordFanout(long nanos) {
+        broadcastFanout.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // ---------- 압축 ----------
+
+    // 줄 길이(문자 수) 기준, 압축해도 안 줄어든 프레임은 원본으로 나가므로 원본 길이로 계산
+    public void recordCompression(int rawLength, int encodedLength, long nanos) {
+        compressionTime.record(nanos, TimeUnit.NANOSECONDS);
+        compressionIn.add(rawLength);
+
+        if (encodedLength < rawLength) {
+            compressionOut.add(encodedLength);
+            compressedFrames.increment();
+        } else {
+            compressionOut.add(rawLength);
+            incompressibleFrames.increment();
+        }
+    }
+
+    private double compressionRatio() {
+        long in = compressionIn.sum();
+        return (in == 0) ? 1.0 : (double) compressionOut.sum() / in;
+    }
+
+    // ---------- 메시지 추적 (id / sendNanos 있는 메시지만) ----------
+
+    // 수신 직후: 수신 시각 찍고, 클라 송신 → 서버 수신 구간 기록
+    public void traceReceived(ChatMessage msg) {
+        msg.markReceived(NanoClock.now());
+
+        if (!traced(msg)) return;
+
+        // 시계 차이로 음수가 나오면 버림
+        long uplink = msg.getRecvNanos() - msg.getSendNanos();
+        if (uplink >= 0) traceUplink.get(msg.getType()).record(uplink, TimeUnit.NANOSECONDS);
+    }
+
+    public void tracePersisted(ChatMessage msg) {
+        if (traced(msg)) {
+            tracePersist.get(msg.getType()).record(NanoClock.now() - msg.getRecvNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void traceForwarded(ChatMessage msg) {
+        if (traced(msg)) {
+            traceForward.get(msg.getType()).record(NanoClock.now() - msg.getRecvNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static boolean traced(ChatMessage msg) {
+        return msg.getType() != null && msg.getSendNanos() != null;
+    }
+}
@@ -4,6 +4,8 @@ public class AuthPayload {
     private String id;
     private String password;
     private String publicKey;
+    private String compression;   // 클라가 지원하는 압축 (FrameCodec.NAME), 없으면 압축 안 함
+    private String device;        // 클라 프로세스별 임의 ID (재연결해도 같음) → seq 중복 제거 단위
 
     public AuthPayload() {
     }
@@ -24,4 +26,12 @@ public class AuthPayload {
     public String getPublicKey() {
         return publicKey;
     }
+
+    public String getCompression() {
+        return compression;
+    }
+
+    public String getDevice() {
+        return device;
+    }
 }
@@ -1,5 +1,11 @@
 package com.e2ee.server.protocol;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+
 /**
  * 클라이언트가 보내오는 JSON 한 줄을 담는 그릇.
  * (클라 쪽 ChatMessage랑 같은 모양이어야 함)
@@ -12,6 +18,20 @@ public class ChatMessage {
     private String body;
     private String timestamp;
 
+    // 지연 추적용 (선택) - 구버전 클라이언트는 안 보냄 → null
+    private String id;          // 메시지 상관 ID
+    private Long sendNanos;     // 송신 시각 (NanoClock, epoch 나노초)
+    private Long seq;           // 보낸 사람별 단조 증가 번호 (재전송 중복 제거)
+
+    // 사라지는 메시지 (선택) - 서버 기록에서 이 초 뒤에 만료
+    private Long ttl;
+
+    // 서버 수신 시각 (NanoClock) - 서버 안에서만 쓰고 직렬화 안 함
+    private transient long recvNanos;
+
+    // parseHeader() 로 읽은 경우 원본 JSON 줄 (중계 시 그대로 전달)
+    private transient String raw;
+
     // Gson이 사용하기 위한 기본 생성자
     public ChatMessage() {
     }
@@ -48,6 +68,80 @@ public class ChatMessage {
         return timestamp;
     }
 
+    public String getRaw() {
+        return raw;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public Long getSendNanos() {
+        return sendNanos;
+    }
+
+    public Long getSeq() {
+        return seq;
+    }
+
+    public Long getTtl() {
+        return ttl;
+    }
+
+    public long getRecvNanos() {
+        return recvNanos;
+    }
+
+    public void markReceived(long nanos) {
+        this.recvNanos = nanos;
+    }
+
+    /**
+     * 라우팅 헤더만 읽기 (중계 fast path).
+     *
+     * type / sender / receiver / timestamp / id / seq / sendNanos / ttl 만 꺼내고
+     * body(암호문)는 JsonReader.skipValue() 로 건너뛴다 → 본문 String 을 만들지 않음.
+     * 원본 줄은 raw 에 남겨서 받는 사람에게 그대로 보낸다.
+     */
+    public static ChatMessage parseHeader(String line) throws IOException {
+        ChatMessage m = new ChatMessage();
+        m.raw = line;
+
+        try (JsonReader r = new JsonReader(new StringReader(line))) {
+            r.beginObject();
+            while (r.hasNext()) {
+                String name = r.nextName();
+
+                if (r.peek() == JsonToken.NULL) {
+                    r.skipValue();
+                    continue;
+                }
+
+                switch (name) {
+                    case "type" -> m.type = parseType(r.nextString());
+                    case "sender" -> m.sender = r.nextString();
+                    case "receiver" -> m.receiver = r.nextString();
+                    case "timestamp" -> m.timestamp = r.nextString();
+                    case "id" -> m.id = r.nextString();
+                    case "seq" -> m.seq = r.nextLong();
+                    case "sendNanos" -> m.sendNanos = r.nextLong();
+                    case "ttl" -> m.ttl = r.nextLong();
+                    default -> r.skipValue();   // body 등
+                }
+            }
+        }
+        return m;
+    }
+
+    // Gson 과 같이, 모르는 타입 이름은 null
+    private static MessageType parseType(String name) {
+        try {
+            return MessageType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
     @Override
     public String toString() {
         return "ChatMessage{" +
@@ -56,6 +150,9 @@ public class ChatMessage {
                 ", receiver='" + receiver + '\'' +
                 ", body='" + body + '\'' +
                 ", timestamp='" + timestamp + '\'' +
+                ", id='" + id + '\'' +
+                ", sendNanos=" + sendNanos +
+                ", seq=" + seq +
                 '}';
     }
 }
@@ -7,5 +7,25 @@ public enum MessageType {
     SYSTEM,      // 시스템 메시지(공지 등)
     AUTH_SIGNUP,   // 회원가입 요청
     AUTH_LOGIN,    // 로그인 요청
-    AUTH_RESULT    // 회원가입/로그인 결과
+    AUTH_RESULT,   // 회원가입/로그인 결과
+    KEY_BATCH_REQ, // 여러 상대 공개키 일괄 요청 (body = ID 목록 JSON 배열)
+    KEY_BATCH_RES, // 일괄 요청 응답 (body = {ID: 공개키} JSON 객체)
+    ROOM_CREATE,   // 그룹방 생성 (receiver = 방 이름)
+    ROOM_JOIN,     // 그룹방 입장
+    ROOM_LEAVE,    // 그룹방 퇴장
+    ROOM_MEMBERS,  // 서버 → 클라: 방 멤버 목록 (sender = 방 이름, body = ID 목록 JSON 배열)
+    ROOM_CHAT,     // 그룹 메시지 (sender key로 한 번만 암호화, 서버가 멤버 전원에게 중계)
+    SENDER_KEY,    // 1:1 세션으로 암호화된 sender key 전달
+    FILE_OFFER,    // 파일 전송 제안 (body = 1:1 세션으로 암호화된 파일 정보)
+    FILE_ACCEPT,   // 파일 수락 (body = fileId:시작 청크 번호, 이어받기)
+    FILE_CHUNK,    // 파일 청크 (body = fileId:청크 번호:암호문 Base64)
+    FILE_ACK,      // 수신 확인 (body = fileId:다음에 받을 청크 번호, 흐름 제어)
+    ACK,           // 서버 → 보낸 사람: 저장 완료 (body = 메시지 id, 재전송 대기열에서 제거)
+    DELIVERED,     // 받는 사람 → 보낸 사람: 수신 완료 (body = 메시지 id, 서버 재전송 중단)
+    READ,          // 받는 사람 → 보낸 사람: 읽음 (body = 메시지 id)
+    PREKEY_UPLOAD, // 클라 → 서버: 일회용 prekey 묶음 (body = {id: 공개키} JSON 객체)
+    PREKEY_REQ,    // 상대 prekey 번들 요청 (receiver = 상대ID, body = 내 공개키 / prekey 없는 상대면 KEY_REQ 처럼 처리)
+    PREKEY_BUNDLE, // 서버 → 요청자: 번들 (sender = 상대ID, body = {identityKey, prekeyId, prekey} JSON 객체)
+    HISTORY_REQ,   // 서버에 저장된 기록 요청 (receiver = 상대ID / #방이름, body = 개수)
+    HISTORY_RES    // 서버 → 요청자: 최근 기록 (sender = 요청한 대상, body = 원본 JSON 줄 배열, 오래된 것부터)
 }
@@ -0,0 +1,958 @@
+package com.e2ee.server.store;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 채팅 기록 shard 1개: 자기 디렉터리 + 자기 락.
+ *
+ * - hot: 대화마다 최근 N바이트(UTF-8)만 메모리 링에 (대화 수도 LRU 로 제한 → 힙 크기 고정)
+ *   디스크에 옛 기록이 없는 대화로 생긴 링이 아직 아무것도 안 뺐으면 그 대화 전체 → 디스크를 안 읽음
+ * - cold: 디스크 세그먼트 (NNNNNNNN.log = JSON 줄, NNNNNNNN.idx = 줄마다 고정 36바이트)
+ *   인덱스 항목: [대화 해시 8B, 위치 8B, 길이 4B, 저장 시각 8B, 만료 시각 8B(0 = 없음)]
+ *   마지막 세그먼트에만 이어쓰고, segmentBytes 를 넘으면 닫고 새 세그먼트로
+ * - 시작할 때는 세그먼트 목록 / 파일 크기 / 인덱스의 대화 해시만 본다 (본문은 읽지 않음)
+ *   인덱스가 로그와 안 맞으면(중간에 죽음) 로그를 기준으로 그 세그먼트 인덱스를 다시 만듦
+ * - compact() 의 세그먼트 교체는 NNNNNNNN.swap 표시 파일로 로그 + 인덱스를 한 묶음으로
+ *   (교체 중에 죽으면 open() 이 남은 .tmp 를 마저 옮김 → 새 로그 + 옛 인덱스가 섞이지 않음)
+ * - 디스크 조회(scan)는 shard 락 밖에서 읽기 락만 잡고, compact() 의 파일 교체 / 삭제가 쓰기 락
+ * - 만료(나이 / TTL) 된 메시지는 읽을 때 거르고, 실제 삭제는 compact() 가 닫힌 세그먼트를 다시 써서
+ * - 같은 대화는 항상 같은 shard 로 오므로, shard 안의 순서 = 대화 안의 순서
+ * - dir == null 이면 메모리(hot)만 (backend = MEMORY)
+ */
+class HistoryShard {
+
+    private static final Logger log = LoggerFactory.getLogger(HistoryShard.class);
+
+    static final int INDEX_ENTRY = 8 + 8 + 4 + 8 + 8;
+
+    // 인덱스 형식 버전 (없으면 예전 16바이트 인덱스 → 로그에서 다시 만듦)
+    private static final String FORMAT = "2";
+
+    /**
+     * 로그 줄 → 인덱스에 넣을 값 (인덱스를 다시 만들 때만)
+     */
+    record FrameMeta(long key, long ttlMillis) {
+    }
+
+    /**
+     * compact() 1번 결과
+     */
+    record Compaction(long reclaimedBytes, long droppedMessages, int rewrittenSegments, int deletedSegments) {
+        static final Compaction NONE = new Compaction(0, 0, 0, 0);
+    }
+
+    private final int index;
+    private final File dir;
+    private final long segmentBytes;
+    private final long hotBytesPerConversation;
+    private final long maxAgeMs;
+
+    // 대화 → 최근 메시지 링 (접근 순서, 넘치면 가장 오래 안 쓴 대화부터 뺌)
+    private final Map<String, HotRing> hot;
+
+    // 오래된 것부터 (마지막이 쓰는 중인 세그먼트)
+    private final List<Segment> segments = new ArrayList<>();
+
+    // 디스크에 한 번이라도 쓰인 대화 해시 (compact 로 다 지워져도 빼지 않음 → 디스크를 한 번 더 읽을 뿐)
+    // 인덱스를 못 읽었으면 keysKnown = false → 모든 링을 불완전으로
+    private final Set<Long> diskKeys = new HashSet<>();
+    private boolean keysKnown = true;
+
+    // scan() 이 락 밖에서 읽는 동안 compact() 가 파일을 바꾸거나 지우지 않게
+    // (항상 이 락 먼저, shard 락 나중)
+    private final ReadWriteLock files = new ReentrantReadWriteLock();
+
+    private OutputStream logOut;
+    private DataOutputStream idxOut;
+    private boolean dirty;
+    private boolean closed;
+
+    // backend = MEMORY 일 때 총 개수
+    private long memoryCount;
+
+    HistoryShard(int index, File dir, long segmentBytes, long hotBytesPerConversation, int hotConversations, long maxAgeMs) {
+        this.index = index;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.hotBytesPerConversation = Math.max(1, hotBytesPerConversation);
+        this.maxAgeMs = maxAgeMs;
+        this.hot = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HotRing> eldest) {
+                return size() > Math.max(1, hotConversations);
+            }
+        };
+    }
+
+    /**
+     * 대화 키 → 인덱스용 64비트 해시 (FNV-1a). 32비트 hashCode 보다 충돌이 훨씬 적어서
+     * 대화별 개수 제한을 인덱스만 보고 셀 수 있다.
+     */
+    static long keyHash(String conversation) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < conversation.length(); i++) {
+            h ^= conversation.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // 이 시각 이후에 저장된 것만 살아 있음 (maxAge 없으면 0)
+    private long ageCutoff(long now) {
+        return (maxAgeMs > 0) ? now - maxAgeMs : 0;
+    }
+
+    private static boolean live(long storedAt, long expiresAt, long now, long cutoff) {
+        return (expiresAt == 0 || expiresAt > now) && storedAt >= cutoff;
+    }
+
+    // ============================================================
+    //  세그먼트
+    // ============================================================
+
+    // 세그먼트 1개의 메타 정보만 (메시지 수와 무관한 크기)
+    static final class Segment {
+        final long id;
+        final File log;
+        final File idx;
+        final File swap;
+        long bytes;
+        long count;
+
+        // 만료 요약 (닫힌 세그먼트는 compact() 가 처음 볼 때 계산)
+        boolean summarized;
+        long minStoredAt = Long.MAX_VALUE;
+        long maxStoredAt = Long.MIN_VALUE;
+        long minExpiresAt = Long.MAX_VALUE;
+
+        Segment(File dir, long id) {
+            this.id = id;
+            this.log = new File(dir, String.format("%08d.log", id));
+            this.idx = new File(dir, String.format("%08d.idx", id));
+            this.swap = new File(dir, String.format("%08d.swap", id));
+        }
+
+        File logTmp() {
+            return new File(log.getPath() + ".tmp");
+        }
+
+        File idxTmp() {
+            return new File(idx.getPath() + ".tmp");
+        }
+
+        void summarize(long storedAt, long expiresAt) {
+            minStoredAt = Math.min(minStoredAt, storedAt);
+            maxStoredAt = Math.max(maxStoredAt, storedAt);
+            if (expiresAt != 0) minExpiresAt = Math.min(minExpiresAt, expiresAt);
+        }
+
+        void resetSummary() {
+            summarized = true;
+            minStoredAt = Long.MAX_VALUE;
+            maxStoredAt = Long.MIN_VALUE;
+            minExpiresAt = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * 시작할 때 1번: 세그먼트 목록 + 파일 크기. 본문은 읽지 않음.
+     *
+     * @param meta 인덱스를 다시 만들 때 줄 → (대화 해시, TTL)
+     */
+    synchronized void open(Function<String, FrameMeta> meta) {
+        if (dir == null) return;
+
+        finishSwaps();
+        File[] leftovers = dir.listFiles((d, name) -> name.endsWith(".tmp"));
+        if (leftovers != null) for (File f : leftovers) f.delete();
+
+        File[] logs = dir.listFiles((d, name) -> name.endsWith(".log"));
+        if (logs == null || logs.length == 0) {
+            writeFormat();
+            return;
+        }
+
+        File format = new File(dir, "FORMAT");
+        boolean upgrade = !FORMAT.equals(readFormat(format));
+
+        Arrays.sort(logs);
+        for (File f : logs) {
+            long id;
+            try {
+                id = Long.parseLong(f.getName().substring(0, f.getName().length() - 4));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            Segment s = new Segment(dir, id);
+            s.bytes = s.log.length();
+            s.count = s.idx.length() / INDEX_ENTRY;
+            segments.add(s);
+
+            if (upgrade || !consistent(s)) reindex(s, meta, !upgrade);
+            loadKeys(s);
+        }
+
+        if (upgrade) {
+            writeFormat();
+            log.info("기록 인덱스 형식 갱신 (shard {}): {} 세그먼트", index, segments.size());
+        }
+
+        // .log 가 있어도 이름이 세그먼트 번호가 아니면 목록이 빔 → 첫 append 때 active() 가 1번 세그먼트를 만듦
+        if (segments.isEmpty()) {
+            log.warn("기록 세그먼트 없음 (shard {}): 알 수 없는 .log {}개는 건너뜀", index, logs.length);
+            return;
+        }
+
+        // 쓰는 중인 세그먼트는 요약을 바로 (크기가 segmentBytes 로 제한됨)
+        Segment last = segments.get(segments.size() - 1);
+        summarizeFromIndex(last);
+    }
+
+    // compact() 가 교체하다 죽은 세그먼트: 표시 파일이 있으면 .tmp 두 개는 다 쓰인 것 → 마저 옮김
+    private void finishSwaps() {
+        File[] swaps = dir.listFiles((d, name) -> name.endsWith(".swap"));
+        if (swaps == null) return;
+
+        for (File f : swaps) {
+            long id;
+            try {
+                id = Long.parseLong(f.getName().substring(0, f.getName().length() - 5));
+            } catch (NumberFormatException e) {
+                f.delete();
+                continue;
+            }
+            Segment s = new Segment(dir, id);
+            try {
+                if (s.logTmp().exists()) {
+                    Files.move(s.logTmp().toPath(), s.log.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                if (s.idxTmp().exists()) {
+                    Files.move(s.idxTmp().toPath(), s.idx.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                Files.delete(f.toPath());
+                log.info("기록 세그먼트 교체 마저 끝냄 (shard {}): {}", index, s.log.getName());
+            } catch (IOException e) {
+                // 어느 쪽이 옮겨졌는지 모름 → 인덱스를 버리고 아래 reindex 가 로그 기준으로 다시 만듦
+                log.error("기록 세그먼트 교체 마무리 실패: {}", s.log, e);
+                f.delete();
+                s.idx.delete();
+            }
+        }
+    }
+
+    private void writeFormat() {
+        try {
+            dir.mkdirs();
+            Files.writeString(new File(dir, "FORMAT").toPath(), FORMAT);
+        } catch (IOException e) {
+            log.error("기록 형식 기록 실패 (shard {})", index, e);
+        }
+    }
+
+    private static String readFormat(File f) {
+        try {
+            return f.exists() ? Files.readString(f.toPath()).trim() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // 인덱스 크기가 항목 단위이고, 마지막 항목이 로그 끝을 가리키는지 (항목 1개만 읽음)
+    private static boolean consistent(Segment s) {
+        long idxLen = s.idx.length();
+        if (idxLen % INDEX_ENTRY != 0) return false;
+        if (s.count == 0) return s.bytes == 0;
+
+        try (RandomAccessFile idx = new RandomAccessFile(s.idx, "r")) {
+            idx.seek((s.count - 1) * INDEX_ENTRY + 8);
+            long offset = idx.readLong();
+            int length = idx.readInt();
+            return offset + length + 1 == s.bytes;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // 로그를 기준으로 인덱스를 다시 (반쯤 쓰인 마지막 줄은 잘라냄)
+    // keepPrefix 면 로그와 맞는 앞부분 항목은 그대로 두고 그 뒤만
+    // (위치가 이어지고, 항목이 가리키는 줄 끝이 로그에서 실제로 '\n' 인 것까지)
+    // 새로 만드는 항목은 저장 시각을 알 수 없으므로 로그 파일의 수정 시각으로
+    private void reindex(Segment s, Function<String, FrameMeta> meta, boolean keepPrefix) {
+        long storedAt = s.log.lastModified();
+        long logLength = s.log.length();
+
+        long pos = 0;
+        long count = 0;
+        if (keepPrefix && s.idx.exists()) {
+            try (DataInputStream idx = new DataInputStream(new BufferedInputStream(new FileInputStream(s.idx)));
+                 RandomAccessFile raf = new RandomAccessFile(s.log, "r")) {
+                for (long i = 0; i < s.idx.length() / INDEX_ENTRY; i++) {
+                    idx.readLong();
+                    long offset = idx.readLong();
+                    int length = idx.readInt();
+                    idx.skipNBytes(16);
+                    if (offset != pos || length < 0 || offset + length + 1 > logLength) break;
+                    raf.seek(offset + length);
+                    if (raf.read() != '\n') break;
+                    pos = offset + length + 1;
+                    count++;
+                }
+            } catch (IOException e) {
+                pos = 0;
+                count = 0;
+            }
+        }
+
+        try (RandomAccessFile idx = new RandomAccessFile(s.idx, "rw")) {
+            idx.setLength(count * INDEX_ENTRY);
+        } catch (IOException e) {
+            log.error("기록 인덱스 자르기 실패: {}", s.idx, e);
+            return;
+        }
+        long kept = count;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(s.log));
+             DataOutputStream idx = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(s.idx, true)))) {
+
+            in.skipNBytes(pos);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+                FrameMeta m = meta.apply(line.toString(StandardCharsets.UTF_8));
+                idx.writeLong(m.key());
+                idx.writeLong(pos);
+                idx.writeInt(line.size());
+                idx.writeLong(storedAt);
+                idx.writeLong(m.ttlMillis() > 0 ? storedAt + m.ttlMillis() : 0);
+                pos += line.size() + 1;
+                line.reset();
+                count++;
+            }
+
+            s.count = count;
+            s.bytes = pos;
+            s.summarized = false;
+
+        } catch (IOException | RuntimeException e) {
+            log.error("기록 인덱스 다시 만들기 실패: {}", s.idx, e);
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(s.log, "rw")) {
+            raf.setLength(s.bytes);
+        } catch (IOException e) {
+            log.error("기록 로그 꼬리 자르기 실패: {}", s.log, e);
+        }
+        // 형식 갱신 때는 세그먼트마다 남기지 않음 (open() 이 한 줄로 남김)
+        if (keepPrefix) {
+            log.info("기록 인덱스 다시 만듦 (shard {}): {} {}건 (+{})", index, s.log.getName(), s.count, s.count - kept);
+        }
+    }
+
+    private void loadKeys(Segment s) {
+        try {
+            ByteBuffer idx = ByteBuffer.wrap(Files.readAllBytes(s.idx.toPath()));
+            long count = Math.min(s.count, idx.capacity() / INDEX_ENTRY);
+            for (long i = 0; i < count; i++) diskKeys.add(idx.getLong((int) (i * INDEX_ENTRY)));
+        } catch (IOException e) {
+            keysKnown = false;
+            log.error("기록 인덱스 읽기 실패: {}", s.idx, e);
+        }
+    }
+
+    private void summarizeFromIndex(Segment s) {
+        s.resetSummary();
+        try {
+            ByteBuffer idx = ByteBuffer.wrap(Files.readAllBytes(s.idx.toPath()));
+            for (long i = 0; i < s.count; i++) {
+                int p = (int) (i * INDEX_ENTRY);
+                s.summarize(idx.getLong(p + 20), idx.getLong(p + 28));
+            }
+        } catch (IOException e) {
+            s.summarized = false;
+            log.error("기록 인덱스 읽기 실패: {}", s.idx, e);
+        }
+    }
+
+    private Segment active() throws IOException {
+        Segment s = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+
+        if (s == null || s.bytes >= segmentBytes) {
+            closeWriters();
+            s = new Segment(dir, (s == null) ? 1 : s.id + 1);
+            s.resetSummary();
+            segments.add(s);
+        }
+        if (logOut == null) {
+            dir.mkdirs();
+            logOut = new BufferedOutputStream(new FileOutputStream(s.log, true));
+            idxOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(s.idx, true)));
+        }
+        return s;
+    }
+
+    // ============================================================
+    //  쓰기
+    // ============================================================
+
+    /**
+     * @param expiresAt 0 = 만료 없음
+     * @param flushNow  false 면 버퍼에만 쓰고 주기 flush 때 내려감
+     */
+    synchronized void append(String conversation, String frame, long storedAt, long expiresAt, boolean flushNow) {
+        long key = keyHash(conversation);
+        HotRing ring = hot.get(conversation);
+        if (ring == null) {
+            ring = new HotRing(hotBytesPerConversation, dir == null || (keysKnown && !diskKeys.contains(key)));
+            hot.put(conversation, ring);
+        }
+        ring.add(frame, storedAt, expiresAt);
+
+        if (dir == null) {
+            memoryCount++;
+            return;
+        }
+        if (closed) return;
+        diskKeys.add(key);
+
+        try {
+            Segment s = active();
+            byte[] bytes = frame.getBytes(StandardCharsets.UTF_8);
+
+            logOut.write(bytes);
+            logOut.write('\n');
+            idxOut.writeLong(key);
+            idxOut.writeLong(s.bytes);
+            idxOut.writeInt(bytes.length);
+            idxOut.writeLong(storedAt);
+            idxOut.writeLong(expiresAt);
+
+            s.bytes += bytes.length + 1;
+            s.count++;
+            if (s.summarized) s.summarize(storedAt, expiresAt);
+
+            if (flushNow) {
+                flushWriters();
+            } else {
+                dirty = true;
+            }
+        } catch (IOException e) {
+            log.error("기록 저장 실패 (shard {})", index, e);
+        }
+    }
+
+    synchronized void flush() {
+        if (!dirty) return;
+        try {
+            flushWriters();
+        } catch (IOException e) {
+            log.error("기록 저장 실패 (shard {})", index, e);
+        }
+    }
+
+    // 로그 먼저, 인덱스 나중 (죽어도 인덱스가 로그보다 앞서지 않게)
+    private void flushWriters() throws IOException {
+        if (logOut != null) logOut.flush();
+        if (idxOut != null) idxOut.flush();
+        dirty = false;
+    }
+
+    private void closeWriters() throws IOException {
+        flushWriters();
+        if (logOut != null) logOut.close();
+        if (idxOut != null) idxOut.close();
+        logOut = null;
+        idxOut = null;
+    }
+
+    synchronized void close() {
+        closed = true;
+        try {
+            closeWriters();
+        } catch (IOException e) {
+            log.warn("기록 파일 닫기 실패 (shard {})", index, e);
+        }
+    }
+
+    // ============================================================
+    //  읽기
+    // ============================================================
+
+    synchronized long size() {
+        if (dir == null) return memoryCount;
+        long total = 0;
+        for (Segment s : segments) total += s.count;
+        return total;
+    }
+
+    /**
+     * hot 링에 있는 최근 메시지 (오래된 것부터, 만료된 것 제외).
+     * 링에 limit 개가 안 되고 링이 그 대화 전체도 아니면 null → 디스크에서 찾아야 함
+     * (링이 없어도 디스크에 그 대화가 없으면 빈 목록)
+     */
+    synchronized List<String> recentHot(String conversation, int limit) {
+        long now = System.currentTimeMillis();
+        HotRing ring = hot.get(conversation);
+        if (ring == null) {
+            boolean none = dir == null || (keysKnown && !diskKeys.contains(keyHash(conversation)));
+            return none ? List.of() : null;
+        }
+        List<String> live = ring.last(limit, now, ageCutoff(now));
+
+        return (live.size() >= limit || ring.complete()) ? live : null;
+    }
+
+    /**
+     * 대화 해시가 같은 살아 있는 줄을 디스크에서 오래된 것부터 (해시 충돌은 부르는 쪽에서 거름).
+     * 세그먼트 목록 / 개수만 shard 락 안에서 떠 두고, 파일 읽기는 락 밖에서 (그동안 append 는 안 막힘)
+     */
+    void scan(long key, Consumer<String> action) {
+        if (dir == null) return;
+
+        files.readLock().lock();
+        try {
+            List<Segment> snapshot;
+            long[] counts;
+            synchronized (this) {
+                if (closed) return;
+                flush();
+                snapshot = new ArrayList<>(segments);
+                counts = new long[snapshot.size()];
+                for (int i = 0; i < counts.length; i++) counts[i] = snapshot.get(i).count;
+            }
+
+            long now = System.currentTimeMillis();
+            long cutoff = ageCutoff(now);
+            for (int i = 0; i < counts.length; i++) scanSegment(snapshot.get(i), counts[i], key, now, cutoff, action);
+        } finally {
+            files.readLock().unlock();
+        }
+    }
+
+    // 쓰는 중인 세그먼트도 count 개까지는 flush 된 상태라 그대로 읽어도 됨 (뒤에 붙는 것만 바뀜)
+    private static void scanSegment(Segment s, long count, long key, long now, long cutoff, Consumer<String> action) {
+        if (count == 0) return;
+        try (DataInputStream idx = new DataInputStream(new BufferedInputStream(new FileInputStream(s.idx)));
+             RandomAccessFile raf = new RandomAccessFile(s.log, "r")) {
+            for (long i = 0; i < count; i++) {
+                long k = idx.readLong();
+                long offset = idx.readLong();
+                int length = idx.readInt();
+                long storedAt = idx.readLong();
+                long expiresAt = idx.readLong();
+                if (k != key || !live(storedAt, expiresAt, now, cutoff)) continue;
+
+                byte[] buf = new byte[length];
+                raf.seek(offset);
+                raf.readFully(buf);
+                action.accept(new String(buf, StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            log.error("기록 읽기 실패: {}", s.log, e);
+        }
+    }
+
+    interface EntryConsumer {
+        void accept(String frame, long storedAt, long expiresAt);
+    }
+
+    // 세그먼트를 다시 쓸 때는 대화 해시도 그대로 옮김
+    private interface IndexedEntry {
+        void accept(long key, String frame, long storedAt, long expiresAt);
+    }
+
+    // 살아 있는 것 전부 (오래된 것부터, 세그먼트를 앞에서부터 흘려 읽음)
+    // 읽기 실패는 던짐 → 부르는 쪽이 반만 읽은 결과로 원본을 지우지 않게
+    synchronized void forEach(EntryConsumer action) throws IOException {
+        long now = System.currentTimeMillis();
+        long cutoff = ageCutoff(now);
+
+        if (dir == null) {
+            for (HotRing ring : hot.values()) ring.forEach(action, now, cutoff);
+            return;
+        }
+        flush();
+        for (Segment s : segments) {
+            readSegment(s, null, (key, frame, storedAt, expiresAt) -> {
+                if (live(storedAt, expiresAt, now, cutoff)) action.accept(frame, storedAt, expiresAt);
+            });
+        }
+    }
+
+    // 인덱스 순서대로 로그를 흘려 읽음 (skip 에 켜진 항목은 건너뜀)
+    private static void readSegment(Segment s, BitSet skip, IndexedEntry action) throws IOException {
+        try (DataInputStream idx = new DataInputStream(new BufferedInputStream(new FileInputStream(s.idx)));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(s.log)))) {
+            long pos = 0;
+            for (int i = 0; i < s.count; i++) {
+                long key = idx.readLong();
+                long offset = idx.readLong();
+                int length = idx.readInt();
+                long storedAt = idx.readLong();
+                long expiresAt = idx.readLong();
+
+                if (offset > pos) {
+                    in.skipNBytes(offset - pos);
+                    pos = offset;
+                }
+                if (skip != null && skip.get(i)) {
+                    in.skipNBytes(length + 1);
+                } else {
+                    byte[] buf = new byte[length];
+                    in.readFully(buf);
+                    in.skipNBytes(1);
+                    action.accept(key, new String(buf, StandardCharsets.UTF_8), storedAt, expiresAt);
+                }
+                pos += length + 1;
+            }
+        }
+    }
+
+    static void forEachLine(File file, Consumer<String> action) {
+        try (BufferedReader r = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                if (!line.isBlank()) action.accept(line);
+            }
+        } catch (IOException e) {
+            log.error("기록 읽기 실패: {}", file, e);
+        }
+    }
+
+    // ============================================================
+    //  정리 (compactor 스레드 1개에서만)
+    // ============================================================
+
+    /**
+     * 닫힌 세그먼트에서 지울 것(나이 / TTL / 대화별 개수 초과)을 빼고 다시 쓴다.
+     * 다 지워지는 세그먼트는 파일째 삭제. 쓰는 중인 세그먼트는 건드리지 않음 (읽을 때만 거름)
+     *
+     * 읽기 / 다시 쓰기는 락 밖에서 (닫힌 세그먼트는 안 바뀜), 파일 교체만 락 안에서.
+     *
+     * @param maxPerConversation 0 = 제한 없음 (있으면 이 shard 인덱스를 전부 읽어서 셈)
+     */
+    Compaction compact(long now, int maxPerConversation) {
+        List<Segment> sealed;
+        Segment current;
+        synchronized (this) {
+            if (dir == null || closed || segments.isEmpty()) return Compaction.NONE;
+            flush();
+            sealed = new ArrayList<>(segments.subList(0, segments.size() - 1));
+            current = segments.get(segments.size() - 1);
+        }
+
+        long cutoff = ageCutoff(now);
+        Map<Segment, BitSet> drops = new LinkedHashMap<>();
+
+        if (maxPerConversation > 0) {
+            // 새 것부터 세면서, 대화마다 maxPerConversation 개를 넘는 옛 메시지를 지움
+            Map<Long, int[]> seen = new HashMap<>();
+            countNewestFirst(current, now, cutoff, maxPerConversation, seen, null);
+            for (int i = sealed.size() - 1; i >= 0; i--) {
+                Segment s = sealed.get(i);
+                BitSet drop = new BitSet();
+                countNewestFirst(s, now, cutoff, maxPerConversation, seen, drop);
+                if (!drop.isEmpty()) drops.put(s, drop);
+            }
+        } else {
+            // 요약만 보고 만료될 게 있는 세그먼트만 인덱스를 읽음
+            for (Segment s : sealed) {
+                if (!s.summarized) summarizeFromIndex(s);
+                if (!s.summarized) continue;
+                if (s.minExpiresAt > now && s.minStoredAt >= cutoff) continue;
+
+                BitSet drop = new BitSet();
+                if (s.maxStoredAt < cutoff) {
+                    drop.set(0, (int) s.count);
+                } else {
+                    markExpired(s, now, cutoff, drop);
+                }
+                if (!drop.isEmpty()) drops.put(s, drop);
+            }
+        }
+
+        long reclaimed = 0;
+        long dropped = 0;
+        int rewritten = 0;
+        int deleted = 0;
+
+        for (Map.Entry<Segment, BitSet> e : drops.entrySet()) {
+            Segment s = e.getKey();
+            BitSet drop = e.getValue();
+            long before = s.bytes + s.count * INDEX_ENTRY;
+            long removed = drop.cardinality();
+
+            if (removed >= s.count) {
+                if (!delete(s)) continue;
+                deleted++;
+                reclaimed += before;
+            } else {
+                long after = rewrite(s, drop);
+                if (after < 0) continue;
+                rewritten++;
+                reclaimed += before - after;
+            }
+            dropped += removed;
+        }
+
+        return (dropped == 0) ? Compaction.NONE : new Compaction(reclaimed, dropped, rewritten, deleted);
+    }
+
+    // 인덱스를 뒤에서부터 읽으며 대화별 개수를 셈. drop 이 null 이면 세기만
+    private void countNewestFirst(Segment s, long now, long cutoff, int max, Map<Long, int[]> seen, BitSet drop) {
+        ByteBuffer idx;
+        long count;
+        synchronized (this) {
+            count = s.count;    // 쓰는 중인 세그먼트면 지금까지 flush 된 것만
+        }
+        try {
+            idx = ByteBuffer.wrap(Files.readAllBytes(s.idx.toPath()));
+        } catch (IOException e) {
+            log.error("기록 인덱스 읽기 실패: {}", s.idx, e);
+            return;
+        }
+        count = Math.min(count, idx.capacity() / INDEX_ENTRY);
+
+        if (drop != null) s.resetSummary();
+        for (int i = (int) count - 1; i >= 0; i--) {
+            int p = i * INDEX_ENTRY;
+            long key = idx.getLong(p);
+            long storedAt = idx.getLong(p + 20);
+            long expiresAt = idx.getLong(p + 28);
+
+            boolean keep = live(storedAt, expiresAt, now, cutoff)
+                    && ++seen.computeIfAbsent(key, k -> new int[1])[0] <= max;
+
+            if (drop == null) continue;
+            if (keep) {
+                s.summarize(storedAt, expiresAt);
+            } else {
+                drop.set(i);
+            }
+        }
+    }
+
+    private void markExpired(Segment s, long now, long cutoff, BitSet drop) {
+        try {
+            ByteBuffer idx = ByteBuffer.wrap(Files.readAllBytes(s.idx.toPath()));
+            for (int i = 0; i < s.count; i++) {
+                int p = i * INDEX_ENTRY;
+                if (!live(idx.getLong(p + 20), idx.getLong(p + 28), now, cutoff)) drop.set(i);
+            }
+        } catch (IOException e) {
+            log.error("기록 인덱스 읽기 실패: {}", s.idx, e);
+        }
+    }
+
+    private boolean delete(Segment s) {
+        files.writeLock().lock();
+        try {
+            synchronized (this) {
+                if (closed || !segments.contains(s) || segments.get(segments.size() - 1) == s) return false;
+
+                // 로그부터: 로그가 안 지워지면 목록에 그대로 (다음 compact 때 다시)
+                if (!s.log.delete() && s.log.exists()) {
+                    log.warn("기록 세그먼트 삭제 실패: {}", s.log);
+                    return false;
+                }
+                segments.remove(s);
+
+                // 로그 없는 인덱스는 open() 이 보지 않음 → 남아도 자리만 차지
+                boolean ok = s.idx.delete() || !s.idx.exists();
+                if (!ok) log.warn("기록 인덱스 삭제 실패: {}", s.idx);
+                return ok;
+            }
+        } finally {
+            files.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 남길 것만 .tmp 로 써서 교체. 원본을 하나라도 못 읽으면 .tmp 를 지우고 그만둠 (원본 그대로)
+     *
+     * @return 새 크기 (로그 + 인덱스), 실패하면 -1
+     */
+    private long rewrite(Segment s, BitSet drop) {
+        File logTmp = s.logTmp();
+        File idxTmp = s.idxTmp();
+
+        long[] bytes = {0};
+        long[] count = {0};
+        Segment summary = new Segment(dir, s.id);
+        summary.resetSummary();
+
+        try (OutputStream logOutTmp = new BufferedOutputStream(new FileOutputStream(logTmp));
+             DataOutputStream idxOutTmp = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(idxTmp)))) {
+
+            IOException[] failed = {null};
+            readSegment(s, drop, (key, frame, storedAt, expiresAt) -> {
+                if (failed[0] != null) return;
+                try {
+                    byte[] b = frame.getBytes(StandardCharsets.UTF_8);
+                    logOutTmp.write(b);
+                    logOutTmp.write('\n');
+                    idxOutTmp.writeLong(key);
+                    idxOutTmp.writeLong(bytes[0]);
+                    idxOutTmp.writeInt(b.length);
+                    idxOutTmp.writeLong(storedAt);
+                    idxOutTmp.writeLong(expiresAt);
+                    bytes[0] += b.length + 1;
+                    count[0]++;
+                    summary.summarize(storedAt, expiresAt);
+                } catch (IOException e) {
+                    failed[0] = e;
+                }
+            });
+            if (failed[0] != null) throw failed[0];
+
+        } catch (IOException e) {
+            log.error("기록 세그먼트 다시 쓰기 실패: {}", s.log, e);
+            logTmp.delete();
+            idxTmp.delete();
+            return -1;
+        }
+
+        files.writeLock().lock();
+        try {
+            return swap(s, logTmp, idxTmp, bytes[0], count[0], summary);
+        } finally {
+            files.writeLock().unlock();
+        }
+    }
+
+    private synchronized long swap(Segment s, File logTmp, File idxTmp, long bytes, long count, Segment summary) {
+        if (closed || !segments.contains(s)) {
+            logTmp.delete();
+            idxTmp.delete();
+            return -1;
+        }
+        try {
+            // .tmp 두 개가 다 쓰였다는 표시 → 이 뒤에 죽으면 open() 이 두 파일을 마저 옮김
+            // (표시 전에 죽으면 .tmp 는 버려지고 옛 로그 + 옛 인덱스 그대로)
+            Files.createFile(s.swap.toPath());
+            Files.move(logTmp.toPath(), s.log.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.move(idxTmp.toPath(), s.idx.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Files.delete(s.swap.toPath());
+        } catch (IOException e) {
+            log.error("기록 세그먼트 교체 실패: {}", s.log, e);
+            return -1;
+        }
+        s.bytes = bytes;
+        s.count = count;
+        s.summarized = true;
+        s.minStoredAt = summary.minStoredAt;
+        s.maxStoredAt = summary.maxStoredAt;
+        s.minExpiresAt = summary.minExpiresAt;
+        return bytes + count * INDEX_ENTRY;
+    }
+
+    // ============================================================
+    //  hot 링
+    // ============================================================
+    // 대화 1개의 최근 메시지 (오래된 것부터). 프레임 UTF-8 바이트 합이 maxBytes 를 넘으면 오래된 것부터 뺌
+    // (프레임이 최대 수백 KB 라 개수로 막으면 힙이 안 정해짐, 가장 최근 1개는 넘어도 남김)
+    // complete: 그 대화의 기록 전부가 링에 있음 (디스크에 옛 기록 없이 생겼고 아직 아무것도 안 뺌)
+    static final class HotRing {
+        private record Entry(String frame, int bytes, long storedAt, long expiresAt) {
+        }
+
+        private final long maxBytes;
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private long bytes;
+        private boolean complete;
+
+        HotRing(long maxBytes, boolean complete) {
+            this.maxBytes = maxBytes;
+            this.complete = complete;
+        }
+
+        void add(String frame, long stored, long expires) {
+            Entry e = new Entry(frame, utf8Length(frame), stored, expires);
+            entries.addLast(e);
+            bytes += e.bytes();
+            while (bytes > maxBytes && entries.size() > 1) {
+                bytes -= entries.removeFirst().bytes();
+                complete = false;
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        boolean complete() {
+            return complete;
+        }
+
+        long bytes() {
+            return bytes;
+        }
+
+        // 살아 있는 것 중 최근 n개 (오래된 것부터)
+        List<String> last(int n, long now, long cutoff) {
+            List<String> out = new ArrayList<>(Math.min(n, entries.size()));
+            Iterator<Entry> it = entries.descendingIterator();
+            while (it.hasNext() && out.size() < n) {
+                Entry e = it.next();
+                if (live(e.storedAt(), e.expiresAt(), now, cutoff)) out.add(e.frame());
+            }
+            Collections.reverse(out);
+            return out;
+        }
+
+        void forEach(EntryConsumer action, long now, long cutoff) {
+            for (Entry e : entries) {
+                if (live(e.storedAt(), e.expiresAt(), now, cutoff)) action.accept(e.frame(), e.storedAt(), e.expiresAt());
+            }
+        }
+    }
+
+    // 인코딩 없이 UTF-8 바이트 수만 (짝 안 맞는 서로게이트는 getBytes 처럼 '?' 1바이트)
+    static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                n++;
+            } else if (c < 0x800) {
+                n += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                n += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                n++;
+            } else {
+                n += 3;
+            }
+        }
+        return n;
+    }
+}
@@ -1,72 +1,399 @@
 package com.e2ee.server.store;
 
+import com.e2ee.server.config.E2eeProperties;
 import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
-import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-public class HistoryStore {
+/**
+ * 채팅 기록 저장소.
+ * - 클라이언트가 보낸 JSON 줄을 그대로 보관 (중계 경로에서 ChatMessage 로 다시 직렬화하지 않음)
+ * - 대화(1:1 = 두 사람 쌍, 그룹 = 방 이름, 전체방)마다 해시로 shard 를 정해서 저장
+ *   → shard 마다 락 / 파일이 따로라 다른 대화끼리는 동시에 쓰고, 같은 대화는 순서 유지
+ * - shard 안은 2단: 대화별 최근 N바이트는 메모리 링(hot), 전부는 디스크 세그먼트 + 인덱스(cold)
+ *   HISTORY_REQ 조회(recent)는 hot 링에 충분하면 디스크를 읽지 않음
+ *   시작할 때 본문을 메모리에 올리지 않으므로 기록이 쌓여도 힙 / 시작 시간은 그대로
+ * - 파일: <dir>/shard-NN/NNNNNNNN.log|.idx + <dir>/SHARDS (shard 수)
+ * - 예전 형식(history.json JSON 배열, shard-NN.jsonl)이 있으면 시작 때 1번 옮기고 .migrated 로 이름 바꿈
+ * - 보존 정책: 최대 보존 기간 / 대화별 최대 개수 / 보낸 사람이 붙인 ttl(초, 사라지는 메시지)
+ *   만료된 것은 읽을 때 바로 거르고, 실제 삭제는 백그라운드 compactor 가 닫힌 세그먼트를 다시 써서
+ *   (중계 경로는 compactor 를 기다리지 않음, 세그먼트 파일 교체 순간에만 그 shard 락을 잡음)
+ * - backend = MEMORY 면 파일을 읽지도 쓰지도 않음 (대화별 최근 N바이트만 남음)
+ * - flush-interval > 0 이면 메시지마다 flush 하지 않고 주기적으로 1번만
+ *   (그 사이 서버가 죽으면 마지막 주기분은 잃을 수 있음)
+ */
+public final class HistoryStore {
 
-    private static final String HISTORY_FILE = "data/history.json";
+    private static final Logger log = LoggerFactory.getLogger(HistoryStore.class);
 
     private final Gson gson = new Gson();
 
-    // 메모리 캐시
-    private final List<ChatMessage> logs = new ArrayList<>();
+    private final HistoryShard[] shards;
+    private final boolean flushEach;
 
-    public HistoryStore() {
-        load();
+    // 주기 저장일 때만
+    private final ScheduledExecutorService flusher;
+
+    // 보존 정책 정리 (파일 저장일 때만)
+    private final ScheduledExecutorService compactor;
+    private final int maxPerConversation;
+    private volatile CompactionListener compactionListener;
+
+    /**
+     * 정리 1번 끝날 때마다 (메트릭용)
+     */
+    public interface CompactionListener {
+        void compacted(long reclaimedBytes, long droppedMessages, long nanos);
     }
 
-    // 로드
-    private void load() {
-        try {
-            File f = new File(HISTORY_FILE);
-            if (!f.exists()) {
-                save();
-                return;
-            }
+    public HistoryStore(File dataDir, E2eeProperties.Storage storage, E2eeProperties.Retention retention) {
+        boolean persistent = (storage.getHistoryBackend() == E2eeProperties.HistoryBackend.FILE);
+        int n = Math.max(1, storage.getHistoryShards());
+        File dir = new File(dataDir, storage.getHistoryDir());
 
-            Reader reader = new FileReader(f);
-            Type type = new TypeToken<List<ChatMessage>>(){}.getType();
-            List<ChatMessage> loaded = gson.fromJson(reader, type);
+        // shard 수가 바뀌었으면 기존 shard 디렉터리는 옆으로 치웠다가 아래에서 다시 넣음
+        File staging = persistent ? stageForReshard(dir, n) : null;
 
-            if (loaded != null) logs.addAll(loaded);
+        this.shards = new HistoryShard[n];
+        for (int i = 0; i < n; i++) {
+            shards[i] = new HistoryShard(i, persistent ? new File(dir, String.format("shard-%02d", i)) : null,
+                    storage.getHistorySegmentBytes(),
+                    storage.getHistoryHotBytesPerConversation(),
+                    Math.max(1, storage.getHistoryHotConversations() / n),
+                    retention.getMaxAgeMs());
+            shards[i].open(HistoryStore::frameMeta);
+        }
+
+        if (persistent) {
+            if (staging != null) restage(staging);
+            migrateLegacy(dir, new File(dataDir, storage.getHistoryFile()));
+            writeShardCount(dir, n);
+        }
+
+        this.flushEach = !(persistent && storage.getHistoryFlushIntervalMs() > 0);
+
+        if (!flushEach) {
+            long interval = storage.getHistoryFlushIntervalMs();
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "history-flush");
+                t.setDaemon(true);
+                return t;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
 
-            reader.close();
-            System.out.println("[HistoryStore] 기록 로드: " + logs.size());
+        this.maxPerConversation = retention.getMaxPerConversation();
 
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (persistent && retention.getCompactIntervalMs() > 0) {
+            long interval = retention.getCompactIntervalMs();
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "history-compact");
+                t.setDaemon(true);
+                t.setPriority(Thread.MIN_PRIORITY);
+                return t;
+            });
+            compactor.scheduleWithFixedDelay(this::compact, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            compactor = null;
         }
+
+        log.info("기록 로드: {}건 ({} shards, 본문은 디스크에)", size(), n);
+    }
+
+    public void setCompactionListener(CompactionListener listener) {
+        this.compactionListener = listener;
+    }
+
+    // ============================================================
+    //  대화 → shard
+    // ============================================================
+
+    /**
+     * 같은 대화면 누가 보냈든 같은 키. (1:1 은 두 ID 를 정렬해서 붙임)
+     */
+    static String conversationOf(MessageType type, String sender, String receiver) {
+        if (type == MessageType.ROOM_CHAT) return "#" + receiver;
+        if (receiver == null || "ALL".equalsIgnoreCase(receiver)) return "ALL";
+        if (sender == null) return receiver;
+
+        return (sender.compareTo(receiver) <= 0)
+                ? sender + '\u0000' + receiver
+                : receiver + '\u0000' + sender;
     }
 
-    // 저장
-    private void save() {
+    private static String conversationOf(String frame) {
         try {
-            File f = new File(HISTORY_FILE);
-            f.getParentFile().mkdirs();
+            ChatMessage m = ChatMessage.parseHeader(frame);
+            return conversationOf(m.getType(), m.getSender(), m.getReceiver());
+        } catch (IOException | RuntimeException e) {
+            return "";
+        }
+    }
 
-            Writer writer = new FileWriter(f);
-            gson.toJson(logs, writer);
-            writer.close();
+    // 인덱스를 다시 만들 때: 줄 → (대화 해시, ttl)
+    private static HistoryShard.FrameMeta frameMeta(String frame) {
+        try {
+            ChatMessage m = ChatMessage.parseHeader(frame);
+            String conversation = conversationOf(m.getType(), m.getSender(), m.getReceiver());
+            return new HistoryShard.FrameMeta(HistoryShard.keyHash(conversation), ttlMillis(m.getTtl()));
+        } catch (IOException | RuntimeException e) {
+            return new HistoryShard.FrameMeta(HistoryShard.keyHash(""), 0);
+        }
+    }
+
+    private static long ttlMillis(Long ttlSeconds) {
+        return (ttlSeconds == null || ttlSeconds <= 0) ? 0 : TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    private HistoryShard shardOf(String conversation) {
+        return shards[Math.floorMod(conversation.hashCode(), shards.length)];
+    }
+
+    // ============================================================
+    //  저장 / 조회
+    // ============================================================
+
+    // 추가 (msg.getRaw() = 클라이언트가 보낸 JSON 한 줄 그대로, ttl 이 있으면 그 뒤 만료)
+    public void add(ChatMessage msg) {
+        String conversation = conversationOf(msg.getType(), msg.getSender(), msg.getReceiver());
+        long now = System.currentTimeMillis();
+        long ttl = ttlMillis(msg.getTtl());
+        shardOf(conversation).append(conversation, msg.getRaw(), now, (ttl > 0) ? now + ttl : 0, flushEach);
+    }
+
+    // 옮기기 / 다시 나누기 때 (헤더만 파싱해서 대화를 찾음)
+    private void addLine(String frame, long storedAt, long expiresAt) {
+        String conversation = conversationOf(frame);
+        shardOf(conversation).append(conversation, frame, storedAt, expiresAt, false);
+    }
+
+    /**
+     * 한 대화의 최근 limit 개 (오래된 것부터, 원본 JSON 줄).
+     * hot 링에 충분히 있거나 링이 그 대화 전체면 메모리에서, 아니면 디스크 인덱스로 찾음
+     * (디스크 읽기는 shard 락 밖에서).
+     */
+    public List<String> recent(MessageType type, String sender, String receiver, int limit) {
+        String conversation = conversationOf(type, sender, receiver);
+        HistoryShard shard = shardOf(conversation);
+
+        List<String> hot = shard.recentHot(conversation, limit);
+        if (hot != null) return hot;
+
+        Deque<String> tail = new ArrayDeque<>(limit);
+        shard.scan(HistoryShard.keyHash(conversation), frame -> {
+            if (!conversation.equals(conversationOf(frame))) return;    // 해시 충돌
+            if (tail.size() == limit) tail.removeFirst();
+            tail.addLast(frame);
+        });
+        return new ArrayList<>(tail);
+    }
 
-        } catch (Exception e) {
-            e.printStackTrace();
+    // 주기 저장 (종료 시에도 1번)
+    public void flush() {
+        for (HistoryShard s : shards) s.flush();
+    }
+
+    public void close() {
+        if (flusher != null) flusher.shutdown();
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
+        for (HistoryShard s : shards) s.close();
     }
 
-    // 추가 후 저장
-    public synchronized void add(ChatMessage msg) {
-        logs.add(msg);
-        save();
+    // ============================================================
+    //  보존 정책 정리 (compactor 스레드)
+    // ============================================================
+
+    /**
+     * shard 를 하나씩 돌며 만료 / 개수 초과 메시지를 지운다. 중계 스레드는 기다리지 않음.
+     */
+    public void compact() {
+        long t0 = System.nanoTime();
+        long now = System.currentTimeMillis();
+        long reclaimed = 0;
+        long dropped = 0;
+        int rewritten = 0;
+        int deleted = 0;
+
+        for (HistoryShard s : shards) {
+            try {
+                HistoryShard.Compaction c = s.compact(now, maxPerConversation);
+                reclaimed += c.reclaimedBytes();
+                dropped += c.droppedMessages();
+                rewritten += c.rewrittenSegments();
+                deleted += c.deletedSegments();
+            } catch (RuntimeException e) {
+                log.error("기록 정리 실패", e);
+            }
+        }
+
+        long nanos = System.nanoTime() - t0;
+        if (dropped > 0) {
+            log.info("기록 정리: {}건 삭제, {}B 회수 (세그먼트 다시 씀 {} / 삭제 {}), {}ms",
+                    dropped, reclaimed, rewritten, deleted, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+
+        CompactionListener l = compactionListener;
+        if (l != null) l.compacted(reclaimed, dropped, nanos);
     }
 
+    public long size() {
+        long total = 0;
+        for (HistoryShard s : shards) total += s.size();
+        return total;
+    }
+
+    // shard 순서대로 디스크에서 읽음 (대화 안의 순서는 유지, 대화끼리 섞인 순서는 보장 안 함)
     public List<ChatMessage> getAll() {
-        return new ArrayList<>(logs);
+        List<ChatMessage> all = new ArrayList<>();
+        for (HistoryShard s : shards) {
+            try {
+                s.forEach((frame, storedAt, expiresAt) -> all.add(gson.fromJson(frame, ChatMessage.class)));
+            } catch (IOException e) {
+                log.error("기록 읽기 실패", e);
+            }
+        }
+        return all;
+    }
+
+    // ============================================================
+    //  예전 파일 / shard 수 변경
+    // ============================================================
+
+    // history.json (JSON 배열) / shard-NN.jsonl (shard 만 있던 때) → 지금 형식으로
+    private void migrateLegacy(File dir, File legacyFile) {
+        if (legacyFile.exists()) {
+            long storedAt = legacyFile.lastModified();
+            int moved = 0;
+            try (Reader reader = new FileReader(legacyFile)) {
+                JsonElement loaded = JsonParser.parseReader(reader);
+                if (loaded != null && loaded.isJsonArray()) {
+                    JsonArray arr = loaded.getAsJsonArray();
+                    for (JsonElement e : arr) {
+                        addLine(e.toString(), storedAt, 0);
+                        moved++;
+                    }
+                }
+            } catch (Exception e) {
+                log.error("예전 기록 옮기기 실패: {}", legacyFile, e);
+                return;
+            }
+            flush();
+            markMigrated(legacyFile, moved);
+        }
+
+        File[] jsonl = dir.listFiles((d, name) -> name.startsWith("shard-") && name.endsWith(".jsonl"));
+        if (jsonl == null) return;
+
+        Arrays.sort(jsonl);
+        for (File f : jsonl) {
+            long storedAt = f.lastModified();
+            int[] moved = {0};
+            HistoryShard.forEachLine(f, line -> {
+                addLine(line, storedAt, 0);
+                moved[0]++;
+            });
+            flush();
+            markMigrated(f, moved[0]);
+        }
+    }
+
+    private static void markMigrated(File f, int moved) {
+        File done = new File(f.getPath() + ".migrated");
+        if (f.renameTo(done)) {
+            log.info("예전 기록 {}건 → 세그먼트로 옮김 ({} → {})", moved, f.getName(), done.getName());
+        } else {
+            log.warn("예전 기록 파일 이름 바꾸기 실패: {} (다음 시작 때 다시 옮겨짐)", f);
+        }
+    }
+
+    // 지난번과 shard 수가 다르면 기존 shard 디렉터리를 staging 으로 치움 (없으면 null)
+    private static File stageForReshard(File dir, int n) {
+        int previous = readShardCount(new File(dir, "SHARDS"));
+        if (previous == n) return null;
+
+        File[] old = dir.listFiles((d, name) -> name.startsWith("shard-") && new File(d, name).isDirectory());
+        if (old == null || old.length == 0) return null;
+
+        log.info("기록 shard 수 변경 {} → {}, 다시 나눔", previous, n);
+
+        File staging = new File(dir, "reshard-" + System.currentTimeMillis());
+        staging.mkdirs();
+        for (File f : old) f.renameTo(new File(staging, f.getName()));
+        return staging;
+    }
+
+    // 치워 둔 shard 의 세그먼트를 오래된 것부터 한 줄씩 새 shard 로
+    // (열 때 꼬리 복구를 거치므로 반쯤 쓰인 마지막 줄은 옮기지 않음)
+    // 하나라도 못 읽으면 staging 은 지우지 않고 남김 (손으로 살릴 수 있게)
+    private void restage(File staging) {
+        boolean complete = true;
+        File[] oldShards = staging.listFiles(File::isDirectory);
+        if (oldShards != null) {
+            Arrays.sort(oldShards);
+            for (File shardDir : oldShards) {
+                HistoryShard old = new HistoryShard(-1, shardDir, Long.MAX_VALUE, 1, 1, 0);
+                old.open(HistoryStore::frameMeta);
+                try {
+                    old.forEach(this::addLine);
+                } catch (IOException e) {
+                    complete = false;
+                    log.error("기록 다시 나누기 중 읽기 실패: {} (남겨 둠: {})", shardDir, staging, e);
+                }
+                old.close();
+            }
+        }
+        flush();
+        if (complete) deleteTree(staging);
+    }
+
+    private static void deleteTree(File f) {
+        File[] children = f.listFiles();
+        if (children != null) for (File c : children) deleteTree(c);
+        f.delete();
+    }
+
+    // 없으면(처음 / 예전 버전) -1
+    private static int readShardCount(File meta) {
+        try {
+            return meta.exists() ? Integer.parseInt(Files.readString(meta.toPath()).trim()) : -1;
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static void writeShardCount(File dir, int n) {
+        File meta = new File(dir, "SHARDS");
+        if (readShardCount(meta) == n) return;
+        try {
+            dir.mkdirs();
+            Files.writeString(meta.toPath(), Integer.toString(n));
+        } catch (IOException e) {
+            log.error("shard 수 기록 실패: {}", meta, e);
+        }
     }
 }
@@ -0,0 +1,233 @@
+package com.e2ee.server.store;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 일회용 prekey 저장소 (uid → 올린 순서대로 공개키 큐).
+ *
+ * - 클라이언트가 미리 만든 X25519 공개키를 묶음으로 올려두면(PREKEY_UPLOAD)
+ *   상대가 오프라인이어도 번들(신원키 + prekey 1개)로 바로 세션을 만들 수 있다.
+ * - 한 번 내준 prekey 는 지운다 (다시 주지 않음). 다 떨어지면 신원키만 있는 번들.
+ * - 한 번이라도 올린 사용자만 "prekey 지원"으로 본다 (안 올린 예전 클라는 KEY_REQ 흐름 그대로)
+ * - 개인키는 클라이언트에만 있고, 서버는 공개키만 보관
+ * - 파일: prekeys.json (전체 스냅샷, 올릴 때만 다시 씀) + prekeys.json.taken (꺼낸 것 "uid id" 한 줄씩 이어쓰기)
+ *   → 번들을 내줄 때마다 JSON 전체를 다시 쓰지 않음. 시작할 때 스냅샷에서 꺼낸 것을 빼고,
+ *     꺼낸 줄이 COMPACT_TAKES 를 넘으면 스냅샷을 다시 쓰고 로그를 비움
+ */
+public class PrekeyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PrekeyStore.class);
+
+    public record Prekey(int id, String key) {
+    }
+
+    // 꺼낸 줄이 이만큼 쌓이면 스냅샷으로 합침
+    static final int COMPACT_TAKES = 1024;
+
+    private final File file;
+    private final File takenFile;
+    private final int maxPerUser;
+
+    // 꺼낸 기록 (this 락 안에서만)
+    private Writer takenOut;
+    private int takenLines;
+
+    private final Gson gson = new Gson();
+
+    // uid → 남은 prekey (오래된 것부터), 빈 큐 = 지원하지만 다 떨어짐
+    private final Map<Integer, Deque<Prekey>> prekeys = new ConcurrentHashMap<>();
+
+    public PrekeyStore(File file, int maxPerUser) {
+        this.file = file;
+        this.takenFile = new File(file.getPath() + ".taken");
+        this.maxPerUser = Math.max(1, maxPerUser);
+        load();
+        replayTaken();
+    }
+
+    // 파일 -> 메모리 로드
+    private void load() {
+        if (!file.exists()) return;
+
+        try (Reader reader = new FileReader(file)) {
+            Type type = new TypeToken<Map<Integer, List<Prekey>>>(){}.getType();
+            Map<Integer, List<Prekey>> loaded = gson.fromJson(reader, type);
+
+            int total = 0;
+            if (loaded != null) {
+                for (Map.Entry<Integer, List<Prekey>> e : loaded.entrySet()) {
+                    prekeys.put(e.getKey(), new ArrayDeque<>(e.getValue()));
+                    total += e.getValue().size();
+                }
+            }
+            log.info("prekey 로드: {}명 {}개", prekeys.size(), total);
+
+        } catch (Exception e) {
+            log.error("prekey 로드 실패", e);
+        }
+    }
+
+    // 꺼낸 기록을 스냅샷에서 빼기 (스냅샷보다 옛 줄이면 이미 빠져 있어서 그냥 지나감)
+    private void replayTaken() {
+        if (!takenFile.exists()) return;
+
+        int lines = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(takenFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 2) continue;    // 죽으면서 반쯤 쓰인 줄
+                try {
+                    int uid = Integer.parseInt(parts[0]);
+                    int id = Integer.parseInt(parts[1]);
+                    Deque<Prekey> queue = prekeys.get(uid);
+                    if (queue != null) queue.removeIf(p -> p.id() == id);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                lines++;
+            }
+        } catch (IOException e) {
+            log.error("prekey 꺼낸 기록 로드 실패", e);
+        }
+
+        // 합쳐서 다시 시작 (반쯤 쓰인 줄도 같이 정리)
+        if (lines > 0) log.info("prekey 꺼낸 기록 {}줄 반영", lines);
+        save();
+    }
+
+    // 메모리 → 파일 저장 (tmp 에 쓰고 바꿔치기) 후 꺼낸 기록 비움
+    private synchronized void save() {
+        Map<Integer, List<Prekey>> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<Integer, Deque<Prekey>> e : prekeys.entrySet()) {
+            synchronized (e.getValue()) {
+                snapshot.put(e.getKey(), new ArrayList<>(e.getValue()));
+            }
+        }
+
+        try {
+            file.getParentFile().mkdirs();
+            File tmp = new File(file.getPath() + ".tmp");
+
+            try (Writer writer = new FileWriter(tmp)) {
+                gson.toJson(snapshot, writer);
+            }
+            if (!tmp.renameTo(file)) {
+                file.delete();
+                tmp.renameTo(file);
+            }
+
+            // 스냅샷에 이미 빠져 있으므로 꺼낸 기록은 처음부터
+            closeTaken();
+            takenFile.delete();
+            takenLines = 0;
+
+        } catch (Exception e) {
+            log.error("prekey 저장 실패", e);
+        }
+    }
+
+    // 꺼낸 prekey 1줄 이어쓰기 (같은 prekey 를 재시작 후 다시 내주지 않게 바로 flush)
+    private synchronized void appendTaken(int uid, int id) {
+        try {
+            if (takenOut == null) {
+                file.getParentFile().mkdirs();
+                takenOut = new BufferedWriter(new FileWriter(takenFile, true));
+            }
+            takenOut.write(uid + " " + id + "\n");
+            takenOut.flush();
+        } catch (IOException e) {
+            log.error("prekey 꺼낸 기록 저장 실패", e);
+            return;
+        }
+
+        if (++takenLines >= COMPACT_TAKES) save();
+    }
+
+    private void closeTaken() throws IOException {
+        if (takenOut != null) takenOut.close();
+        takenOut = null;
+    }
+
+    public synchronized void close() {
+        try {
+            closeTaken();
+        } catch (IOException e) {
+            log.warn("prekey 꺼낸 기록 닫기 실패", e);
+        }
+    }
+
+    // ---------- 외부에서 사용하는 메서드 -----------
+
+    /**
+     * prekey 묶음 추가 (id → X.509 Base64). X25519 키가 아니거나 이미 있는 id 는 건너뜀.
+     * @return 추가 후 남은 개수 (maxPerUser 를 넘는 것은 버림)
+     */
+    public int upload(int uid, Map<String, String> keys) {
+        Deque<Prekey> queue = prekeys.computeIfAbsent(uid, u -> new ArrayDeque<>());
+
+        int size;
+        synchronized (queue) {
+            for (Map.Entry<String, String> e : keys.entrySet()) {
+                if (queue.size() >= maxPerUser) break;
+
+                int id;
+                try {
+                    id = Integer.parseInt(e.getKey());
+                } catch (NumberFormatException ex) {
+                    continue;
+                }
+                if (id <= 0 || !PublicKeyTable.isValid(e.getValue())) continue;
+                if (queue.stream().anyMatch(p -> p.id() == id)) continue;
+
+                queue.addLast(new Prekey(id, e.getValue()));
+            }
+            size = queue.size();
+        }
+
+        save();
+        return size;
+    }
+
+    /**
+     * 가장 오래된 prekey 1개를 꺼냄 (다시 주지 않음). 없으면 null.
+     */
+    public Prekey take(int uid) {
+        Deque<Prekey> queue = prekeys.get(uid);
+        if (queue == null) return null;
+
+        Prekey p;
+        synchronized (queue) {
+            p = queue.pollFirst();
+        }
+
+        if (p != null) appendTaken(uid, p.id());
+        return p;
+    }
+
+    // 한 번이라도 prekey 를 올린 사용자인지
+    public boolean supports(int uid) {
+        return prekeys.containsKey(uid);
+    }
+
+    public int count(int uid) {
+        Deque<Prekey> queue = prekeys.get(uid);
+        if (queue == null) return 0;
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+}
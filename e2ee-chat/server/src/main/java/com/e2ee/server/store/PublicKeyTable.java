@@ -0,0 +1,111 @@
+package com.e2ee.server.store;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * uid → X25519 공개키 (32바이트 원본) 를 byte[] 1개에 이어 붙여 보관.
+ *
+ * - 클라이언트와 주고받는 형식은 지금처럼 X.509 인코딩의 Base64 (EcdhUtil.encodePublicKey)
+ * - X25519 의 X.509 인코딩은 항상 "고정 12바이트 헤더 + 키 32바이트" 라서 헤더는 저장하지 않는다
+ * - 전송용 문자열은 처음 요청될 때 1번만 만들어 캐시 (KEY_RES 마다 다시 만들지 않음)
+ */
+public class PublicKeyTable {
+
+    public static final int KEY_BYTES = 32;
+
+    // SEQUENCE { SEQUENCE { OID 1.3.101.110 (X25519) }, BIT STRING (32바이트) }
+    private static final byte[] X509_PREFIX = {
+            0x30, 0x2a, 0x30, 0x05, 0x06, 0x03, 0x2b, 0x65, 0x6e, 0x03, 0x21, 0x00
+    };
+
+    // uid 칸마다 KEY_BYTES 씩 (uid 0 은 비워 둠)
+    private volatile byte[] keys;
+    private volatile boolean[] present;
+
+    // uid → 전송용 Base64 (처음 요청 때 채움)
+    private volatile String[] wire;
+
+    public PublicKeyTable(int initialCapacity) {
+        int n = Math.max(16, initialCapacity);
+        this.keys = new byte[n * KEY_BYTES];
+        this.present = new boolean[n];
+        this.wire = new String[n];
+    }
+
+    /**
+     * X.509 Base64 → 원본 32바이트. X25519 키가 아니면 null.
+     */
+    public static byte[] parse(String x509Base64) {
+        if (x509Base64 == null) return null;
+
+        byte[] encoded;
+        try {
+            encoded = Base64.getDecoder().decode(x509Base64);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+
+        if (encoded.length != X509_PREFIX.length + KEY_BYTES) return null;
+        if (!Arrays.equals(encoded, 0, X509_PREFIX.length, X509_PREFIX, 0, X509_PREFIX.length)) return null;
+
+        return Arrays.copyOfRange(encoded, X509_PREFIX.length, encoded.length);
+    }
+
+    public static boolean isValid(String x509Base64) {
+        return parse(x509Base64) != null;
+    }
+
+    /**
+     * @return X25519 키가 아니어서 저장하지 못했으면 false
+     */
+    public synchronized boolean put(int uid, String x509Base64) {
+        byte[] raw = parse(x509Base64);
+        if (raw == null || uid <= 0) return false;
+
+        ensure(uid);
+        System.arraycopy(raw, 0, keys, uid * KEY_BYTES, KEY_BYTES);
+        wire[uid] = null;
+        present[uid] = true;
+
+        // volatile 다시 쓰기 → 락 없이 읽는 쪽에도 위의 칸 쓰기가 보이게
+        present = present;
+        return true;
+    }
+
+    public boolean contains(int uid) {
+        boolean[] p = present;
+        return uid > 0 && uid < p.length && p[uid];
+    }
+
+    /**
+     * 전송용 X.509 Base64 (없으면 null). 같은 uid 는 처음 1번만 인코딩.
+     */
+    public String wire(int uid) {
+        String[] cache = wire;
+        if (uid <= 0 || uid >= cache.length) return null;
+
+        String s = cache[uid];
+        if (s != null) return s;
+        if (!contains(uid)) return null;
+
+        byte[] encoded = Arrays.copyOf(X509_PREFIX, X509_PREFIX.length + KEY_BYTES);
+        System.arraycopy(keys, uid * KEY_BYTES, encoded, X509_PREFIX.length, KEY_BYTES);
+        s = Base64.getEncoder().encodeToString(encoded);
+
+        // 두 스레드가 동시에 만들어도 값은 같음 (늘리는 중이면 캐시만 놓침)
+        cache[uid] = s;
+        return s;
+    }
+
+    // 칸이 모자라면 2배로 늘림 (synchronized 안에서만 호출)
+    private void ensure(int uid) {
+        int n = present.length;
+        if (uid < n) return;
+
+        int grown = Math.max(n * 2, uid + 1);
+        keys = Arrays.copyOf(keys, grown * KEY_BYTES);
+        wire = Arrays.copyOf(wire, grown);
+        present = Arrays.copyOf(present, grown);
+    }
+}
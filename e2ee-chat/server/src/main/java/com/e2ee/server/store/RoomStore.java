@@ -0,0 +1,147 @@
+package com.e2ee.server.store;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToIntFunction;
+
+/**
+ * 그룹방 멤버십 저장소.
+ * - 방 이름 → 멤버 ID 집합
+ * - 서버는 멤버십만 관리하고, 메시지는 sender key 암호문 그대로 중계한다.
+ * - fan-out 용 멤버 uid 배열은 방마다 캐시, 멤버가 바뀔 때만 다시 만든다.
+ */
+public class RoomStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomStore.class);
+
+    private final File file;
+
+    private final Gson gson = new Gson();
+
+    // 방 이름 → 멤버 ID 집합
+    private final Map<String, Set<String>> rooms = new ConcurrentHashMap<>();
+
+    // 방 이름 → 멤버 uid 배열 (ROOM_CHAT 마다 이름 조회하지 않도록)
+    private final Map<String, int[]> memberUids = new ConcurrentHashMap<>();
+    private final ToIntFunction<String> uidOf;
+
+    public RoomStore(File file, ToIntFunction<String> uidOf) {
+        this.file = file;
+        this.uidOf = uidOf;
+        load();
+    }
+
+    // 파일 -> 메모리 로드
+    private void load() {
+        try {
+            if (!file.exists()) {
+                save();
+                return;
+            }
+
+            Reader reader = new FileReader(file);
+            Type type = new TypeToken<Map<String, List<String>>>(){}.getType();
+            Map<String, List<String>> loaded = gson.fromJson(reader, type);
+
+            if (loaded != null) {
+                for (Map.Entry<String, List<String>> e : loaded.entrySet()) {
+                    Set<String> members = ConcurrentHashMap.newKeySet();
+                    members.addAll(e.getValue());
+                    rooms.put(e.getKey(), members);
+                }
+            }
+
+            reader.close();
+            log.info("방 정보 로드: {}개", rooms.size());
+
+        } catch (Exception e) {
+            log.error("방 정보 로드 실패", e);
+        }
+    }
+
+    // 메모리 → 파일 저장
+    private synchronized void save() {
+        try {
+            file.getParentFile().mkdirs();
+
+            Writer writer = new FileWriter(file);
+            gson.toJson(rooms, writer);
+            writer.close();
+
+        } catch (Exception e) {
+            log.error("방 정보 저장 실패", e);
+        }
+    }
+
+    // ---------- 외부에서 사용하는 메서드 -----------
+
+    public boolean exists(String room) {
+        return rooms.containsKey(room);
+    }
+
+    public boolean isMember(String room, String id) {
+        Set<String> members = rooms.get(room);
+        return members != null && members.contains(id);
+    }
+
+    // 새 방 생성 (이미 있으면 false), 만든 사람은 자동 입장
+    public boolean create(String room, String ownerId) {
+        Set<String> members = ConcurrentHashMap.newKeySet();
+        members.add(ownerId);
+
+        if (rooms.putIfAbsent(room, members) != null) return false;
+        memberUids.remove(room);
+        save();
+        return true;
+    }
+
+    public boolean join(String room, String id) {
+        Set<String> members = rooms.get(room);
+        if (members == null) return false;
+
+        if (members.add(id)) {
+            memberUids.remove(room);
+            save();
+        }
+        return true;
+    }
+
+    // 퇴장, 마지막 멤버가 나가면 방 삭제
+    public boolean leave(String room, String id) {
+        Set<String> members = rooms.get(room);
+        if (members == null || !members.remove(id)) return false;
+
+        if (members.isEmpty()) rooms.remove(room, members);
+        memberUids.remove(room);
+        save();
+        return true;
+    }
+
+    // 멤버 uid (가입 정보가 없는 ID는 빠짐), 없는 방이면 빈 배열
+    public int[] memberUids(String room) {
+        Set<String> members = rooms.get(room);
+        if (members == null) return new int[0];
+
+        return memberUids.computeIfAbsent(room, r -> members.stream()
+                .mapToInt(uidOf)
+                .filter(uid -> uid > 0)
+                .toArray());
+    }
+
+    public List<String> members(String room) {
+        Set<String> members = rooms.get(room);
+        if (members == null) return Collections.emptyList();
+        return new ArrayList<>(members);
+    }
+}
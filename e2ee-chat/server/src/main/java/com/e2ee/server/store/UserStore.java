@@ -2,32 +2,58 @@ package com.e2ee.server.store;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * 회원 저장소.
+ * - 가입 순서대로 1부터 빽빽한 정수 uid 를 붙인다. (users.json 에 같이 저장)
+ * - 이름 → uid 는 로그인/프레임 수신 때 1번만, 그 다음부터는 uid 로 배열 조회
+ * - 공개키는 레코드가 아니라 PublicKeyTable 에 원본 32바이트로 (파일 형식은 그대로 X.509 Base64)
+ */
 public class UserStore {
 
-    private static final String USER_FILE = "data/users.json";
+    // 없는 사용자
+    public static final int NO_UID = 0;
+
+    private static final Logger log = LoggerFactory.getLogger(UserStore.class);
+
+    private final File file;
 
     private final Gson gson = new Gson();
 
-    // 메모리에 캐시 형태로 올려둠
+    // 메모리에 캐시 형태로 올려둠 (이름 → 레코드)
     private final Map<String, UserRecord> users = new ConcurrentHashMap<>();
 
-    public UserStore() {
+    // uid → 레코드 (쓰기는 synchronized, 읽기는 volatile 배열 참조 1번)
+    private volatile UserRecord[] byUid = new UserRecord[64];
+    private int maxUid = NO_UID;
+
+    // uid → 공개키 원본
+    private final PublicKeyTable keys = new PublicKeyTable(64);
+
+    public UserStore(File file) {
+        this.file = file;
         load();
     }
 
     // -------- User 구조 --------
     public static class UserRecord {
+        public int uid;
         public String id;
         public String password;
-        public String publicKey;
+        public String publicKey;    // 파일 입출력 때만 채움 (메모리에선 PublicKeyTable)
 
-        public UserRecord(String id, String pw, String publicKey) {
+        public UserRecord(int uid, String id, String pw, String publicKey) {
+            this.uid = uid;
             this.id = id;
             this.password = pw;
             this.publicKey = publicKey;
@@ -37,41 +63,96 @@ public class UserStore {
     // 파일 -> 메모리 로드
     private void load() {
         try {
-            File f = new File(USER_FILE);
-            if (!f.exists()) {
-                System.out.println("[UserStore] users.json 없음 → 새로 생성");
+            if (!file.exists()) {
+                log.info("{} 없음 → 새로 생성", file);
                 save();    // 빈 파일 생성
                 return;
             }
 
-            Reader reader = new FileReader(f);
+            Reader reader = new FileReader(file);
             Type type = new TypeToken<Map<String, UserRecord>>(){}.getType();
             Map<String, UserRecord> loaded = gson.fromJson(reader, type);
 
             if (loaded != null) users.putAll(loaded);
 
             reader.close();
-            System.out.println("[UserStore] 회원정보 로드완료: " + users.size() + "명");
+
+            boolean changed = assignUids();
+            moveKeys();
+            if (changed) save();
+            log.info("회원정보 로드완료: {}명 (uid 최대 {})", users.size(), maxUid);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("회원정보 로드 실패", e);
+        }
+    }
+
+    // 파일에 있던 uid 는 그대로 쓰고, 없거나(예전 파일) 겹치는 것만 새로 붙임
+    private synchronized boolean assignUids() {
+        boolean changed = false;
+
+        for (UserRecord r : users.values()) {
+            if (r.uid > NO_UID && slot(r.uid) == null) {
+                place(r);
+            } else {
+                r.uid = NO_UID;
+            }
+        }
+        for (UserRecord r : users.values()) {
+            if (r.uid == NO_UID) {
+                r.uid = maxUid + 1;
+                place(r);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // 로드한 레코드의 Base64 공개키 → 키 테이블 (레코드에선 비움)
+    private synchronized void moveKeys() {
+        for (UserRecord r : users.values()) {
+            if (r.publicKey != null && !keys.put(r.uid, r.publicKey)) {
+                log.warn("X25519 공개키가 아님 → 무시: {}", r.id);
+            }
+            r.publicKey = null;
+        }
+    }
+
+    // byUid 에 넣기 (필요하면 2배로 늘림), synchronized 안에서만 호출
+    private void place(UserRecord r) {
+        UserRecord[] arr = byUid;
+        if (r.uid >= arr.length) {
+            arr = Arrays.copyOf(arr, Math.max(arr.length * 2, r.uid + 1));
         }
+        arr[r.uid] = r;
+        byUid = arr;
+        maxUid = Math.max(maxUid, r.uid);
+    }
+
+    private UserRecord slot(int uid) {
+        UserRecord[] arr = byUid;
+        return (uid > NO_UID && uid < arr.length) ? arr[uid] : null;
     }
 
     // 메모리 → 파일 저장
     private synchronized void save() {
         try {
-            File f = new File(USER_FILE);
-            f.getParentFile().mkdirs();
+            file.getParentFile().mkdirs();
 
-            Writer writer = new FileWriter(f);
-            gson.toJson(users, writer);
+            // 파일 형식은 예전 그대로 (공개키 = X.509 Base64)
+            Map<String, UserRecord> out = new LinkedHashMap<>();
+            for (UserRecord r : users.values()) {
+                out.put(r.id, new UserRecord(r.uid, r.id, r.password, keys.wire(r.uid)));
+            }
+
+            Writer writer = new FileWriter(file);
+            gson.toJson(out, writer);
             writer.close();
 
-            System.out.println("[UserStore] 회원정보 저장완료");
+            log.debug("회원정보 저장완료");
 
         } catch (Exception e) {
-            e.printStackTrace();
+            log.error("회원정보 저장 실패", e);
         }
     }
 
@@ -81,6 +162,29 @@ public class UserStore {
         return users.containsKey(id);
     }
 
+    // 이름 → uid (없으면 NO_UID)
+    public int uidOf(String id) {
+        if (id == null) return NO_UID;
+        UserRecord r = users.get(id);
+        return (r == null) ? NO_UID : r.uid;
+    }
+
+    // uid → 이름 (없으면 null)
+    public String nameOf(int uid) {
+        UserRecord r = slot(uid);
+        return (r == null) ? null : r.id;
+    }
+
+    // 전송용 공개키 (X.509 Base64, uid 마다 1번만 인코딩)
+    public String getPublicKey(int uid) {
+        return keys.wire(uid);
+    }
+
+    // 지금까지 붙인 가장 큰 uid (라우팅 배열 크기 참고용)
+    public synchronized int maxUid() {
+        return maxUid;
+    }
+
     public boolean checkPassword(String id, String pw) {
         UserRecord r = users.get(id);
         if (r == null) return false;
@@ -88,13 +192,30 @@ public class UserStore {
     }
 
     public String getPublicKey(String id) {
-        UserRecord r = users.get(id);
-        if (r == null) return null;
-        return r.publicKey;
+        return keys.wire(uidOf(id));
     }
 
-    public void addUser(String id, String pw, String publicKey) {
-        users.put(id, new UserRecord(id, pw, publicKey));
+    // 여러 ID의 공개키를 한 번에 조회 (없는 ID는 결과에서 빠짐)
+    public Map<String, String> getPublicKeys(Collection<String> ids) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String id : ids) {
+            if (id == null) continue;
+            String key = keys.wire(uidOf(id));
+            if (key != null) result.put(id, key);
+        }
+        return result;
+    }
+
+    /**
+     * @return 새 uid (이미 있는 ID거나 X25519 공개키가 아니면 NO_UID)
+     */
+    public synchronized int addUser(String id, String pw, String publicKey) {
+        UserRecord r = new UserRecord(maxUid + 1, id, pw, null);
+        if (users.containsKey(id) || !keys.put(r.uid, publicKey)) return NO_UID;
+
+        users.put(id, r);
+        place(r);
         save();
+        return r.uid;
     }
 }
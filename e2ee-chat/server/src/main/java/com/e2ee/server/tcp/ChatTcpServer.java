@@ -1,50 +1,176 @@
 package com.e2ee.server.tcp;
 
+import com.e2ee.server.config.E2eeProperties;
+import com.e2ee.server.delivery.DuplicateFilter;
+import com.e2ee.server.delivery.InFlightTable;
+import com.e2ee.server.limit.LimitCategory;
+import com.e2ee.server.limit.RateLimiter;
+import com.e2ee.server.logging.FrameLog;
+import com.e2ee.server.metrics.RelayMetrics;
 import com.e2ee.server.protocol.AuthPayload;
 import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.FrameCodec;
 import com.e2ee.server.protocol.MessageType;
 import com.e2ee.server.store.UserStore;
 import com.e2ee.server.store.HistoryStore;
+import com.e2ee.server.store.PrekeyStore;
+import com.e2ee.server.store.PublicKeyTable;
+import com.e2ee.server.store.RoomStore;
 import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
+import java.lang.reflect.Type;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
 
 @Component
 public class ChatTcpServer {
 
-    private static final int PORT = 9000;
+    private static final Logger log = LoggerFactory.getLogger(ChatTcpServer.class);
+
     private final Gson gson = new Gson();
 
-    // ID → PrintWriter   (🔥 #0001 제거!)
-    private final Map<String, PrintWriter> clientOutputs = new ConcurrentHashMap<>();
+    private static final Type STRING_LIST = new TypeToken<List<String>>(){}.getType();
+    private static final Type STRING_MAP = new TypeToken<Map<String, String>>(){}.getType();
+
+    // 서버가 body를 볼 필요 없는 중계 타입 → 헤더만 파싱하고 원본 줄 그대로 전달
+    private static final Set<MessageType> OPAQUE = EnumSet.of(
+            MessageType.CHAT,
+            MessageType.ROOM_CHAT,
+            MessageType.SENDER_KEY,
+            MessageType.FILE_OFFER,
+            MessageType.FILE_ACCEPT,
+            MessageType.FILE_CHUNK,
+            MessageType.FILE_ACK,
+            MessageType.HISTORY_RES
+    );
+
+    // 포트 / 연결 스레드 / 소켓 버퍼
+    private final E2eeProperties.Server serverProps;
+
+    // 수신 프레임 상한 (타입을 모를 때 = 타입별 상한 중 최대)
+    private final int maxFrameBytes;
+
+    // 압축 협상 (로그인 때 클라가 요청한 연결만, 이 길이 이상인 제어/일괄 프레임만)
+    private final E2eeProperties.Compression compression;
+
+    // 인증 없이 받는 타입
+    private static final Set<MessageType> AUTH = EnumSet.of(MessageType.AUTH_SIGNUP, MessageType.AUTH_LOGIN);
+
+    // 인증된 사용자 uid → 연결 (로그인 / 연결 종료 때만 바뀜)
+    private final RouteTable routes;
 
     // 파일 저장소
-    private final UserStore userStore = new UserStore();
-    private final HistoryStore historyStore = new HistoryStore();
+    private final UserStore userStore;
+    private final HistoryStore historyStore;
+    private final RoomStore roomStore;
+    private final PrekeyStore prekeyStore;
+
+    // HISTORY_REQ 1번에 돌려줄 최대 개수
+    private final int historyFetchMax;
+
+    // KEY_BATCH_REQ 1번에 조회할 최대 ID 수
+    private final int maxKeyBatch;
+
+    // 일회용 prekey 보충 알림 기준
+    private final E2eeProperties.Prekey prekeyProps;
+
+    // 재전송(outbox replay) 중복 제거
+    private final DuplicateFilter duplicates = new DuplicateFilter();
+
+    // 프레임 속도 제한 (연결/사용자별 토큰 버킷)
+    private final RateLimiter rateLimiter;
+
+    // Micrometer 지표
+    private final RelayMetrics metrics;
+
+    // 프레임 로그 (샘플링 + body 가림)
+    private final FrameLog frameLog;
+
+    // 수신 확인 대기 중인 1:1 메시지 (타임아웃 시 재전송)
+    private final InFlightTable inFlight;
+
+    public ChatTcpServer(E2eeProperties props, RateLimiter rateLimiter, RelayMetrics metrics,
+                         FrameLog frameLog, InFlightTable inFlight) {
+        this.serverProps = props.getServer();
+        this.maxFrameBytes = serverProps.largestFrameLimit();
+        this.compression = props.getCompression();
+
+        E2eeProperties.Storage storage = props.getStorage();
+        File dataDir = new File(storage.getDataDir());
+        this.userStore = new UserStore(new File(dataDir, storage.getUsersFile()));
+        this.roomStore = new RoomStore(new File(dataDir, storage.getRoomsFile()), userStore::uidOf);
+        this.historyStore = new HistoryStore(dataDir, storage, props.getRetention());
+        this.historyFetchMax = Math.max(1, storage.getHistoryFetchMax());
+        this.maxKeyBatch = Math.max(1, serverProps.getMaxKeyBatch());
+        this.routes = new RouteTable(userStore.maxUid() + 1);
+
+        this.prekeyProps = props.getPrekey();
+        this.prekeyStore = new PrekeyStore(new File(dataDir, storage.getPrekeysFile()), prekeyProps.getMaxPerUser());
+
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
+        this.frameLog = frameLog;
+        this.inFlight = inFlight;
+
+        historyStore.setCompactionListener(metrics::recordCompaction);
+
+        inFlight.setListener(new InFlightTable.Listener() {
+            @Override
+            public void redeliver(InFlightTable.Entry e) {
+                ConnectionContext c = routeOf(e.getReceiver());
+                if (c != null) deliver(c, e.getJson(), MessageType.CHAT);
+            }
+
+            @Override
+            public void expired(InFlightTable.Entry e) {
+                ConnectionContext c = routeOf(e.getSender());
+                if (c != null) sendSystem(c.out(), e.getSender(), "UNDELIVERED:" + e.getId(), null);
+            }
+        });
+    }
 
     @PostConstruct
     public void start() {
+        int port = serverProps.getPort();
+
+        // 연결당 스레드 1개 (가상 스레드 선택 가능)
+        Thread.Builder handlers = serverProps.isVirtualThreads()
+                ? Thread.ofVirtual()
+                : Thread.ofPlatform();
+
         Thread t = new Thread(() -> {
-            try (ServerSocket serverSocket = new ServerSocket(PORT)) {
-                System.out.println("[TCP] ChatServer started on port " + PORT);
+            try (ServerSocket serverSocket = new ServerSocket(port, serverProps.getBacklog())) {
+                if (serverProps.getSocketReceiveBuffer() > 0) {
+                    serverSocket.setReceiveBufferSize(serverProps.getSocketReceiveBuffer());
+                }
+                log.info("ChatServer started on port {}", port);
 
                 while (true) {
                     Socket client = serverSocket.accept();
-                    System.out.println("[TCP] 클라이언트 접속: " + client);
+                    log.info("클라이언트 접속: {}", client.getRemoteSocketAddress());
+
+                    if (serverProps.getSocketSendBuffer() > 0) {
+                        client.setSendBufferSize(serverProps.getSocketSendBuffer());
+                    }
 
-                    new Thread(() -> handleClient(client),
-                            "client-" + client.getPort()).start();
+                    handlers.name("client-" + client.getPort()).start(() -> handleClient(client));
                 }
 
             } catch (Exception e) {
-                e.printStackTrace();
+                log.error("TCP 서버 종료", e);
             }
         });
 
@@ -52,48 +178,165 @@ public class ChatTcpServer {
         t.start();
     }
 
+    @PreDestroy
+    public void stop() {
+        historyStore.close();
+        prekeyStore.close();
+    }
+
 
 
     private void handleClient(Socket client) {
-        System.out.println("[CLIENT] 핸들러 시작");
+        metrics.connectionOpened();
+        ConnectionContext ctx = null;
 
-        try (BufferedReader br = new BufferedReader(
-                new InputStreamReader(client.getInputStream(), StandardCharsets.UTF_8));
-             PrintWriter out = new PrintWriter(
+        try (InputStream in = client.getInputStream();
+             FrameWriter out = new FrameWriter(new BufferedWriter(
                      new OutputStreamWriter(client.getOutputStream(), StandardCharsets.UTF_8),
-                     true)) {
+                     serverProps.getWriteBufferChars()))) {
+
+            ConnectionContext c = ctx = new ConnectionContext(client, out, rateLimiter.newConnection());
+
+            // 줄을 모으는 동안은 가장 큰 상한으로, 넘으면 모으지 않고 버림
+            FrameDecoder decoder = new FrameDecoder(in,
+                    serverProps.getReadBufferChars(), maxFrameBytes,
+                    discarded -> rejectOversized(c, null, discarded));
 
             String line;
-            while ((line = br.readLine()) != null) {
+            while ((line = decoder.next()) != null) {
+                int length = decoder.lastLength();
+
+                // 빈 줄(줄바꿈만 연달아 온 것)은 끊지 않고 건너뜀
+                if (line.isBlank()) continue;
+
+                // 헤더만 먼저 읽고, body가 필요한 제어 프레임(인증/키/방/수신확인)만 전체 파싱
+                ChatMessage msg;
+                try {
+                    msg = ChatMessage.parseHeader(line);
+                } catch (IOException | RuntimeException e) {
+                    ctx.rejected();
+                    sendSystem(out, ctx.userId(), "BAD_FRAME", null);
+                    continue;
+                }
 
-                ChatMessage msg = gson.fromJson(line, ChatMessage.class);
-                System.out.println("[서버 RAW] " + line);
+                // 모르는 타입 (새 버전 클라이언트 / 오타) → 연결은 두고 알려만 줌
+                if (msg.getType() == null) {
+                    ctx.rejected();
+                    sendSystem(out, ctx.userId(), "UNKNOWN_TYPE", msg.getTimestamp());
+                    continue;
+                }
 
-                // sender는 이제 "id" 그대로!
-                clientOutputs.put(msg.getSender(), out);
+                // 타입별 상한은 헤더를 읽은 뒤에 (예: FILE_CHUNK 만 크게)
+                if (length > serverProps.frameLimit(msg.getType())) {
+                    rejectOversized(ctx, msg.getType(), length);
+                    continue;
+                }
 
-                handleMessage(msg, out);
+                // 전체 파싱도 실패할 수 있음 (body 가 문자열이 아님 등) → 헤더 실패와 똑같이
+                if (!OPAQUE.contains(msg.getType())) {
+                    try {
+                        msg = gson.fromJson(line, ChatMessage.class);
+                    } catch (RuntimeException e) {
+                        ctx.rejected();
+                        sendSystem(out, ctx.userId(), "BAD_FRAME", msg.getTimestamp());
+                        continue;
+                    }
+                }
+                metrics.traceReceived(msg);
+                frameLog.inbound(msg, length);
+                metrics.frameIn(msg.getType());
+                ctx.received(length);
+
+                String sender = msg.getSender();
+
+                // 인증 전엔 AUTH_* 만, 인증 후엔 본인 sender 로만
+                if (!AUTH.contains(msg.getType())) {
+                    if (!ctx.authenticated()) {
+                        ctx.rejected();
+                        sendSystem(out, sender, "AUTH_REQUIRED", msg.getTimestamp());
+                        continue;
+                    }
+                    if (!ctx.isSelf(sender)) {
+                        ctx.rejected();
+                        sendSystem(out, ctx.userId(), "SENDER_MISMATCH:" + sender, msg.getTimestamp());
+                        continue;
+                    }
+                }
+
+                RateLimiter.Verdict verdict = rateLimiter.check(ctx.limits(), msg.getType(), ctx.uid(), ctx.address());
+
+                if (verdict != RateLimiter.Verdict.ALLOW) {
+                    if (verdict == RateLimiter.Verdict.WARN) {
+                        sendSystem(out, sender,
+                                "RATE_LIMITED:" + LimitCategory.of(msg.getType()), msg.getTimestamp());
+                    }
+                    continue;
+                }
+
+                // 처리 중 예외(필드 누락 등)로 연결을 끊지 않음 → 그 프레임만 버림
+                try {
+                    handleMessage(msg, ctx);
+                } catch (RuntimeException e) {
+                    ctx.rejected();
+                    log.warn("프레임 처리 실패 → 버림: {} type={}", ctx, msg.getType(), e);
+                    sendSystem(out, ctx.userId(), "BAD_FRAME", msg.getTimestamp());
+                }
             }
 
         } catch (Exception e) {
-            System.out.println("[CLIENT] 연결 종료: " + client);
+            log.info("연결 종료: {}", client.getRemoteSocketAddress());
+        } finally {
+            if (ctx != null) {
+                unbind(ctx);
+                log.debug("연결 정리: {}", ctx);
+            }
+            metrics.connectionClosed();
         }
     }
 
+    // 크기 상한을 넘은 프레임: 처리하지 않고 보낸 쪽에 SYSTEM 경고만
+    private void rejectOversized(ConnectionContext ctx, MessageType type, long length) {
+        ctx.rejected();
+        metrics.frameOversized();
+        log.warn("프레임 크기 초과 → 버림: {} type={} {}B", ctx, type, length);
+        sendSystem(ctx.out(), ctx.userId(), "FRAME_TOO_LARGE:" + (type == null ? "?" : type), null);
+    }
+
+    // ============================================================
+    //              라우팅 (인증 성공 / 연결 종료 때만)
+    // ============================================================
+    private void bind(ConnectionContext ctx, int uid, String userId, String device) {
+        if (uid == ctx.uid()) return;
+
+        unbind(ctx);
+        ctx.bind(uid, userId, device);
+
+        // 같은 ID의 이전 연결(재접속 전 끊긴 소켓 등)은 라우팅에서 밀려남
+        ConnectionContext prev = routes.put(uid, ctx);
+        if (prev != null && prev != ctx) log.info("라우팅 교체: {} ({} → 새 연결)", userId, prev);
+    }
+
+    private void unbind(ConnectionContext ctx) {
+        if (ctx.authenticated()) routes.remove(ctx.uid(), ctx);
+    }
+
+    // 프레임에 적힌 이름 → 접속 중인 연결 (이름 조회 1번 + 배열 칸 1개)
+    private ConnectionContext routeOf(String userId) {
+        return routes.get(userStore.uidOf(userId));
+    }
+
 
 
     // ============================================================
     //                        회원가입
     // ============================================================
-    private void handleSignup(ChatMessage msg, PrintWriter out) {
-
-        AuthPayload p = gson.fromJson(msg.getBody(), AuthPayload.class);
+    private void handleSignup(ChatMessage msg, ConnectionContext ctx) {
+        PrintWriter out = ctx.out();
 
-        String id = p.getId();
-        String pw = p.getPassword();
-        String publicKey = p.getPublicKey();
+        AuthPayload p = authPayload(msg);
 
-        if (id == null || pw == null || publicKey == null) {
+        // 공개키는 X25519 X.509 Base64 만 받음 (UserStore 가 원본 32바이트로 보관)
+        if (p == null || p.getId() == null || p.getPassword() == null || !PublicKeyTable.isValid(p.getPublicKey())) {
             ChatMessage res = new ChatMessage(
                     MessageType.AUTH_RESULT,
                     "server",
@@ -101,11 +344,14 @@ public class ChatTcpServer {
                     "SIGNUP_FAIL:BAD_PAYLOAD",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            send(out, res);
             return;
         }
 
-        if (userStore.exists(id)) {
+        String id = p.getId();
+        int uid = userStore.addUser(id, p.getPassword(), p.getPublicKey());
+
+        if (uid == UserStore.NO_UID) {
             ChatMessage res = new ChatMessage(
                     MessageType.AUTH_RESULT,
                     "server",
@@ -113,12 +359,10 @@ public class ChatTcpServer {
                     "SIGNUP_FAIL:ID_EXISTS",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            send(out, res);
             return;
         }
 
-        userStore.addUser(id, pw, publicKey);
-
         ChatMessage res = new ChatMessage(
                 MessageType.AUTH_RESULT,
                 "server",
@@ -126,7 +370,10 @@ public class ChatTcpServer {
                 "SIGNUP_OK",
                 msg.getTimestamp()
         );
-        out.println(gson.toJson(res));
+        send(out, res);
+        bind(ctx, uid, id, p.getDevice());
+        negotiateCompression(out, p);
+        remindPrekeys(ctx);
     }
 
 
@@ -134,14 +381,41 @@ public class ChatTcpServer {
     // ============================================================
     //                        로그인
     // ============================================================
-    private void handleLogin(ChatMessage msg, PrintWriter out) {
+    private void handleLogin(ChatMessage msg, ConnectionContext ctx) {
+        PrintWriter out = ctx.out();
+
+        AuthPayload p = authPayload(msg);
 
-        AuthPayload p = gson.fromJson(msg.getBody(), AuthPayload.class);
+        if (p == null || p.getId() == null || p.getPassword() == null) {
+            ChatMessage res = new ChatMessage(
+                    MessageType.AUTH_RESULT,
+                    "server",
+                    msg.getSender(),
+                    "LOGIN_FAIL:BAD_PAYLOAD",
+                    msg.getTimestamp()
+            );
+            send(out, res);
+            return;
+        }
 
         String id = p.getId();
         String pw = p.getPassword();
+        int uid = userStore.uidOf(id);
 
-        if (!userStore.exists(id)) {
+        // 계정별 시도 예산 (연결 / IP 를 바꿔 가며 한 계정 비밀번호를 맞춰 보는 것 방지)
+        if (uid != UserStore.NO_UID && rateLimiter.checkLogin(uid) != RateLimiter.Verdict.ALLOW) {
+            ChatMessage res = new ChatMessage(
+                    MessageType.AUTH_RESULT,
+                    "server",
+                    msg.getSender(),
+                    "LOGIN_FAIL:RATE_LIMITED",
+                    msg.getTimestamp()
+            );
+            send(out, res);
+            return;
+        }
+
+        if (uid == UserStore.NO_UID) {
             ChatMessage res = new ChatMessage(
                     MessageType.AUTH_RESULT,
                     "server",
@@ -149,7 +423,7 @@ public class ChatTcpServer {
                     "LOGIN_FAIL:ID_NOT_FOUND",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            send(out, res);
             return;
         }
 
@@ -161,7 +435,7 @@ public class ChatTcpServer {
                     "LOGIN_FAIL:BAD_PASSWORD",
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(res));
+            send(out, res);
             return;
         }
 
@@ -173,7 +447,26 @@ public class ChatTcpServer {
                 msg.getTimestamp()
         );
 
-        out.println(gson.toJson(res));
+        send(out, res);
+        bind(ctx, uid, id, p.getDevice());
+        negotiateCompression(out, p);
+        remindPrekeys(ctx);
+    }
+
+    // body 가 없거나 JSON 객체 문자열이 아니면 null
+    private AuthPayload authPayload(ChatMessage msg) {
+        if (msg.getBody() == null || msg.getBody().isBlank()) return null;
+        try {
+            return gson.fromJson(msg.getBody(), AuthPayload.class);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // 인증 응답은 압축 없이 보낸 뒤 켠다 (클라 handshake는 응답 1줄을 그대로 읽음)
+    private void negotiateCompression(PrintWriter out, AuthPayload p) {
+        if (!compression.isEnabled() || !FrameCodec.NAME.equals(p.getCompression())) return;
+        if (out instanceof FrameWriter fw) fw.enableCompression(new FrameCodec(compression.getLevel()));
     }
 
 
@@ -187,11 +480,15 @@ public class ChatTcpServer {
         String targetId = msg.getReceiver();   // ex) "kasl"
 
         // 서버 DB에서 대상 공개키 조회
-        String targetPubKey = userStore.getPublicKey(targetId);
+        int targetUid = userStore.uidOf(targetId);
+        String targetPubKey = userStore.getPublicKey(targetUid);
+
+        // 요청자 = 이 연결의 사용자 (인증 때 확인됨)
+        ConnectionContext requester = routeOf(requesterId);
 
         if (targetPubKey == null) {
-            PrintWriter out = clientOutputs.get(requesterId);
-            if (out != null) {
+            if (requester != null) {
+                PrintWriter out = requester.out();
                 ChatMessage warn = new ChatMessage(
                         MessageType.SYSTEM,
                         "server",
@@ -199,7 +496,7 @@ public class ChatTcpServer {
                         "NO_SUCH_USER:" + targetId,
                         msg.getTimestamp()
                 );
-                out.println(gson.toJson(warn));
+                send(out, warn);
             }
             return;
         }
@@ -215,13 +512,11 @@ public class ChatTcpServer {
                 msg.getTimestamp()
         );
 
-        PrintWriter outRequester = clientOutputs.get(requesterId);
-        if (outRequester != null) {
-            outRequester.println(gson.toJson(resToRequester));
+        if (requester != null) {
+            send(requester.out(), resToRequester);
         }
 
-        System.out.println("[KEY] 서버가 공개키 전달: " +
-                targetId + " → " + requesterId);
+        log.debug("공개키 전달: {} → {}", targetId, requesterId);
 
 
 
@@ -238,13 +533,136 @@ public class ChatTcpServer {
                 msg.getTimestamp()
         );
 
-        PrintWriter outTarget = clientOutputs.get(targetId);
-        if (outTarget != null) {
-            outTarget.println(gson.toJson(reqToTarget));
+        ConnectionContext target = routes.get(targetUid);
+        if (target != null) {
+            send(target.out(), reqToTarget);
+        }
+
+        log.debug("요청자 공개키 전달: {} → {}", requesterId, targetId);
+    }
+
+
+
+    // ============================================================
+    //                 PREKEY_UPLOAD / PREKEY_REQ 처리
+    // ============================================================
+    private void handlePrekeyUpload(ChatMessage msg, ConnectionContext ctx) {
+
+        // body = {"17":"공개키", "18":"공개키", ...}
+        Map<String, String> keys;
+        try {
+            keys = gson.fromJson(msg.getBody(), STRING_MAP);
+        } catch (RuntimeException e) {
+            keys = null;
+        }
+
+        if (keys == null || keys.isEmpty()) {
+            sendSystem(ctx.out(), ctx.userId(), "PREKEY_FAIL:BAD_PAYLOAD", msg.getTimestamp());
+            return;
+        }
+
+        int before = prekeyStore.count(ctx.uid());
+        int after = prekeyStore.upload(ctx.uid(), keys);
+        metrics.prekeysUploaded(Math.max(0, after - before));
+
+        log.debug("prekey 업로드: {} +{} (남은 {}개)", ctx.userId(), after - before, after);
+    }
+
+    private void handlePrekeyRequest(ChatMessage msg) {
+
+        String requesterId = msg.getSender();
+        String targetId = msg.getReceiver();
+        int targetUid = userStore.uidOf(targetId);
+
+        // prekey 를 올린 적 없는 상대(예전 클라 / 없는 ID) → 예전처럼 KEY_RES + KEY_REQ 전달
+        if (!prekeyStore.supports(targetUid)) {
+            handleKeyRequest(msg);
+            return;
+        }
+
+        ConnectionContext requester = routeOf(requesterId);
+        if (requester == null) return;
+
+        // 일회용 prekey 1개 (다 떨어졌으면 신원키만 → 클라는 DH 2번으로 세션)
+        PrekeyStore.Prekey prekey = prekeyStore.take(targetUid);
+        metrics.bundleServed(prekey != null);
+
+        Map<String, Object> bundle = new LinkedHashMap<>();
+        bundle.put("identityKey", userStore.getPublicKey(targetUid));
+        if (prekey != null) {
+            bundle.put("prekeyId", prekey.id());
+            bundle.put("prekey", prekey.key());
+        }
+
+        ChatMessage res = new ChatMessage(
+                MessageType.PREKEY_BUNDLE,
+                targetId,              // sender = 상대ID
+                requesterId,
+                gson.toJson(bundle),
+                msg.getTimestamp()
+        );
+        send(requester.out(), res);
+
+        log.debug("prekey 번들 전달: {} → {} (prekey {})", targetId, requesterId,
+                (prekey != null) ? prekey.id() : "없음");
+
+        // 기준 아래로 막 내려갔거나 다 떨어졌으면 주인에게 보충 알림 (접속 중일 때만, 아니면 다음 로그인 때)
+        int left = prekeyStore.count(targetUid);
+        if (left == prekeyProps.getLowWatermark() - 1 || (prekey != null && left == 0)) {
+            ConnectionContext owner = routes.get(targetUid);
+            if (owner != null) sendSystem(owner.out(), targetId, "PREKEY_LOW:" + left, null);
+        }
+    }
+
+    // 로그인 직후: prekey 를 쓰는 클라인데 남은 게 기준보다 적으면 보충 알림
+    private void remindPrekeys(ConnectionContext ctx) {
+        if (!prekeyStore.supports(ctx.uid())) return;
+
+        int left = prekeyStore.count(ctx.uid());
+        if (left < prekeyProps.getLowWatermark()) {
+            sendSystem(ctx.out(), ctx.userId(), "PREKEY_LOW:" + left, null);
+        }
+    }
+
+
+
+    // ============================================================
+    //                  KEY_BATCH_REQ 처리
+    // ============================================================
+    private void handleKeyBatchRequest(ChatMessage msg, PrintWriter out) {
+
+        // body = ["peerA","peerB",...]
+        List<String> peerIds;
+        try {
+            peerIds = gson.fromJson(msg.getBody(), STRING_LIST);
+        } catch (RuntimeException e) {
+            peerIds = null;
+        }
+
+        if (peerIds == null || peerIds.isEmpty() || peerIds.contains(null)) {
+            sendSystem(out, msg.getSender(), "KEY_BATCH_FAIL:BAD_PAYLOAD", msg.getTimestamp());
+            return;
         }
 
-        System.out.println("[KEY] 요청자 공개키 전달: " +
-                requesterId + " → " + targetId);
+        // 한 프레임으로 사용자 표 전체를 훑지 못하게 상한
+        if (peerIds.size() > maxKeyBatch) {
+            sendSystem(out, msg.getSender(), "KEY_BATCH_FAIL:TOO_MANY", msg.getTimestamp());
+            return;
+        }
+
+        // UserStore에서 한 번에 조회 → 요청자에게 프레임 1개로 응답
+        Map<String, String> keys = userStore.getPublicKeys(peerIds);
+
+        ChatMessage res = new ChatMessage(
+                MessageType.KEY_BATCH_RES,
+                "server",
+                msg.getSender(),
+                gson.toJson(keys),
+                msg.getTimestamp()
+        );
+        send(out, res);
+
+        log.debug("공개키 일괄 전달: {}/{} → {}", keys.size(), peerIds.size(), msg.getSender());
     }
 
 
@@ -252,29 +670,56 @@ public class ChatTcpServer {
     // ============================================================
     //                         CHAT
     // ============================================================
-    private void handleChat(ChatMessage msg, PrintWriter out) {
+    private void handleChat(ChatMessage msg, ConnectionContext ctx) {
+        PrintWriter out = ctx.out();
 
-        System.out.println("[서버][CHAT] "
-                + msg.getSender() + " -> " + msg.getReceiver()
-                + " : " + msg.getBody());
+        // 다른 사람 메시지가 쓰고 있는 id → 저장/중계하지 않음 (그 메시지의 수신 확인과 섞이지 않게)
+        // ACK 도 안 보냄 → 클라이언트 쪽에서 못 보낸 것으로 남음 (seq 도 아직 받은 것으로 치지 않게 중복 검사보다 먼저)
+        if (inFlight.isUsedByOther(msg.getId(), msg.getSender())) {
+            sendSystem(out, msg.getSender(), "ID_IN_USE:" + msg.getId(), msg.getTimestamp());
+            return;
+        }
 
+        // 재연결 후 다시 온 메시지 → 저장/중계 없이 ACK만 다시
+        if (!duplicates.accept(ctx.uid(), ctx.device(), msg.getSeq())) {
+            ack(out, msg);
+            return;
+        }
+
+        long t0 = System.nanoTime();
         historyStore.add(msg);
+        metrics.recordHistoryWrite(System.nanoTime() - t0);
+        metrics.tracePersisted(msg);
+        ack(out, msg);
 
-        String json = gson.toJson(msg);
+        // 받은 줄 그대로 중계 (다시 직렬화하지 않음)
+        String json = msg.getRaw();
 
         // 전체방
         if ("ALL".equalsIgnoreCase(msg.getReceiver())) {
-            for (PrintWriter w : clientOutputs.values()) w.println(json);
+            long f0 = System.nanoTime();
+            routes.forEach(c -> deliver(c, json, MessageType.CHAT));
+            metrics.recordFanout(System.nanoTime() - f0);
+            metrics.traceForwarded(msg);
+            frameLog.relayed(msg, routes.size());
             return;
         }
 
         // 1:1 메시지
         String receiverId = msg.getReceiver();
-        PrintWriter targetOut = clientOutputs.get(receiverId);
+        ConnectionContext target = routeOf(receiverId);
+
+        // 받는 사람이 DELIVERED/READ 보낼 때까지 추적 (쓰기 전에 등록 → 빠른 수신 확인도 표에서 찾음)
+        // (위 검사 뒤에 다른 사람이 같은 id 를 먼저 잡았으면 추적 없이 중계만)
+        boolean tracked = target != null && msg.getId() != null
+                && inFlight.track(msg.getId(), msg.getSender(), receiverId, json);
 
-        if (targetOut != null) {
-            targetOut.println(json);
+        if (target != null && deliver(target, json, MessageType.CHAT)) {
+            metrics.traceForwarded(msg);
+            frameLog.relayed(msg, 1);
         } else {
+            if (tracked) inFlight.forget(msg.getId());
+
             ChatMessage warn = new ChatMessage(
                     MessageType.SYSTEM,
                     "server",
@@ -282,8 +727,289 @@ public class ChatTcpServer {
                     "TARGET_OFFLINE:" + receiverId,
                     msg.getTimestamp()
             );
-            out.println(gson.toJson(warn));
+            send(out, warn);
+        }
+    }
+
+
+
+    // ============================================================
+    //                   그룹방 (생성/입장/퇴장)
+    // ============================================================
+    private void handleRoom(ChatMessage msg, PrintWriter out) {
+
+        String room = msg.getReceiver();
+        String id = msg.getSender();
+
+        if (room == null || room.isBlank() || "ALL".equalsIgnoreCase(room)) {
+            sendSystem(out, id, "ROOM_FAIL:BAD_NAME", msg.getTimestamp());
+            return;
+        }
+
+        boolean ok;
+        String failReason;
+
+        switch (msg.getType()) {
+            case ROOM_CREATE:
+                ok = roomStore.create(room, id);
+                failReason = "ROOM_FAIL:EXISTS:";
+                break;
+            case ROOM_JOIN:
+                ok = roomStore.join(room, id);
+                failReason = "ROOM_FAIL:NO_SUCH_ROOM:";
+                break;
+            default: // ROOM_LEAVE
+                ok = roomStore.leave(room, id);
+                failReason = "ROOM_FAIL:NOT_MEMBER:";
+                break;
+        }
+
+        if (!ok) {
+            sendSystem(out, id, failReason + room, msg.getTimestamp());
+            return;
+        }
+
+        // 남아있는 멤버 전원(+ 요청자)에게 최신 멤버 목록 전달
+        // → 클라이언트는 이걸 보고 sender key를 배포/교체한다.
+        List<String> members = roomStore.members(room);
+
+        ChatMessage update = new ChatMessage(
+                MessageType.ROOM_MEMBERS,
+                room,
+                id,
+                gson.toJson(members),
+                msg.getTimestamp()
+        );
+        String json = gson.toJson(update);
+
+        sendJson(out, json, MessageType.ROOM_MEMBERS);
+        for (int uid : roomStore.memberUids(room)) {
+            ConnectionContext c = routes.get(uid);
+            if (c != null && c.out() != out) sendJson(c.out(), json, MessageType.ROOM_MEMBERS);
+        }
+
+        log.info("{} {} @ {} (멤버 {}명)", msg.getType(), id, room, members.size());
+    }
+
+
+
+    // ============================================================
+    //                   ROOM_CHAT (그룹 메시지)
+    // ============================================================
+    private void handleRoomChat(ChatMessage msg, ConnectionContext ctx) {
+        PrintWriter out = ctx.out();
+
+        String room = msg.getReceiver();
+
+        if (!roomStore.isMember(room, msg.getSender())) {
+            sendSystem(out, msg.getSender(), "ROOM_FAIL:NOT_MEMBER:" + room, msg.getTimestamp());
+            return;
+        }
+
+        if (!duplicates.accept(ctx.uid(), ctx.device(), msg.getSeq())) {
+            ack(out, msg);
+            return;
+        }
+
+        long t0 = System.nanoTime();
+        historyStore.add(msg);
+        metrics.recordHistoryWrite(System.nanoTime() - t0);
+        metrics.tracePersisted(msg);
+        ack(out, msg);
+
+        // sender key로 한 번 암호화된 암호문을 그대로 멤버들에게 fan-out
+        long f0 = System.nanoTime();
+        String json = msg.getRaw();
+        int recipients = 0;
+        for (int uid : roomStore.memberUids(room)) {
+            if (uid == ctx.uid()) continue;
+            ConnectionContext c = routes.get(uid);
+            if (c != null && deliver(c, json, MessageType.ROOM_CHAT)) {
+                recipients++;
+            }
+        }
+        metrics.recordFanout(System.nanoTime() - f0);
+        metrics.traceForwarded(msg);
+        frameLog.relayed(msg, recipients);
+    }
+
+
+
+    // ============================================================
+    //              HISTORY_REQ (서버에 저장된 최근 기록)
+    //  - 1:1 = 요청자와 상대의 대화, #방 = 멤버만
+    //  - 대화별 hot 링에 충분히 있으면 디스크를 읽지 않음 (HistoryStore.recent)
+    // ============================================================
+    private void handleHistoryRequest(ChatMessage msg, PrintWriter out) {
+
+        String target = msg.getReceiver();
+        String id = msg.getSender();
+
+        if (target == null || target.isBlank() || "#".equals(target)) {
+            sendSystem(out, id, "HISTORY_FAIL:BAD_TARGET", msg.getTimestamp());
+            return;
+        }
+
+        // body = 개수 (없으면 최대)
+        int limit = historyFetchMax;
+        if (msg.getBody() != null && !msg.getBody().isBlank()) {
+            try {
+                limit = Math.min(historyFetchMax, Integer.parseInt(msg.getBody().trim()));
+            } catch (NumberFormatException e) {
+                limit = 0;
+            }
+        }
+        if (limit <= 0) {
+            sendSystem(out, id, "HISTORY_FAIL:BAD_PAYLOAD", msg.getTimestamp());
+            return;
+        }
+
+        List<String> frames;
+        if (target.startsWith("#")) {
+            String room = target.substring(1);
+            if (!roomStore.isMember(room, id)) {
+                sendSystem(out, id, "ROOM_FAIL:NOT_MEMBER:" + room, msg.getTimestamp());
+                return;
+            }
+            frames = historyStore.recent(MessageType.ROOM_CHAT, id, room, limit);
+        } else {
+            frames = historyStore.recent(MessageType.CHAT, id, target, limit);
+        }
+
+        ChatMessage res = new ChatMessage(
+                MessageType.HISTORY_RES,
+                target,
+                id,
+                gson.toJson(frames),
+                msg.getTimestamp()
+        );
+        send(out, res);
+
+        log.debug("기록 조회: {} → {} {}건", id, target, frames.size());
+    }
+
+
+
+    // ============================================================
+    //        SENDER_KEY / FILE_* (1:1 중계, 기록 안 함)
+    //  - 파일 청크도 한 줄씩 받은 즉시 넘기므로 파일 전체를 들고 있지 않음
+    // ============================================================
+    private void handleRelay(ChatMessage msg, PrintWriter out) {
+
+        ConnectionContext target = routeOf(msg.getReceiver());
+
+        if (target != null) {
+            deliver(target, msg.getRaw(), msg.getType());
+        } else {
+            sendSystem(out, msg.getSender(), "TARGET_OFFLINE:" + msg.getReceiver(), msg.getTimestamp());
+        }
+    }
+
+
+
+    // ============================================================
+    //        DELIVERED / READ (받는 사람 → 보낸 사람 수신 확인)
+    // ============================================================
+    private void handleReceipt(ChatMessage msg) {
+
+        // 재전송 중단 (READ 가 먼저 와도 같은 처리). 이 메시지를 받은 사람이 아니면 무시
+        String originalSender = inFlight.confirm(msg.getBody(), msg.getSender());
+        if (originalSender == null) return;
+
+        // 클라가 적은 receiver 대신 표에 있는 원래 보낸 사람에게만 전달
+        // (오프라인이면 그냥 버림, 수신 확인은 보관 안 함)
+        ConnectionContext c = routeOf(originalSender);
+        if (c == null) return;
+
+        ChatMessage receipt = new ChatMessage(
+                msg.getType(),
+                msg.getSender(),
+                originalSender,
+                msg.getBody(),
+                msg.getTimestamp()
+        );
+        deliver(c, gson.toJson(receipt), msg.getType());
+    }
+
+
+
+    // 송신 공통: 직렬화 + 지표
+    private void send(PrintWriter w, ChatMessage msg) {
+        sendJson(w, gson.toJson(msg), msg.getType());
+    }
+
+    /**
+     * @return 쓰기 성공 여부 (PrintWriter는 IOException을 삼키므로 checkError로 확인)
+     */
+    private boolean sendJson(PrintWriter w, String json, MessageType type) {
+        boolean ok;
+        metrics.writeStarted();
+        try {
+            w.println(encode(w, json, type));
+            ok = !w.checkError();
+        } finally {
+            metrics.writeFinished();
         }
+        if (ok) {
+            metrics.frameOut(type);
+            if (w instanceof FrameWriter fw) fw.sent();
+        }
+        return ok;
+    }
+
+    /**
+     * 압축 협상된 연결이면 제어/일괄 프레임(KEY_BATCH_RES, ROOM_MEMBERS 등)만 압축.
+     * 암호문이 든 중계 프레임(OPAQUE)은 압축하지 않는다 → 압축 후 길이로 평문 내용이 새는 것 방지.
+     * 압축해도 줄지 않으면 원본을 보낸다.
+     */
+    private String encode(PrintWriter w, String json, MessageType type) {
+        if (!(w instanceof FrameWriter fw)) return json;
+
+        FrameCodec codec = fw.codec();
+        if (codec == null || OPAQUE.contains(type) || json.length() < compression.getMinBytes()) return json;
+
+        long t0 = System.nanoTime();
+        String line = codec.encode(json);
+        metrics.recordCompression(json.length(), line.length(), System.nanoTime() - t0);
+
+        return (line.length() < json.length()) ? line : json;
+    }
+
+    // 다른 사용자에게 중계, 쓰기 실패한 연결은 라우팅에서 뺀다
+    private boolean deliver(ConnectionContext target, String json, MessageType type) {
+        if (sendJson(target.out(), json, type)) return true;
+
+        if (routes.remove(target.uid(), target)) log.info("송신 실패 → 라우팅 제거: {}", target.userId());
+        return false;
+    }
+
+
+
+    // 저장 완료 ACK (id 있는 메시지만) → 클라이언트 outbox에서 제거
+    private void ack(PrintWriter out, ChatMessage msg) {
+        if (msg.getId() == null) return;
+
+        ChatMessage ack = new ChatMessage(
+                MessageType.ACK,
+                "server",
+                msg.getSender(),
+                msg.getId(),
+                msg.getTimestamp()
+        );
+        send(out, ack);
+    }
+
+
+
+    private void sendSystem(PrintWriter out, String receiver, String body, String timestamp) {
+        ChatMessage warn = new ChatMessage(
+                MessageType.SYSTEM,
+                "server",
+                receiver,
+                body,
+                timestamp
+        );
+        send(out, warn);
     }
 
 
@@ -291,28 +1017,81 @@ public class ChatTcpServer {
     // ============================================================
     //                   메시지 분배
     // ============================================================
-    private void handleMessage(ChatMessage msg, PrintWriter out) {
+    private void handleMessage(ChatMessage msg, ConnectionContext ctx) {
+
+        long t0 = System.nanoTime();
+        try {
+            dispatch(msg, ctx);
+        } finally {
+            metrics.recordHandler(msg.getType(), System.nanoTime() - t0);
+        }
+    }
+
+    private void dispatch(ChatMessage msg, ConnectionContext ctx) {
+
+        PrintWriter out = ctx.out();
 
         switch (msg.getType()) {
 
             case AUTH_SIGNUP:
-                handleSignup(msg, out);
+                handleSignup(msg, ctx);
                 return;
 
             case AUTH_LOGIN:
-                handleLogin(msg, out);
+                handleLogin(msg, ctx);
                 return;
 
             case KEY_REQ:
                 handleKeyRequest(msg);
                 return;
 
+            case KEY_BATCH_REQ:
+                handleKeyBatchRequest(msg, out);
+                return;
+
+            case PREKEY_UPLOAD:
+                handlePrekeyUpload(msg, ctx);
+                return;
+
+            case PREKEY_REQ:
+                handlePrekeyRequest(msg);
+                return;
+
             case CHAT:
-                handleChat(msg, out);
+                handleChat(msg, ctx);
+                return;
+
+            case ROOM_CREATE:
+            case ROOM_JOIN:
+            case ROOM_LEAVE:
+                handleRoom(msg, out);
+                return;
+
+            case DELIVERED:
+            case READ:
+                handleReceipt(msg);
+                return;
+
+            case ROOM_CHAT:
+                handleRoomChat(msg, ctx);
+                return;
+
+            case HISTORY_REQ:
+                handleHistoryRequest(msg, out);
+                return;
+
+            case SENDER_KEY:
+            case FILE_OFFER:
+            case FILE_ACCEPT:
+            case FILE_CHUNK:
+            case FILE_ACK:
+                handleRelay(msg, out);
                 return;
 
             default:
-                System.out.println("[서버] 알 수 없는 타입: " + msg.getType());
+                // 서버 → 클라 전용 타입 (ACK, KEY_RES 등) 을 보낸 경우
+                log.debug("처리하지 않는 타입: {} ({})", msg.getType(), ctx);
+                sendSystem(out, ctx.userId(), "UNSUPPORTED_TYPE:" + msg.getType(), msg.getTimestamp());
         }
     }
 }
@@ -0,0 +1,99 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.limit.RateLimiter;
+
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 연결 1개의 상태. accept 직후 만들고, 인증(SIGNUP_OK / LOGIN_OK)이 끝나야 사용자 ID가 붙는다.
+ *
+ * - 라우팅 표(ID → 연결)는 인증 / 연결 종료 때만 바뀐다. (프레임마다 쓰지 않음)
+ * - 인증 후엔 프레임의 sender가 이 연결의 사용자와 같아야 한다. (남의 경로 가로채기 방지)
+ * - 수신 카운터는 이 연결의 수신 스레드만 쓰므로 그냥 long
+ */
+class ConnectionContext {
+
+    private final SocketAddress remote;
+    private final InetAddress address;
+    private final FrameWriter out;
+    private final RateLimiter.Buckets limits;
+    private final long openedNanos = System.nanoTime();
+
+    // 인증 전엔 null / 0
+    private volatile String userId;
+    private volatile int uid;
+    private volatile String device;   // 클라가 정한 기기 ID (seq 중복 제거 단위, 예전 클라는 null)
+
+    // ---------- 수신 스레드 전용 카운터 ----------
+    private long framesIn;
+    private long bytesIn;
+    private long rejected;
+
+    ConnectionContext(Socket socket, FrameWriter out, RateLimiter.Buckets limits) {
+        this.remote = socket.getRemoteSocketAddress();
+        this.address = socket.getInetAddress();
+        this.out = out;
+        this.limits = limits;
+    }
+
+    FrameWriter out() {
+        return out;
+    }
+
+    RateLimiter.Buckets limits() {
+        return limits;
+    }
+
+    InetAddress address() {
+        return address;
+    }
+
+    String userId() {
+        return userId;
+    }
+
+    int uid() {
+        return uid;
+    }
+
+    boolean authenticated() {
+        return userId != null;
+    }
+
+    // 인증 성공 시 (ChatTcpServer.bind 에서만)
+    void bind(int uid, String userId, String device) {
+        this.uid = uid;
+        this.device = device;
+        this.userId = userId;
+    }
+
+    String device() {
+        return device;
+    }
+
+    // 인증된 연결에서 온 프레임의 sender가 본인인지
+    boolean isSelf(String sender) {
+        String id = userId;
+        return id != null && id.equals(sender);
+    }
+
+    void received(int length) {
+        framesIn++;
+        bytesIn += length;
+    }
+
+    void rejected() {
+        rejected++;
+    }
+
+    @Override
+    public String toString() {
+        long sec = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - openedNanos);
+        return remote + " user=" + userId + "#" + uid
+                + " in=" + framesIn + "(" + bytesIn + "B) out=" + out.framesOut()
+                + " rejected=" + rejected + " " + sec + "s";
+    }
+}
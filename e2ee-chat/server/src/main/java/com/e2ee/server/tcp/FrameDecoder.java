@@ -0,0 +1,117 @@
+package com.e2ee.server.tcp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * 소켓 입력 → 줄('\n') 단위 프레임. BufferedReader.readLine() 대신 쓴다.
+ *
+ * - 한 줄이 maxFrameBytes 를 넘으면 그 뒤는 모으지 않고 다음 '\n' 까지 흘려버림
+ *   (끝난 뒤 onOversized 에 버린 길이를 알리고 다음 줄로)
+ * - 읽기 버퍼는 고정 크기, 프레임 버퍼는 필요할 때만 2배씩 최대 maxFrameBytes 까지
+ *   → 연결 1개가 쓰는 메모리는 많아야 readBufferBytes + maxFrameBytes
+ * - 수신 스레드 1개만 쓰므로 동기화 없음
+ */
+class FrameDecoder {
+
+    private static final int INITIAL_FRAME = 1024;
+
+    private final InputStream in;
+    private final int maxFrameBytes;
+    private final LongConsumer onOversized;
+
+    private final byte[] readBuf;
+    private int pos;
+    private int limit;
+
+    private byte[] frame;
+    private int frameLen;
+
+    // 마지막으로 돌려준 프레임의 바이트 수
+    private int lastLength;
+
+    FrameDecoder(InputStream in, int readBufferBytes, int maxFrameBytes, LongConsumer onOversized) {
+        this.in = in;
+        this.maxFrameBytes = maxFrameBytes;
+        this.onOversized = onOversized;
+        this.readBuf = new byte[Math.max(512, readBufferBytes)];
+        this.frame = new byte[Math.min(INITIAL_FRAME, maxFrameBytes)];
+    }
+
+    /**
+     * @return 다음 프레임 (줄 끝 '\r\n' / '\n' 제외), 연결이 끝났으면 null
+     */
+    String next() throws IOException {
+        frameLen = 0;
+        long discarded = 0;    // 0 보다 크면 지금 줄은 버리는 중
+
+        while (true) {
+            if (pos == limit) {
+                limit = in.read(readBuf, 0, readBuf.length);
+                pos = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    // 마지막 줄에 '\n' 이 없어도 readLine 처럼 돌려줌 (버리던 줄이면 버림)
+                    if (discarded > 0) onOversized.accept(discarded);
+                    return (discarded == 0 && frameLen > 0) ? frame() : null;
+                }
+            }
+
+            int start = pos;
+            int nl = indexOf(readBuf, (byte) '\n', pos, limit);
+            int end = (nl < 0) ? limit : nl;
+            pos = (nl < 0) ? limit : nl + 1;
+
+            if (discarded > 0) {
+                discarded += end - start;
+            } else if (frameLen + (end - start) > maxFrameBytes) {
+                discarded = frameLen + (end - start);
+                frameLen = 0;
+            } else {
+                append(start, end);
+            }
+
+            if (nl < 0) continue;
+
+            if (discarded > 0) {
+                onOversized.accept(discarded);
+                discarded = 0;
+                frameLen = 0;
+                continue;
+            }
+            return frame();
+        }
+    }
+
+    int lastLength() {
+        return lastLength;
+    }
+
+    private String frame() {
+        int len = frameLen;
+        if (len > 0 && frame[len - 1] == '\r') len--;
+        lastLength = len;
+        return new String(frame, 0, len, StandardCharsets.UTF_8);
+    }
+
+    private void append(int start, int end) {
+        int n = end - start;
+        if (frameLen + n > frame.length) {
+            int size = frame.length;
+            while (size < frameLen + n) size *= 2;
+            frame = Arrays.copyOf(frame, Math.min(size, maxFrameBytes));
+        }
+        System.arraycopy(readBuf, start, frame, frameLen, n);
+        frameLen += n;
+    }
+
+    private static int indexOf(byte[] buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] == b) return i;
+        }
+        return -1;
+    }
+}
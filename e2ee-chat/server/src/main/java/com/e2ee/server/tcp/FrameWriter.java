@@ -0,0 +1,49 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.protocol.FrameCodec;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 연결 1개의 송신 PrintWriter + 로그인 때 협상된 압축 코덱.
+ * (핸들러는 그대로 PrintWriter로 다루고, 송신 직전에만 꺼내 쓴다)
+ */
+class FrameWriter extends PrintWriter {
+
+    // 로그인 전이거나 클라가 압축을 요청하지 않았으면 null
+    private volatile FrameCodec codec;
+
+    // 이 연결로 보낸 프레임 수 (여러 스레드가 씀)
+    private final LongAdder framesOut = new LongAdder();
+
+    FrameWriter(Writer out) {
+        super(out, true);
+    }
+
+    FrameCodec codec() {
+        return codec;
+    }
+
+    void sent() {
+        framesOut.increment();
+    }
+
+    long framesOut() {
+        return framesOut.sum();
+    }
+
+    void enableCompression(FrameCodec codec) {
+        FrameCodec old = this.codec;
+        this.codec = codec;
+        if (old != null) old.close();
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        FrameCodec c = codec;
+        if (c != null) c.close();
+    }
+}
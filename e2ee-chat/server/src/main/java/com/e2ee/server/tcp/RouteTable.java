@@ -0,0 +1,69 @@
+package com.e2ee.server.tcp;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 접속 중인 사용자 표: uid → 연결.
+ *
+ * - uid 는 1부터 빽빽하므로 해시맵 대신 배열 칸 1개
+ * - 읽기(중계 경로)는 락 없이 배열 참조 + 칸 읽기
+ * - 쓰기(로그인 / 종료 / 송신 실패)는 드물어서 synchronized, 배열이 모자라면 2배로 복사
+ */
+class RouteTable {
+
+    private volatile AtomicReferenceArray<ConnectionContext> slots;
+    private int online;
+
+    RouteTable(int initialCapacity) {
+        this.slots = new AtomicReferenceArray<>(Math.max(16, initialCapacity));
+    }
+
+    ConnectionContext get(int uid) {
+        AtomicReferenceArray<ConnectionContext> arr = slots;
+        return (uid > 0 && uid < arr.length()) ? arr.get(uid) : null;
+    }
+
+    /**
+     * @return 밀려난 이전 연결 (없으면 null)
+     */
+    synchronized ConnectionContext put(int uid, ConnectionContext ctx) {
+        AtomicReferenceArray<ConnectionContext> arr = slots;
+
+        if (uid >= arr.length()) {
+            AtomicReferenceArray<ConnectionContext> grown =
+                    new AtomicReferenceArray<>(Math.max(arr.length() * 2, uid + 1));
+            for (int i = 0; i < arr.length(); i++) grown.set(i, arr.get(i));
+            slots = arr = grown;
+        }
+
+        ConnectionContext prev = arr.getAndSet(uid, ctx);
+        if (prev == null) online++;
+        return prev;
+    }
+
+    // 지금 이 연결이 등록돼 있을 때만 뺀다
+    synchronized boolean remove(int uid, ConnectionContext ctx) {
+        AtomicReferenceArray<ConnectionContext> arr = slots;
+        if (uid <= 0 || uid >= arr.length()) return false;
+
+        if (arr.compareAndSet(uid, ctx, null)) {
+            online--;
+            return true;
+        }
+        return false;
+    }
+
+    synchronized int size() {
+        return online;
+    }
+
+    // 전체방 fan-out 용 (빈 칸은 건너뜀)
+    void forEach(Consumer<ConnectionContext> action) {
+        AtomicReferenceArray<ConnectionContext> arr = slots;
+        for (int i = 1; i < arr.length(); i++) {
+            ConnectionContext c = arr.get(i);
+            if (c != null) action.accept(c);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.e2ee.server.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DuplicateFilterTest {
+
+    private final DuplicateFilter filter = new DuplicateFilter();
+
+    @Test
+    void replayedSeqIsRejected() {
+        assertTrue(filter.accept(1, "a", 100L));
+        assertTrue(filter.accept(1, "a", 101L));
+
+        assertFalse(filter.accept(1, "a", 101L));
+        assertFalse(filter.accept(1, "a", 100L));
+    }
+
+    @Test
+    void secondDeviceWithLowerSeqBaseIsNotDropped() {
+        assertTrue(filter.accept(1, "laptop", 5_000L));
+
+        // 다른 기기는 seq 시작값이 더 작아도 따로 센다
+        assertTrue(filter.accept(1, "phone", 10L));
+        assertTrue(filter.accept(1, "phone", 11L));
+        assertFalse(filter.accept(1, "phone", 11L));
+        assertFalse(filter.accept(1, "laptop", 5_000L));
+    }
+
+    @Test
+    void usersAreIndependentAndArrayGrows() {
+        assertTrue(filter.accept(1, null, 50L));
+        assertTrue(filter.accept(1_000, null, 50L));
+        assertFalse(filter.accept(1_000, null, 49L));
+        assertFalse(filter.accept(1, null, 50L));
+    }
+
+    @Test
+    void messagesWithoutSeqOrUidAlwaysPass() {
+        assertTrue(filter.accept(1, "a", null));
+        assertTrue(filter.accept(1, "a", null));
+        assertTrue(filter.accept(0, "a", 1L));
+        assertTrue(filter.accept(0, "a", 1L));
+    }
+
+    @Test
+    void leastRecentlyUsedDeviceIsForgotten() {
+        for (int d = 0; d <= DuplicateFilter.MAX_DEVICES; d++) {
+            assertTrue(filter.accept(1, "d" + d, 10L));
+        }
+
+        // d0 은 밀려났으므로 다시 받아들임, 최근 기기는 그대로 거름
+        assertTrue(filter.accept(1, "d0", 10L));
+        assertFalse(filter.accept(1, "d" + DuplicateFilter.MAX_DEVICES, 10L));
+    }
+}
@@ -0,0 +1,63 @@
+package com.e2ee.server.delivery;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HashedWheelTimerTest {
+
+    // 칸 8개 x 10ms → 80ms 넘는 지연은 여러 바퀴
+    private final HashedWheelTimer timer = new HashedWheelTimer("test-wheel", 10, TimeUnit.MILLISECONDS, 8);
+
+    @AfterEach
+    void stop() {
+        timer.stop();
+    }
+
+    @Test
+    void tasksFireInDeadlineOrderAcrossRounds() throws Exception {
+        List<Integer> fired = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(3);
+
+        long start = System.nanoTime();
+        timer.schedule(() -> { fired.add(250); done.countDown(); }, 250, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> { fired.add(30); done.countDown(); }, 30, TimeUnit.MILLISECONDS);
+        timer.schedule(() -> { fired.add(120); done.countDown(); }, 120, TimeUnit.MILLISECONDS);
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(30, 120, 250), fired);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(250));
+    }
+
+    @Test
+    void cancelledTaskDoesNotRun() throws Exception {
+        CountDownLatch cancelledRan = new CountDownLatch(1);
+        CountDownLatch laterRan = new CountDownLatch(1);
+
+        HashedWheelTimer.Timeout t = timer.schedule(cancelledRan::countDown, 30, TimeUnit.MILLISECONDS);
+        t.cancel();
+        timer.schedule(laterRan::countDown, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(laterRan.await(2, TimeUnit.SECONDS));
+        assertTrue(t.isCancelled());
+        assertFalse(cancelledRan.await(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void failingTaskDoesNotStopTheWheel() throws Exception {
+        CountDownLatch ran = new CountDownLatch(1);
+
+        timer.schedule(() -> { throw new IllegalStateException("boom"); }, 10, TimeUnit.MILLISECONDS);
+        timer.schedule(ran::countDown, 40, TimeUnit.MILLISECONDS);
+
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,69 @@
+package com.e2ee.server.delivery;
+
+import com.e2ee.server.config.E2eeProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InFlightTableTest {
+
+    private final InFlightTable table = new InFlightTable(new E2eeProperties());
+
+    @AfterEach
+    void stop() {
+        table.stop();
+    }
+
+    @Test
+    void onlyTheReceiverCanConfirm() {
+        table.track("m1", "alice", "bob", "{}");
+
+        assertNull(table.confirm("m1", "mallory"));
+        assertEquals(1, table.size());
+
+        assertEquals("alice", table.confirm("m1", "bob"));
+        assertEquals(0, table.size());
+        assertEquals(1, table.confirmedCount());
+    }
+
+    @Test
+    void readAfterDeliveredIsStillRoutedToTheSender() {
+        table.track("m1", "alice", "bob", "{}");
+
+        assertEquals("alice", table.confirm("m1", "bob"));   // DELIVERED
+        assertEquals("alice", table.confirm("m1", "bob"));   // READ
+        assertNull(table.confirm("m1", "mallory"));
+        assertEquals(1, table.confirmedCount());
+    }
+
+    @Test
+    void unknownIdIsIgnored() {
+        assertNull(table.confirm("nope", "bob"));
+        assertNull(table.confirm(null, "bob"));
+    }
+
+    @Test
+    void anotherSenderCannotTakeOverAnId() {
+        assertTrue(table.track("m1", "alice", "bob", "{}"));
+
+        // mallory 가 같은 id 로 자기에게 오는 확인을 걸어 보려 함 → 거절, alice 항목 그대로
+        assertTrue(table.isUsedByOther("m1", "mallory"));
+        assertFalse(table.track("m1", "mallory", "carol", "{}"));
+        assertNull(table.confirm("m1", "carol"));
+        assertEquals("alice", table.confirm("m1", "bob"));
+
+        // 확인된 뒤에도 READ 전달용으로 기억하는 동안은 거절
+        assertFalse(table.track("m1", "mallory", "bob", "{}"));
+        assertEquals("alice", table.confirm("m1", "bob"));
+
+        // 같은 보낸 사람의 재전송은 그대로 받음
+        assertTrue(table.track("m2", "alice", "bob", "{}"));
+        assertTrue(table.track("m2", "alice", "bob", "{}"));
+        assertFalse(table.isUsedByOther("m2", "alice"));
+        assertEquals(1, table.size());
+    }
+}
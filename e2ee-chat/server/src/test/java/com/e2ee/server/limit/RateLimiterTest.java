@@ -0,0 +1,101 @@
+package com.e2ee.server.limit;
+
+import com.e2ee.server.config.E2eeProperties;
+import com.e2ee.server.protocol.MessageType;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimiterTest {
+
+    // 초당 0.001개 → 테스트 중엔 충전되지 않음
+    private static RateLimiter limiter(int burst) {
+        E2eeProperties props = new E2eeProperties();
+        props.getRateLimit().setAction(OverLimitAction.DROP);
+        props.getRateLimit().getChat().setPerSecond(0.001);
+        props.getRateLimit().getChat().setBurst(burst);
+        props.getRateLimit().getAuth().setPerSecond(0.001);
+        props.getRateLimit().getAuth().setBurst(burst);
+        props.getRateLimit().getAuthAddress().setPerSecond(0.001);
+        props.getRateLimit().getAuthAddress().setBurst(burst);
+        return new RateLimiter(props);
+    }
+
+    @Test
+    void userBucketIsSharedAcrossConnections() {
+        RateLimiter limiter = limiter(2);
+        RateLimiter.Buckets a = limiter.newConnection();
+        RateLimiter.Buckets b = limiter.newConnection();
+
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(a, MessageType.CHAT, 7, null));
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(b, MessageType.CHAT, 7, null));
+        assertEquals(RateLimiter.Verdict.DROP, limiter.check(b, MessageType.CHAT, 7, null));
+
+        // 다른 사용자는 따로 (uid 가 배열 크기를 넘어도)
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(limiter.newConnection(), MessageType.CHAT, 500, null));
+    }
+
+    @Test
+    void connectionTokenIsRefundedWhenUserBucketBlocks() {
+        RateLimiter limiter = limiter(2);
+        RateLimiter.Buckets a = limiter.newConnection();
+        RateLimiter.Buckets b = limiter.newConnection();
+
+        // 사용자 7 예산을 연결 a 로 다 씀
+        limiter.check(a, MessageType.CHAT, 7, null);
+        limiter.check(a, MessageType.CHAT, 7, null);
+
+        // 연결 b 는 사용자 버킷에서 막힘 → b 의 연결 토큰은 그대로
+        assertEquals(RateLimiter.Verdict.DROP, limiter.check(b, MessageType.CHAT, 7, null));
+        assertEquals(RateLimiter.Verdict.DROP, limiter.check(b, MessageType.CHAT, 7, null));
+
+        // 같은 연결 b 로 다른 사용자가 로그인하면 연결 토큰 2개가 남아 있어야 함
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(b, MessageType.CHAT, 8, null));
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(b, MessageType.CHAT, 8, null));
+        assertEquals(RateLimiter.Verdict.DROP, limiter.check(b, MessageType.CHAT, 8, null));
+        assertEquals(3, limiter.limitedCount(LimitCategory.CHAT));
+    }
+
+    @Test
+    void unauthenticatedFramesUseConnectionBucketOnly() {
+        RateLimiter limiter = limiter(1);
+        RateLimiter.Buckets a = limiter.newConnection();
+
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(a, MessageType.CHAT, 0, null));
+        assertEquals(RateLimiter.Verdict.DROP, limiter.check(a, MessageType.CHAT, 0, null));
+
+        // 사용자 버킷은 건드리지 않았으므로 새 연결에서 uid 3 은 통과
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(limiter.newConnection(), MessageType.CHAT, 3, null));
+    }
+
+    @Test
+    void authBudgetFollowsAddressAcrossReconnects() throws Exception {
+        RateLimiter limiter = limiter(2);
+        InetAddress attacker = InetAddress.getByName("10.0.0.1");
+
+        // 매번 새 연결 (재접속) → 연결 버킷은 새것이지만 IP 버킷이 이어짐
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(limiter.newConnection(), MessageType.AUTH_LOGIN, 0, attacker));
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(limiter.newConnection(), MessageType.AUTH_LOGIN, 0, attacker));
+        assertEquals(RateLimiter.Verdict.DROP, limiter.check(limiter.newConnection(), MessageType.AUTH_LOGIN, 0, attacker));
+
+        // 다른 IP 는 따로
+        InetAddress other = InetAddress.getByName("10.0.0.2");
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(limiter.newConnection(), MessageType.AUTH_LOGIN, 0, other));
+    }
+
+    @Test
+    void loginBudgetIsPerAccount() {
+        RateLimiter limiter = limiter(2);
+
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.checkLogin(7));
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.checkLogin(7));
+        assertEquals(RateLimiter.Verdict.DROP, limiter.checkLogin(7));
+
+        // 다른 계정 / 같은 계정의 CHAT 예산은 따로
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.checkLogin(8));
+        assertEquals(RateLimiter.Verdict.ALLOW, limiter.check(limiter.newConnection(), MessageType.CHAT, 7, null));
+        assertEquals(1, limiter.limitedCount(LimitCategory.AUTH));
+    }
+}
@@ -0,0 +1,84 @@
+package com.e2ee.server.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void burstIsAllowedThenCallerMustWait() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        long now = 5 * SECOND;
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+
+        // 4번째는 토큰 1개 충전 간격(100ms)만큼 기다려야 함
+        assertEquals(SECOND / 10, bucket.tryAcquire(now));
+    }
+
+    @Test
+    void deniedAttemptDoesNotSpendToken() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        long now = 5 * SECOND;
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now) > 0);
+        assertTrue(bucket.tryAcquire(now) > 0);
+
+        // 막힌 시도가 TAT 를 밀지 않았으므로 100ms 뒤엔 바로 통과
+        assertEquals(0, bucket.tryAcquire(now + SECOND / 10));
+    }
+
+    @Test
+    void idleTimeRefillsOnlyUpToBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = 5 * SECOND;
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+
+        // 한참 쉬어도 burst(2) 개까지만
+        long later = now + 60 * SECOND;
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later) > 0);
+    }
+
+    @Test
+    void refundGivesTokenBack() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        long now = 5 * SECOND;
+
+        assertEquals(0, bucket.tryAcquire(now));
+        bucket.refund();
+        assertEquals(0, bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now) > 0);
+    }
+
+    @Test
+    void refundOnFullBucketDoesNotExceedBurst() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+        long now = 5 * SECOND;
+
+        assertEquals(0, bucket.tryAcquire(now));
+        bucket.refund();
+        bucket.refund();
+
+        assertEquals(0, bucket.tryAcquire(now));
+        assertEquals(0, bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now) > 0);
+    }
+
+    @Test
+    void invalidSettingsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
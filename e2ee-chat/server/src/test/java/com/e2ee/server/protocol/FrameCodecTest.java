@@ -0,0 +1,90 @@
+package com.e2ee.server.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameCodecTest {
+
+    private final FrameCodec codec = new FrameCodec();
+
+    @Test
+    void roundTripKeepsFrameExactly() throws Exception {
+        String[] frames = {
+                "{\"type\":\"SYSTEM\",\"sender\":\"server\",\"receiver\":\"alice\",\"body\":\"RATE_LIMITED:CHAT\",\"timestamp\":\"2026-01-01T00:00:00\"}",
+                "{\"type\":\"ROOM_MEMBERS\",\"sender\":\"dev\",\"body\":\"[\\\"앨리스\\\",\\\"bob\\\"]\"}",
+                "{}",
+                "{\"type\":\"KEY_BATCH_RES\",\"body\":\"" + "x".repeat(100_000) + "\"}"
+        };
+
+        for (String json : frames) {
+            String line = codec.encode(json);
+            assertTrue(FrameCodec.isCompressed(line));
+            assertFalse(line.contains("\n"));
+            assertEquals(json, codec.decode(line));
+        }
+    }
+
+    @Test
+    void shortControlFrameShrinksThanksToDictionary() {
+        String json = "{\"type\":\"SYSTEM\",\"sender\":\"server\",\"receiver\":\"alice\",\"body\":\"NO_SUCH_USER:bob\",\"timestamp\":\"2026-01-01T00:00:00\"}";
+
+        assertTrue(codec.encode(json).length() < json.length());
+    }
+
+    @Test
+    void framesAreIndependentAcrossCodecs() throws Exception {
+        FrameCodec other = new FrameCodec(Deflater.BEST_SPEED);
+        String a = codec.encode("{\"type\":\"READ\",\"body\":\"m-1\"}");
+        String b = codec.encode("{\"type\":\"READ\",\"body\":\"m-2\"}");
+
+        // 순서와 상관없이, 다른 인스턴스에서도 한 줄씩 풀림
+        assertEquals("{\"type\":\"READ\",\"body\":\"m-2\"}", other.decode(b));
+        assertEquals("{\"type\":\"READ\",\"body\":\"m-1\"}", other.decode(a));
+    }
+
+    @Test
+    void plainJsonIsNotTreatedAsCompressed() {
+        assertFalse(FrameCodec.isCompressed("{\"type\":\"CHAT\"}"));
+        assertFalse(FrameCodec.isCompressed(""));
+        assertTrue(FrameCodec.isCompressed("Z"));
+    }
+
+    @Test
+    void badBase64AndTruncatedFramesAreRejected() throws Exception {
+        assertThrows(DataFormatException.class, () -> codec.decode("Z***"));
+
+        String line = codec.encode("{\"type\":\"SYSTEM\",\"body\":\"" + "abc".repeat(200) + "\"}");
+        byte[] raw = Base64.getDecoder().decode(line.substring(1));
+        byte[] cut = Arrays.copyOf(raw, raw.length / 2);
+        assertThrows(DataFormatException.class,
+                () -> codec.decode("Z" + Base64.getEncoder().encodeToString(cut)));
+
+        // 실패한 뒤에도 같은 codec 으로 계속 풀 수 있음
+        assertEquals("{\"ok\":1}", codec.decode(codec.encode("{\"ok\":1}")));
+    }
+
+    @Test
+    void decompressionBombIsRejected() {
+        // 0 바이트 8MB → deflate 로 수 KB
+        Deflater d = new Deflater(Deflater.BEST_COMPRESSION);
+        d.setInput(new byte[8 * 1024 * 1024]);
+        d.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        while (!d.finished()) out.write(buf, 0, d.deflate(buf));
+        d.end();
+
+        String bomb = "Z" + Base64.getEncoder().encodeToString(out.toByteArray());
+        assertThrows(DataFormatException.class, () -> codec.decode(bomb));
+    }
+}
@@ -0,0 +1,259 @@
+package com.e2ee.server.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HistoryShardTest {
+
+    private static final long KEY = HistoryShard.keyHash("alice|bob");
+
+    @TempDir
+    Path dir;
+
+    private HistoryShard shard(long segmentBytes) {
+        HistoryShard s = new HistoryShard(0, dir.toFile(), segmentBytes, 4096, 4, 0);
+        s.open(line -> new HistoryShard.FrameMeta(KEY, 0));
+        return s;
+    }
+
+    private static List<String> frames(HistoryShard s) throws IOException {
+        List<String> out = new ArrayList<>();
+        s.forEach((frame, storedAt, expiresAt) -> out.add(frame));
+        return out;
+    }
+
+    private static String frame(int i) {
+        return "{\"type\":\"CHAT\",\"body\":\"m" + i + "\"}";
+    }
+
+    @Test
+    void reopenKeepsEverything() throws Exception {
+        HistoryShard s = shard(Long.MAX_VALUE);
+        for (int i = 0; i < 5; i++) s.append("alice|bob", frame(i), 1000 + i, 0, false);
+        s.close();
+
+        HistoryShard reopened = shard(Long.MAX_VALUE);
+        assertEquals(5, reopened.size());
+        assertEquals(List.of(frame(0), frame(1), frame(2), frame(3), frame(4)), frames(reopened));
+    }
+
+    @Test
+    void halfWrittenTailIsCutOnOpen() throws Exception {
+        HistoryShard s = shard(Long.MAX_VALUE);
+        for (int i = 0; i < 3; i++) s.append("alice|bob", frame(i), 1000 + i, 0, true);
+        s.close();
+
+        // 로그에 반쯤 쓰인 줄 (인덱스 항목은 아직 없음)
+        File log = dir.resolve("00000001.log").toFile();
+        long before = log.length();
+        Files.writeString(log.toPath(), "{\"type\":\"CH", StandardOpenOption.APPEND);
+
+        HistoryShard reopened = shard(Long.MAX_VALUE);
+        assertEquals(3, reopened.size());
+        assertEquals(List.of(frame(0), frame(1), frame(2)), frames(reopened));
+        assertEquals(before, log.length());
+    }
+
+    @Test
+    void indexEntryPointingPastNewlineIsRebuilt() throws Exception {
+        HistoryShard s = shard(Long.MAX_VALUE);
+        for (int i = 0; i < 3; i++) s.append("alice|bob", frame(i), 1000 + i, 0, true);
+        s.close();
+
+        // 두 번째 항목 길이를 1 늘림 → 위치는 이어지지만 줄 끝이 '\n' 이 아님
+        try (RandomAccessFile idx = new RandomAccessFile(dir.resolve("00000001.idx").toFile(), "rw")) {
+            long p = HistoryShard.INDEX_ENTRY + 16;
+            idx.seek(p);
+            int length = idx.readInt();
+            idx.seek(p);
+            idx.writeInt(length + 1);
+            // 마지막 항목이 로그 끝과 안 맞게 (open() 이 다시 만들도록)
+            idx.setLength(idx.length() - 1);
+        }
+
+        HistoryShard reopened = shard(Long.MAX_VALUE);
+        assertEquals(List.of(frame(0), frame(1), frame(2)), frames(reopened));
+    }
+
+    @Test
+    void crashBetweenSwapMovesIsFinishedOnOpen() throws Exception {
+        // 작은 세그먼트 → 앞 세그먼트가 닫혀서 compact 대상이 됨
+        HistoryShard s = shard(150);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 8; i++) {
+            s.append("alice|bob", frame(i), now, (i % 2 == 0) ? now - 1 : 0, true);
+        }
+        List<String> expected = new ArrayList<>();
+        for (String f : frames(s)) expected.add(f);
+
+        Path oldIdx = dir.resolve("00000001.idx");
+        byte[] staleIdx = Files.readAllBytes(oldIdx);
+
+        HistoryShard.Compaction c = s.compact(now, 0);
+        assertTrue(c.rewrittenSegments() > 0);
+        s.close();
+
+        // 로그만 옮겨진 뒤 죽은 상태: 새 로그 + 옛 인덱스 + 새 인덱스(.tmp) + 표시 파일
+        Files.move(oldIdx, dir.resolve("00000001.idx.tmp"));
+        Files.write(oldIdx, staleIdx);
+        Files.createFile(dir.resolve("00000001.swap"));
+
+        HistoryShard reopened = shard(150);
+        assertEquals(expected, frames(reopened));
+        assertFalse(Files.exists(dir.resolve("00000001.swap")));
+        assertFalse(Files.exists(dir.resolve("00000001.idx.tmp")));
+    }
+
+    @Test
+    void unfinishedRewriteWithoutMarkerIsDiscarded() throws Exception {
+        HistoryShard s = shard(Long.MAX_VALUE);
+        for (int i = 0; i < 3; i++) s.append("alice|bob", frame(i), 1000 + i, 0, true);
+        s.close();
+
+        // 표시 파일 전에 죽음 → .tmp 는 버리고 원래 세그먼트 그대로
+        Files.writeString(dir.resolve("00000001.log.tmp"), frame(9) + "\n");
+        Files.write(dir.resolve("00000001.idx.tmp"), new byte[HistoryShard.INDEX_ENTRY]);
+
+        HistoryShard reopened = shard(Long.MAX_VALUE);
+        assertEquals(List.of(frame(0), frame(1), frame(2)), frames(reopened));
+        assertFalse(Files.exists(dir.resolve("00000001.log.tmp")));
+    }
+
+    @Test
+    void unparseableLogNamesStartFirstSegment() throws Exception {
+        Files.writeString(dir.resolve("junk.log"), frame(0) + "\n");
+
+        HistoryShard s = shard(Long.MAX_VALUE);
+        assertEquals(0, s.size());
+        s.append("alice|bob", frame(1), 1000, 0, true);
+        s.close();
+
+        assertTrue(Files.exists(dir.resolve("00000001.log")));
+        assertEquals(List.of(frame(1)), frames(shard(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void unreadableSegmentAbortsRewriteAndKeepsOriginal() throws Exception {
+        HistoryShard s = shard(150);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 8; i++) {
+            s.append("alice|bob", frame(i), now, (i % 2 == 0) ? now - 1 : 0, true);
+        }
+
+        // 닫힌 세그먼트 로그 꼬리를 잘라서 마지막 항목을 못 읽게
+        Path log = dir.resolve("00000001.log");
+        try (RandomAccessFile raf = new RandomAccessFile(log.toFile(), "rw")) {
+            raf.setLength(raf.length() - 5);
+        }
+        byte[] logBefore = Files.readAllBytes(log);
+        byte[] idxBefore = Files.readAllBytes(dir.resolve("00000001.idx"));
+
+        HistoryShard.Compaction c = s.compact(now, 0);
+        assertEquals(0, c.droppedMessages());
+        assertArrayEquals(logBefore, Files.readAllBytes(log));
+        assertArrayEquals(idxBefore, Files.readAllBytes(dir.resolve("00000001.idx")));
+        assertFalse(Files.exists(dir.resolve("00000001.log.tmp")));
+        assertFalse(Files.exists(dir.resolve("00000001.idx.tmp")));
+        assertThrows(IOException.class, () -> frames(s));
+        s.close();
+    }
+
+    @Test
+    void failedDeleteKeepsSegmentListed() throws Exception {
+        HistoryShard s = shard(150);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 8; i++) s.append("alice|bob", frame(i), now, now - 1, true);
+        long before = s.size();
+
+        // 로그 자리에 비어 있지 않은 디렉터리 → delete() 가 실패
+        Path log = dir.resolve("00000001.log");
+        Files.delete(log);
+        Files.createDirectory(log);
+        Files.writeString(log.resolve("keep"), "x");
+
+        HistoryShard.Compaction c = s.compact(now, 0);
+        assertEquals(HistoryShard.Compaction.NONE, c);
+        assertEquals(before, s.size());
+        assertTrue(Files.exists(dir.resolve("00000001.idx")));
+        s.close();
+    }
+
+    @Test
+    void hotRingIsBoundedByBytes() {
+        HistoryShard.HotRing ring = new HistoryShard.HotRing(100, true);
+        for (int i = 0; i < 3; i++) ring.add("x".repeat(40), 1000, 0);
+        assertEquals(2, ring.size());
+        assertEquals(80, ring.bytes());
+
+        // 상한보다 큰 프레임 1개는 혼자 남음
+        ring.add("y".repeat(500), 1000, 0);
+        assertEquals(1, ring.size());
+        assertEquals(List.of("y".repeat(500)), ring.last(10, 2000, 0));
+    }
+
+    @Test
+    void hotRingCountsUtf8Bytes() {
+        HistoryShard.HotRing ring = new HistoryShard.HotRing(100, true);
+        ring.add("가".repeat(20), 1000, 0);
+        assertEquals(60, ring.bytes());
+
+        ring.add("가".repeat(20), 1000, 0);
+        assertEquals(1, ring.size());
+        assertFalse(ring.complete());
+        assertEquals(HistoryShard.utf8Length("a\u00e9가\uD83D\uDE00"), "a\u00e9가\uD83D\uDE00".getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void recentServedFromHotRingWhenItHasEnoughOrTheWholeConversation() {
+        HistoryShard s = shard(Long.MAX_VALUE);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) s.append("alice|bob", frame(i), now, 0, true);
+
+        assertEquals(List.of(frame(1), frame(2)), s.recentHot("alice|bob", 2));
+        // 디스크에 옛 기록이 없던 대화 → 모자라도 링이 전부
+        assertEquals(List.of(frame(0), frame(1), frame(2)), s.recentHot("alice|bob", 10));
+        assertEquals(List.of(), s.recentHot("carol|dave", 10));
+        s.close();
+    }
+
+    @Test
+    void recentGoesToDiskOnlyWhenOlderEntriesExist() {
+        HistoryShard s = shard(Long.MAX_VALUE);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) s.append("alice|bob", frame(i), now, 0, true);
+        s.close();
+
+        // 다시 열면 링이 새로 생김 → 디스크의 옛 기록이 링에 없으므로 디스크로
+        HistoryShard reopened = shard(Long.MAX_VALUE);
+        assertNull(reopened.recentHot("alice|bob", 10));
+        reopened.append("alice|bob", frame(3), now, 0, true);
+        assertNull(reopened.recentHot("alice|bob", 10));
+        assertEquals(List.of(frame(3)), reopened.recentHot("alice|bob", 1));
+
+        List<String> scanned = new ArrayList<>();
+        reopened.scan(KEY, scanned::add);
+        assertEquals(List.of(frame(0), frame(1), frame(2), frame(3)), scanned);
+
+        // 디스크에 없던 대화는 새로 열어도 링이 전부
+        reopened.append("carol|dave", frame(9), now, 0, true);
+        assertEquals(List.of(frame(9)), reopened.recentHot("carol|dave", 10));
+        reopened.close();
+    }
+}
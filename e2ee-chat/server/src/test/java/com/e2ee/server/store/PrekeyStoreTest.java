@@ -0,0 +1,120 @@
+package com.e2ee.server.store;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.KeyPairGenerator;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrekeyStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private File file() {
+        return dir.resolve("prekeys.json").toFile();
+    }
+
+    private static Map<String, String> keys(int from, int count) throws Exception {
+        KeyPairGenerator gen = KeyPairGenerator.getInstance("X25519");
+        Map<String, String> keys = new LinkedHashMap<>();
+        for (int i = from; i < from + count; i++) {
+            keys.put(Integer.toString(i), Base64.getEncoder().encodeToString(gen.generateKeyPair().getPublic().getEncoded()));
+        }
+        return keys;
+    }
+
+    @Test
+    void takesOldestFirstAndNeverTwice() throws Exception {
+        PrekeyStore store = new PrekeyStore(file(), 10);
+        assertFalse(store.supports(1));
+
+        assertEquals(3, store.upload(1, keys(1, 3)));
+        assertTrue(store.supports(1));
+
+        assertEquals(1, store.take(1).id());
+        assertEquals(2, store.take(1).id());
+        assertEquals(3, store.take(1).id());
+        assertNull(store.take(1));
+        assertTrue(store.supports(1));    // 다 떨어져도 지원
+        store.close();
+    }
+
+    @Test
+    void skipsInvalidDuplicateAndOverLimit() throws Exception {
+        PrekeyStore store = new PrekeyStore(file(), 3);
+
+        Map<String, String> batch = new LinkedHashMap<>(keys(1, 2));
+        batch.put("x", batch.get("1"));
+        batch.put("7", "not-a-key");
+        assertEquals(2, store.upload(1, batch));
+
+        assertEquals(2, store.upload(1, keys(1, 2)));     // 같은 id 는 건너뜀
+        assertEquals(3, store.upload(1, keys(10, 5)));    // 상한
+        store.close();
+    }
+
+    @Test
+    void takesSurviveRestartWithoutRewritingSnapshot() throws Exception {
+        PrekeyStore store = new PrekeyStore(file(), 10);
+        store.upload(1, keys(1, 4));
+        long snapshot = file().lastModified();
+        byte[] before = Files.readAllBytes(file().toPath());
+
+        store.take(1);
+        store.take(1);
+
+        // 스냅샷은 그대로, 꺼낸 것은 로그에만
+        assertEquals(snapshot, file().lastModified());
+        assertEquals(new String(before), Files.readString(file().toPath()));
+        assertEquals(2, Files.readAllLines(dir.resolve("prekeys.json.taken")).size());
+
+        // close 없이 죽은 것처럼 다시 열어도 꺼낸 것은 다시 안 나옴
+        PrekeyStore reopened = new PrekeyStore(file(), 10);
+        assertEquals(2, reopened.count(1));
+        assertEquals(3, reopened.take(1).id());
+        reopened.close();
+        store.close();
+    }
+
+    @Test
+    void tornTakenLineIsIgnored() throws Exception {
+        PrekeyStore store = new PrekeyStore(file(), 10);
+        store.upload(1, keys(1, 3));
+        store.take(1);
+        store.close();
+
+        Files.writeString(dir.resolve("prekeys.json.taken"), "1 1\n1", StandardOpenOption.APPEND);
+
+        PrekeyStore reopened = new PrekeyStore(file(), 10);
+        assertEquals(2, reopened.count(1));
+        assertFalse(Files.exists(dir.resolve("prekeys.json.taken")));
+        reopened.close();
+    }
+
+    @Test
+    void compactsTakenLogIntoSnapshot() throws Exception {
+        PrekeyStore store = new PrekeyStore(file(), PrekeyStore.COMPACT_TAKES + 10);
+        for (int i = 0; i < PrekeyStore.COMPACT_TAKES + 5; i += 100) {
+            store.upload(1, keys(i + 1, 100));
+        }
+        int uploaded = store.count(1);
+
+        for (int i = 0; i < PrekeyStore.COMPACT_TAKES; i++) store.take(1);
+
+        assertFalse(Files.exists(dir.resolve("prekeys.json.taken")));
+        assertEquals(uploaded - PrekeyStore.COMPACT_TAKES, new PrekeyStore(file(), Integer.MAX_VALUE).count(1));
+        store.close();
+    }
+}
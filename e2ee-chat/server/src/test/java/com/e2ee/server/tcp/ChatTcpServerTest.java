@@ -0,0 +1,82 @@
+package com.e2ee.server.tcp;
+
+import com.e2ee.server.protocol.ChatMessage;
+import com.e2ee.server.protocol.MessageType;
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// 실제 소켓으로: 깨진 프레임에 답만 하고 연결은 그대로인지
+@SpringBootTest(properties = {
+        "e2ee.server.port=19090",
+        "e2ee.storage.data-dir=build/test-data/tcp"
+})
+class ChatTcpServerTest {
+
+    private static final Gson gson = new Gson();
+
+    // 서버 소켓은 별도 스레드에서 열림 → 잠깐 재시도
+    private static Socket connect() throws Exception {
+        for (int i = 0; ; i++) {
+            try {
+                Socket s = new Socket("localhost", 19090);
+                s.setSoTimeout(5000);
+                return s;
+            } catch (ConnectException e) {
+                if (i == 50) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static ChatMessage read(BufferedReader in) throws IOException {
+        return gson.fromJson(in.readLine(), ChatMessage.class);
+    }
+
+    @Test
+    void malformedAuthFramesAreAnsweredWithoutClosing() throws Exception {
+        try (Socket socket = connect();
+             PrintWriter out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+
+            // body 없음
+            out.println("{\"type\":\"AUTH_LOGIN\"}");
+            ChatMessage res = read(in);
+            assertEquals(MessageType.AUTH_RESULT, res.getType());
+            assertEquals("LOGIN_FAIL:BAD_PAYLOAD", res.getBody());
+
+            // body 가 문자열이 아님
+            out.println("{\"type\":\"AUTH_LOGIN\",\"body\":{}}");
+            res = read(in);
+            assertEquals(MessageType.SYSTEM, res.getType());
+            assertEquals("BAD_FRAME", res.getBody());
+
+            // body 가 JSON 객체 문자열이 아님
+            out.println("{\"type\":\"AUTH_SIGNUP\",\"body\":\"[1,2]\"}");
+            res = read(in);
+            assertEquals(MessageType.AUTH_RESULT, res.getType());
+            assertEquals("SIGNUP_FAIL:BAD_PAYLOAD", res.getBody());
+
+            // 모르는 타입
+            out.println("{\"type\":\"LOGIN\"}");
+            res = read(in);
+            assertEquals(MessageType.SYSTEM, res.getType());
+            assertEquals("UNKNOWN_TYPE", res.getBody());
+
+            // 여전히 같은 연결로 응답
+            out.println("{\"type\":\"AUTH_LOGIN\",\"body\":\"{\\\"id\\\":\\\"nobody\\\",\\\"password\\\":\\\"x\\\"}\"}");
+            res = read(in);
+            assertEquals("LOGIN_FAIL:ID_NOT_FOUND", res.getBody());
+        }
+    }
+}
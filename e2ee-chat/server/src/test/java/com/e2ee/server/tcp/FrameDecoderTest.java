@@ -0,0 +1,89 @@
+package com.e2ee.server.tcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FrameDecoderTest {
+
+    private final List<Long> oversized = new ArrayList<>();
+
+    // read() 1번에 최대 chunk 바이트만 주는 입력 (TCP 조각 흉내)
+    private static InputStream chunked(String data, int chunk) {
+        return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    private FrameDecoder decoder(String data, int chunk, int maxFrameBytes) {
+        return new FrameDecoder(chunked(data, chunk), 512, maxFrameBytes, oversized::add);
+    }
+
+    @Test
+    void linesSplitAcrossReadsAreReassembled() throws Exception {
+        FrameDecoder d = decoder("{\"a\":1}\n{\"b\":2}\r\n\n{\"c\":3}", 3, 1024);
+
+        assertEquals("{\"a\":1}", d.next());
+        assertEquals("{\"b\":2}", d.next());
+        assertEquals("", d.next());
+        // 마지막 줄은 '\n' 없이 끝나도 돌려줌
+        assertEquals("{\"c\":3}", d.next());
+        assertNull(d.next());
+        assertEquals(List.of(), oversized);
+    }
+
+    @Test
+    void lastLengthCountsUtf8BytesWithoutLineEnding() throws Exception {
+        FrameDecoder d = decoder("가나다\r\n", 512, 1024);
+
+        assertEquals("가나다", d.next());
+        assertEquals(9, d.lastLength());
+    }
+
+    @Test
+    void frameAtLimitPassesAndOneByteOverIsDropped() throws Exception {
+        String atLimit = "x".repeat(16);
+        String over = "y".repeat(17);
+        FrameDecoder d = decoder(atLimit + "\n" + over + "\nnext\n", 5, 16);
+
+        assertEquals(atLimit, d.next());
+        // 넘은 줄은 돌려주지 않고 건너뛰고, 다음 줄은 정상
+        assertEquals("next", d.next());
+        assertEquals(List.of(17L), oversized);
+        assertNull(d.next());
+    }
+
+    @Test
+    void oversizedLineLongerThanReadBufferIsDiscardedWhole() throws Exception {
+        String huge = "z".repeat(5000);
+        FrameDecoder d = new FrameDecoder(chunked(huge + "\nok\n", 700), 512, 64, oversized::add);
+
+        assertEquals("ok", d.next());
+        assertEquals(List.of(5000L), oversized);
+    }
+
+    @Test
+    void oversizedLastLineWithoutNewlineIsReportedThenEnds() throws Exception {
+        FrameDecoder d = decoder("ok\n" + "w".repeat(40), 7, 32);
+
+        assertEquals("ok", d.next());
+        assertNull(d.next());
+        assertEquals(List.of(40L), oversized);
+    }
+
+    @Test
+    void emptyInputEndsImmediately() throws Exception {
+        assertNull(decoder("", 512, 16).next());
+        assertEquals(List.of(), oversized);
+    }
+}